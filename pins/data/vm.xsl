@@ -0,0 +1,73 @@
+<?xml version="1.0" encoding="UTF-8"?>
+<xsl:stylesheet version="1.0" xmlns:xsl="http://www.w3.org/1999/XSL/Transform">
+
+<xsl:template match="vm">
+  <html>
+    <style>
+      table, tr, td {
+      text-align: left;
+      vertical-align: top;
+      }
+    </style>
+    <body>
+      <table>
+	<tr>
+	  <xsl:apply-templates select="vmfunction"/>
+	</tr>
+      </table>
+    </body>
+  </html>
+</xsl:template>
+
+<xsl:template match="vmfunction">
+  <td bgcolor="FFEE00">
+    <table width="100%">
+      <tr>
+	<td bgcolor="EECF00" colspan="2">
+	  <nobr>
+	    FUNCTION
+	    name=<font style="font-family:courier new"><xsl:value-of select="@name"/></font>
+	    framesize=<xsl:value-of select="@framesize"/>
+	    regs=<xsl:value-of select="@regs"/>
+	  </nobr>
+	</td>
+      </tr>
+      <xsl:apply-templates select="const"/>
+      <xsl:apply-templates select="instr"/>
+    </table>
+  </td>
+</xsl:template>
+
+<xsl:template match="const">
+  <tr>
+    <td bgcolor="00BBFF">
+      <nobr>
+	CONST <xsl:value-of select="@index"/>
+      </nobr>
+    </td>
+    <td bgcolor="00BBFF">
+      <nobr>
+	<xsl:value-of select="@value"/>
+      </nobr>
+    </td>
+  </tr>
+</xsl:template>
+
+<xsl:template match="instr">
+  <tr>
+    <td>
+      <nobr>
+	<xsl:value-of select="@offset"/>
+      </nobr>
+    </td>
+    <td>
+      <nobr>
+	<font style="font-family:courier new">
+	  <xsl:value-of select="@text"/>
+	</font>
+      </nobr>
+    </td>
+  </tr>
+</xsl:template>
+
+</xsl:stylesheet>
@@ -0,0 +1,377 @@
+/**
+ * @author sliva
+ */
+package compiler;
+
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.*;
+import java.util.stream.*;
+import compiler.common.report.*;
+import compiler.data.chunk.*;
+import compiler.phases.synan.*;
+import compiler.phases.abstr.*;
+import compiler.phases.seman.*;
+import compiler.phases.frames.*;
+import compiler.phases.imcgen.*;
+import compiler.phases.chunks.*;
+import compiler.phases.vm.*;
+import compiler.phases.jit.*;
+
+/**
+ * The batch runner.
+ *
+ * Compiles and executes many programs in a single JVM, so that the start-up and
+ * the warm-up of the JVM are paid only once. The programs are listed by a
+ * manifest file (one source file name per line, relative to the manifest;
+ * empty lines and lines starting with {@code #} are ignored) or are all
+ * {@code .pins} files within a directory (command line argument
+ * {@code --batch}). Programs are processed by a pool of workers
+ * ({@code --batch-jobs}, the number of processors by default). Compilation is
+ * only partly concurrent: as the phases of the compiler up to and including
+ * the chunks keep their results in static fields, they run for one program at
+ * a time, while the execution engine of each program (including its VM or JIT
+ * compilation) is prepared and run concurrently with the others. The output of each program is captured in a
+ * file in the output directory ({@code --batch-out}) and the results of all
+ * programs are summarized in file {@code results.tsv} there. A program running
+ * longer than the timeout ({@code --batch-timeout}, in milliseconds) is stopped
+ * by its {@link Meter} and reported as timed out; unless set explicitly, the
+ * time limit of the meter ({@code --max-time}) equals the timeout.
+ *
+ * @author sliva
+ */
+public class Batch {
+
+	/** The default output directory. */
+	public static final String OUT_DIR = "batch-out";
+
+	/** The lock serializing compilations. */
+	private static final Object compilerLock = new Object();
+
+	/** The directory the source file names are relative to. */
+	private final Path root;
+
+	/** The source files. */
+	private final List<Path> srcFiles;
+
+	/** The output directory. */
+	private final Path outDir;
+
+	/** The number of workers. */
+	private final int numJobs;
+
+	/** The timeout in milliseconds ({@code 0} if there is none). */
+	private final long timeout;
+
+	/**
+	 * Constructs a new batch runner.
+	 *
+	 * @param batch The name of the manifest file or the directory.
+	 */
+	public Batch(String batch) {
+		this.root = root(batch);
+		this.srcFiles = srcFiles(batch);
+
+		String outDir = Main.cmdLineArgValue("--batch-out");
+		this.outDir = Paths.get(outDir == null ? OUT_DIR : outDir);
+		String numJobs = Main.cmdLineArgValue("--batch-jobs");
+		this.numJobs = (numJobs == null) ? Runtime.getRuntime().availableProcessors()
+				: Math.max(1, Integer.parseInt(numJobs));
+		String timeout = Main.cmdLineArgValue("--batch-timeout");
+		this.timeout = (timeout == null) ? 0 : Long.parseLong(timeout);
+		if ((this.timeout != 0) && (Main.cmdLineArgValue("--max-time") == null))
+			Main.cmdLineArgValue("--max-time", Long.toString(this.timeout));
+	}
+
+	/**
+	 * Returns the directory the source file names of a batch are relative to.
+	 *
+	 * @param batch The name of the manifest file or the directory.
+	 * @return The directory.
+	 */
+	static Path root(String batch) {
+		Path path = Paths.get(batch);
+		if (Files.isDirectory(path))
+			return path;
+		return (path.getParent() == null) ? Paths.get("") : path.getParent();
+	}
+
+	/**
+	 * Returns the source files of a batch.
+	 *
+	 * @param batch The name of the manifest file or the directory.
+	 * @return The source files.
+	 */
+	static List<Path> srcFiles(String batch) {
+		Path path = Paths.get(batch);
+		try {
+			if (Files.isDirectory(path)) {
+				try (Stream<Path> files = Files.walk(path)) {
+					return files.filter(file -> file.toString().endsWith(".pins")).sorted()
+							.collect(Collectors.toList());
+				}
+			}
+			List<Path> srcFiles = new ArrayList<Path>();
+			for (String line : Files.readAllLines(path)) {
+				line = line.trim();
+				if (line.isEmpty() || line.startsWith("#"))
+					continue;
+				srcFiles.add(root(batch).resolve(line));
+			}
+			return srcFiles;
+		} catch (IOException __) {
+			throw new Report.Error("Cannot read batch '" + batch + "'.");
+		}
+	}
+
+	/**
+	 * Compiles and executes all programs and writes the results.
+	 */
+	public void run() {
+		long begTime = System.nanoTime();
+
+		ExecutorService workers = Executors.newFixedThreadPool(numJobs, task -> {
+			Thread worker = new Thread(task);
+			worker.setDaemon(true);
+			return worker;
+		});
+		List<Result> results = new ArrayList<Result>();
+		List<Future<?>> futures = new ArrayList<Future<?>>();
+		for (Path srcFile : srcFiles) {
+			Result result = new Result(srcFile);
+			results.add(result);
+			futures.add(workers.submit(() -> process(result)));
+		}
+		for (int index = 0; index < results.size(); index++)
+			await(results.get(index), futures.get(index));
+		workers.shutdownNow();
+
+		int numOK = 0;
+		int numTimeouts = 0;
+		try {
+			Files.createDirectories(outDir);
+			try (PrintWriter summary = new PrintWriter(Files.newBufferedWriter(outDir.resolve("results.tsv")))) {
+				summary.printf("# program\tstatus\texit code\tcompile ms\trun ms\toutput bytes\tmessage\n");
+				for (Result result : results) {
+					String program = name(root, result.srcFile);
+					Path outFile = outDir.resolve(program.replaceFirst("\\.pins$", "") + ".out");
+					Files.createDirectories(outFile.toAbsolutePath().getParent());
+					byte[] output = result.output.toByteArray();
+					Files.write(outFile, output);
+					summary.printf("%s\t%s\t%s\t%.3f\t%.3f\t%d\t%s\n", program, result.status,
+							result.status == Status.OK ? Long.toString(result.exitCode) : "",
+							result.compileTime / 1e6, result.runTime / 1e6, output.length,
+							result.message == null ? "" : result.message.replaceAll("\\s+", " "));
+					if (result.status == Status.OK)
+						numOK++;
+					if (result.status == Status.TIMEOUT)
+						numTimeouts++;
+				}
+			}
+		} catch (IOException __) {
+			throw new Report.Error("Cannot write batch results to '" + outDir + "'.");
+		}
+
+		Report.info(String.format("BATCH: %d programs, %d ok, %d failed, %d timed out, %.3f s", results.size(), numOK,
+				results.size() - numOK - numTimeouts, numTimeouts, (System.nanoTime() - begTime) / 1e9));
+	}
+
+	/**
+	 * Compiles and executes a program.
+	 *
+	 * @param result The result of the program.
+	 */
+	private void process(Result result) {
+		try {
+			RuntimeOutput output = new RuntimeOutput(result.output, RuntimeOutput.FLUSH_THRESHOLD);
+			Vector<DataChunk> dataChunks;
+			Vector<CodeChunk> codeChunks;
+			synchronized (compilerLock) {
+				long begTime = System.nanoTime();
+				Main.cmdLineArgValue("--src-file-name", result.srcFile.toString());
+				compile();
+				dataChunks = Chunks.dataChunks;
+				codeChunks = Chunks.codeChunks;
+				result.compileTime = System.nanoTime() - begTime;
+			}
+			long begTime = System.nanoTime();
+			LongSupplier program = load(dataChunks, codeChunks, output);
+			result.compileTime += System.nanoTime() - begTime;
+
+			result.begTime = System.nanoTime();
+			long exitCode = program.getAsLong();
+			result.finish(Status.OK, exitCode, null);
+		} catch (Meter.LimitExceeded __) {
+			result.finish(__.limit == Meter.Limit.TIME ? Status.TIMEOUT : Status.ERROR, 0, __.getMessage());
+		} catch (Report.Error __) {
+			result.finish(Status.ERROR, 0, __.getMessage());
+		} catch (StackOverflowError __) {
+			result.finish(Status.ERROR, 0, "Stack overflow.");
+		} catch (RuntimeException | Error __) {
+			result.finish(Status.ERROR, 0, __.toString());
+		}
+	}
+
+	/**
+	 * Runs all phases of the compiler up to and including the chunks. The phases
+	 * are opened only to set up and clean up their results, hence the resources
+	 * of the try statements are never referenced.
+	 */
+	@SuppressWarnings("try")
+	static void compile() {
+		try (SynAn synan = new SynAn()) {
+			synan.parser();
+		}
+		try (Abstr abstr = new Abstr()) {
+			Abstr.absTree = SynAn.derTree.accept(new AbsTreeConstructor(), null);
+		}
+		try (SemAn seman = new SemAn()) {
+			Abstr.absTree.accept(new NameResolver(), null);
+			Abstr.absTree.accept(new TypeResolver(), null);
+			Abstr.absTree.accept(new AddrResolver(), null);
+		}
+		try (Frames frames = new Frames()) {
+			Abstr.absTree.accept(new FrmEvaluator(), null);
+		}
+		try (ImcGen imcGen = new ImcGen()) {
+			Abstr.absTree.accept(new CodeGenerator(), new Stack<compiler.data.layout.Frame>());
+		}
+		try (Chunks chunks = new Chunks()) {
+			Abstr.absTree.accept(new ChunkGenerator(), null);
+		}
+	}
+
+	/**
+	 * Prepares the execution engine selected by the command line argument
+	 * {@code --exec} for a program.
+	 *
+	 * @param dataChunks The data chunks.
+	 * @param codeChunks The code chunks.
+	 * @param output     The output of the builtin functions.
+	 * @return The program that returns its exit code when run.
+	 */
+	private static LongSupplier load(Vector<DataChunk> dataChunks, Vector<CodeChunk> codeChunks,
+			RuntimeOutput output) {
+		switch (Main.cmdLineArgValue("--exec")) {
+		case "vm": {
+			VmInterpreter interpreter = new VmInterpreter(new VmCompiler(dataChunks, codeChunks).compile(), output);
+			return () -> interpreter.run("_main");
+		}
+		case "jit":
+			if (Main.cmdLineArgValue("--gc") == null) {
+				try {
+					JitProgram program = new JitCompiler(dataChunks, codeChunks).compile();
+					return () -> program.run("_main", output);
+				} catch (JitCompiler.CannotCompileException __) {
+				}
+			}
+			// Fall back to the interpreter.
+			break;
+		default:
+			break;
+		}
+		Interpreter interpreter = new Interpreter(dataChunks, codeChunks, output);
+		return () -> interpreter.run("_main");
+	}
+
+	/**
+	 * Waits until a program terminates or its execution times out.
+	 *
+	 * @param result The result of the program.
+	 * @param future The pending completion of the program.
+	 */
+	private void await(Result result, Future<?> future) {
+		try {
+			if (timeout == 0) {
+				future.get();
+				return;
+			}
+			while (true) {
+				long begTime = result.begTime;
+				long wait = (begTime == 0) ? timeout : begTime + timeout * 1000000 - System.nanoTime();
+				try {
+					future.get(Math.max(wait, 0), TimeUnit.NANOSECONDS);
+					return;
+				} catch (TimeoutException __) {
+					if ((begTime != 0) && (System.nanoTime() - begTime >= timeout * 1000000)) {
+						result.finish(Status.TIMEOUT, 0, "Timed out after " + timeout + " ms.");
+						future.cancel(true);
+						return;
+					}
+				}
+			}
+		} catch (InterruptedException | ExecutionException __) {
+			throw new Report.InternalError();
+		}
+	}
+
+	/**
+	 * Returns the name of a program within a batch.
+	 *
+	 * @param root    The directory the source file names are relative to.
+	 * @param srcFile The source file.
+	 * @return The name of the program.
+	 */
+	static String name(Path root, Path srcFile) {
+		Path name = srcFile.normalize();
+		root = root.normalize();
+		return (name.startsWith(root) ? root.relativize(name) : name.getFileName()).toString();
+	}
+
+	/** The status of a program. */
+	private enum Status {
+		OK, ERROR, TIMEOUT
+	}
+
+	/**
+	 * The result of a program.
+	 */
+	private static class Result {
+
+		/** The source file. */
+		final Path srcFile;
+
+		/** The captured output. */
+		final ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+		/** The status ({@code null} while the program is being processed). */
+		Status status = null;
+
+		/** The exit code. */
+		long exitCode;
+
+		/** The error message. */
+		String message;
+
+		/** The time of compilation (in nanoseconds). */
+		volatile long compileTime;
+
+		/** The time the execution started at ({@code 0} if it has not started yet). */
+		volatile long begTime = 0;
+
+		/** The time of execution (in nanoseconds). */
+		volatile long runTime;
+
+		Result(Path srcFile) {
+			this.srcFile = srcFile;
+		}
+
+		/**
+		 * Records the outcome of the program unless it has already been recorded
+		 * (i.e., the program has timed out).
+		 */
+		synchronized void finish(Status status, long exitCode, String message) {
+			if (this.status != null)
+				return;
+			this.status = status;
+			this.exitCode = exitCode;
+			this.message = message;
+			if (begTime != 0)
+				runTime = System.nanoTime() - begTime;
+		}
+
+	}
+
+}
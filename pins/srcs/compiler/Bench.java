@@ -0,0 +1,403 @@
+/**
+ * @author sliva
+ */
+package compiler;
+
+import java.io.*;
+import java.lang.management.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.zip.*;
+import compiler.common.report.*;
+import compiler.phases.chunks.*;
+
+/**
+ * The benchmark runner.
+ *
+ * Measures the interpreter on a suite of programs listed the same way as for
+ * the batch runner (command line argument {@code --bench}, see {@link Batch});
+ * the canonical workloads are in {@code prgs/bench}. Each program is compiled
+ * and loaded once (see {@link LoadedProgram}) and is then run by a fresh
+ * {@link Interpreter} for a number of warm-up iterations
+ * ({@code --bench-warmup}) that let the JVM compile the interpreter, followed
+ * by a number of measured iterations ({@code --bench-iters}). For every
+ * measured iteration the runner records the time spent in
+ * {@link Interpreter#run(String)}, the number of basic blocks and calls
+ * executed (see {@link Meter}) and the number of bytes allocated by the JVM
+ * while running. The median of the iterations is reported, together with the
+ * interquartile range of the times relative to the median (the spread), so
+ * that a few disturbed iterations do not move the result.
+ *
+ * To keep the results comparable between runs, the random numbers are seeded
+ * with {@code 0} unless {@code --random-seed} is set, the output of the
+ * programs is discarded (only its size and checksum are kept, and a program
+ * whose output differs between iterations is reported), and the garbage
+ * collector of the JVM is run before the measured iterations of each program.
+ * The results are written to file {@code results.tsv} in the output directory
+ * ({@code --bench-out}). If a baseline, i.e., the {@code results.tsv} of an
+ * earlier run, is given ({@code --bench-baseline}), every program whose median
+ * time exceeds the baseline by more than the tolerance
+ * ({@code --bench-tolerance}, in percent) is reported as a regression and the
+ * benchmark fails.
+ *
+ * @author sliva
+ */
+public class Bench {
+
+	/** The default output directory. */
+	public static final String OUT_DIR = "bench-out";
+
+	/** The default number of warm-up iterations. */
+	public static final int WARMUP_ITERS = 10;
+
+	/** The default number of measured iterations. */
+	public static final int MEASURED_ITERS = 15;
+
+	/** The default tolerance (in percent). */
+	public static final int TOLERANCE = 10;
+
+	/** The directory the source file names are relative to. */
+	private final Path root;
+
+	/** The source files. */
+	private final List<Path> srcFiles;
+
+	/** The output directory. */
+	private final Path outDir;
+
+	/** The number of warm-up iterations. */
+	private final int warmupIters;
+
+	/** The number of measured iterations. */
+	private final int measuredIters;
+
+	/** The median times of the baseline in milliseconds by program names ({@code null} if there is no baseline). */
+	private final HashMap<String, Double> baseline;
+
+	/** The tolerance (in percent). */
+	private final int tolerance;
+
+	/**
+	 * Constructs a new benchmark runner.
+	 *
+	 * @param bench The name of the manifest file or the directory.
+	 */
+	public Bench(String bench) {
+		this.root = Batch.root(bench);
+		this.srcFiles = Batch.srcFiles(bench);
+
+		String outDir = Main.cmdLineArgValue("--bench-out");
+		this.outDir = Paths.get(outDir == null ? OUT_DIR : outDir);
+		String warmupIters = Main.cmdLineArgValue("--bench-warmup");
+		this.warmupIters = (warmupIters == null) ? WARMUP_ITERS : Integer.parseInt(warmupIters);
+		String measuredIters = Main.cmdLineArgValue("--bench-iters");
+		this.measuredIters = (measuredIters == null) ? MEASURED_ITERS : Math.max(1, Integer.parseInt(measuredIters));
+		String tolerance = Main.cmdLineArgValue("--bench-tolerance");
+		this.tolerance = (tolerance == null) ? TOLERANCE : Integer.parseInt(tolerance);
+		String baseline = Main.cmdLineArgValue("--bench-baseline");
+		this.baseline = (baseline == null) ? null : readBaseline(baseline);
+
+		if (Main.cmdLineArgValue("--random-seed") == null)
+			Main.cmdLineArgValue("--random-seed", "0");
+		// The meter counts the basic blocks and calls.
+		if (!Meter.enabled())
+			Main.cmdLineArgValue("--max-depth", Integer.toString(Integer.MAX_VALUE));
+	}
+
+	/**
+	 * Reads the median times of a baseline.
+	 *
+	 * @param fileName The name of the file with the results of an earlier run.
+	 * @return The median times in milliseconds by program names.
+	 */
+	private static HashMap<String, Double> readBaseline(String fileName) {
+		HashMap<String, Double> baseline = new HashMap<String, Double>();
+		try {
+			for (String line : Files.readAllLines(Paths.get(fileName))) {
+				if (line.isEmpty() || line.startsWith("#"))
+					continue;
+				String[] fields = line.split("\t");
+				if ((fields.length > 3) && fields[1].equals(Status.OK.toString()))
+					baseline.put(fields[0], Double.parseDouble(fields[2]));
+			}
+		} catch (IOException | NumberFormatException __) {
+			throw new Report.Error("Cannot read benchmark baseline '" + fileName + "'.");
+		}
+		return baseline;
+	}
+
+	/**
+	 * Benchmarks all programs, writes the results and compares them with the
+	 * baseline.
+	 */
+	public void run() {
+		List<Result> results = new ArrayList<Result>();
+		for (Path srcFile : srcFiles) {
+			Result result = new Result(Batch.name(root, srcFile));
+			results.add(result);
+			try {
+				Main.cmdLineArgValue("--src-file-name", srcFile.toString());
+				Batch.compile();
+				measure(new LoadedProgram(Chunks.dataChunks, Chunks.codeChunks), result);
+			} catch (Report.Error __) {
+				result.status = Status.ERROR;
+				result.message = __.getMessage();
+			} catch (StackOverflowError __) {
+				result.status = Status.ERROR;
+				result.message = "Stack overflow.";
+			}
+			Report.info("BENCH: " + result);
+		}
+
+		int numRegressions = 0;
+		int numFailed = 0;
+		try {
+			Files.createDirectories(outDir);
+			try (PrintWriter summary = new PrintWriter(Files.newBufferedWriter(outDir.resolve("results.tsv")))) {
+				summary.printf("# program\tstatus\tmedian ms\tmin ms\tspread %%\tMblocks/s\tcalls\tns/call"
+						+ "\talloc bytes\talloc MB/s\toutput bytes\texit code\tbaseline %%\tmessage\n");
+				for (Result result : results) {
+					summary.printf(Locale.ROOT, "%s\t%s\t%.3f\t%.3f\t%.1f\t%.2f\t%d\t%.1f\t%d\t%.1f\t%d\t%d\t%s\t%s\n",
+							result.program, result.status, result.medianTime / 1e6, result.minTime / 1e6,
+							result.spread(), result.blockRate(), result.calls, result.callLatency(),
+							result.allocBytes, result.allocRate(), result.outputBytes, result.exitCode,
+							Double.isNaN(result.change) ? "" : String.format(Locale.ROOT, "%+.1f", result.change),
+							result.message == null ? "" : result.message.replaceAll("\\s+", " "));
+					if (result.status == Status.REGRESSED)
+						numRegressions++;
+					if (result.status == Status.ERROR)
+						numFailed++;
+				}
+			}
+		} catch (IOException __) {
+			throw new Report.Error("Cannot write benchmark results to '" + outDir + "'.");
+		}
+
+		Report.info(String.format("BENCH: %d programs, %d failed, %d regressed", results.size(), numFailed,
+				numRegressions));
+		if ((numRegressions > 0) || (numFailed > 0))
+			throw new Report.Error("BENCH: Benchmark failed.");
+	}
+
+	/**
+	 * Runs a program for all iterations and records the medians of the measured
+	 * ones.
+	 *
+	 * @param program The program.
+	 * @param result  The result of the program.
+	 */
+	private void measure(LoadedProgram program, Result result) {
+		for (int iter = 0; iter < warmupIters; iter++)
+			new Run(program).execute();
+		System.gc();
+
+		Run[] runs = new Run[measuredIters];
+		for (int iter = 0; iter < measuredIters; iter++) {
+			runs[iter] = new Run(program);
+			runs[iter].execute();
+			if ((runs[iter].checksum != runs[0].checksum) || (runs[iter].exitCode != runs[0].exitCode)) {
+				result.status = Status.ERROR;
+				result.message = "The output differs between iterations.";
+			}
+		}
+
+		long[] times = new long[measuredIters];
+		long[] allocs = new long[measuredIters];
+		for (int iter = 0; iter < measuredIters; iter++) {
+			times[iter] = runs[iter].time;
+			allocs[iter] = runs[iter].allocBytes;
+		}
+		Arrays.sort(times);
+		Arrays.sort(allocs);
+		result.medianTime = times[measuredIters / 2];
+		result.minTime = times[0];
+		result.lowerTime = times[measuredIters / 4];
+		result.upperTime = times[(3 * measuredIters) / 4];
+		result.allocBytes = allocs[measuredIters / 2];
+		result.blocks = runs[0].blocks;
+		result.calls = runs[0].calls;
+		result.outputBytes = runs[0].outputBytes;
+		result.exitCode = runs[0].exitCode;
+
+		if ((result.status == Status.OK) && (baseline != null) && baseline.containsKey(result.program)) {
+			double baseTime = baseline.get(result.program);
+			result.change = 100.0 * (result.medianTime / 1e6 - baseTime) / baseTime;
+			if (result.change > tolerance) {
+				result.status = Status.REGRESSED;
+				result.message = String.format(Locale.ROOT, "Slower than the baseline (%.3f ms) by %.1f %%.",
+						baseTime, result.change);
+			}
+		}
+	}
+
+	/**
+	 * Returns the number of bytes allocated by the current thread so far.
+	 *
+	 * @return The number of bytes or {@code -1} if the JVM does not report it.
+	 */
+	private static long allocatedBytes() {
+		ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+		if (threads instanceof com.sun.management.ThreadMXBean)
+			return ((com.sun.management.ThreadMXBean) threads).getCurrentThreadAllocatedBytes();
+		return -1;
+	}
+
+	/**
+	 * A single iteration of a program.
+	 */
+	private static class Run {
+
+		/** The interpreter. */
+		final Interpreter interpreter;
+
+		/** The output stream computing the size and the checksum of the output. */
+		final Sink sink = new Sink();
+
+		/** The time spent running (in nanoseconds). */
+		long time;
+
+		/** The number of bytes allocated by the JVM while running ({@code -1} if unknown). */
+		long allocBytes;
+
+		/** The number of basic blocks executed. */
+		long blocks;
+
+		/** The number of calls executed. */
+		long calls;
+
+		/** The number of bytes output. */
+		long outputBytes;
+
+		/** The checksum of the output. */
+		long checksum;
+
+		/** The exit code. */
+		long exitCode;
+
+		Run(LoadedProgram program) {
+			this.interpreter = new Interpreter(program, RuntimeInput.create(),
+					new RuntimeOutput(sink, RuntimeOutput.FLUSH_THRESHOLD), null);
+		}
+
+		void execute() {
+			long begAlloc = allocatedBytes();
+			long begTime = System.nanoTime();
+			exitCode = interpreter.run("_main");
+			time = System.nanoTime() - begTime;
+			long endAlloc = allocatedBytes();
+			allocBytes = (begAlloc < 0) ? -1 : endAlloc - begAlloc;
+			Meter meter = interpreter.meter();
+			blocks = (meter == null) ? 0 : meter.blocks();
+			calls = (meter == null) ? 0 : meter.calls();
+			outputBytes = sink.size;
+			checksum = sink.crc.getValue();
+		}
+
+	}
+
+	/**
+	 * The output stream discarding the output of a program but its size and
+	 * checksum.
+	 */
+	private static class Sink extends OutputStream {
+
+		/** The checksum. */
+		final CRC32 crc = new CRC32();
+
+		/** The number of bytes written. */
+		long size = 0;
+
+		@Override
+		public void write(int b) {
+			crc.update(b);
+			size++;
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) {
+			crc.update(b, off, len);
+			size += len;
+		}
+
+	}
+
+	/** The status of a program. */
+	private enum Status {
+		OK, ERROR, REGRESSED
+	}
+
+	/**
+	 * The result of a program.
+	 */
+	private static class Result {
+
+		/** The name of the program. */
+		final String program;
+
+		/** The status. */
+		Status status = Status.OK;
+
+		/** The error message. */
+		String message = null;
+
+		/** The median and the shortest time of an iteration (in nanoseconds). */
+		long medianTime, minTime;
+
+		/** The lower and the upper quartile of the times of an iteration (in nanoseconds). */
+		long lowerTime, upperTime;
+
+		/** The median number of bytes allocated by the JVM in an iteration ({@code -1} if unknown). */
+		long allocBytes;
+
+		/** The number of basic blocks executed in an iteration. */
+		long blocks;
+
+		/** The number of calls executed in an iteration. */
+		long calls;
+
+		/** The number of bytes output in an iteration. */
+		long outputBytes;
+
+		/** The exit code. */
+		long exitCode;
+
+		/** The change of the median time relative to the baseline (in percent, {@code NaN} if unknown). */
+		double change = Double.NaN;
+
+		Result(String program) {
+			this.program = program;
+		}
+
+		/** Returns the interquartile range of the times relative to the median (in percent). */
+		double spread() {
+			return (medianTime == 0) ? 0 : 100.0 * (upperTime - lowerTime) / medianTime;
+		}
+
+		/** Returns the number of basic blocks executed per second (in millions). */
+		double blockRate() {
+			return (medianTime == 0) ? 0 : 1e3 * blocks / medianTime;
+		}
+
+		/** Returns the time of an iteration per call (in nanoseconds). */
+		double callLatency() {
+			return (calls == 0) ? 0 : (double) medianTime / calls;
+		}
+
+		/** Returns the number of bytes allocated by the JVM per second (in megabytes). */
+		double allocRate() {
+			return ((medianTime == 0) || (allocBytes < 0)) ? 0 : 1e3 * allocBytes / medianTime;
+		}
+
+		@Override
+		public String toString() {
+			if (status == Status.ERROR)
+				return String.format("%s: %s %s", program, status, message);
+			return String.format(Locale.ROOT,
+					"%s: %s, %.3f ms (min %.3f ms, spread %.1f %%), %.2f Mblocks/s, %.1f ns/call, %.1f MB/s allocated%s",
+					program, status, medianTime / 1e6, minTime / 1e6, spread(), blockRate(), callLatency(),
+					allocRate(), Double.isNaN(change) ? "" : String.format(Locale.ROOT, ", %+.1f %% vs. baseline", change));
+		}
+
+	}
+
+}
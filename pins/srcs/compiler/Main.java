@@ -3,7 +3,9 @@
  */
 package compiler;
 
+import java.io.*;
 import java.util.*;
+import java.util.concurrent.*;
 import compiler.common.report.*;
 import compiler.phases.lexan.*;
 import compiler.phases.synan.*;
@@ -12,6 +14,8 @@ import compiler.phases.seman.*;
 import compiler.phases.frames.*;
 import compiler.phases.imcgen.*;
 import compiler.phases.chunks.*;
+import compiler.phases.vm.*;
+import compiler.phases.jit.*;
 
 /**
  * The compiler.
@@ -23,8 +27,14 @@ public class Main {
 	/** All valid phases of the compiler. */
 	private static final String phases = "lexan|synan|abstr|seman|frames|imcgen|chunks";
 
+	/** All phases of the execution engines that can be logged. */
+	private static final String enginePhases = "vm";
+
+	/** All valid execution engines. */
+	private static final String engines = "interp|vm|jit";
+
 	/** Values of command line arguments. */
-	private static HashMap<String, String> cmdLine = new HashMap<String, String>();
+	private static ConcurrentHashMap<String, String> cmdLine = new ConcurrentHashMap<String, String>();
 
 	/**
 	 * Returns the value of a command line argument.
@@ -37,6 +47,17 @@ public class Main {
 		return cmdLine.get(cmdLineArgName);
 	}
 
+	/**
+	 * Sets the value of a command line argument (used by the batch runner to
+	 * select the source file being compiled).
+	 * 
+	 * @param cmdLineArgName  The name of the command line argument.
+	 * @param cmdLineArgValue The value of the command line argument.
+	 */
+	static void cmdLineArgValue(String cmdLineArgName, String cmdLineArgValue) {
+		cmdLine.put(cmdLineArgName, cmdLineArgValue);
+	}
+
 	/**
 	 * The compiler's {@code main} method.
 	 * 
@@ -56,7 +77,7 @@ public class Main {
 							continue;
 						}
 					}
-					if (args[argc].matches("--logged-phase=(" + phases + "|all)")) {
+					if (args[argc].matches("--logged-phase=(" + phases + "|" + enginePhases + "|all)")) {
 						if (cmdLine.get("--logged-phase") == null) {
 							cmdLine.put("--logged-phase", args[argc].replaceFirst("^[^=]*=", ""));
 							continue;
@@ -68,6 +89,204 @@ public class Main {
 							continue;
 						}
 					}
+					if (args[argc].matches("--lexer=(dfa|pipe|legacy)")) {
+						if (cmdLine.get("--lexer") == null) {
+							cmdLine.put("--lexer", args[argc].replaceFirst("^[^=]*=", ""));
+							continue;
+						}
+					}
+					if (args[argc].matches("--exec=(" + engines + ")")) {
+						if (cmdLine.get("--exec") == null) {
+							cmdLine.put("--exec", args[argc].replaceFirst("^[^=]*=", ""));
+							continue;
+						}
+					}
+					if (args[argc].matches("--tier-warm=[0-9]{1,9}")) {
+						if (cmdLine.get("--tier-warm") == null) {
+							cmdLine.put("--tier-warm", args[argc].replaceFirst("^[^=]*=", ""));
+							continue;
+						}
+					}
+					if (args[argc].matches("--tier-hot=[0-9]{1,9}")) {
+						if (cmdLine.get("--tier-hot") == null) {
+							cmdLine.put("--tier-hot", args[argc].replaceFirst("^[^=]*=", ""));
+							continue;
+						}
+					}
+					if (args[argc].matches("--tiers=(on|off)")) {
+						if (cmdLine.get("--tiers") == null) {
+							cmdLine.put("--tiers", args[argc].replaceFirst("^[^=]*=", ""));
+							continue;
+						}
+					}
+					if (args[argc].matches("--runtime-out=.*")) {
+						if (cmdLine.get("--runtime-out") == null) {
+							cmdLine.put("--runtime-out", args[argc].replaceFirst("^[^=]*=", ""));
+							continue;
+						}
+					}
+					if (args[argc].matches("--runtime-in=.*")) {
+						if (cmdLine.get("--runtime-in") == null) {
+							cmdLine.put("--runtime-in", args[argc].replaceFirst("^[^=]*=", ""));
+							continue;
+						}
+					}
+					if (args[argc].matches("--random-seed=-?[0-9]{1,18}")) {
+						if (cmdLine.get("--random-seed") == null) {
+							cmdLine.put("--random-seed", args[argc].replaceFirst("^[^=]*=", ""));
+							continue;
+						}
+					}
+					if (args[argc].matches("--runtime-flush=[0-9]{1,9}")) {
+						if (cmdLine.get("--runtime-flush") == null) {
+							cmdLine.put("--runtime-flush", args[argc].replaceFirst("^[^=]*=", ""));
+							continue;
+						}
+					}
+					if (args[argc].equals("--heap-stats")) {
+						if (cmdLine.get("--heap-stats") == null) {
+							cmdLine.put("--heap-stats", "");
+							continue;
+						}
+					}
+					if (args[argc].equals("--gc")) {
+						if (cmdLine.get("--gc") == null) {
+							cmdLine.put("--gc", "");
+							continue;
+						}
+					}
+					if (args[argc].matches("--gc-threshold=[0-9]{1,18}")) {
+						if (cmdLine.get("--gc-threshold") == null) {
+							cmdLine.put("--gc-threshold", args[argc].replaceFirst("^[^=]*=", ""));
+							continue;
+						}
+					}
+					if (args[argc].matches("--profile=.*")) {
+						if (cmdLine.get("--profile") == null) {
+							cmdLine.put("--profile", args[argc].replaceFirst("^[^=]*=", ""));
+							continue;
+						}
+					}
+					if (args[argc].matches("--profile-stacks=.*")) {
+						if (cmdLine.get("--profile-stacks") == null) {
+							cmdLine.put("--profile-stacks", args[argc].replaceFirst("^[^=]*=", ""));
+							continue;
+						}
+					}
+					if (args[argc].matches("--trace=.*")) {
+						if (cmdLine.get("--trace") == null) {
+							cmdLine.put("--trace", args[argc].replaceFirst("^[^=]*=", ""));
+							continue;
+						}
+					}
+					if (args[argc].matches("--trace-fun=[^,]+(,[^,]+)*")) {
+						if (cmdLine.get("--trace-fun") == null) {
+							cmdLine.put("--trace-fun", args[argc].replaceFirst("^[^=]*=", ""));
+							continue;
+						}
+					}
+					if (args[argc].matches("--trace-addr=[0-9A-Fa-f]{1,16}-[0-9A-Fa-f]{1,16}")) {
+						if (cmdLine.get("--trace-addr") == null) {
+							cmdLine.put("--trace-addr", args[argc].replaceFirst("^[^=]*=", ""));
+							continue;
+						}
+					}
+					if (args[argc].matches("--trace-temp=[^,]+(,[^,]+)*")) {
+						if (cmdLine.get("--trace-temp") == null) {
+							cmdLine.put("--trace-temp", args[argc].replaceFirst("^[^=]*=", ""));
+							continue;
+						}
+					}
+					if (args[argc].matches("--max-steps=[0-9]{1,18}")) {
+						if (cmdLine.get("--max-steps") == null) {
+							cmdLine.put("--max-steps", args[argc].replaceFirst("^[^=]*=", ""));
+							continue;
+						}
+					}
+					if (args[argc].matches("--max-time=[0-9]{1,9}")) {
+						if (cmdLine.get("--max-time") == null) {
+							cmdLine.put("--max-time", args[argc].replaceFirst("^[^=]*=", ""));
+							continue;
+						}
+					}
+					if (args[argc].matches("--max-depth=[0-9]{1,9}")) {
+						if (cmdLine.get("--max-depth") == null) {
+							cmdLine.put("--max-depth", args[argc].replaceFirst("^[^=]*=", ""));
+							continue;
+						}
+					}
+					if (args[argc].matches("--snapshot=.*")) {
+						if (cmdLine.get("--snapshot") == null) {
+							cmdLine.put("--snapshot", args[argc].replaceFirst("^[^=]*=", ""));
+							continue;
+						}
+					}
+					if (args[argc].matches("--restore=.*")) {
+						if (cmdLine.get("--restore") == null) {
+							cmdLine.put("--restore", args[argc].replaceFirst("^[^=]*=", ""));
+							continue;
+						}
+					}
+					if (args[argc].matches("--batch=.*")) {
+						if (cmdLine.get("--batch") == null) {
+							cmdLine.put("--batch", args[argc].replaceFirst("^[^=]*=", ""));
+							continue;
+						}
+					}
+					if (args[argc].matches("--batch-out=.*")) {
+						if (cmdLine.get("--batch-out") == null) {
+							cmdLine.put("--batch-out", args[argc].replaceFirst("^[^=]*=", ""));
+							continue;
+						}
+					}
+					if (args[argc].matches("--batch-jobs=[0-9]{1,4}")) {
+						if (cmdLine.get("--batch-jobs") == null) {
+							cmdLine.put("--batch-jobs", args[argc].replaceFirst("^[^=]*=", ""));
+							continue;
+						}
+					}
+					if (args[argc].matches("--batch-timeout=[0-9]{1,9}")) {
+						if (cmdLine.get("--batch-timeout") == null) {
+							cmdLine.put("--batch-timeout", args[argc].replaceFirst("^[^=]*=", ""));
+							continue;
+						}
+					}
+					if (args[argc].matches("--bench=.*")) {
+						if (cmdLine.get("--bench") == null) {
+							cmdLine.put("--bench", args[argc].replaceFirst("^[^=]*=", ""));
+							continue;
+						}
+					}
+					if (args[argc].matches("--bench-out=.*")) {
+						if (cmdLine.get("--bench-out") == null) {
+							cmdLine.put("--bench-out", args[argc].replaceFirst("^[^=]*=", ""));
+							continue;
+						}
+					}
+					if (args[argc].matches("--bench-warmup=[0-9]{1,9}")) {
+						if (cmdLine.get("--bench-warmup") == null) {
+							cmdLine.put("--bench-warmup", args[argc].replaceFirst("^[^=]*=", ""));
+							continue;
+						}
+					}
+					if (args[argc].matches("--bench-iters=[0-9]{1,9}")) {
+						if (cmdLine.get("--bench-iters") == null) {
+							cmdLine.put("--bench-iters", args[argc].replaceFirst("^[^=]*=", ""));
+							continue;
+						}
+					}
+					if (args[argc].matches("--bench-baseline=.*")) {
+						if (cmdLine.get("--bench-baseline") == null) {
+							cmdLine.put("--bench-baseline", args[argc].replaceFirst("^[^=]*=", ""));
+							continue;
+						}
+					}
+					if (args[argc].matches("--bench-tolerance=[0-9]{1,4}")) {
+						if (cmdLine.get("--bench-tolerance") == null) {
+							cmdLine.put("--bench-tolerance", args[argc].replaceFirst("^[^=]*=", ""));
+							continue;
+						}
+					}
 					if (args[argc].matches("--xsl=.*")) {
 						if (cmdLine.get("--xsl") == null) {
 							cmdLine.put("--xsl", args[argc].replaceFirst("^[^=]*=", ""));
@@ -84,6 +303,19 @@ public class Main {
 					}
 				}
 			}
+			if (cmdLine.get("--batch") != null) {
+				if (cmdLine.get("--exec") == null) {
+					cmdLine.put("--exec", engines.replaceFirst("\\|.*$", ""));
+				}
+				new Batch(cmdLine.get("--batch")).run();
+				Report.info("Done.");
+				return;
+			}
+			if (cmdLine.get("--bench") != null) {
+				new Bench(cmdLine.get("--bench")).run();
+				Report.info("Done.");
+				return;
+			}
 			if (cmdLine.get("--src-file-name") == null) {
 				throw new Report.Error("Source file not specified.");
 			}
@@ -93,6 +325,9 @@ public class Main {
 			if (cmdLine.get("--target-phase") == null) {
 				cmdLine.put("--target-phase", phases.replaceFirst("^.*\\|", ""));
 			}
+			if (cmdLine.get("--exec") == null) {
+				cmdLine.put("--exec", engines.replaceFirst("\\|.*$", ""));
+			}
 
 			// Compile, phase by phase.
 			do {
@@ -175,10 +410,85 @@ public class Main {
 				try (Chunks chunks = new Chunks()) {
 					Abstr.absTree.accept(new ChunkGenerator(), null);
 					chunks.log();
+				}
 
-					 Interpreter interpreter = new Interpreter(Chunks.dataChunks,
-					 Chunks.codeChunks);
-					 System.out.println("EXIT CODE: " + interpreter.run("_main"));
+				// Execution.
+				OutputStream runtimeOut = System.out;
+				if (cmdLine.get("--runtime-out") != null) {
+					try {
+						runtimeOut = new FileOutputStream(cmdLine.get("--runtime-out"));
+					} catch (IOException __) {
+						throw new Report.Error("Cannot open runtime output file '" + cmdLine.get("--runtime-out") + "'.");
+					}
+				}
+				RuntimeOutput output = new RuntimeOutput(runtimeOut,
+						cmdLine.get("--runtime-flush") == null ? RuntimeOutput.FLUSH_THRESHOLD
+								: Integer.parseInt(cmdLine.get("--runtime-flush")));
+				String exec = cmdLine.get("--exec");
+				if (!exec.equals("interp")
+						&& ((cmdLine.get("--profile") != null) || (cmdLine.get("--profile-stacks") != null))) {
+					Report.info(exec.toUpperCase() + ": Profiling is not supported. Falling back to the interpreter.");
+					exec = "interp";
+				}
+				if (!exec.equals("interp") && (cmdLine.get("--trace") != null)) {
+					Report.info(exec.toUpperCase() + ": Tracing is not supported. Falling back to the interpreter.");
+					exec = "interp";
+				}
+				if (!exec.equals("interp")
+						&& ((cmdLine.get("--snapshot") != null) || (cmdLine.get("--restore") != null))) {
+					Report.info(exec.toUpperCase() + ": Snapshots are not supported. Falling back to the interpreter.");
+					exec = "interp";
+				}
+				try {
+					if (exec.equals("vm")) {
+						try (Vm vm = new Vm()) {
+							Vm.program = new VmCompiler(Chunks.dataChunks, Chunks.codeChunks).compile();
+							vm.log();
+							VmInterpreter interpreter = new VmInterpreter(Vm.program, output);
+							System.out.println("EXIT CODE: " + interpreter.run("_main"));
+						}
+					} else {
+						JitProgram program = null;
+						if (exec.equals("jit") && (cmdLine.get("--gc") != null)) {
+							Report.info("JIT: Garbage collection is not supported. Falling back to the interpreter.");
+						} else if (exec.equals("jit")) {
+							try {
+								program = new JitCompiler(Chunks.dataChunks, Chunks.codeChunks).compile();
+							} catch (JitCompiler.CannotCompileException __) {
+								Report.info("JIT: " + __.getMessage() + " Falling back to the interpreter.");
+							}
+						}
+						if (program != null) {
+							System.out.println("EXIT CODE: " + program.run("_main", output));
+						} else {
+							Snapshot snapshot = (cmdLine.get("--restore") == null) ? null
+									: Snapshot.read(cmdLine.get("--restore"));
+							boolean profiling = (cmdLine.get("--profile") != null)
+									|| (cmdLine.get("--profile-stacks") != null);
+							if (profiling && (cmdLine.get("--trace") != null)) {
+								Report.info("INTERP: Profiling is not supported while tracing.");
+								profiling = false;
+							}
+							Interpreter interpreter;
+							if (cmdLine.get("--trace") != null)
+								interpreter = new TracingInterpreter(Chunks.dataChunks, Chunks.codeChunks, output,
+										snapshot);
+							else if (profiling)
+								interpreter = new ProfilingInterpreter(Chunks.dataChunks, Chunks.codeChunks, output,
+										snapshot);
+							else
+								interpreter = new Interpreter(Chunks.dataChunks, Chunks.codeChunks, output, snapshot);
+							System.out.println("EXIT CODE: " + interpreter.run("_main"));
+						}
+					}
+				} finally {
+					if (runtimeOut != System.out) {
+						try {
+							runtimeOut.close();
+						} catch (IOException __) {
+							Report.warning("Cannot close runtime output file '" + cmdLine.get("--runtime-out") + "'.");
+						}
+					}
 				}
 				if (cmdLine.get("--target-phase").equals("chunks"))
 					break;
@@ -0,0 +1,86 @@
+/**
+ * @author sliva
+ */
+package compiler.common.report;
+
+import java.util.*;
+
+/**
+ * The index of the starts of lines of a source file.
+ *
+ * Resolves byte offsets within the source file into line and column numbers
+ * for the locations that are described by offsets (see {@link Location}). The
+ * index is built when the first location is resolved, so a compilation that
+ * reports nothing and logs nothing never builds it. Columns count characters
+ * of a UTF-8 source file, not bytes, and a tab counts as four columns. The
+ * index is created by the lexer of the source file and travels with the
+ * symbols, the nodes of the trees and the locations made from them, so
+ * locations of different source files can be resolved at the same time.
+ *
+ * @author sliva
+ */
+public class LineIndex {
+
+	/** The content of the source file. */
+	private final byte[] src;
+
+	/** The offset of the first byte of each line ({@code null} until needed). */
+	private int[] lineStarts = null;
+
+	/**
+	 * Constructs a new index of a source file.
+	 *
+	 * @param src The content of the source file.
+	 */
+	public LineIndex(byte[] src) {
+		this.src = src;
+	}
+
+	private synchronized int[] lineStarts() {
+		if (lineStarts == null) {
+			int numLines = 1;
+			for (byte b : src)
+				if (b == '\n')
+					numLines++;
+			int[] lineStarts = new int[numLines];
+			int line = 1;
+			for (int offset = 0; offset < src.length; offset++)
+				if (src[offset] == '\n')
+					lineStarts[line++] = offset + 1;
+			this.lineStarts = lineStarts;
+		}
+		return lineStarts;
+	}
+
+	/**
+	 * Returns the line number of a byte.
+	 *
+	 * @param offset The offset of the byte.
+	 * @return The line number (starting with {@code 1}).
+	 */
+	public int line(int offset) {
+		int index = Arrays.binarySearch(lineStarts(), offset);
+		return (index >= 0) ? index + 1 : -index - 1;
+	}
+
+	/**
+	 * Returns the column number of a byte, i.e., of the character the byte is a
+	 * part of.
+	 *
+	 * @param offset The offset of the byte.
+	 * @return The column number (starting with {@code 1}).
+	 */
+	public int column(int offset) {
+		int lineStart = lineStarts()[line(offset) - 1];
+		while ((offset > lineStart) && (offset < src.length) && ((src[offset] & 0xC0) == 0x80))
+			offset--;
+		int column = 1;
+		for (int index = lineStart; index < offset; index++) {
+			if ((src[index] & 0xC0) == 0x80)
+				continue; // A continuation byte of a multibyte character.
+			column += (src[index] == '\t') ? 4 : 1;
+		}
+		return column;
+	}
+
+}
@@ -18,4 +18,31 @@ public interface Locatable {
 	 */
 	public Location location();
 
+	/**
+	 * Returns the packed form of the location of the part of the source file (see
+	 * {@link Location}). Classes that keep just the packed form override this
+	 * method to avoid creating a location.
+	 * 
+	 * @return The packed location or {@link Location#NONE} if there is no
+	 *         location.
+	 */
+	public default long packedLocation() {
+		Location location = location();
+		return (location == null) ? Location.NONE : location.packedLocation();
+	}
+
+	/**
+	 * Returns the index of lines of the source file that resolves the location of
+	 * the part of the source file (see {@link LineIndex}). Classes that keep just
+	 * the packed form of the location override this method to avoid creating a
+	 * location.
+	 * 
+	 * @return The index of lines or {@code null} if the location is not
+	 *         described by offsets.
+	 */
+	public default LineIndex lineIndex() {
+		Location location = location();
+		return (location == null) ? null : location.lineIndex();
+	}
+
 }
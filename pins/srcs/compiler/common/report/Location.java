@@ -7,39 +7,44 @@ import compiler.common.logger.*;
 
 /**
  * Description of a location of a part of a source file.
- * 
+ *
+ * A location is packed into a single {@code long} in one of two forms. A
+ * location produced by the lexer holds the offsets of the first and the last
+ * byte of the part of the source file and is resolved into line and column
+ * numbers only when it is printed, by the {@link LineIndex} of the source file
+ * the location keeps. Any other location holds the line and column numbers
+ * themselves (lines up to {@value #MAX_LINE}, columns up to
+ * {@value #MAX_COLUMN}; larger numbers are clamped). Classes that keep a
+ * location can keep just its packed form (see
+ * {@link Locatable#packedLocation()}) and create a location as a view of it
+ * when needed.
+ *
  * @author sliva
  */
 public class Location implements Locatable, Loggable {
 
-	/**
-	 * The line number of the first character of the specified part of the source
-	 * file.
-	 */
-	private final int begLine;
+	/** The largest line number of a location given by line and column numbers. */
+	public static final int MAX_LINE = (1 << 18) - 1;
 
-	/**
-	 * The column number of the first character of the specified part of the source
-	 * file.
-	 */
-	private final int begColumn;
+	/** The largest column number of a location given by line and column numbers. */
+	public static final int MAX_COLUMN = (1 << 13) - 1;
 
-	/**
-	 * The line number of the last character of the specified part of the source
-	 * file.
-	 */
-	private final int endLine;
+	/** The flag marking the packed form holding offsets. */
+	private static final long OFFSETS = 1L << 63;
 
-	/**
-	 * The column number of the last character of the specified part of the source
-	 * file.
-	 */
-	private final int endColumn;
+	/** The packed form of no location (an empty range of offsets). */
+	public static final long NONE = OFFSETS | (0x7FFFFFFFL << 32);
+
+	/** The packed location. */
+	private final long packed;
+
+	/** The index of lines resolving the offsets ({@code null} unless the location holds offsets). */
+	private final LineIndex lineIndex;
 
 	/**
 	 * Constructs a new location if the position of the first and the last
 	 * characters are given.
-	 * 
+	 *
 	 * @param begLine   The line number of the first character of the specified part
 	 *                  of the source file.
 	 * @param begColumn The column number of the first character of the specified
@@ -50,15 +55,12 @@ public class Location implements Locatable, Loggable {
 	 *                  part of the source file.
 	 */
 	public Location(int begLine, int begColumn, int endLine, int endColumn) {
-		this.begLine = begLine;
-		this.begColumn = begColumn;
-		this.endLine = endLine;
-		this.endColumn = endColumn;
+		this(pack(begLine, begColumn, endLine, endColumn));
 	}
 
 	/**
 	 * Constructs a new location if the position of a single character is given.
-	 * 
+	 *
 	 * @param line   The line number of the character of the specified part of the
 	 *               source file.
 	 * @param column The column number of the character of the specified part of the
@@ -71,22 +73,158 @@ public class Location implements Locatable, Loggable {
 	/**
 	 * Constructs a new location given an object relating to a part of a source
 	 * file.
-	 * 
+	 *
 	 * @param that An object relating to a part of a source file.
 	 */
 	public Location(Locatable that) {
-		this(that.location().begLine, that.location().begColumn, that.location().endLine, that.location().endColumn);
+		this(that.packedLocation(), that.lineIndex());
 	}
 
 	/**
 	 * Constructs a new location given two objects relating to parts of a source
 	 * file.
-	 * 
+	 *
 	 * @param beg An object relating to the beginning of part of a source file.
 	 * @param end An object relating to the end of part of a source file.
 	 */
 	public Location(Locatable beg, Locatable end) {
-		this(beg.location().begLine, beg.location().begColumn, end.location().endLine, end.location().endColumn);
+		this(merge(beg.packedLocation(), end.packedLocation(), lineIndex(beg, end)), lineIndex(beg, end));
+	}
+
+	/**
+	 * Constructs a new location given its packed form holding line and column
+	 * numbers.
+	 *
+	 * @param packed The packed location.
+	 */
+	public Location(long packed) {
+		this(packed, null);
+	}
+
+	/**
+	 * Constructs a new location given its packed form.
+	 *
+	 * @param packed    The packed location.
+	 * @param lineIndex The index of lines resolving the offsets ({@code null} if
+	 *                  the packed location holds line and column numbers).
+	 */
+	public Location(long packed, LineIndex lineIndex) {
+		this.packed = packed;
+		this.lineIndex = lineIndex;
+	}
+
+	private static LineIndex lineIndex(Locatable beg, Locatable end) {
+		LineIndex lineIndex = beg.lineIndex();
+		return (lineIndex != null) ? lineIndex : end.lineIndex();
+	}
+
+	/**
+	 * Returns the packed form of a location given by the offsets of the first and
+	 * the last byte.
+	 *
+	 * @param begOffset The offset of the first byte.
+	 * @param endOffset The offset of the last byte.
+	 * @return The packed location.
+	 */
+	public static long pack(int begOffset, int endOffset) {
+		return OFFSETS | ((long) begOffset << 32) | (endOffset & 0xFFFFFFFFL);
+	}
+
+	/**
+	 * Returns the packed form of a location given by line and column numbers.
+	 *
+	 * @param begLine   The line number of the first character.
+	 * @param begColumn The column number of the first character.
+	 * @param endLine   The line number of the last character.
+	 * @param endColumn The column number of the last character.
+	 * @return The packed location.
+	 */
+	public static long pack(int begLine, int begColumn, int endLine, int endColumn) {
+		return ((long) clamp(begLine, MAX_LINE) << 44) | ((long) clamp(begColumn, MAX_COLUMN) << 31)
+				| ((long) clamp(endLine, MAX_LINE) << 13) | clamp(endColumn, MAX_COLUMN);
+	}
+
+	private static int clamp(int value, int max) {
+		return Math.min(Math.max(value, 0), max);
+	}
+
+	/**
+	 * Returns the packed form of a location spanning from the beginning of one
+	 * location to the end of another. If either location is {@link #NONE}, the
+	 * other one is returned.
+	 *
+	 * @param beg       The packed location of the beginning.
+	 * @param end       The packed location of the end.
+	 * @param lineIndex The index of lines resolving the offsets of either
+	 *                  location ({@code null} if none holds offsets).
+	 * @return The packed location.
+	 */
+	public static long merge(long beg, long end, LineIndex lineIndex) {
+		if (beg == NONE)
+			return end;
+		if (end == NONE)
+			return beg;
+		if (((beg & end) & OFFSETS) != 0)
+			return (beg & ~0xFFFFFFFFL) | (end & 0xFFFFFFFFL);
+		Location begLocation = new Location(beg, lineIndex);
+		Location endLocation = new Location(end, lineIndex);
+		return pack(begLocation.begLine(), begLocation.begColumn(), endLocation.endLine(), endLocation.endColumn());
+	}
+
+	/**
+	 * Returns the line number of the first character of the specified part of the
+	 * source file.
+	 *
+	 * @return The line number.
+	 */
+	public int begLine() {
+		if (packed == NONE)
+			return 0;
+		if ((packed & OFFSETS) != 0)
+			return lineIndex().line((int) ((packed & ~OFFSETS) >>> 32));
+		return (int) (packed >>> 44) & MAX_LINE;
+	}
+
+	/**
+	 * Returns the column number of the first character of the specified part of
+	 * the source file.
+	 *
+	 * @return The column number.
+	 */
+	public int begColumn() {
+		if (packed == NONE)
+			return 0;
+		if ((packed & OFFSETS) != 0)
+			return lineIndex().column((int) ((packed & ~OFFSETS) >>> 32));
+		return (int) (packed >>> 31) & MAX_COLUMN;
+	}
+
+	/**
+	 * Returns the line number of the last character of the specified part of the
+	 * source file.
+	 *
+	 * @return The line number.
+	 */
+	public int endLine() {
+		if (packed == NONE)
+			return 0;
+		if ((packed & OFFSETS) != 0)
+			return lineIndex().line((int) packed);
+		return (int) (packed >>> 13) & MAX_LINE;
+	}
+
+	/**
+	 * Returns the column number of the last character of the specified part of the
+	 * source file.
+	 *
+	 * @return The column number.
+	 */
+	public int endColumn() {
+		if (packed == NONE)
+			return 0;
+		if ((packed & OFFSETS) != 0)
+			return lineIndex().column((int) packed);
+		return (int) packed & MAX_COLUMN;
 	}
 
 	@Override
@@ -94,6 +232,18 @@ public class Location implements Locatable, Loggable {
 		return this;
 	}
 
+	@Override
+	public long packedLocation() {
+		return packed;
+	}
+
+	@Override
+	public LineIndex lineIndex() {
+		if ((lineIndex == null) && ((packed & OFFSETS) != 0) && (packed != NONE))
+			throw new Report.InternalError();
+		return lineIndex;
+	}
+
 	@Override
 	public void log(Logger logger) {
 		if (logger == null)
@@ -105,7 +255,7 @@ public class Location implements Locatable, Loggable {
 
 	@Override
 	public String toString() {
-		return begLine + "." + begColumn + "--" + endLine + "." + endColumn;
+		return begLine() + "." + begColumn() + "--" + endLine() + "." + endColumn();
 	}
 
 }
@@ -101,6 +101,7 @@ public class Report {
 		 * @param message The error message.
 		 */
 		public Error(String message) {
+			super(message);
 			System.err.print(":-( ");
 			System.err.println(message);
 		}
@@ -112,6 +113,7 @@ public class Report {
 		 * @param message  The error message.
 		 */
 		public Error(Locatable location, String message) {
+			super("[" + location.location() + "] " + message);
 			System.err.print(":-( ");
 			System.err.print("[" + location.location() + "] ");
 			System.err.println(message);
@@ -138,5 +140,16 @@ public class Report {
 			this.printStackTrace();
 		}
 
+		/**
+		 * Constructs a new internal error caused by an unexpected exception.
+		 * 
+		 * @param cause The unexpected exception.
+		 */
+		public InternalError(Throwable cause) {
+			super("Internal error.");
+			this.initCause(cause);
+			this.printStackTrace();
+		}
+
 	}
 }
@@ -4,14 +4,15 @@
 package compiler.data.abstree;
 
 import compiler.common.report.*;
+import compiler.data.symbol.*;
 
 public abstract class AbsDecl extends Location implements AbsTree {
 
-	public final String name;
+	public final Name name;
 
 	public final AbsType type;
 
-	public AbsDecl(Locatable location, String name, AbsType type) {
+	public AbsDecl(Locatable location, Name name, AbsType type) {
 		super(location);
 		this.name = name;
 		this.type = type;
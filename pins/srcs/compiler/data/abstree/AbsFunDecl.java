@@ -5,12 +5,13 @@ package compiler.data.abstree;
 
 import compiler.common.report.*;
 import compiler.data.abstree.visitor.*;
+import compiler.data.symbol.*;
 
 public class AbsFunDecl extends AbsDecl {
 
 	public final AbsParDecls parDecls;
 
-	public AbsFunDecl(Locatable location, String name, AbsParDecls parDecls, AbsType type) {
+	public AbsFunDecl(Locatable location, Name name, AbsParDecls parDecls, AbsType type) {
 		super(location, name, type);
 		this.parDecls = parDecls;
 	}
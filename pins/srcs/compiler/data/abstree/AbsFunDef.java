@@ -5,12 +5,13 @@ package compiler.data.abstree;
 
 import compiler.common.report.*;
 import compiler.data.abstree.visitor.*;
+import compiler.data.symbol.*;
 
 public class AbsFunDef extends AbsFunDecl {
 
 	public final AbsExpr value;
 
-	public AbsFunDef(Locatable location, String name, AbsParDecls parDecls, AbsType type, AbsExpr value) {
+	public AbsFunDef(Locatable location, Name name, AbsParDecls parDecls, AbsType type, AbsExpr value) {
 		super(location, name, parDecls, type);
 		this.value = value;
 	}
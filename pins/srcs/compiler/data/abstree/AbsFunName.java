@@ -5,12 +5,13 @@ package compiler.data.abstree;
 
 import compiler.common.report.*;
 import compiler.data.abstree.visitor.*;
+import compiler.data.symbol.*;
 
 public class AbsFunName extends AbsVarName implements AbsName {
 
 	public final AbsArgs args;
 
-	public AbsFunName(Locatable location, String name, AbsArgs args) {
+	public AbsFunName(Locatable location, Name name, AbsArgs args) {
 		super(location, name);
 		this.args = args;
 	}
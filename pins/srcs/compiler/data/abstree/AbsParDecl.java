@@ -5,10 +5,11 @@ package compiler.data.abstree;
 
 import compiler.common.report.*;
 import compiler.data.abstree.visitor.*;
+import compiler.data.symbol.*;
 
 public class AbsParDecl extends AbsVarDecl {
 
-	public AbsParDecl(Locatable location, String name, AbsType type) {
+	public AbsParDecl(Locatable location, Name name, AbsType type) {
 		super(location, name, type);
 	}
 
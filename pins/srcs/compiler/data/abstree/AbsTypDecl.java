@@ -5,10 +5,11 @@ package compiler.data.abstree;
 
 import compiler.common.report.*;
 import compiler.data.abstree.visitor.*;
+import compiler.data.symbol.*;
 
 public class AbsTypDecl extends AbsDecl {
 
-	public AbsTypDecl(Locatable location, String name, AbsType type) {
+	public AbsTypDecl(Locatable location, Name name, AbsType type) {
 		super(location, name, type);
 	}
 
@@ -5,12 +5,13 @@ package compiler.data.abstree;
 
 import compiler.common.report.*;
 import compiler.data.abstree.visitor.*;
+import compiler.data.symbol.*;
 
 public class AbsTypName extends AbsType implements AbsName {
 
-	public final String name;
+	public final Name name;
 
-	public AbsTypName(Locatable location, String name) {
+	public AbsTypName(Locatable location, Name name) {
 		super(location);
 		this.name = name;
 	}
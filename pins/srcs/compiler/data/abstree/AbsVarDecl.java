@@ -5,10 +5,11 @@ package compiler.data.abstree;
 
 import compiler.common.report.*;
 import compiler.data.abstree.visitor.*;
+import compiler.data.symbol.*;
 
 public class AbsVarDecl extends AbsDecl {
 
-	public AbsVarDecl(Locatable location, String name, AbsType type) {
+	public AbsVarDecl(Locatable location, Name name, AbsType type) {
 		super(location, name, type);
 	}
 
@@ -5,12 +5,13 @@ package compiler.data.abstree;
 
 import compiler.common.report.*;
 import compiler.data.abstree.visitor.*;
+import compiler.data.symbol.*;
 
 public class AbsVarName extends AbsExpr implements AbsName {
 
-	public final String name;
+	public final Name name;
 
-	public AbsVarName(Locatable location, String name) {
+	public AbsVarName(Locatable location, Name name) {
 		super(location);
 		this.name = name;
 	}
@@ -18,9 +18,17 @@ public class DataChunk extends Chunk {
 	/** The size of data. */
 	public final long size;
 
+	/** Whether data is initialized with zeros (otherwise it is uninitialized). */
+	public final boolean zeroed;
+
 	public DataChunk(AbsAccess absAccess) {
+		this(absAccess, false);
+	}
+
+	public DataChunk(AbsAccess absAccess, boolean zeroed) {
 		this.label = absAccess.label;
 		this.size = absAccess.size;
+		this.zeroed = zeroed;
 	}
 
 }
@@ -31,6 +31,16 @@ public class DerLeaf extends DerTree {
 		return symb.location();
 	}
 
+	@Override
+	public long packedLocation() {
+		return symb.packedLocation();
+	}
+
+	@Override
+	public LineIndex lineIndex() {
+		return symb.lineIndex();
+	}
+
 	@Override
 	public <Result, Arg> Result accept(DerVisitor<Result, Arg> visitor, Arg accArg) {
 		return visitor.visit(this, accArg);
@@ -32,8 +32,11 @@ public class DerNode extends DerTree {
 	/** A list of subtrees (from left to right, ordered). */
 	private final Vector<DerTree> subtrees;
 
-	/** Location of a part of the program represented by this node. */
-	private Location location;
+	/** Location of a part of the program represented by this node (packed). */
+	private long location = Location.NONE;
+
+	/** The index of lines resolving the location ({@code null} unless it holds offsets). */
+	private LineIndex lineIndex = null;
 
 	/**
 	 * Constructs a new internal node of the derivation tree. Immediately after
@@ -55,9 +58,9 @@ public class DerNode extends DerTree {
 	 */
 	public DerNode add(DerTree subtree) {
 		subtrees.addElement(subtree);
-		Location location = subtree.location();
-		this.location = (this.location == null) ? location
-				: ((location == null) ? this.location : new Location(this.location, location));
+		if (lineIndex == null)
+			lineIndex = subtree.lineIndex();
+		location = Location.merge(location, subtree.packedLocation(), lineIndex);
 		return this;
 	}
 
@@ -91,9 +94,19 @@ public class DerNode extends DerTree {
 
 	@Override
 	public Location location() {
+		return (location == Location.NONE) ? null : new Location(location, lineIndex);
+	}
+
+	@Override
+	public long packedLocation() {
 		return location;
 	}
 
+	@Override
+	public LineIndex lineIndex() {
+		return lineIndex;
+	}
+
 	@Override
 	public <Result, Arg> Result accept(DerVisitor<Result, Arg> visitor, Arg accArg) {
 		return visitor.visit(this, accArg);
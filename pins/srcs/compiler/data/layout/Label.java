@@ -3,6 +3,9 @@
  */
 package compiler.data.layout;
 
+import java.util.concurrent.atomic.*;
+import compiler.data.symbol.*;
+
 /**
  * A label.
  * 
@@ -13,13 +16,12 @@ public class Label {
 	/** The name of a label. */
 	public final String name;
 
-	/** Counter of anonymous labels. */
-	private static long count = 0;
+	/** Counter of anonymous labels (labels can be created by many threads). */
+	private static final AtomicLong count = new AtomicLong();
 
 	/** Creates a new anonymous label. */
 	public Label() {
-		this.name = "L" + count;
-		count++;
+		this.name = "L" + count.getAndIncrement();
 	}
 
 	/**
@@ -31,4 +33,13 @@ public class Label {
 		this.name = "_" + name;
 	}
 
+	/**
+	 * Creates a new label named after a name of the program.
+	 * 
+	 * @param name The name.
+	 */
+	public Label(Name name) {
+		this.name = name.label();
+	}
+
 }
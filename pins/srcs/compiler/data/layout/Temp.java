@@ -3,6 +3,8 @@
  */
 package compiler.data.layout;
 
+import java.util.concurrent.atomic.*;
+
 /**
  * A temporary variable.
  * 
@@ -13,13 +15,12 @@ public class Temp {
 	/** The name of a temporary variable. */
 	public final long temp;
 
-	/** Counter of temporary variables. */
-	private static long count = 0;
+	/** Counter of temporary variables (temporary variables can be created by many threads). */
+	private static final AtomicLong count = new AtomicLong();
 
 	/** Creates a new temporary variable. */
 	public Temp() {
-		this.temp = count;
-		count++;
+		this.temp = count.getAndIncrement();
 	}
 
 }
@@ -0,0 +1,64 @@
+/**
+ * @author sliva
+ */
+package compiler.data.symbol;
+
+/**
+ * A name, i.e., an identifier interned by the table of names of a compilation
+ * (see {@link NameTable}).
+ *
+ * There is exactly one name for each distinct identifier of a compilation, so
+ * names can be compared by identity. Each name carries its hash code, which
+ * equals the hash code of its string, and a dense integer id, so that tables
+ * of declarations can be indexed by names without hashing them again.
+ *
+ * @author sliva
+ */
+public final class Name {
+
+	/** The string of the name. */
+	public final String string;
+
+	/** The id of the name (names of a table are numbered from {@code 0} on). */
+	public final int id;
+
+	/** The hash code of the name. */
+	final int hash;
+
+	/** The name of the label of a global variable or a function with this name ({@code null} until needed). */
+	private String label = null;
+
+	Name(String string, int id, int hash) {
+		this.string = string;
+		this.id = id;
+		this.hash = hash;
+	}
+
+	/**
+	 * Returns the name of the label of a global variable or a function with this
+	 * name.
+	 *
+	 * @return The name of the label.
+	 */
+	public String label() {
+		if (label == null)
+			label = "_" + string;
+		return label;
+	}
+
+	@Override
+	public int hashCode() {
+		return hash;
+	}
+
+	@Override
+	public boolean equals(Object that) {
+		return this == that;
+	}
+
+	@Override
+	public String toString() {
+		return string;
+	}
+
+}
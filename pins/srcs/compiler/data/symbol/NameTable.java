@@ -0,0 +1,90 @@
+/**
+ * @author sliva
+ */
+package compiler.data.symbol;
+
+import java.nio.charset.*;
+
+/**
+ * The table of names of a single compilation.
+ *
+ * The lexer interns identifiers directly from the raw characters of the source
+ * file, so the string of an identifier is created only once no matter how many
+ * times the identifier occurs. A table is created by each compilation and is
+ * used by one thread at a time, so it needs no locking, and the ids of its
+ * names only count the identifiers of that compilation.
+ *
+ * @author sliva
+ */
+public final class NameTable {
+
+	/** The hash table of all names (open addressing, the size is a power of two). */
+	private Name[] table = new Name[1 << 10];
+
+	/** The number of names. */
+	private int count = 0;
+
+	/**
+	 * Returns the name of an identifier given by its characters.
+	 *
+	 * @param chars The characters (bytes of an ASCII source file).
+	 * @param beg   The offset of the first character of the identifier.
+	 * @param end   The offset past the last character of the identifier.
+	 * @return The name.
+	 */
+	public Name intern(byte[] chars, int beg, int end) {
+		int hash = 0;
+		for (int index = beg; index < end; index++)
+			hash = 31 * hash + (chars[index] & 0xFF);
+		int mask = table.length - 1;
+		next: for (int slot = hash & mask;; slot = (slot + 1) & mask) {
+			Name name = table[slot];
+			if (name == null)
+				return add(slot, new String(chars, beg, end - beg, StandardCharsets.ISO_8859_1), hash);
+			if ((name.hash != hash) || (name.string.length() != end - beg))
+				continue;
+			for (int index = beg; index < end; index++)
+				if (name.string.charAt(index - beg) != (chars[index] & 0xFF))
+					continue next;
+			return name;
+		}
+	}
+
+	/**
+	 * Returns the name of an identifier given by its string.
+	 *
+	 * @param string The string of the identifier.
+	 * @return The name.
+	 */
+	public Name of(String string) {
+		int hash = string.hashCode();
+		int mask = table.length - 1;
+		for (int slot = hash & mask;; slot = (slot + 1) & mask) {
+			Name name = table[slot];
+			if (name == null)
+				return add(slot, string, hash);
+			if ((name.hash == hash) && name.string.equals(string))
+				return name;
+		}
+	}
+
+	private Name add(int slot, String string, int hash) {
+		Name name = new Name(string, count++, hash);
+		table[slot] = name;
+		if (2 * count > table.length) {
+			Name[] oldTable = table;
+			table = new Name[2 * oldTable.length];
+			int mask = table.length - 1;
+			for (Name oldName : oldTable) {
+				if (oldName == null)
+					continue;
+				int newSlot = oldName.hash & mask;
+				while (table[newSlot] != null)
+					newSlot = (newSlot + 1) & mask;
+				table[newSlot] = oldName;
+			}
+		}
+		return name;
+	}
+
+}
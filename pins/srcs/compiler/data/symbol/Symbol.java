@@ -30,8 +30,14 @@ public class Symbol implements Locatable, Loggable {
 	/** The lexeme. */
 	public final String lexeme;
 
-	/** The location within a source file. */
-	private Location location;
+	/** The name of an identifier ({@code null} for other tokens). */
+	public final Name name;
+
+	/** The location within a source file (packed). */
+	private final long location;
+
+	/** The index of lines resolving the location ({@code null} unless it holds offsets). */
+	private final LineIndex lineIndex;
 
 	/**
 	 * Constructs a new symbol.
@@ -41,16 +47,59 @@ public class Symbol implements Locatable, Loggable {
 	 * @param location The location within a source file.
 	 */
 	public Symbol(Term token, String lexeme, Locatable location) {
+		this(token, lexeme, location.packedLocation(), location.lineIndex());
+	}
+
+	/**
+	 * Constructs a new symbol.
+	 * 
+	 * @param token    The token.
+	 * @param lexeme   The lexeme.
+	 * @param location  The packed location within a source file (see
+	 *                  {@link Location}).
+	 * @param lineIndex The index of lines resolving the location ({@code null}
+	 *                  unless it holds offsets).
+	 */
+	public Symbol(Term token, String lexeme, long location, LineIndex lineIndex) {
 		this.token = token;
 		this.lexeme = lexeme;
-		this.location = location.location();
+		this.name = null;
+		this.location = location;
+		this.lineIndex = lineIndex;
+	}
+
+	/**
+	 * Constructs a new symbol of an identifier.
+	 * 
+	 * @param name     The name of the identifier.
+	 * @param location  The packed location within a source file (see
+	 *                  {@link Location}).
+	 * @param lineIndex The index of lines resolving the location ({@code null}
+	 *                  unless it holds offsets).
+	 */
+	public Symbol(Name name, long location, LineIndex lineIndex) {
+		this.token = Term.IDENTIFIER;
+		this.lexeme = name.string;
+		this.name = name;
+		this.location = location;
+		this.lineIndex = lineIndex;
 	}
 
 	@Override
 	public Location location() {
+		return new Location(location, lineIndex);
+	}
+
+	@Override
+	public long packedLocation() {
 		return location;
 	}
 
+	@Override
+	public LineIndex lineIndex() {
+		return lineIndex;
+	}
+
 	@Override
 	public void log(Logger logger) {
 		if (logger == null)
@@ -58,7 +107,7 @@ public class Symbol implements Locatable, Loggable {
 		logger.begElement("term");
 		logger.addAttribute("token", token.toString());
 		logger.addAttribute("lexeme", lexeme);
-		location.log(logger);
+		location().log(logger);
 		logger.endElement();
 	}
 
@@ -241,7 +241,7 @@ public class AbsLogger implements AbsVisitor<Object, Object> {
 			return null;
 		logger.begElement("node");
 		logger.addAttribute("label", "FunDecl");
-		logger.addAttribute("lexeme", funDecl.name);
+		logger.addAttribute("lexeme", funDecl.name.string);
 		funDecl.parDecls.accept(this, null);
 		funDecl.type.accept(this, null);
 		funDecl.log(logger);
@@ -258,7 +258,7 @@ public class AbsLogger implements AbsVisitor<Object, Object> {
 			return null;
 		logger.begElement("node");
 		logger.addAttribute("label", "FunDef");
-		logger.addAttribute("lexeme", funDeclBody.name);
+		logger.addAttribute("lexeme", funDeclBody.name.string);
 		funDeclBody.parDecls.accept(this, null);
 		funDeclBody.type.accept(this, null);
 		funDeclBody.value.accept(this, null);
@@ -276,7 +276,7 @@ public class AbsLogger implements AbsVisitor<Object, Object> {
 			return null;
 		logger.begElement("node");
 		logger.addAttribute("label", "FunName");
-		logger.addAttribute("lexeme", funName.name);
+		logger.addAttribute("lexeme", funName.name.string);
 		funName.args.accept(this, null);
 		funName.log(logger);
 		for (AbsVisitor<Object, Object> subvisitor : subvisitors) {
@@ -324,7 +324,7 @@ public class AbsLogger implements AbsVisitor<Object, Object> {
 			return null;
 		logger.begElement("node");
 		logger.addAttribute("label", "ParDecl");
-		logger.addAttribute("lexeme", parDecl.name);
+		logger.addAttribute("lexeme", parDecl.name.string);
 		parDecl.type.accept(this, null);
 		parDecl.log(logger);
 		for (AbsVisitor<Object, Object> subvisitor : subvisitors) {
@@ -404,7 +404,7 @@ public class AbsLogger implements AbsVisitor<Object, Object> {
 			return null;
 		logger.begElement("node");
 		logger.addAttribute("label", "TypDecl");
-		logger.addAttribute("lexeme", typDecl.name);
+		logger.addAttribute("lexeme", typDecl.name.string);
 		typDecl.type.accept(this, null);
 		typDecl.log(logger);
 		for (AbsVisitor<Object, Object> subvisitor : subvisitors) {
@@ -420,7 +420,7 @@ public class AbsLogger implements AbsVisitor<Object, Object> {
 			return null;
 		logger.begElement("node");
 		logger.addAttribute("label", "TypeName");
-		logger.addAttribute("lexeme", typName.name);
+		logger.addAttribute("lexeme", typName.name.string);
 		typName.log(logger);
 		for (AbsVisitor<Object, Object> subvisitor : subvisitors) {
 			typName.accept(subvisitor, null);
@@ -451,7 +451,7 @@ public class AbsLogger implements AbsVisitor<Object, Object> {
 			return null;
 		logger.begElement("node");
 		logger.addAttribute("label", "VarDecl");
-		logger.addAttribute("lexeme", varDecl.name);
+		logger.addAttribute("lexeme", varDecl.name.string);
 		varDecl.type.accept(this, null);
 		varDecl.log(logger);
 		for (AbsVisitor<Object, Object> subvisitor : subvisitors) {
@@ -467,7 +467,7 @@ public class AbsLogger implements AbsVisitor<Object, Object> {
 			return null;
 		logger.begElement("node");
 		logger.addAttribute("label", "VarName");
-		logger.addAttribute("lexeme", varName.name);
+		logger.addAttribute("lexeme", varName.name.string);
 		varName.log(logger);
 		for (AbsVisitor<Object, Object> subvisitor : subvisitors) {
 			varName.accept(subvisitor, null);
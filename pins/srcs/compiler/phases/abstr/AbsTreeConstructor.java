@@ -8,6 +8,7 @@ import compiler.common.report.*;
 import compiler.data.dertree.*;
 import compiler.data.dertree.visitor.*;
 import compiler.data.abstree.*;
+import compiler.data.symbol.Name;
 import compiler.data.symbol.Symbol;
 
 /**
@@ -57,11 +58,11 @@ public class AbsTreeConstructor implements DerVisitor<AbsTree, AbsTree> {
 				switch(((DerLeaf)node.subtree(0)).symb.token) {
 					case VAR: {
 						AbsType t = (AbsType)node.subtree(3).accept(this, null);
-						return new AbsVarDecl(((DerLeaf)node.subtree(0)).symb.location(), ((DerLeaf)node.subtree(1)).symb.lexeme, t);
+						return new AbsVarDecl(((DerLeaf)node.subtree(0)).symb.location(), ((DerLeaf)node.subtree(1)).symb.name, t);
 					}
 					case TYP: {
 						AbsType t = (AbsType)node.subtree(3).accept(this, null);
-						return new AbsTypDecl(((DerLeaf)node.subtree(0)).symb.location(), ((DerLeaf)node.subtree(1)).symb.lexeme, t);
+						return new AbsTypDecl(((DerLeaf)node.subtree(0)).symb.location(), ((DerLeaf)node.subtree(1)).symb.name, t);
 					}
 					case FUN: {
 						AbsParDecls par = (AbsParDecls)node.subtree(3).accept(this, null);
@@ -71,9 +72,9 @@ public class AbsTreeConstructor implements DerVisitor<AbsTree, AbsTree> {
 						AbsType type = (AbsType)node.subtree(6).accept(this, null);
 						AbsBlockExpr block = (AbsBlockExpr)node.subtree(7).accept(this, null);
 						if(block == null)
-							return new AbsFunDecl(new Location(node, type), ((DerLeaf)node.subtree(1)).symb.lexeme, par, type);
+							return new AbsFunDecl(new Location(node, type), ((DerLeaf)node.subtree(1)).symb.name, par, type);
 						else
-							return new AbsFunDef(new Location(node, block), ((DerLeaf)node.subtree(1)).symb.lexeme, par, type, block);
+							return new AbsFunDef(new Location(node, block), ((DerLeaf)node.subtree(1)).symb.name, par, type, block);
 					}
 				}
 			}
@@ -110,7 +111,7 @@ public class AbsTreeConstructor implements DerVisitor<AbsTree, AbsTree> {
 					return visArg;
 				else {
 					Vector<AbsParDecl> v = new Vector<>();
-					String name = ((DerLeaf)node.subtree(0)).symb.lexeme;
+					Name name = ((DerLeaf)node.subtree(0)).symb.name;
 					AbsType type = (AbsType)node.subtree(2).accept(this, null);
 					AbsParDecl par = new AbsParDecl(new Location(node.subtree(0), type), name, type);
 					v.add(par);
@@ -126,7 +127,7 @@ public class AbsTreeConstructor implements DerVisitor<AbsTree, AbsTree> {
 					return visArg;
 				else {
 					Vector<AbsParDecl> v = new Vector<>();
-					String name = ((DerLeaf)node.subtree(1)).symb.lexeme;
+					Name name = ((DerLeaf)node.subtree(1)).symb.name;
 					AbsType type = (AbsType)node.subtree(3).accept(this, null);
 					AbsParDecl par = new AbsParDecl(new Location(node.subtree(3), type), name, type);
 					v.add(par);
@@ -156,7 +157,7 @@ public class AbsTreeConstructor implements DerVisitor<AbsTree, AbsTree> {
 						return new AbsPtrType(((DerLeaf)node.subtree(0)).symb.location(), t);
 					}
 					case IDENTIFIER: {
-						return new AbsTypName(((DerLeaf)node.subtree(0)).symb.location(), ((DerLeaf)node.subtree(0)).symb.toString());
+						return new AbsTypName(((DerLeaf)node.subtree(0)).symb.location(), ((DerLeaf)node.subtree(0)).symb.name);
 					}
 					case ARR: {
 						AbsExpr e = (AbsExpr)node.subtree(2).accept(this, null);
@@ -355,21 +356,21 @@ public class AbsTreeConstructor implements DerVisitor<AbsTree, AbsTree> {
 						case PTRCONST:
 							return new AbsAtomExpr(new Location(node), AbsAtomExpr.Type.PTR, ((DerLeaf) node.subtree(0)).symb.lexeme);
 						case IDENTIFIER:
-							return new AbsVarName(new Location(node), ((DerLeaf) node.subtree(0)).symb.lexeme);
+							return new AbsVarName(new Location(node), ((DerLeaf) node.subtree(0)).symb.name);
 					}
 				}
 				if(node.numSubtrees() == 2) {
 					switch (((DerLeaf) node.subtree(0)).symb.token) {
 						case IDENTIFIER:
-							AbsVarName name = new AbsVarName(new Location(node), ((DerLeaf) node.subtree(0)).symb.lexeme);
+							AbsVarName name = new AbsVarName(new Location(node), ((DerLeaf) node.subtree(0)).symb.name);
 							break;
 						default:
 							throw new Report.Error(new Location(node), ((DerLeaf) node.subtree(0)).symb.lexeme + " is not callable!");
 					}
 					AbsArgs args = (AbsArgs)node.subtree(1).accept(this, null);
 					if(args == null)
-						return new AbsVarName(new Location(node), ((DerLeaf) node.subtree(0)).symb.lexeme);
-					return new AbsFunName(new Location(node), ((DerLeaf) node.subtree(0)).symb.lexeme, args);
+						return new AbsVarName(new Location(node), ((DerLeaf) node.subtree(0)).symb.name);
+					return new AbsFunName(new Location(node), ((DerLeaf) node.subtree(0)).symb.name, args);
 				}
 			}
 
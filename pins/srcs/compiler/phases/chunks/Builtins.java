@@ -0,0 +1,291 @@
+/**
+ * @author sliva
+ */
+package compiler.phases.chunks;
+
+import java.util.*;
+import compiler.common.report.*;
+
+/**
+ * The registry of builtin functions.
+ *
+ * A builtin function is a function of the runtime that a program calls like any
+ * other function but that is implemented by a handler of the execution engine.
+ * Each builtin function is registered under its label name (e.g.,
+ * {@code _putInt}) and gets a number that never changes afterwards. Execution
+ * engines resolve calls of builtin functions to their handlers (the interpreter)
+ * or numbers (the virtual machine and the compiler to JVM bytecode) once, when
+ * the code is loaded or compiled, so that a call of a builtin function never
+ * compares names at run time. New runtime functions are added by registering
+ * them before the program is loaded; an engine uses the handlers registered at
+ * the time it has been constructed.
+ *
+ * A handler finds its arguments and stores its result in the memory using the
+ * calling convention of {@link Interpreter}: the {@code i}-th argument is at
+ * {@code mem[SP+8*i]} (the static link being the {@code 0}-th) and the result
+ * is returned at {@code mem[SP]}.
+ *
+ * Besides {@code putInt}, {@code putChar}, {@code putString}, {@code new},
+ * {@code del} and {@code snapshot}, the runtime library provides the following
+ * functions, declared in a program without a body:
+ *
+ * <pre>
+ * fun getInt() : int                                   # reads an integer
+ * fun getChar() : char                                 # -1 at the end of the input
+ * fun memcpy(dst : ptr void, src : ptr void, size : int) : void
+ * fun memset(dst : ptr void, value : int, size : int) : void
+ * fun time() : int                                     # milliseconds since the epoch
+ * fun random(bound : int) : int                        # 0 to bound-1 (any if bound <= 0)
+ * fun exit(code : int) : void                          # terminates the program
+ * fun alloc(size : int) : int                          # same as new
+ * fun free(addr : int) : void                          # same as del
+ * </pre>
+ *
+ * A call is resolved to a builtin function only if the program does not define
+ * a function with the same label, so a program may define its own
+ * {@code time}, say. Sizes are in bytes. {@code memcpy} and {@code memset} work on whole memory
+ * pages (see {@link Memory#move(long, long, long)} and
+ * {@link Memory#fill(long, long, byte)}), and the blocks copied by
+ * {@code memcpy} may overlap. The input is selected by the command line
+ * argument {@code --runtime-in} (see {@link RuntimeInput}) and the random
+ * numbers are seeded by {@code --random-seed}.
+ *
+ * @author sliva
+ */
+public final class Builtins {
+
+	private Builtins() {
+	}
+
+	/**
+	 * The handler of a builtin function.
+	 */
+	@FunctionalInterface
+	public interface Builtin {
+
+		/**
+		 * Executes the builtin function.
+		 *
+		 * @param context The state of the execution engine at the call.
+		 */
+		public void call(Context context);
+
+	}
+
+	/**
+	 * The state of an execution engine accessible to the handlers of builtin
+	 * functions. An engine supporting builtin functions that depend on its own
+	 * state overrides the respective methods.
+	 */
+	public static class Context {
+
+		/** The memory. */
+		public final Memory memory;
+
+		/** The heap allocator. */
+		public final HeapAllocator heap;
+
+		/** The output of the builtin functions. */
+		public final RuntimeOutput output;
+
+		/** The input of the builtin functions. */
+		public final RuntimeInput input;
+
+		/** The generator of random numbers. */
+		public final Random random;
+
+		/** The garbage collector ({@code null} if garbage collection is disabled). */
+		public final GarbageCollector gc;
+
+		/** The value of the stack pointer at the call (set by the engine). */
+		public long sp;
+
+		/**
+		 * Constructs a new context. The input is selected by the command line
+		 * argument {@code --runtime-in} and the random numbers are seeded by
+		 * {@code --random-seed}.
+		 *
+		 * @param memory The memory.
+		 * @param heap   The heap allocator.
+		 * @param output The output of the builtin functions.
+		 * @param gc     The garbage collector ({@code null} if garbage collection
+		 *               is disabled).
+		 */
+		public Context(Memory memory, HeapAllocator heap, RuntimeOutput output, GarbageCollector gc) {
+			this(memory, heap, output, RuntimeInput.create(), gc);
+		}
+
+		/**
+		 * Constructs a new context. The random numbers are seeded by the command
+		 * line argument {@code --random-seed}.
+		 *
+		 * @param memory The memory.
+		 * @param heap   The heap allocator.
+		 * @param output The output of the builtin functions.
+		 * @param input  The input of the builtin functions.
+		 * @param gc     The garbage collector ({@code null} if garbage collection
+		 *               is disabled).
+		 */
+		public Context(Memory memory, HeapAllocator heap, RuntimeOutput output, RuntimeInput input,
+				GarbageCollector gc) {
+			this.memory = memory;
+			this.heap = heap;
+			this.output = output;
+			this.input = input;
+			String seed = compiler.Main.cmdLineArgValue("--random-seed");
+			this.random = (seed == null) ? new Random() : new Random(Long.parseLong(seed));
+			this.gc = gc;
+		}
+
+		/**
+		 * Returns an argument of the call.
+		 *
+		 * @param index The index of the argument ({@code 0} is the static link).
+		 * @return The value of the argument.
+		 */
+		public long arg(int index) {
+			return memory.load(sp + 8 * index);
+		}
+
+		/**
+		 * Stores the result of the call.
+		 *
+		 * @param value The result.
+		 */
+		public void result(long value) {
+			memory.store(sp, value);
+		}
+
+		/**
+		 * Takes a snapshot of the execution (the builtin function
+		 * {@code _snapshot}). Only the interpreter supports snapshots.
+		 */
+		public void snapshot() {
+			throw new Report.Error("Snapshots are supported by the interpreter only.");
+		}
+
+	}
+
+	/**
+	 * Thrown by the builtin function {@code _exit} to terminate the program.
+	 * Execution engines catch it and return its exit code.
+	 */
+	@SuppressWarnings("serial")
+	public static class Exit extends RuntimeException {
+
+		/** The exit code. */
+		public final long code;
+
+		/**
+		 * Constructs a new request to terminate the program.
+		 *
+		 * @param code The exit code.
+		 */
+		public Exit(long code) {
+			super(null, null, false, false);
+			this.code = code;
+		}
+
+	}
+
+	/** The names of the builtin functions (indexed by their numbers). */
+	private static final ArrayList<String> names = new ArrayList<String>();
+
+	/** The handlers of the builtin functions (indexed by their numbers). */
+	private static final ArrayList<Builtin> handlers = new ArrayList<Builtin>();
+
+	/** The numbers of the builtin functions by their names. */
+	private static final HashMap<String, Integer> numbers = new HashMap<String, Integer>();
+
+	static {
+		Builtin allocate = context -> {
+			long size = context.arg(1);
+			if (context.gc != null)
+				context.gc.collectIfDue(context.sp);
+			context.result(context.heap.allocate(size));
+		};
+		Builtin free = context -> context.heap.free(context.arg(1));
+		register("_new", allocate);
+		register("_del", free);
+		register("_putInt", context -> context.output.putInt(context.arg(1)));
+		register("_putChar", context -> context.output.putChar((char) ((char) context.arg(1) % 0x100)));
+		register("_putString", context -> {
+			long addr = context.arg(1);
+			do {
+				long c = context.memory.load(addr);
+				addr += 8;
+				if (c == 0)
+					break;
+				context.output.putChar((char) c);
+			} while (true);
+		});
+		register("_snapshot", Context::snapshot);
+		register("_getInt", context -> context.result(context.input.getInt()));
+		register("_getChar", context -> context.result(context.input.getChar()));
+		register("_memcpy", context -> context.memory.move(context.arg(1), context.arg(2), context.arg(3)));
+		register("_memset", context -> context.memory.fill(context.arg(1), context.arg(3), (byte) context.arg(2)));
+		register("_time", context -> context.result(System.currentTimeMillis()));
+		register("_random", context -> {
+			long bound = context.arg(1);
+			context.result((bound > 0) ? Math.floorMod(context.random.nextLong(), bound) : context.random.nextLong());
+		});
+		register("_exit", context -> {
+			throw new Exit(context.arg(1));
+		});
+		// As new and del are keywords, a program calls the allocator as alloc and free.
+		register("_alloc", allocate);
+		register("_free", free);
+	}
+
+	/**
+	 * Registers a builtin function. If a builtin function with the same name has
+	 * already been registered, its handler is replaced but its number is kept.
+	 *
+	 * @param name    The name of the function's label.
+	 * @param builtin The handler.
+	 * @return The number of the builtin function.
+	 */
+	public static synchronized int register(String name, Builtin builtin) {
+		Integer number = numbers.get(name);
+		if (number != null) {
+			handlers.set(number, builtin);
+			return number;
+		}
+		names.add(name);
+		handlers.add(builtin);
+		numbers.put(name, handlers.size() - 1);
+		return handlers.size() - 1;
+	}
+
+	/**
+	 * Returns the number of the builtin function with the specified name.
+	 *
+	 * @param name The name of the function's label.
+	 * @return The number of the builtin function or {@code -1} if there is no
+	 *         such builtin function.
+	 */
+	public static synchronized int number(String name) {
+		Integer number = numbers.get(name);
+		return (number == null) ? -1 : number;
+	}
+
+	/**
+	 * Returns the name of a builtin function.
+	 *
+	 * @param number The number of the builtin function.
+	 * @return The name of the function's label.
+	 */
+	public static synchronized String name(int number) {
+		return names.get(number);
+	}
+
+	/**
+	 * Returns the handlers of all builtin functions registered so far.
+	 *
+	 * @return The handlers indexed by the numbers of the builtin functions.
+	 */
+	public static synchronized Builtin[] handlers() {
+		return handlers.toArray(new Builtin[handlers.size()]);
+	}
+
+}
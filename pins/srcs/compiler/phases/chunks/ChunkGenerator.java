@@ -18,6 +18,13 @@ import compiler.phases.imcgen.*;
  */
 public class ChunkGenerator extends AbsFullVisitor<Object, Object> {
 
+	public Object visit(AbsSource source, Object visArg) {
+		super.visit(source, visArg);
+		if (!ImcGen.displayedFrames.isEmpty())
+			Chunks.dataChunks.add(new DataChunk(Frames.display, true));
+		return null;
+	}
+
 	public Object visit(AbsFunDef funDef, Object visArg) {
 		funDef.value.accept(this, null);
 		Frame frame = Frames.frames.get(funDef);
@@ -27,9 +34,20 @@ public class ChunkGenerator extends AbsFullVisitor<Object, Object> {
 		Vector<ImcStmt> canonStmts = new Vector<ImcStmt>();
 
 		canonStmts.add(new ImcLABEL(entryLabel));
+		// Enter the frame into the display (and restore the display on exit).
+		Temp displayedFP = ImcGen.displayedFrames.contains(frame) ? new Temp() : null;
+		if (displayedFP != null) {
+			ImcMEM slot = new ImcMEM(CodeGenerator.displaySlot(frame.depth));
+			canonStmts.addAll(new ImcMOVE(new ImcTEMP(displayedFP), slot).accept(new StmtCanonizer(), null));
+			canonStmts.addAll(new ImcMOVE(slot, new ImcTEMP(frame.FP)).accept(new StmtCanonizer(), null));
+		}
 		ImcExpr bodyExpr = ImcGen.exprImCode.get(funDef.value);
 		ImcStmt bodyStmt = new ImcMOVE(new ImcTEMP(frame.RV), bodyExpr);
 		canonStmts.addAll(bodyStmt.accept(new StmtCanonizer(), null));
+		if (displayedFP != null) {
+			ImcMEM slot = new ImcMEM(CodeGenerator.displaySlot(frame.depth));
+			canonStmts.addAll(new ImcMOVE(slot, new ImcTEMP(displayedFP)).accept(new StmtCanonizer(), null));
+		}
 		canonStmts.add(new ImcJUMP(exitLabel));
 		Vector<ImcStmt> linearStmts = linearize(canonStmts);
 		Chunks.codeChunks.add(new CodeChunk(frame, linearStmts, entryLabel, exitLabel));
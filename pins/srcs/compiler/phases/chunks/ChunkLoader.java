@@ -0,0 +1,488 @@
+/**
+ * @author sliva
+ */
+package compiler.phases.chunks;
+
+import java.util.*;
+import compiler.common.report.*;
+import compiler.data.layout.*;
+import compiler.data.imcode.*;
+import compiler.data.imcode.visitor.*;
+import compiler.data.chunk.*;
+import compiler.phases.chunks.LoadedChunk.*;
+
+/**
+ * Loads code chunks for execution by the interpreter.
+ *
+ * Registers are assigned to the temporary variables of all code chunks when the
+ * loader is constructed, while each code chunk is lowered only when it is
+ * loaded: temporary variables are mapped to registers of the function's
+ * register file, labels are resolved to offsets
+ * within the chunk, data labels to their addresses and call labels to the
+ * handlers of builtin functions (see {@link Builtins}) or the indices of the
+ * called chunks. Statements the interpreter cannot execute are
+ * loaded as invalid instructions so that an error is reported only if they are
+ * ever executed.
+ *
+ * @author sliva
+ */
+public class ChunkLoader {
+
+	/** The addresses of data labels. */
+	private final HashMap<Label, Long> dataLabels;
+
+	/** The indices of code chunks by their frame labels. */
+	private final HashMap<Label, Integer> callLabels;
+
+	/** The handlers of the builtin functions. */
+	private final Builtins.Builtin[] builtins;
+
+	/** The lowest name of a temporary variable used by any chunk. */
+	private final long tempBase;
+
+	/** The register of each temporary variable (indexed by its name relative to {@link #tempBase}). */
+	private final int[] tempRegs;
+
+	/** The code chunks. */
+	private final Vector<CodeChunk> codeChunks;
+
+	/** The number of registers of each function. */
+	private final int[] numRegs;
+
+	/**
+	 * Prepares code chunks for loading.
+	 *
+	 * @param dataLabels The addresses of data labels.
+	 * @param codeChunks The code chunks.
+	 */
+	public ChunkLoader(HashMap<Label, Long> dataLabels, Vector<CodeChunk> codeChunks) {
+		this(dataLabels, codeChunks, Builtins.handlers());
+	}
+
+	/**
+	 * Prepares code chunks for loading.
+	 *
+	 * @param dataLabels The addresses of data labels.
+	 * @param codeChunks The code chunks.
+	 * @param builtins   The handlers of the builtin functions (indexed by their
+	 *                   numbers, see {@link Builtins}).
+	 */
+	public ChunkLoader(HashMap<Label, Long> dataLabels, Vector<CodeChunk> codeChunks, Builtins.Builtin[] builtins) {
+		this.dataLabels = dataLabels;
+		this.builtins = builtins;
+		this.callLabels = new HashMap<Label, Integer>();
+		for (int index = 0; index < codeChunks.size(); index++)
+			callLabels.put(codeChunks.get(index).frame.label, index);
+
+		this.codeChunks = codeChunks;
+
+		// Assign registers to the temporary variables of each function.
+		HashMap<Temp, Integer> allTempRegs = new HashMap<Temp, Integer>();
+		this.numRegs = new int[codeChunks.size()];
+		long minTemp = Long.MAX_VALUE;
+		long maxTemp = Long.MIN_VALUE;
+		for (int index = 0; index < codeChunks.size(); index++) {
+			CodeChunk codeChunk = codeChunks.get(index);
+			LinkedHashSet<Temp> chunkTemps = new LinkedHashSet<Temp>();
+			chunkTemps.add(codeChunk.frame.FP);
+			chunkTemps.add(codeChunk.frame.RV);
+			for (ImcStmt stmt : codeChunk.stmts())
+				stmt.accept(new TempCollector(), chunkTemps);
+			int reg = 0;
+			for (Temp temp : chunkTemps) {
+				if (allTempRegs.put(temp, reg++) != null)
+					throw new Report.InternalError();
+				minTemp = Math.min(minTemp, temp.temp);
+				maxTemp = Math.max(maxTemp, temp.temp);
+			}
+			numRegs[index] = reg;
+		}
+		// Temporary variables are named by a counter shared by all compilations, so
+		// the table only spans the names used by this program.
+		this.tempBase = allTempRegs.isEmpty() ? 0 : minTemp;
+		this.tempRegs = new int[allTempRegs.isEmpty() ? 0 : (int) (maxTemp - minTemp + 1)];
+		Arrays.fill(this.tempRegs, -1);
+		for (Map.Entry<Temp, Integer> tempReg : allTempRegs.entrySet())
+			this.tempRegs[(int) (tempReg.getKey().temp - tempBase)] = tempReg.getValue();
+	}
+
+	/**
+	 * Returns the number of registers of a function.
+	 *
+	 * @param index The index of the code chunk.
+	 * @return The number of registers.
+	 */
+	public int numRegs(int index) {
+		return numRegs[index];
+	}
+
+	/**
+	 * Loads a code chunk, i.e., lowers its statements into instructions.
+	 *
+	 * @param index The index of the code chunk.
+	 * @return The loaded chunk.
+	 */
+	public LoadedChunk load(int index) {
+		CodeChunk codeChunk = codeChunks.get(index);
+		Vector<ImcStmt> stmts = codeChunk.stmts();
+		HashMap<Label, Integer> jumpLabels = new HashMap<Label, Integer>();
+		for (int stmtOffset = 0; stmtOffset < stmts.size(); stmtOffset++) {
+			if (stmts.get(stmtOffset) instanceof ImcLABEL)
+				jumpLabels.put(((ImcLABEL) stmts.get(stmtOffset)).label, stmtOffset);
+		}
+		Integer entry = jumpLabels.get(codeChunk.entryLabel);
+		if (entry == null)
+			throw new Report.InternalError();
+		StmtLoader stmtLoader = new StmtLoader(codeChunk, jumpLabels);
+		Instr[] instrs = new Instr[stmts.size()];
+		for (int stmtOffset = 0; stmtOffset < stmts.size(); stmtOffset++)
+			instrs[stmtOffset] = stmts.get(stmtOffset).accept(stmtLoader, null);
+		return new LoadedChunk(codeChunk, index, numRegs[index], reg(codeChunk.frame.FP), reg(codeChunk.frame.RV),
+				entry, instrs);
+	}
+
+	/**
+	 * Returns the loaded chunks (in the order of the code chunks).
+	 *
+	 * @return The loaded chunks.
+	 */
+	public LoadedChunk[] loadedChunks() {
+		LoadedChunk[] loadedChunks = new LoadedChunk[codeChunks.size()];
+		for (int index = 0; index < loadedChunks.length; index++)
+			loadedChunks[index] = load(index);
+		return loadedChunks;
+	}
+
+	/**
+	 * Returns the lowest name of a temporary variable used by any chunk, i.e.,
+	 * the name indexing the first element of {@link #tempRegs()}.
+	 *
+	 * @return The lowest name of a temporary variable.
+	 */
+	public long tempBase() {
+		return tempBase;
+	}
+
+	/**
+	 * Returns the register of each temporary variable indexed by its name
+	 * relative to {@link #tempBase()}, or {@code -1} for temporary variables not
+	 * used by any chunk.
+	 *
+	 * @return The registers of temporary variables.
+	 */
+	public int[] tempRegs() {
+		return tempRegs.clone();
+	}
+
+	private int reg(Temp temp) {
+		return tempRegs[(int) (temp.temp - tempBase)];
+	}
+
+	/**
+	 * Collects the temporary variables used by a statement or an expression.
+	 */
+	private class TempCollector implements ImcVisitor<Object, Set<Temp>> {
+
+		@Override
+		public Object visit(ImcBINOP imcBinop, Set<Temp> temps) {
+			imcBinop.fstExpr.accept(this, temps);
+			imcBinop.sndExpr.accept(this, temps);
+			return null;
+		}
+
+		@Override
+		public Object visit(ImcCALL imcCall, Set<Temp> temps) {
+			for (ImcExpr callArg : imcCall.args())
+				callArg.accept(this, temps);
+			return null;
+		}
+
+		@Override
+		public Object visit(ImcCJUMP imcCJump, Set<Temp> temps) {
+			imcCJump.cond.accept(this, temps);
+			return null;
+		}
+
+		@Override
+		public Object visit(ImcCONST imcConst, Set<Temp> temps) {
+			return null;
+		}
+
+		@Override
+		public Object visit(ImcESTMT imcEStmt, Set<Temp> temps) {
+			imcEStmt.expr.accept(this, temps);
+			return null;
+		}
+
+		@Override
+		public Object visit(ImcJUMP imcJump, Set<Temp> temps) {
+			return null;
+		}
+
+		@Override
+		public Object visit(ImcLABEL imcLabel, Set<Temp> temps) {
+			return null;
+		}
+
+		@Override
+		public Object visit(ImcMEM imcMem, Set<Temp> temps) {
+			imcMem.addr.accept(this, temps);
+			return null;
+		}
+
+		@Override
+		public Object visit(ImcMOVE imcMove, Set<Temp> temps) {
+			imcMove.dst.accept(this, temps);
+			imcMove.src.accept(this, temps);
+			return null;
+		}
+
+		@Override
+		public Object visit(ImcNAME imcName, Set<Temp> temps) {
+			return null;
+		}
+
+		@Override
+		public Object visit(ImcSEXPR imcSExpr, Set<Temp> temps) {
+			imcSExpr.stmt.accept(this, temps);
+			imcSExpr.expr.accept(this, temps);
+			return null;
+		}
+
+		@Override
+		public Object visit(ImcSTMTS imcStmts, Set<Temp> temps) {
+			for (ImcStmt stmt : imcStmts.stmts())
+				stmt.accept(this, temps);
+			return null;
+		}
+
+		@Override
+		public Object visit(ImcTEMP imcTemp, Set<Temp> temps) {
+			temps.add(imcTemp.temp);
+			return null;
+		}
+
+		@Override
+		public Object visit(ImcUNOP imcUnop, Set<Temp> temps) {
+			imcUnop.subExpr.accept(this, temps);
+			return null;
+		}
+
+	}
+
+	/**
+	 * Lowers a statement of a code chunk into an instruction.
+	 */
+	private class StmtLoader implements ImcVisitor<Instr, Object> {
+
+		private final CodeChunk codeChunk;
+
+		private final HashMap<Label, Integer> jumpLabels;
+
+		private final ExprLoader exprLoader = new ExprLoader();
+
+		StmtLoader(CodeChunk codeChunk, HashMap<Label, Integer> jumpLabels) {
+			this.codeChunk = codeChunk;
+			this.jumpLabels = jumpLabels;
+		}
+
+		private Integer target(Label label) {
+			if (label == codeChunk.exitLabel)
+				return LoadedChunk.EXIT;
+			return jumpLabels.get(label);
+		}
+
+		private Instr invalid(ImcStmt stmt) {
+			return new Instr(Instr.INVALID, stmt, null, -1, null, null, 0, 0, null, LoadedChunk.NO_CHUNK, null);
+		}
+
+		private Instr call(int opcode, ImcStmt stmt, Temp temp, Expr dst, ImcCALL imcCall) {
+			Vector<ImcExpr> callArgs = imcCall.args();
+			Expr[] args = new Expr[callArgs.size()];
+			for (int arg = 0; arg < args.length; arg++)
+				args[arg] = callArgs.get(arg).accept(exprLoader, null);
+			Integer callee = callLabels.get(imcCall.label);
+			int builtin = (callee == null) ? Builtins.number(imcCall.label.name) : -1;
+			return new Instr(opcode, stmt, temp, (temp == null) ? -1 : reg(temp), dst, null, 0, 0,
+					(builtin < 0) || (builtin >= builtins.length) ? null : builtins[builtin], (callee == null) ? LoadedChunk.NO_CHUNK : callee, args);
+		}
+
+		@Override
+		public Instr visit(ImcCJUMP imcCJump, Object arg) {
+			Integer posTarget = target(imcCJump.posLabel);
+			Integer negTarget = target(imcCJump.negLabel);
+			if ((posTarget == null) || (negTarget == null))
+				return invalid(imcCJump);
+			return new Instr(Instr.CJUMP, imcCJump, null, -1, null, imcCJump.cond.accept(exprLoader, null), posTarget,
+					negTarget, null, LoadedChunk.NO_CHUNK, null);
+		}
+
+		@Override
+		public Instr visit(ImcESTMT imcEStmt, Object arg) {
+			if (imcEStmt.expr instanceof ImcCALL)
+				return call(Instr.CALL, imcEStmt, null, null, (ImcCALL) imcEStmt.expr);
+			return new Instr(Instr.EVAL, imcEStmt, null, -1, null, imcEStmt.expr.accept(exprLoader, null), 0, 0, null,
+					LoadedChunk.NO_CHUNK, null);
+		}
+
+		@Override
+		public Instr visit(ImcJUMP imcJump, Object arg) {
+			Integer target = target(imcJump.label);
+			if (target == null)
+				return invalid(imcJump);
+			return new Instr(Instr.JUMP, imcJump, null, -1, null, null, target, 0, null, LoadedChunk.NO_CHUNK, null);
+		}
+
+		@Override
+		public Instr visit(ImcLABEL imcLabel, Object arg) {
+			return new Instr(Instr.LABEL, imcLabel, null, -1, null, null, 0, 0, null, LoadedChunk.NO_CHUNK, null);
+		}
+
+		@Override
+		public Instr visit(ImcMOVE imcMove, Object arg) {
+			if (imcMove.dst instanceof ImcMEM) {
+				Expr dst = ((ImcMEM) imcMove.dst).addr.accept(exprLoader, null);
+				if (imcMove.src instanceof ImcCALL)
+					return call(Instr.CALL_MEM, imcMove, null, dst, (ImcCALL) imcMove.src);
+				return new Instr(Instr.MOVE_MEM, imcMove, null, -1, dst, imcMove.src.accept(exprLoader, null), 0, 0,
+						null, LoadedChunk.NO_CHUNK, null);
+			}
+			if (imcMove.dst instanceof ImcTEMP) {
+				Temp temp = ((ImcTEMP) imcMove.dst).temp;
+				if (imcMove.src instanceof ImcCALL)
+					return call(Instr.CALL_TEMP, imcMove, temp, null, (ImcCALL) imcMove.src);
+				return new Instr(Instr.MOVE_TEMP, imcMove, temp, reg(temp), null, imcMove.src.accept(exprLoader, null),
+						0, 0, null, LoadedChunk.NO_CHUNK, null);
+			}
+			return invalid(imcMove);
+		}
+
+		@Override
+		public Instr visit(ImcSTMTS imcStmts, Object arg) {
+			return invalid(imcStmts);
+		}
+
+	}
+
+	/**
+	 * Lowers an expression.
+	 */
+	private class ExprLoader implements ImcVisitor<Expr, Object> {
+
+		private Expr invalid() {
+			return new Expr(Expr.INVALID, 0, null, -1, null, null);
+		}
+
+		@Override
+		public Expr visit(ImcBINOP imcBinop, Object arg) {
+			int oper;
+			switch (imcBinop.oper) {
+			case IOR:
+				oper = Expr.IOR;
+				break;
+			case XOR:
+				oper = Expr.XOR;
+				break;
+			case AND:
+				oper = Expr.AND;
+				break;
+			case EQU:
+				oper = Expr.EQU;
+				break;
+			case NEQ:
+				oper = Expr.NEQ;
+				break;
+			case LTH:
+				oper = Expr.LTH;
+				break;
+			case GTH:
+				oper = Expr.GTH;
+				break;
+			case LEQ:
+				oper = Expr.LEQ;
+				break;
+			case GEQ:
+				oper = Expr.GEQ;
+				break;
+			case ADD:
+				oper = Expr.ADD;
+				break;
+			case SUB:
+				oper = Expr.SUB;
+				break;
+			case MUL:
+				oper = Expr.MUL;
+				break;
+			case DIV:
+				oper = Expr.DIV;
+				break;
+			case MOD:
+				oper = Expr.MOD;
+				break;
+			default:
+				return invalid();
+			}
+			Expr fstExpr = imcBinop.fstExpr.accept(this, null);
+			Expr sndExpr = imcBinop.sndExpr.accept(this, null);
+			// Fold address arithmetic on constants, e.g., the addresses of display slots.
+			if ((fstExpr.oper == Expr.CONST) && (sndExpr.oper == Expr.CONST)) {
+				if (oper == Expr.ADD)
+					return new Expr(Expr.CONST, fstExpr.value + sndExpr.value, null, -1, null, null);
+				if (oper == Expr.SUB)
+					return new Expr(Expr.CONST, fstExpr.value - sndExpr.value, null, -1, null, null);
+			}
+			return new Expr(oper, 0, null, -1, fstExpr, sndExpr);
+		}
+
+		@Override
+		public Expr visit(ImcCALL imcCall, Object arg) {
+			return invalid();
+		}
+
+		@Override
+		public Expr visit(ImcCONST imcConst, Object arg) {
+			return new Expr(Expr.CONST, imcConst.value, null, -1, null, null);
+		}
+
+		@Override
+		public Expr visit(ImcMEM imcMem, Object arg) {
+			return new Expr(Expr.MEM, 0, null, -1, imcMem.addr.accept(this, null), null);
+		}
+
+		@Override
+		public Expr visit(ImcNAME imcName, Object arg) {
+			Long address = dataLabels.get(imcName.label);
+			if (address == null)
+				return invalid();
+			return new Expr(Expr.CONST, address, null, -1, null, null);
+		}
+
+		@Override
+		public Expr visit(ImcSEXPR imcSExpr, Object arg) {
+			return invalid();
+		}
+
+		@Override
+		public Expr visit(ImcTEMP imcTemp, Object arg) {
+			return new Expr(Expr.TEMP, 0, imcTemp.temp, reg(imcTemp.temp), null, null);
+		}
+
+		@Override
+		public Expr visit(ImcUNOP imcUnop, Object arg) {
+			int oper;
+			switch (imcUnop.oper) {
+			case NOT:
+				oper = Expr.NOT;
+				break;
+			case NEG:
+				oper = Expr.NEG;
+				break;
+			default:
+				return invalid();
+			}
+			return new Expr(oper, 0, null, -1, imcUnop.subExpr.accept(this, null), null);
+		}
+
+	}
+
+}
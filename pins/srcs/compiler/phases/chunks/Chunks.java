@@ -18,6 +18,8 @@ public class Chunks extends Phase {
 
 	public Chunks() {
 		super("chunks");
+		dataChunks = new Vector<DataChunk>();
+		codeChunks = new Vector<CodeChunk>();
 	}
 
 	public void log() {
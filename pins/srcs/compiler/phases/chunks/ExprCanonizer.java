@@ -14,13 +14,24 @@ import compiler.data.imcode.visitor.*;
 public class ExprCanonizer implements ImcVisitor<ImcExpr, Vector<ImcStmt>> {
 	
 	public ImcExpr visit(ImcBINOP imcBinop, Vector<ImcStmt> stmts) {
+		// Constant operands (constants and names) stay in place.
 		ImcExpr fstExpr = imcBinop.fstExpr.accept(this, stmts);
-		Temp temp1 = new Temp();
-		stmts.add(new ImcMOVE(new ImcTEMP(temp1), fstExpr));
+		if (!isConst(fstExpr)) {
+			Temp temp1 = new Temp();
+			stmts.add(new ImcMOVE(new ImcTEMP(temp1), fstExpr));
+			fstExpr = new ImcTEMP(temp1);
+		}
 		ImcExpr sndExpr = imcBinop.sndExpr.accept(this, stmts);
-		Temp temp2 = new Temp();
-		stmts.add(new ImcMOVE(new ImcTEMP(temp2), sndExpr));
-		return new ImcBINOP(imcBinop.oper, new ImcTEMP(temp1), new ImcTEMP(temp2));
+		if (!isConst(sndExpr)) {
+			Temp temp2 = new Temp();
+			stmts.add(new ImcMOVE(new ImcTEMP(temp2), sndExpr));
+			sndExpr = new ImcTEMP(temp2);
+		}
+		return new ImcBINOP(imcBinop.oper, fstExpr, sndExpr);
+	}
+
+	private static boolean isConst(ImcExpr expr) {
+		return (expr instanceof ImcCONST) || (expr instanceof ImcNAME);
 	}
 	
 	public ImcExpr visit(ImcCALL imcCall, Vector<ImcStmt> stmts) {
@@ -0,0 +1,237 @@
+/**
+ * @author sliva
+ */
+package compiler.phases.chunks;
+
+import java.util.*;
+
+/**
+ * A conservative mark-sweep garbage collector of the heap.
+ *
+ * Any aligned word that holds an address within an allocated block keeps the
+ * block alive. The roots are the data chunks, the stack between {@code SP} and
+ * the initial stack top, and the registers of all functions being executed,
+ * which the execution engines report by calling {@link #enter(long[])} and
+ * {@link #leave()}. A collection is triggered by {@code _new} once the number
+ * of bytes allocated since the last collection exceeds both the threshold and
+ * the number of bytes that survived the last collection.
+ *
+ * @author sliva
+ */
+public class GarbageCollector {
+
+	/** The default number of allocated bytes that triggers a collection. */
+	public static final long THRESHOLD = 1 << 20;
+
+	/** The memory. */
+	private final Memory memory;
+
+	/** The heap allocator. */
+	private final HeapAllocator heap;
+
+	/** The address the data chunks start at. */
+	private final long dataBase;
+
+	/** The address the heap starts at (and the data chunks end at). */
+	private final long heapBase;
+
+	/** The initial value of the stack pointer. */
+	private final long stackTop;
+
+	/** The number of allocated bytes that triggers a collection. */
+	private final long threshold;
+
+	/** The registers of the functions being executed. */
+	private long[][] regFiles = new long[64][];
+
+	/** The number of functions being executed. */
+	private int depth = 0;
+
+	/** The addresses of the allocated blocks (during a collection). */
+	private long[] blocks;
+
+	/** The sizes of the allocated blocks (during a collection). */
+	private long[] sizes;
+
+	/** The mark bits of the allocated blocks (during a collection). */
+	private long[] marks;
+
+	/** The numbers of the marked blocks that have not been scanned yet. */
+	private int[] pending;
+
+	/** The number of the marked blocks that have not been scanned yet. */
+	private int numPending;
+
+	/** The number of bytes allocated before the last collection. */
+	private long lastAllocatedBytes = 0;
+
+	/** The number of bytes that survived the last collection. */
+	private long survivedBytes = 0;
+
+	/** The number of collections. */
+	private long numCollections = 0;
+
+	/** The total time spent collecting (in nanoseconds). */
+	private long totalPause = 0;
+
+	/** The longest collection (in nanoseconds). */
+	private long maxPause = 0;
+
+	/** The number of bytes reclaimed. */
+	private long reclaimedBytes = 0;
+
+	/**
+	 * Constructs a new garbage collector.
+	 *
+	 * @param memory    The memory.
+	 * @param heap      The heap allocator.
+	 * @param dataBase  The address the data chunks start at.
+	 * @param heapBase  The address the heap starts at.
+	 * @param stackTop  The initial value of the stack pointer.
+	 * @param threshold The number of allocated bytes that triggers a collection.
+	 */
+	public GarbageCollector(Memory memory, HeapAllocator heap, long dataBase, long heapBase, long stackTop,
+			long threshold) {
+		this.memory = memory;
+		this.heap = heap;
+		this.dataBase = dataBase;
+		this.heapBase = heapBase;
+		this.stackTop = stackTop;
+		this.threshold = threshold;
+	}
+
+	/**
+	 * Creates a garbage collector if garbage collection has been enabled by the
+	 * command line argument {@code --gc}; the threshold is set by
+	 * {@code --gc-threshold}.
+	 *
+	 * @param memory   The memory.
+	 * @param heap     The heap allocator.
+	 * @param dataBase The address the data chunks start at.
+	 * @param heapBase The address the heap starts at.
+	 * @param stackTop The initial value of the stack pointer.
+	 * @return The garbage collector or {@code null} if garbage collection has not
+	 *         been enabled.
+	 */
+	public static GarbageCollector create(Memory memory, HeapAllocator heap, long dataBase, long heapBase,
+			long stackTop) {
+		if (compiler.Main.cmdLineArgValue("--gc") == null)
+			return null;
+		String threshold = compiler.Main.cmdLineArgValue("--gc-threshold");
+		return new GarbageCollector(memory, heap, dataBase, heapBase, stackTop,
+				(threshold == null) ? THRESHOLD : Long.parseLong(threshold));
+	}
+
+	/**
+	 * Registers the registers of a function that starts executing.
+	 *
+	 * @param regs The registers.
+	 */
+	public void enter(long[] regs) {
+		if (depth == regFiles.length)
+			regFiles = Arrays.copyOf(regFiles, 2 * depth);
+		regFiles[depth++] = regs;
+	}
+
+	/**
+	 * Unregisters the registers of the function that has most recently started
+	 * executing.
+	 */
+	public void leave() {
+		regFiles[--depth] = null;
+	}
+
+	/**
+	 * Collects garbage if enough bytes have been allocated since the last
+	 * collection.
+	 *
+	 * @param sp The value of the stack pointer.
+	 */
+	public void collectIfDue(long sp) {
+		long allocatedBytes = heap.allocatedBytes() - lastAllocatedBytes;
+		if ((allocatedBytes >= threshold) && (allocatedBytes >= survivedBytes))
+			collect(sp);
+	}
+
+	/**
+	 * Collects garbage.
+	 *
+	 * The allocated blocks are numbered by their addresses for the duration of a
+	 * collection, so that the mark bits are kept in a bitmap over the block
+	 * numbers and the blocks waiting to be scanned in an array of block numbers.
+	 *
+	 * @param sp The value of the stack pointer.
+	 */
+	public void collect(long sp) {
+		long start = System.nanoTime();
+
+		blocks = heap.blocks();
+		sizes = new long[blocks.length];
+		for (int index = 0; index < blocks.length; index++)
+			sizes[index] = heap.blockSize(blocks[index]);
+		marks = new long[(blocks.length + 63) >>> 6];
+		pending = new int[blocks.length];
+		numPending = 0;
+
+		// Mark.
+		for (int frame = 0; frame < depth; frame++)
+			for (long value : regFiles[frame])
+				mark(value);
+		scan(dataBase, heapBase);
+		scan(sp, stackTop);
+		while (numPending > 0) {
+			int index = pending[--numPending];
+			scan(blocks[index], blocks[index] + sizes[index]);
+		}
+
+		// Sweep.
+		for (int index = 0; index < blocks.length; index++) {
+			if ((marks[index >>> 6] & (1L << index)) == 0) {
+				reclaimedBytes += sizes[index];
+				heap.free(blocks[index]);
+			}
+		}
+		blocks = null;
+		sizes = null;
+		marks = null;
+		pending = null;
+
+		lastAllocatedBytes = heap.allocatedBytes();
+		survivedBytes = heap.liveBytes();
+		long pause = System.nanoTime() - start;
+		numCollections++;
+		totalPause += pause;
+		maxPause = Math.max(maxPause, pause);
+	}
+
+	private void scan(long begAddr, long endAddr) {
+		for (long addr = (begAddr + 7) & ~7L; addr + 8 <= endAddr; addr += 8)
+			if (memory.isInitialized(addr))
+				mark(memory.load(addr));
+	}
+
+	private void mark(long value) {
+		if ((value < heapBase) || (value >= heap.top()))
+			return;
+		int index = Arrays.binarySearch(blocks, value);
+		if (index < 0)
+			index = -index - 2;
+		if ((index < 0) || (value >= blocks[index] + sizes[index]))
+			return;
+		if ((marks[index >>> 6] & (1L << index)) != 0)
+			return;
+		marks[index >>> 6] |= 1L << index;
+		pending[numPending++] = index;
+	}
+
+	/**
+	 * Returns the collection statistics.
+	 *
+	 * @return The collection statistics.
+	 */
+	public String statistics() {
+		return String.format("GC: %d collections, %d bytes reclaimed, %.3f ms total pause, %.3f ms max pause",
+				numCollections, reclaimedBytes, totalPause / 1e6, maxPause / 1e6);
+	}
+
+}
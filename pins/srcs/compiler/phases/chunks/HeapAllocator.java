@@ -0,0 +1,351 @@
+/**
+ * @author sliva
+ */
+package compiler.phases.chunks;
+
+import java.io.*;
+import java.util.*;
+import compiler.common.report.*;
+
+/**
+ * The heap allocator behind the builtin functions {@code _new} and
+ * {@code _del} (called as {@code alloc} and {@code free} by programs, see
+ * {@link Builtins}).
+ *
+ * The heap starts right after the data chunks and grows up. Blocks are
+ * multiples of 8 bytes. Free blocks of up to {@link #MAX_SMALL} bytes are kept
+ * in segregated free lists, one per size, while larger free blocks are kept in
+ * a best-fit index ordered by size; a block larger than needed is split. Freed
+ * blocks are coalesced with free neighbours, and a free block at the top of the
+ * heap is returned to the unallocated part of the heap. Block sizes are kept by
+ * the allocator itself, not in headers stored in the program's memory.
+ *
+ * @author sliva
+ */
+public class HeapAllocator {
+
+	/** The size of the largest block kept in a segregated free list. */
+	public static final long MAX_SMALL = 512;
+
+	/** The address the heap starts at. */
+	private final long heapBase;
+
+	/** The top of the heap, i.e., the address of its unallocated part. */
+	private long top;
+
+	/** The sizes of allocated blocks by their addresses. */
+	private final TreeMap<Long, Long> allocated = new TreeMap<Long, Long>();
+
+	/** The sizes of free blocks by their addresses. */
+	private final TreeMap<Long, Long> freeBlocks = new TreeMap<Long, Long>();
+
+	/** The addresses of small free blocks, one list per size. */
+	private final ArrayList<TreeSet<Long>> smallLists = new ArrayList<TreeSet<Long>>();
+
+	/** The addresses of large free blocks by their sizes. */
+	private final TreeMap<Long, TreeSet<Long>> largeBlocks = new TreeMap<Long, TreeSet<Long>>();
+
+	/** The number of bytes in allocated blocks. */
+	private long liveBytes = 0;
+
+	/** The largest number of bytes in allocated blocks ever. */
+	private long peakBytes = 0;
+
+	/** The number of bytes allocated so far. */
+	private long allocatedBytes = 0;
+
+	/** The number of allocations. */
+	private long numAllocs = 0;
+
+	/** The number of deallocations. */
+	private long numFrees = 0;
+
+	/**
+	 * Constructs a new heap allocator.
+	 *
+	 * @param heapBase The address the heap starts at.
+	 */
+	public HeapAllocator(long heapBase) {
+		this.heapBase = heapBase;
+		this.top = heapBase;
+		for (long size = 8; size <= MAX_SMALL; size += 8)
+			smallLists.add(new TreeSet<Long>());
+	}
+
+	/**
+	 * Returns a copy of this heap allocator.
+	 *
+	 * @return The copy.
+	 */
+	public HeapAllocator copy() {
+		HeapAllocator copy = new HeapAllocator(heapBase);
+		copy.top = top;
+		copy.allocated.putAll(allocated);
+		for (Map.Entry<Long, Long> block : freeBlocks.entrySet())
+			copy.addFree(block.getKey(), block.getValue());
+		copy.liveBytes = liveBytes;
+		copy.peakBytes = peakBytes;
+		copy.allocatedBytes = allocatedBytes;
+		copy.numAllocs = numAllocs;
+		copy.numFrees = numFrees;
+		return copy;
+	}
+
+	/**
+	 * Writes the state of this heap allocator.
+	 *
+	 * @param stream The stream.
+	 * @throws IOException If the state cannot be written.
+	 */
+	public void write(DataOutputStream stream) throws IOException {
+		stream.writeLong(heapBase);
+		stream.writeLong(top);
+		for (TreeMap<Long, Long> blocks : Arrays.asList(allocated, freeBlocks)) {
+			stream.writeInt(blocks.size());
+			for (Map.Entry<Long, Long> block : blocks.entrySet()) {
+				stream.writeLong(block.getKey());
+				stream.writeLong(block.getValue());
+			}
+		}
+		for (long count : new long[] { liveBytes, peakBytes, allocatedBytes, numAllocs, numFrees })
+			stream.writeLong(count);
+	}
+
+	/**
+	 * Reads the state of a heap allocator written by
+	 * {@link #write(DataOutputStream)}.
+	 *
+	 * @param stream The stream.
+	 * @return The heap allocator.
+	 * @throws IOException If the state cannot be read.
+	 */
+	public static HeapAllocator read(DataInputStream stream) throws IOException {
+		HeapAllocator heap = new HeapAllocator(stream.readLong());
+		heap.top = stream.readLong();
+		for (int block = stream.readInt(); block > 0; block--)
+			heap.allocated.put(stream.readLong(), stream.readLong());
+		for (int block = stream.readInt(); block > 0; block--)
+			heap.addFree(stream.readLong(), stream.readLong());
+		heap.liveBytes = stream.readLong();
+		heap.peakBytes = stream.readLong();
+		heap.allocatedBytes = stream.readLong();
+		heap.numAllocs = stream.readLong();
+		heap.numFrees = stream.readLong();
+		return heap;
+	}
+
+	/**
+	 * Returns the address the heap starts at.
+	 *
+	 * @return The address the heap starts at.
+	 */
+	public long heapBase() {
+		return heapBase;
+	}
+
+	/**
+	 * Allocates a block.
+	 *
+	 * @param size The requested size in bytes.
+	 * @return The address of the block.
+	 */
+	public long allocate(long size) {
+		if (size < 0)
+			throw new Report.Error("INTERPRETER: Cannot allocate " + size + " bytes.");
+		long blockSize = Math.max(8, (size + 7) & ~7L);
+		long addr = takeFree(blockSize);
+		if (addr < 0) {
+			addr = top;
+			top += blockSize;
+		}
+		allocated.put(addr, blockSize);
+		liveBytes += blockSize;
+		allocatedBytes += blockSize;
+		peakBytes = Math.max(peakBytes, liveBytes);
+		numAllocs++;
+		return addr;
+	}
+
+	/**
+	 * Frees a block. Freeing the null pointer has no effect.
+	 *
+	 * @param addr The address of the block.
+	 */
+	public void free(long addr) {
+		if (addr == 0)
+			return;
+		Long size = allocated.remove(addr);
+		if (size == null)
+			throw new Report.Error("INTERPRETER: Freeing " + addr + " which is not an allocated block.");
+		liveBytes -= size;
+		numFrees++;
+
+		// Coalesce with the neighbours.
+		long blockAddr = addr;
+		long blockSize = size;
+		Map.Entry<Long, Long> prev = freeBlocks.floorEntry(addr);
+		if ((prev != null) && (prev.getKey() + prev.getValue() == addr)) {
+			removeFree(prev.getKey(), prev.getValue());
+			blockAddr = prev.getKey();
+			blockSize += prev.getValue();
+		}
+		Long next = freeBlocks.get(addr + size);
+		if (next != null) {
+			removeFree(addr + size, next);
+			blockSize += next;
+		}
+
+		if (blockAddr + blockSize == top)
+			top = blockAddr;
+		else
+			addFree(blockAddr, blockSize);
+	}
+
+	/** Takes a free block of at least the specified size, or returns -1. */
+	private long takeFree(long size) {
+		long addr = -1;
+		long blockSize = 0;
+		if (size <= MAX_SMALL) {
+			for (int list = (int) (size / 8) - 1; list < smallLists.size(); list++) {
+				if (!smallLists.get(list).isEmpty()) {
+					addr = smallLists.get(list).first();
+					blockSize = 8 * (list + 1);
+					break;
+				}
+			}
+		}
+		if (addr < 0) {
+			Map.Entry<Long, TreeSet<Long>> fit = largeBlocks.ceilingEntry(size);
+			if (fit == null)
+				return -1;
+			addr = fit.getValue().first();
+			blockSize = fit.getKey();
+		}
+		removeFree(addr, blockSize);
+		if (blockSize > size)
+			addFree(addr + size, blockSize - size);
+		return addr;
+	}
+
+	private void addFree(long addr, long size) {
+		freeBlocks.put(addr, size);
+		if (size <= MAX_SMALL)
+			smallLists.get((int) (size / 8) - 1).add(addr);
+		else
+			largeBlocks.computeIfAbsent(size, __ -> new TreeSet<Long>()).add(addr);
+	}
+
+	private void removeFree(long addr, long size) {
+		freeBlocks.remove(addr);
+		if (size <= MAX_SMALL)
+			smallLists.get((int) (size / 8) - 1).remove(addr);
+		else {
+			TreeSet<Long> blocks = largeBlocks.get(size);
+			blocks.remove(addr);
+			if (blocks.isEmpty())
+				largeBlocks.remove(size);
+		}
+	}
+
+	/**
+	 * Returns the top of the heap, i.e., the address of its unallocated part.
+	 *
+	 * @return The top of the heap.
+	 */
+	public long top() {
+		return top;
+	}
+
+	/**
+	 * Returns the allocated block containing the specified address.
+	 *
+	 * @param addr The address.
+	 * @return The address of the block or {@code -1} if the address is not
+	 *         within an allocated block.
+	 */
+	public long block(long addr) {
+		Map.Entry<Long, Long> block = allocated.floorEntry(addr);
+		if ((block == null) || (addr >= block.getKey() + block.getValue()))
+			return -1;
+		return block.getKey();
+	}
+
+	/**
+	 * Returns the size of an allocated block.
+	 *
+	 * @param block The address of the block.
+	 * @return The size of the block.
+	 */
+	public long blockSize(long block) {
+		return allocated.get(block);
+	}
+
+	/**
+	 * Returns the addresses of all allocated blocks.
+	 *
+	 * @return The addresses of all allocated blocks in increasing order.
+	 */
+	public long[] blocks() {
+		long[] blocks = new long[allocated.size()];
+		int index = 0;
+		for (long block : allocated.keySet())
+			blocks[index++] = block;
+		return blocks;
+	}
+
+	/**
+	 * Returns the number of bytes allocated so far (including freed blocks).
+	 *
+	 * @return The number of bytes allocated so far.
+	 */
+	public long allocatedBytes() {
+		return allocatedBytes;
+	}
+
+	/**
+	 * Returns the number of bytes in allocated blocks.
+	 *
+	 * @return The number of bytes in allocated blocks.
+	 */
+	public long liveBytes() {
+		return liveBytes;
+	}
+
+	/**
+	 * Returns the largest number of bytes in allocated blocks so far.
+	 *
+	 * @return The largest number of bytes in allocated blocks.
+	 */
+	public long peakBytes() {
+		return peakBytes;
+	}
+
+	/**
+	 * Returns the external fragmentation of the heap, i.e., the part of free
+	 * memory below the top of the heap that is not in the largest free block.
+	 *
+	 * @return The fragmentation between {@code 0.0} and {@code 1.0}.
+	 */
+	public double fragmentation() {
+		long freeBytes = top - heapBase - liveBytes;
+		if (freeBytes == 0)
+			return 0.0;
+		long largest = largeBlocks.isEmpty() ? 0 : largeBlocks.lastKey();
+		if (largest == 0)
+			for (int list = smallLists.size() - 1; (list >= 0) && (largest == 0); list--)
+				if (!smallLists.get(list).isEmpty())
+					largest = 8 * (list + 1);
+		return 1.0 - (double) largest / freeBytes;
+	}
+
+	/**
+	 * Returns the allocation statistics.
+	 *
+	 * @return The allocation statistics.
+	 */
+	public String statistics() {
+		return String.format("HEAP: %d allocs, %d frees, %d live bytes, %d peak bytes, %d heap bytes, %.1f%% fragmentation",
+				numAllocs, numFrees, liveBytes, peakBytes, top - heapBase, 100.0 * fragmentation());
+	}
+
+}
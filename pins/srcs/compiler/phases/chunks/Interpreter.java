@@ -9,170 +9,308 @@ import compiler.data.layout.*;
 import compiler.data.imcode.*;
 import compiler.data.imcode.visitor.*;
 import compiler.data.chunk.*;
+import compiler.phases.vm.*;
 
 /**
+ * The interpreter of code chunks.
+ *
+ * Functions are executed in three tiers. A function starts in the cold tier
+ * where its statements are interpreted by walking the intermediate code trees.
+ * Once the number of its calls plus the number of backward jumps it has taken
+ * reaches the warm threshold, the function is loaded (see {@link ChunkLoader})
+ * and executed in the pre-resolved form; once the count reaches the hot
+ * threshold, it is compiled for and executed by the virtual machine (see
+ * {@link VmCompiler}). Registers are laid out the same in all tiers, so a
+ * function running a loop is moved to a higher tier at the target of the
+ * backward jump that made it warm or hot. The thresholds are set by command
+ * line arguments {@code --tier-warm} and {@code --tier-hot}.
+ *
+ * The virtual machine does not track which registers have been initialized,
+ * so reading an uninitialized temporary variable is reported only in the cold
+ * and the warm tier; in the hot tier it reads zero, and once a function returns
+ * to the warm tier from the hot tier, all its registers count as initialized.
+ * Command line argument {@code --tiers=off} keeps all functions in the cold
+ * tier, so that all such reads are reported. Tracing and
+ * profiling are done by subclasses (see {@link TracingInterpreter} and
+ * {@link ProfilingInterpreter}) that keep all functions in the cold tier.
+ *
+ * Everything that does not change during an execution, including the functions
+ * loaded for the warm and compiled for the hot tier, is kept by the
+ * {@link LoadedProgram} and shared with other interpreters of the same
+ * program, while an interpreter itself holds only the state of a single
+ * execution. Hence one loaded program can be executed by many threads
+ * concurrently, each with an interpreter of its own.
+ *
+ * The entry function can take a snapshot of the execution by calling the
+ * builtin function {@code _snapshot} (see {@link Snapshot}); a function calling
+ * {@code _snapshot} is never moved to the hot tier.
+ *
  * @author sliva
  */
 public class Interpreter {
 
-	private boolean debug = false;
+	/** The default number of calls and backward jumps that make a function warm. */
+	public static final int WARM_THRESHOLD = 10;
 
-	private Random random;
+	/** The default number of calls and backward jumps that make a function hot. */
+	public static final int HOT_THRESHOLD = 1000;
 
-	private HashMap<Long, Byte> memory;
+	/** The register standing for the stack pointer (not used by any chunk). */
+	private static final Temp SP = new Temp();
 
-	private HashMap<Temp, Long> temps;
+	/** The register standing for the heap pointer (not used by any chunk). */
+	private static final Temp HP = new Temp();
 
-	private HashMap<Label, Long> dataLabels;
+	/** The program. */
+	private final LoadedProgram program;
 
-	private HashMap<Label, Integer> jumpLabels;
+	private Memory memory;
 
-	private HashMap<Label, CodeChunk> callLabels;
+	/** The output of the builtin functions. */
+	private RuntimeOutput output;
 
-	private Temp SP;
+	/** The heap allocator. */
+	private HeapAllocator heap;
+
+	/** The garbage collector ({@code null} if garbage collection is disabled). */
+	private GarbageCollector gc;
+
+	/** The meter ({@code null} if metering is disabled). */
+	private Meter meter;
+
+	/** The snapshot the execution resumes from ({@code null} if it starts at the beginning). */
+	private Snapshot snapshot;
+
+	/** Whether the next call of {@code _snapshot} resumes the execution from the snapshot. */
+	private boolean resuming = false;
+
+	/** The snapshot taken most recently ({@code null} if none has been taken). */
+	private Snapshot taken = null;
+
+	/** The name of the entry function. */
+	private String entryLabel;
+
+	/** The number of active calls in the cold and the warm tier. */
+	private int depth = 0;
+
+	/** The offset of the statement being executed in the cold or the warm tier. */
+	private int callOffset;
+
+	/** The registers, i.e., temporary variables, of the function being executed. */
+	private long[] regs;
+
+	/** The bitmap of initialized registers of the function being executed. */
+	private long[] regInits;
+
+	/** The lowest name of a temporary variable used by the program. */
+	private final long tempBase;
+
+	/** The register of each temporary variable (indexed by its name relative to {@link #tempBase}). */
+	private final int[] tempRegs;
+
+	/** The code chunks. */
+	private final Vector<CodeChunk> codeChunks;
+
+	/** The functions loaded by this interpreter ({@code null} for functions not in the warm tier yet). */
+	private final LoadedChunk[] loadedChunks;
+
+	/** The functions compiled by this interpreter ({@code null} for functions not in the hot tier yet). */
+	private final VmFunction[] compiledFunctions;
+
+	/** The virtual machine executing hot functions. */
+	private HotTier hotTier;
+
+	/** The number of calls of each function. */
+	private int[] invocations;
+
+	/** The number of backward jumps taken by each function. */
+	private int[] backEdges;
+
+	/** The number of calls and backward jumps that make a function warm. */
+	private int warmThreshold;
+
+	/** The number of calls and backward jumps that make a function hot. */
+	private int hotThreshold;
+
+	/** The value of the stack pointer. */
+	private long sp;
+
+	/** The value of the heap pointer (not used by any chunk). */
+	private long hp;
+
+	/** The state accessible to the builtin functions. */
+	private Builtins.Context context;
 
 	private Temp FP;
 
 	private Temp RV;
 
-	private Temp HP;
-
 	public Interpreter(Vector<DataChunk> dataChunks, Vector<CodeChunk> codeChunks) {
-		random = new Random();
+		this(dataChunks, codeChunks, new RuntimeOutput());
+	}
 
-		this.memory = new HashMap<Long, Byte>();
-		this.temps = new HashMap<Temp, Long>();
+	public Interpreter(Vector<DataChunk> dataChunks, Vector<CodeChunk> codeChunks, RuntimeOutput output) {
+		this(dataChunks, codeChunks, output, null);
+	}
 
-		SP = new Temp();
-		tempST(SP, 0xFFFFFFFFFFFFFFF0l);
-		HP = new Temp();
-		tempST(HP, 0x2000000000000000l);
+	/**
+	 * Constructs a new interpreter of a program that is loaded for this
+	 * interpreter only. The input is selected by the command line argument
+	 * {@code --runtime-in}.
+	 *
+	 * @param dataChunks The data chunks.
+	 * @param codeChunks The code chunks.
+	 * @param output     The output of the builtin functions.
+	 * @param snapshot   The snapshot the execution resumes from ({@code null} if
+	 *                   it starts at the beginning).
+	 */
+	public Interpreter(Vector<DataChunk> dataChunks, Vector<CodeChunk> codeChunks, RuntimeOutput output,
+			Snapshot snapshot) {
+		this(new LoadedProgram(dataChunks, codeChunks), RuntimeInput.create(), output, snapshot);
+	}
 
-		this.dataLabels = new HashMap<Label, Long>();
-		for (DataChunk dataChunk : dataChunks) {
-			if (debug) {
-				System.out.printf("### %s @ %d\n", dataChunk.label.name, tempLD(HP, false));
-			}
-			this.dataLabels.put(dataChunk.label, tempLD(HP, false));
-			tempST(HP, tempLD(HP, false) + dataChunk.size, true);
-		}
-		if (debug)
-			System.out.printf("###\n");
-
-		this.jumpLabels = new HashMap<Label, Integer>();
-		this.callLabels = new HashMap<Label, CodeChunk>();
-		for (CodeChunk codeChunk : codeChunks) {
-			this.callLabels.put(codeChunk.frame.label, codeChunk);
-			Vector<ImcStmt> stmts = codeChunk.stmts();
-			for (int stmtOffset = 0; stmtOffset < stmts.size(); stmtOffset++) {
-				if (stmts.get(stmtOffset) instanceof ImcLABEL)
-					jumpLabels.put(((ImcLABEL) stmts.get(stmtOffset)).label, stmtOffset);
+	/**
+	 * Constructs a new interpreter of a loaded program. Interpreters of the same
+	 * program can be constructed and run by different threads concurrently; each
+	 * interpreter itself must be run by one thread at a time.
+	 *
+	 * @param program  The program.
+	 * @param input    The input of the builtin functions.
+	 * @param output   The output of the builtin functions.
+	 * @param snapshot The snapshot the execution resumes from ({@code null} if it
+	 *                 starts at the beginning).
+	 */
+	public Interpreter(LoadedProgram program, RuntimeInput input, RuntimeOutput output, Snapshot snapshot) {
+		this.program = program;
+		this.codeChunks = program.codeChunks;
+		this.tempBase = program.tempBase;
+		this.tempRegs = program.tempRegs;
+		this.memory = (snapshot == null) ? new Memory() : snapshot.memory();
+		this.output = output;
+		this.regs = new long[0];
+		this.regInits = new long[0];
+		this.sp = 0xFFFFFFFFFFFFFFF0l;
+		this.hp = program.initHP;
+
+		if (snapshot == null)
+			for (int chunk = 0; chunk < program.zeroedData.length; chunk += 2)
+				memory.zero(program.zeroedData[chunk], program.zeroedData[chunk + 1]);
+		this.heap = (snapshot == null) ? new HeapAllocator(hp) : snapshot.heap();
+		if ((heap.heapBase() != hp) || ((snapshot != null) && (snapshot.numFunctions != codeChunks.size())))
+			throw new Report.Error("The snapshot has been taken by a different program.");
+		this.snapshot = snapshot;
+		this.gc = GarbageCollector.create(memory, heap, LoadedProgram.DATA_BASE, hp, sp);
+		this.meter = Meter.create();
+		this.context = new Builtins.Context(memory, heap, output, input, gc) {
+			@Override
+			public void snapshot() {
+				takeSnapshot();
 			}
-		}
+		};
+
+		this.loadedChunks = new LoadedChunk[codeChunks.size()];
+		this.compiledFunctions = new VmFunction[codeChunks.size()];
+		this.hotTier = new HotTier(context, meter);
+		this.invocations = new int[codeChunks.size()];
+		this.backEdges = new int[codeChunks.size()];
+		this.warmThreshold = threshold("--tier-warm", WARM_THRESHOLD);
+		this.hotThreshold = threshold("--tier-hot", HOT_THRESHOLD);
+		if ("off".equals(compiler.Main.cmdLineArgValue("--tiers")))
+			disableTiers();
 	}
 
-	private void memST(Long address, Long value) {
-		memST(address, value, debug);
+	private int threshold(String cmdLineArgName, int defaultValue) {
+		String value = compiler.Main.cmdLineArgValue(cmdLineArgName);
+		return (value == null) ? defaultValue : Integer.parseInt(value);
 	}
 
-	private void memST(Long address, Long value, boolean debug) {
-		if (debug)
-			System.out.printf("### [%d] <- %d\n", address, value);
-		for (int b = 0; b <= 7; b++) {
-			long longval = value % 0x100;
-			byte byteval = (byte) longval;
-			memory.put(address + b, byteval);
-			value = value >> 8;
-		}
+	/**
+	 * Disables the warm and the hot tier, i.e., all functions are executed by
+	 * walking their intermediate code trees.
+	 */
+	protected final void disableTiers() {
+		warmThreshold = Integer.MAX_VALUE;
+		hotThreshold = Integer.MAX_VALUE;
 	}
 
-	private Long memLD(Long address) {
-		return memLD(address, debug);
+	/**
+	 * Returns the address of a data chunk.
+	 *
+	 * @param label The label of the data chunk.
+	 * @return The address of the data chunk.
+	 */
+	protected final long dataAddress(Label label) {
+		return program.dataLabels.get(label);
 	}
 
-	private Long memLD(Long address, boolean debug) {
-		Long value = 0L;
-		for (int b = 7; b >= 0; b--) {
-			Byte byteval = memory.get(address + b);
-			if (byteval == null) {
-				byteval = (byte) (random.nextLong() / 0x100);
-				throw new Report.Error("INTERPRETER: Uninitialized memory location " + (address + b) + ".");
-			}
-			long longval = (long) byteval;
-			value = (value * 0x100) + (longval < 0 ? longval + 0x100 : longval);
-		}
-		if (debug)
-			System.out.printf("### %d <- [%d]\n", value, address);
-		return value;
+	/**
+	 * Returns the name of a temporary variable: {@code SP}, {@code FP},
+	 * {@code RV}, {@code HP} or {@code T} followed by its number.
+	 *
+	 * @param temp The temporary variable.
+	 * @return The name of the temporary variable.
+	 */
+	protected final String tempName(Temp temp) {
+		if (temp == SP)
+			return "SP";
+		if (temp == FP)
+			return "FP";
+		if (temp == RV)
+			return "RV";
+		if (temp == HP)
+			return "HP";
+		return "T" + temp.temp;
 	}
 
-	private void tempST(Temp temp, Long value) {
-		tempST(temp, value, debug);
+	/** Stores a value to the memory (in the cold tier). */
+	protected void memST(long address, long value) {
+		memory.store(address, value);
 	}
 
-	private void tempST(Temp temp, Long value, boolean debug) {
-		temps.put(temp, value);
-		if (debug) {
-			if (temp == SP) {
-				System.out.printf("### SP <- %d\n", value);
-				return;
-			}
-			if (temp == FP) {
-				System.out.printf("### FP <- %d\n", value);
-				return;
-			}
-			if (temp == RV) {
-				System.out.printf("### RV <- %d\n", value);
-				return;
-			}
-			if (temp == HP) {
-				System.out.printf("### HP <- %d\n", value);
-				return;
-			}
-			System.out.printf("### T%d <- %d\n", temp.temp, value);
-			return;
-		}
+	/** Loads a value from the memory (in the cold tier). */
+	protected long memLD(long address) {
+		return memory.load(address);
 	}
 
-	private Long tempLD(Temp temp) {
-		return tempLD(temp, debug);
+	/** Stores a value to a temporary variable (in the cold tier). */
+	protected void tempST(Temp temp, long value) {
+		if (temp == SP)
+			sp = value;
+		else if (temp == HP)
+			hp = value;
+		else {
+			int reg = tempReg(temp);
+			regs[reg] = value;
+			regInits[reg >>> 6] |= 1L << reg;
+		}
 	}
 
-	private Long tempLD(Temp temp, boolean debug) {
-		Long value = temps.get(temp);
-		if (value == null) {
-			value = random.nextLong();
+	/** Loads a value from a temporary variable (in the cold tier). */
+	protected long tempLD(Temp temp) {
+		if (temp == SP)
+			return sp;
+		if (temp == HP)
+			return hp;
+		int reg = tempReg(temp);
+		if ((regInits[reg >>> 6] & (1L << reg)) == 0)
 			throw new Report.Error("Uninitialized temporary variable T" + temp.temp + ".");
-		}
-		if (debug) {
-			if (temp == SP) {
-				System.out.printf("### %d <- SP\n", value);
-				return value;
-			}
-			if (temp == FP) {
-				System.out.printf("### %d <- FP\n", value);
-				return value;
-			}
-			if (temp == RV) {
-				System.out.printf("### %d <- RV\n", value);
-				return value;
-			}
-			if (temp == HP) {
-				System.out.printf("### %d <- HP\n", value);
-				return value;
-			}
-			System.out.printf("### %d <- T%d\n", value, temp.temp);
-			return value;
-		}
-		return value;
+		return regs[reg];
+	}
+
+	private int tempReg(Temp temp) {
+		long name = temp.temp - tempBase;
+		int reg = ((name >= 0) && (name < tempRegs.length)) ? tempRegs[(int) name] : -1;
+		if ((reg < 0) || (reg >= regs.length))
+			throw new Report.InternalError();
+		return reg;
 	}
 
 	private class ExprInterpreter implements ImcVisitor<Long, Object> {
 
 		@Override
 		public Long visit(ImcBINOP imcBinop, Object arg) {
-			Long fstExpr = imcBinop.fstExpr.accept(this, null);
-			Long sndExpr = imcBinop.sndExpr.accept(this, null);
+			long fstExpr = imcBinop.fstExpr.accept(this, null);
+			long sndExpr = imcBinop.sndExpr.accept(this, null);
 			switch (imcBinop.oper) {
 			case IOR:
 				return (fstExpr != 0) | (sndExpr != 0) ? 1L : 0L;
@@ -223,7 +361,7 @@ public class Interpreter {
 
 		@Override
 		public Long visit(ImcNAME imcName, Object arg) {
-			return dataLabels.get(imcName.label);
+			return program.dataLabels.get(imcName.label);
 		}
 
 		@Override
@@ -254,18 +392,14 @@ public class Interpreter {
 
 		@Override
 		public Label visit(ImcCJUMP imcCJump, Object arg) {
-			if (debug)
-				System.out.println(imcCJump);
 			Long cond = imcCJump.cond.accept(new ExprInterpreter(), null);
 			return (cond != 0) ? imcCJump.posLabel : imcCJump.negLabel;
 		}
 
 		@Override
 		public Label visit(ImcESTMT imcEStmt, Object arg) {
-			if (debug)
-				System.out.println(imcEStmt);
 			if (imcEStmt.expr instanceof ImcCALL) {
-				call((ImcCALL) imcEStmt.expr);
+				call((ImcCALL) imcEStmt.expr, (LoadedProgram.Call) arg);
 				return null;
 			}
 			imcEStmt.expr.accept(new ExprInterpreter(), null);
@@ -274,27 +408,21 @@ public class Interpreter {
 
 		@Override
 		public Label visit(ImcJUMP imcJump, Object arg) {
-			if (debug)
-				System.out.println(imcJump);
 			return imcJump.label;
 		}
 
 		@Override
 		public Label visit(ImcLABEL imcLabel, Object arg) {
-			if (debug)
-				System.out.println(imcLabel);
 			return null;
 		}
 
 		@Override
 		public Label visit(ImcMOVE imcMove, Object arg) {
-			if (debug)
-				System.out.println(imcMove);
 			if (imcMove.dst instanceof ImcMEM) {
 				Long dst = ((ImcMEM) (imcMove.dst)).addr.accept(new ExprInterpreter(), null);
 				Long src;
 				if (imcMove.src instanceof ImcCALL) {
-					call((ImcCALL) imcMove.src);
+					call((ImcCALL) imcMove.src, (LoadedProgram.Call) arg);
 					src = memLD(tempLD(SP));
 				} else
 					src = imcMove.src.accept(new ExprInterpreter(), null);
@@ -305,7 +433,7 @@ public class Interpreter {
 				ImcTEMP dst = (ImcTEMP) (imcMove.dst);
 				Long src;
 				if (imcMove.src instanceof ImcCALL) {
-					call((ImcCALL) imcMove.src);
+					call((ImcCALL) imcMove.src, (LoadedProgram.Call) arg);
 					src = memLD(tempLD(SP));
 				} else
 					src = imcMove.src.accept(new ExprInterpreter(), null);
@@ -317,73 +445,328 @@ public class Interpreter {
 
 		@Override
 		public Label visit(ImcSTMTS imcStmts, Object arg) {
-			if (debug)
-				System.out.println(imcStmts);
 			throw new Report.InternalError();
 		}
 
-		private void call(ImcCALL imcCall) {
-			Long offset = 0L;
+		private void call(ImcCALL imcCall, LoadedProgram.Call call) {
+			long offset = 0;
 			for (ImcExpr callArg : imcCall.args()) {
-				Long callValue = callArg.accept(new ExprInterpreter(), null);
+				long callValue = callArg.accept(new ExprInterpreter(), null);
 				memST(tempLD(SP) + offset, callValue);
 				offset += 8;
 			}
-			if (imcCall.label.name.equals("_new")) {
-				Long size = memLD(tempLD(SP, false) + 1 * 8, false);
-				Long addr = tempLD(HP);
-				tempST(HP, addr + size);
-				memST(tempLD(SP), addr, false);
-				return;
+			Interpreter.this.call(call.builtin, call.callee);
+		}
+
+	}
+
+	/**
+	 * Calls a builtin function or a function of the program once the arguments
+	 * have been stored.
+	 *
+	 * @param builtin The handler of the builtin function ({@code null} if none).
+	 * @param callee  The index of the function or {@link LoadedChunk#NO_CHUNK}.
+	 */
+	private void call(Builtins.Builtin builtin, int callee) {
+		if (builtin != null) {
+			context.sp = sp;
+			builtin.call(context);
+			return;
+		}
+		if (callee == LoadedChunk.NO_CHUNK)
+			throw new Report.InternalError();
+		funCall(callee);
+	}
+
+	/**
+	 * Takes a snapshot of the execution (the builtin function {@code _snapshot}).
+	 */
+	private void takeSnapshot() {
+		if (resuming) {
+			resuming = false;
+			context.result(1);
+			return;
+		}
+		if (depth != 1)
+			throw new Report.Error("INTERPRETER: Only the entry function can take a snapshot.");
+		taken = new Snapshot(entryLabel, codeChunks.size(), callOffset, regs.clone(), regInits.clone(), memory.copy(),
+				heap.copy());
+		if (compiler.Main.cmdLineArgValue("--snapshot") != null)
+			taken.write(compiler.Main.cmdLineArgValue("--snapshot"));
+		context.result(0);
+	}
+
+	private long eval(LoadedChunk.Expr expr) {
+		switch (expr.oper) {
+		case LoadedChunk.Expr.CONST:
+			return expr.value;
+		case LoadedChunk.Expr.TEMP: {
+			int reg = expr.reg;
+			if ((regInits[reg >>> 6] & (1L << reg)) == 0)
+				throw new Report.Error("Uninitialized temporary variable T" + expr.temp.temp + ".");
+			return regs[reg];
+		}
+		case LoadedChunk.Expr.MEM:
+			return memory.load(eval(expr.fstExpr));
+		case LoadedChunk.Expr.NOT:
+			return (eval(expr.fstExpr) == 0) ? 1 : 0;
+		case LoadedChunk.Expr.NEG:
+			return -eval(expr.fstExpr);
+		case LoadedChunk.Expr.IOR:
+			return ((eval(expr.fstExpr) != 0) | (eval(expr.sndExpr) != 0)) ? 1 : 0;
+		case LoadedChunk.Expr.XOR:
+			return ((eval(expr.fstExpr) != 0) ^ (eval(expr.sndExpr) != 0)) ? 1 : 0;
+		case LoadedChunk.Expr.AND:
+			return ((eval(expr.fstExpr) != 0) & (eval(expr.sndExpr) != 0)) ? 1 : 0;
+		case LoadedChunk.Expr.EQU:
+			return (eval(expr.fstExpr) == eval(expr.sndExpr)) ? 1 : 0;
+		case LoadedChunk.Expr.NEQ:
+			return (eval(expr.fstExpr) != eval(expr.sndExpr)) ? 1 : 0;
+		case LoadedChunk.Expr.LTH:
+			return (eval(expr.fstExpr) < eval(expr.sndExpr)) ? 1 : 0;
+		case LoadedChunk.Expr.GTH:
+			return (eval(expr.fstExpr) > eval(expr.sndExpr)) ? 1 : 0;
+		case LoadedChunk.Expr.LEQ:
+			return (eval(expr.fstExpr) <= eval(expr.sndExpr)) ? 1 : 0;
+		case LoadedChunk.Expr.GEQ:
+			return (eval(expr.fstExpr) >= eval(expr.sndExpr)) ? 1 : 0;
+		case LoadedChunk.Expr.ADD:
+			return eval(expr.fstExpr) + eval(expr.sndExpr);
+		case LoadedChunk.Expr.SUB:
+			return eval(expr.fstExpr) - eval(expr.sndExpr);
+		case LoadedChunk.Expr.MUL:
+			return eval(expr.fstExpr) * eval(expr.sndExpr);
+		case LoadedChunk.Expr.DIV:
+			return eval(expr.fstExpr) / eval(expr.sndExpr);
+		case LoadedChunk.Expr.MOD:
+			return eval(expr.fstExpr) % eval(expr.sndExpr);
+		}
+		throw new Report.InternalError();
+	}
+
+	private void regST(int reg, long value) {
+		regs[reg] = value;
+		regInits[reg >>> 6] |= 1L << reg;
+	}
+
+	private void call(LoadedChunk.Instr instr) {
+		LoadedChunk.Expr[] args = instr.args;
+		for (int arg = 0; arg < args.length; arg++)
+			memory.store(sp + 8 * arg, eval(args[arg]));
+		call(instr.builtin, instr.callee);
+	}
+
+	/**
+	 * Executes the body of a loaded chunk starting at the specified instruction.
+	 * If the function gets hot, the execution continues in the hot tier.
+	 */
+	private void execute(LoadedChunk chunk, int pc) {
+		LoadedChunk.Instr[] instrs = chunk.instrs;
+		while (pc != LoadedChunk.EXIT) {
+			LoadedChunk.Instr instr = instrs[pc];
+			switch (instr.opcode) {
+			case LoadedChunk.Instr.LABEL:
+				pc++;
+				break;
+			case LoadedChunk.Instr.JUMP:
+				if (meter != null)
+					meter.block();
+				if ((instr.target != LoadedChunk.EXIT) && (instr.target <= pc) && backEdge(chunk.index, hotThreshold)
+						&& !program.snapshotting[chunk.index]) {
+					resumeHot(chunk.index, instr.target);
+					return;
+				}
+				pc = instr.target;
+				break;
+			case LoadedChunk.Instr.CJUMP: {
+				if (meter != null)
+					meter.block();
+				int target = (eval(instr.src) != 0) ? instr.target : instr.altTarget;
+				if ((target != LoadedChunk.EXIT) && (target <= pc) && backEdge(chunk.index, hotThreshold)
+						&& !program.snapshotting[chunk.index]) {
+					resumeHot(chunk.index, target);
+					return;
+				}
+				pc = target;
+				break;
 			}
-			if (imcCall.label.name.equals("_del")) {
-				return;
+			case LoadedChunk.Instr.MOVE_TEMP:
+				regST(instr.reg, eval(instr.src));
+				pc++;
+				break;
+			case LoadedChunk.Instr.MOVE_MEM: {
+				long dst = eval(instr.dst);
+				memory.store(dst, eval(instr.src));
+				pc++;
+				break;
 			}
-			if (imcCall.label.name.equals("_putInt")) {
-				Long i = memLD(tempLD(SP, false) + 1 * 8, false);
-				System.out.printf("%d", i);
-				return;
+			case LoadedChunk.Instr.CALL:
+				callOffset = pc;
+				call(instr);
+				pc++;
+				break;
+			case LoadedChunk.Instr.CALL_TEMP:
+				callOffset = pc;
+				call(instr);
+				regST(instr.reg, memory.load(sp));
+				pc++;
+				break;
+			case LoadedChunk.Instr.CALL_MEM: {
+				long dst = eval(instr.dst);
+				callOffset = pc;
+				call(instr);
+				memory.store(dst, memory.load(sp));
+				pc++;
+				break;
 			}
-			if (imcCall.label.name.equals("_putChar")) {
-				Long c = memLD(tempLD(SP, false) + 1 * 8, false);
-				System.out.printf("%c", (char) ((long) c) % 0x100);
-				return;
+			case LoadedChunk.Instr.EVAL:
+				eval(instr.src);
+				pc++;
+				break;
+			default:
+				throw new Report.InternalError();
 			}
-			if (imcCall.label.name.equals("_putString")) {
-				Long addr = memLD(tempLD(SP, false) + 1 * 8, false);
-				do {
-					long c = memLD(addr, false);
-					addr += 8;
-					if (c == 0)
-						break;
-					System.out.printf("%c", (char) c);
-				} while (true);
-				return;
+		}
+	}
+
+	/**
+	 * Interprets the body of a function by walking its intermediate code trees
+	 * starting at the specified statement. If the function gets warm, the
+	 * execution continues in the warm tier.
+	 */
+	private void interpret(int index, int stmtOffset) {
+		CodeChunk codeChunk = codeChunks.get(index);
+		ImcStmt[] stmts = program.stmts[index];
+		Label label = null;
+
+		while (label != codeChunk.exitLabel) {
+			if (label != null) {
+				if (meter != null)
+					meter.block();
+				Integer offset = program.jumpLabels.get(label);
+				if (offset == null)
+					throw new Report.InternalError();
+				if ((offset < stmtOffset) && backEdge(index, warmThreshold)) {
+					if (loadedChunks[index] == null)
+						loadedChunks[index] = program.load(index);
+					execute(loadedChunks[index], offset);
+					return;
+				}
+				stmtOffset = offset;
 			}
-			funCall(imcCall.label);
+
+			callOffset = stmtOffset;
+			label = interpret(index, stmtOffset, stmts[stmtOffset]);
+
+			stmtOffset += 1;
 		}
+	}
+
+	/**
+	 * Interprets a statement (in the cold tier).
+	 *
+	 * @param index      The index of the function.
+	 * @param stmtOffset The offset of the statement.
+	 * @param stmt       The statement.
+	 * @return The label of the jump target or {@code null} if the execution
+	 *         continues with the next statement.
+	 */
+	protected Label interpret(int index, int stmtOffset, ImcStmt stmt) {
+		return stmt.accept(new StmtInterpreter(), program.calls[index][stmtOffset]);
+	}
+
+	/**
+	 * Counts a backward jump taken by a function.
+	 *
+	 * @return {@code true} if the function has reached the specified threshold.
+	 */
+	private boolean backEdge(int index, int threshold) {
+		return ++backEdges[index] + invocations[index] >= threshold;
+	}
+
+	/**
+	 * Continues the execution of the function being executed in the hot tier.
+	 *
+	 * @param index The index of the function.
+	 * @param pc    The statement to continue at.
+	 */
+	private void resumeHot(int index, int pc) {
+		VmFunction function = compile(index);
+		long[] hotRegs = Arrays.copyOf(regs, function.numRegs);
+		if (gc != null)
+			gc.enter(hotRegs);
+		hotTier.resume(function, hotRegs, pc);
+		if (gc != null)
+			gc.leave();
+		System.arraycopy(hotRegs, 0, regs, 0, regs.length);
+		// The hot tier does not track initialized registers (see --tiers=off).
+		Arrays.fill(regInits, -1L);
+	}
 
+	private VmFunction compile(int index) {
+		if (compiledFunctions[index] == null)
+			compiledFunctions[index] = program.compile(index);
+		return compiledFunctions[index];
 	}
 
 	public void funCall(Label entryLabel) {
+		Integer index = program.callLabels.get(entryLabel);
+		if (index == null)
+			throw new Report.InternalError();
+		funCall(index);
+	}
 
-		HashMap<Temp, Long> storedTemps;
-		Temp storedFP = null;
-		Temp storedRV = null;
+	/**
+	 * Calls a function of the program.
+	 *
+	 * @param index The index of the function.
+	 */
+	protected void funCall(int index) {
+
+		// Select the tier.
+		if (compiledFunctions[index] == null) {
+			int count = ++invocations[index] + backEdges[index];
+			if ((count >= hotThreshold) && !program.snapshotting[index])
+				compile(index);
+			else if ((count >= warmThreshold) && (loadedChunks[index] == null))
+				loadedChunks[index] = program.load(index);
+		}
+		if (compiledFunctions[index] != null) {
+			hotTier.enter(compiledFunctions[index]);
+			return;
+		}
+		invoke(index, false);
+	}
 
-		CodeChunk chunk = callLabels.get(entryLabel);
-		Frame frame = chunk.frame;
-		Vector<ImcStmt> stmts = chunk.stmts();
-		int stmtOffset;
+	/**
+	 * Executes a function in the cold or the warm tier.
+	 *
+	 * @param index  The index of the function.
+	 * @param resume Whether the function resumes the execution from the snapshot.
+	 */
+	private void invoke(int index, boolean resume) {
+		long[] storedRegs;
+		long[] storedRegInits;
+		long storedSP;
+		Temp storedFP = FP;
+		Temp storedRV = RV;
+
+		Frame frame = codeChunks.get(index).frame;
+		int numRegs = program.chunkLoader.numRegs(index);
 
 		/* PROLOGUE */
 		{
-			if (debug)
-				System.out.printf("###\n### CALL: %s\n", entryLabel.name);
-
 			// Store registers and FP.
-			storedTemps = temps;
-			temps = new HashMap<Temp, Long>(temps);
+			storedRegs = regs;
+			storedRegInits = regInits;
+			storedSP = sp;
+			regs = resume ? snapshot.regs.clone() : new long[numRegs];
+			regInits = resume ? snapshot.regInits.clone() : new long[(numRegs + 63) >>> 6];
+			depth++;
+			if (gc != null)
+				gc.enter(regs);
+			if (meter != null)
+				meter.enter();
 			// Store RA.
 			// Create a stack frame.
 			FP = frame.FP;
@@ -391,34 +774,16 @@ public class Interpreter {
 			tempST(frame.FP, tempLD(SP));
 			tempST(SP, tempLD(SP) - frame.size);
 			// Jump to the body.
-			stmtOffset = jumpLabels.get(chunk.entryLabel);
 		}
 
 		/* BODY */
-		{
-			int pc = 0;
-			Label label = null;
-
-			while (label != chunk.exitLabel) {
-				if (debug) {
-					pc++;
-					System.out.printf("### %s (%d):\n", chunk.frame.label.name, pc);
-					if (pc == 1000000)
-						break;
-				}
-
-				if (label != null) {
-					Integer offset = jumpLabels.get(label);
-					if (offset == null)
-						throw new Report.InternalError();
-					stmtOffset = offset;
-				}
-
-				label = stmts.get(stmtOffset).accept(new StmtInterpreter(), null);
-
-				stmtOffset += 1;
-			}
-		}
+		if (resume) {
+			resuming = true;
+			interpret(index, snapshot.stmtOffset);
+		} else if (loadedChunks[index] != null)
+			execute(loadedChunks[index], loadedChunks[index].entry);
+		else
+			interpret(index, program.jumpLabels.get(codeChunks.get(index).entryLabel));
 
 		/* EPILOGUE */
 		{
@@ -427,28 +792,115 @@ public class Interpreter {
 			// Destroy a stack frame.
 			tempST(SP, tempLD(SP) + frame.size);
 			// Restore registers and FP.
+			if (gc != null)
+				gc.leave();
+			if (meter != null)
+				meter.leave();
+			depth--;
 			FP = storedFP;
 			RV = storedRV;
-			Long hp = tempLD(HP);
-			temps = storedTemps;
-			tempST(HP, hp);
+			regs = storedRegs;
+			regInits = storedRegInits;
+			sp = storedSP;
 			// Restore RA.
 			// Return.
-
-			if (debug)
-				System.out.printf("### RETURN: %s\n###\n", entryLabel.name);
 		}
 
 	}
 
+	/**
+	 * Returns the meter of the execution.
+	 *
+	 * @return The meter or {@code null} if metering is disabled.
+	 */
+	public Meter meter() {
+		return meter;
+	}
+
+	/**
+	 * Returns the snapshot taken most recently by the program. Any number of
+	 * interpreters can resume the execution from it.
+	 *
+	 * @return The snapshot or {@code null} if none has been taken.
+	 */
+	public Snapshot snapshot() {
+		return taken;
+	}
+
+	/**
+	 * Executes a program, or resumes its execution from the snapshot the
+	 * interpreter has been constructed with.
+	 *
+	 * @param entryLabel The name of the entry function.
+	 * @return The exit code.
+	 */
 	public long run(String entryLabel) {
-		for (Label label : callLabels.keySet()) {
-			if (label.name.equals(entryLabel)) {
-				funCall(label);
+		if ((snapshot != null) && !snapshot.entryLabel.equals(entryLabel))
+			throw new Report.Error("The snapshot has been taken by function '" + snapshot.entryLabel + "'.");
+		for (int index = 0; index < codeChunks.size(); index++) {
+			if (codeChunks.get(index).frame.label.name.equals(entryLabel)) {
+				if ((snapshot != null) && (snapshot.regs.length != program.chunkLoader.numRegs(index)))
+					throw new Report.Error("The snapshot has been taken by a different program.");
+				this.entryLabel = entryLabel;
+				if (meter != null)
+					meter.start();
+				try {
+					if (snapshot != null) {
+						invocations[index]++;
+						invoke(index, true);
+					} else
+						funCall(index);
+				} catch (Builtins.Exit __) {
+					return __.code;
+				} finally {
+					output.flush();
+					if (compiler.Main.cmdLineArgValue("--heap-stats") != null) {
+						Report.info(heap.statistics());
+						if (gc != null)
+							Report.info(gc.statistics());
+					}
+				}
 				return memLD(tempLD(SP));
 			}
 		}
 		throw new Report.InternalError();
 	}
 
+	/**
+	 * The virtual machine executing hot functions. It shares the memory with the
+	 * interpreter and routes calls of functions that are not hot back to it.
+	 */
+	private class HotTier extends VmInterpreter {
+
+		HotTier(Builtins.Context context, Meter meter) {
+			super(context, meter);
+		}
+
+		/** Calls a hot function. */
+		void enter(VmFunction function) {
+			sp = Interpreter.this.sp;
+			call(function);
+			Interpreter.this.sp = sp;
+		}
+
+		/** Continues the execution of a function at the specified statement. */
+		void resume(VmFunction function, long[] regs, int stmt) {
+			sp = Interpreter.this.sp;
+			execute(function, regs, function.stmtOffset(stmt));
+			Interpreter.this.sp = sp;
+		}
+
+		@Override
+		protected void call(int index) {
+			if (compiledFunctions[index] != null) {
+				call(compiledFunctions[index]);
+				return;
+			}
+			Interpreter.this.sp = sp;
+			funCall(index);
+			sp = Interpreter.this.sp;
+		}
+
+	}
+
 }
@@ -0,0 +1,219 @@
+/**
+ * @author sliva
+ */
+package compiler.phases.chunks;
+
+import compiler.data.layout.*;
+import compiler.data.imcode.*;
+import compiler.data.chunk.*;
+
+/**
+ * A code chunk loaded for execution by the interpreter.
+ *
+ * The statements of a code chunk are lowered into a flat array of
+ * instructions, one instruction per statement, where all labels, temporary
+ * variables and data labels have already been resolved: jump targets are
+ * offsets within the array, temporary variables are registers of the
+ * function's register file, data labels are addresses and call targets are
+ * either handlers of builtin functions or indices of loaded chunks. Loaded
+ * chunks are immutable.
+ *
+ * @author sliva
+ */
+public final class LoadedChunk {
+
+	/** The jump target denoting the function's exit label. */
+	public static final int EXIT = -1;
+
+	/** The call target denoting a function that is not a loaded chunk. */
+	public static final int NO_CHUNK = -1;
+
+	/** The code chunk. */
+	public final CodeChunk chunk;
+
+	/** The frame of the function. */
+	public final Frame frame;
+
+	/** The index of this chunk among all loaded chunks. */
+	public final int index;
+
+	/** The number of registers of the function. */
+	public final int numRegs;
+
+	/** The register holding the frame pointer. */
+	public final int regFP;
+
+	/** The register holding the return value. */
+	public final int regRV;
+
+	/** The offset of the function's body entry label. */
+	public final int entry;
+
+	/** The instructions. */
+	final Instr[] instrs;
+
+	LoadedChunk(CodeChunk chunk, int index, int numRegs, int regFP, int regRV, int entry, Instr[] instrs) {
+		this.chunk = chunk;
+		this.frame = chunk.frame;
+		this.index = index;
+		this.numRegs = numRegs;
+		this.regFP = regFP;
+		this.regRV = regRV;
+		this.entry = entry;
+		this.instrs = instrs;
+	}
+
+	/**
+	 * Returns the number of instructions.
+	 *
+	 * @return The number of instructions.
+	 */
+	public int numInstrs() {
+		return instrs.length;
+	}
+
+	/**
+	 * A loaded instruction.
+	 *
+	 * @author sliva
+	 */
+	static final class Instr {
+
+		/** A label (does nothing). */
+		static final int LABEL = 0;
+
+		/** An unconditional jump to {@link #target}. */
+		static final int JUMP = 1;
+
+		/** A jump to {@link #target} if {@link #src} is nonzero, else to {@link #altTarget}. */
+		static final int CJUMP = 2;
+
+		/** A move of {@link #src} to register {@link #reg}. */
+		static final int MOVE_TEMP = 3;
+
+		/** A move of {@link #src} to the memory at {@link #dst}. */
+		static final int MOVE_MEM = 4;
+
+		/** A call whose result is discarded. */
+		static final int CALL = 5;
+
+		/** A call whose result is moved to register {@link #reg}. */
+		static final int CALL_TEMP = 6;
+
+		/** A call whose result is moved to the memory at {@link #dst}. */
+		static final int CALL_MEM = 7;
+
+		/** An evaluation of {@link #src} whose result is discarded. */
+		static final int EVAL = 8;
+
+		/** A statement the interpreter cannot execute. */
+		static final int INVALID = 9;
+
+		/** The opcode. */
+		final int opcode;
+
+		/** The statement this instruction has been loaded from. */
+		final ImcStmt stmt;
+
+		/** The destination temporary variable. */
+		final Temp temp;
+
+		/** The destination register. */
+		final int reg;
+
+		/** The destination address. */
+		final Expr dst;
+
+		/** The source expression or the condition. */
+		final Expr src;
+
+		/** The jump target. */
+		final int target;
+
+		/** The alternative jump target. */
+		final int altTarget;
+
+		/** The handler of the called builtin function ({@code null} if none). */
+		final Builtins.Builtin builtin;
+
+		/** The index of the called chunk or {@link LoadedChunk#NO_CHUNK}. */
+		final int callee;
+
+		/** The call arguments. */
+		final Expr[] args;
+
+		Instr(int opcode, ImcStmt stmt, Temp temp, int reg, Expr dst, Expr src, int target, int altTarget,
+				Builtins.Builtin builtin, int callee, Expr[] args) {
+			this.opcode = opcode;
+			this.stmt = stmt;
+			this.temp = temp;
+			this.reg = reg;
+			this.dst = dst;
+			this.src = src;
+			this.target = target;
+			this.altTarget = altTarget;
+			this.builtin = builtin;
+			this.callee = callee;
+			this.args = args;
+		}
+
+	}
+
+	/**
+	 * A loaded expression.
+	 *
+	 * @author sliva
+	 */
+	static final class Expr {
+
+		static final int CONST = 0;
+		static final int TEMP = 1;
+		static final int MEM = 2;
+		static final int NOT = 3;
+		static final int NEG = 4;
+		static final int IOR = 5;
+		static final int XOR = 6;
+		static final int AND = 7;
+		static final int EQU = 8;
+		static final int NEQ = 9;
+		static final int LTH = 10;
+		static final int GTH = 11;
+		static final int LEQ = 12;
+		static final int GEQ = 13;
+		static final int ADD = 14;
+		static final int SUB = 15;
+		static final int MUL = 16;
+		static final int DIV = 17;
+		static final int MOD = 18;
+		static final int INVALID = 19;
+
+		/** The operator. */
+		final int oper;
+
+		/** The value of a constant (or of a resolved data label). */
+		final long value;
+
+		/** The temporary variable. */
+		final Temp temp;
+
+		/** The register of the temporary variable. */
+		final int reg;
+
+		/** The first (or the only) subexpression. */
+		final Expr fstExpr;
+
+		/** The second subexpression. */
+		final Expr sndExpr;
+
+		Expr(int oper, long value, Temp temp, int reg, Expr fstExpr, Expr sndExpr) {
+			this.oper = oper;
+			this.value = value;
+			this.temp = temp;
+			this.reg = reg;
+			this.fstExpr = fstExpr;
+			this.sndExpr = sndExpr;
+		}
+
+	}
+
+}
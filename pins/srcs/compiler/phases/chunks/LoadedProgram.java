@@ -0,0 +1,214 @@
+/**
+ * @author sliva
+ */
+package compiler.phases.chunks;
+
+import java.util.*;
+import compiler.data.layout.*;
+import compiler.data.imcode.*;
+import compiler.data.chunk.*;
+import compiler.phases.vm.*;
+
+/**
+ * A program loaded for execution by the interpreter.
+ *
+ * A loaded program holds everything the interpreter derives from the chunks of
+ * a program that does not change during an execution: the layout of the data
+ * chunks, the registers of temporary variables, the offsets of labels, the
+ * resolved calls, and the functions loaded for the warm tier (see
+ * {@link ChunkLoader}) and compiled for the hot tier (see {@link VmCompiler}).
+ * Functions are loaded and compiled when an execution first needs them and are
+ * shared by all executions afterwards. A loaded program is immutable apart
+ * from these caches and is thread-safe, so any number of interpreters can
+ * execute it concurrently, each with its own memory, registers, input and
+ * output (see {@link Interpreter#Interpreter(LoadedProgram, RuntimeInput, RuntimeOutput, Snapshot)}).
+ *
+ * @author sliva
+ */
+public final class LoadedProgram {
+
+	/** The address of the first data chunk. */
+	public static final long DATA_BASE = 0x2000000000000000l;
+
+	/** The data chunks. */
+	final Vector<DataChunk> dataChunks;
+
+	/** The code chunks. */
+	final Vector<CodeChunk> codeChunks;
+
+	/** The addresses of data labels. */
+	final HashMap<Label, Long> dataLabels;
+
+	/** The addresses and sizes of data chunks initialized with zeros (in pairs). */
+	final long[] zeroedData;
+
+	/** The value of the heap pointer after the data chunks have been laid out. */
+	final long initHP;
+
+	/** The offsets of labels within their code chunks. */
+	final HashMap<Label, Integer> jumpLabels;
+
+	/** The indices of code chunks by their frame labels. */
+	final HashMap<Label, Integer> callLabels;
+
+	/** The statements of each function. */
+	final ImcStmt[][] stmts;
+
+	/** The resolved call of each statement of each function ({@code null} if none). */
+	final Call[][] calls;
+
+	/** Whether each function calls {@code _snapshot}. */
+	final boolean[] snapshotting;
+
+	/** The loader of code chunks. */
+	final ChunkLoader chunkLoader;
+
+	/** The lowest name of a temporary variable used by any function. */
+	final long tempBase;
+
+	/** The register of each temporary variable (indexed by its name relative to {@link #tempBase}). */
+	final int[] tempRegs;
+
+	/** The loaded chunks ({@code null} for functions not loaded yet). */
+	private final LoadedChunk[] loadedChunks;
+
+	/** The compiled functions ({@code null} for functions not compiled yet). */
+	private final VmFunction[] compiledFunctions;
+
+	/** The compiler of hot functions (created when the first function gets hot). */
+	private VmCompiler vmCompiler = null;
+
+	/**
+	 * Loads a program.
+	 *
+	 * @param dataChunks The data chunks.
+	 * @param codeChunks The code chunks.
+	 */
+	public LoadedProgram(Vector<DataChunk> dataChunks, Vector<CodeChunk> codeChunks) {
+		this.dataChunks = new Vector<DataChunk>(dataChunks);
+		this.codeChunks = new Vector<CodeChunk>(codeChunks);
+
+		// Lay out the data chunks.
+		this.dataLabels = new HashMap<Label, Long>();
+		long hp = DATA_BASE;
+		Vector<Long> zeroedData = new Vector<Long>();
+		for (DataChunk dataChunk : dataChunks) {
+			dataLabels.put(dataChunk.label, hp);
+			if (dataChunk.zeroed) {
+				zeroedData.add(hp);
+				zeroedData.add(dataChunk.size);
+			}
+			hp = hp + dataChunk.size;
+		}
+		this.initHP = hp;
+		this.zeroedData = zeroedData.stream().mapToLong(Long::longValue).toArray();
+
+		Builtins.Builtin[] builtins = Builtins.handlers();
+		this.chunkLoader = new ChunkLoader(dataLabels, this.codeChunks, builtins);
+		this.tempBase = chunkLoader.tempBase();
+		this.tempRegs = chunkLoader.tempRegs();
+		this.loadedChunks = new LoadedChunk[codeChunks.size()];
+		this.compiledFunctions = new VmFunction[codeChunks.size()];
+
+		this.jumpLabels = new HashMap<Label, Integer>();
+		this.callLabels = new HashMap<Label, Integer>();
+		for (int index = 0; index < codeChunks.size(); index++)
+			this.callLabels.put(codeChunks.get(index).frame.label, index);
+
+		// Resolve all calls.
+		this.stmts = new ImcStmt[codeChunks.size()][];
+		this.calls = new Call[codeChunks.size()][];
+		this.snapshotting = new boolean[codeChunks.size()];
+		for (int index = 0; index < codeChunks.size(); index++) {
+			this.stmts[index] = codeChunks.get(index).stmts().toArray(new ImcStmt[0]);
+			calls[index] = new Call[stmts[index].length];
+			for (int stmtOffset = 0; stmtOffset < stmts[index].length; stmtOffset++) {
+				ImcStmt stmt = stmts[index][stmtOffset];
+				if (stmt instanceof ImcLABEL)
+					jumpLabels.put(((ImcLABEL) stmt).label, stmtOffset);
+				ImcExpr call = (stmt instanceof ImcESTMT) ? ((ImcESTMT) stmt).expr
+						: (stmt instanceof ImcMOVE) ? ((ImcMOVE) stmt).src : null;
+				if (call instanceof ImcCALL) {
+					Label label = ((ImcCALL) call).label;
+					Integer callee = callLabels.get(label);
+					int builtin = (callee == null) ? Builtins.number(label.name) : -1;
+					calls[index][stmtOffset] = new Call((builtin < 0) ? null : builtins[builtin],
+							(callee == null) ? LoadedChunk.NO_CHUNK : callee);
+					if ((builtin >= 0) && label.name.equals("_snapshot"))
+						snapshotting[index] = true;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns the number of functions.
+	 *
+	 * @return The number of functions.
+	 */
+	public int numFunctions() {
+		return codeChunks.size();
+	}
+
+	/**
+	 * Returns the index of a function.
+	 *
+	 * @param name The name of the function's label.
+	 * @return The index of the function or {@code -1} if there is no such
+	 *         function.
+	 */
+	public int index(String name) {
+		for (int index = 0; index < codeChunks.size(); index++)
+			if (codeChunks.get(index).frame.label.name.equals(name))
+				return index;
+		return -1;
+	}
+
+	/**
+	 * Returns a function loaded for the warm tier, loading it if no execution
+	 * has done so yet.
+	 *
+	 * @param index The index of the function.
+	 * @return The loaded chunk.
+	 */
+	synchronized LoadedChunk load(int index) {
+		if (loadedChunks[index] == null)
+			loadedChunks[index] = chunkLoader.load(index);
+		return loadedChunks[index];
+	}
+
+	/**
+	 * Returns a function compiled for the hot tier, compiling it if no execution
+	 * has done so yet.
+	 *
+	 * @param index The index of the function.
+	 * @return The compiled function.
+	 */
+	synchronized VmFunction compile(int index) {
+		if (compiledFunctions[index] == null) {
+			if (vmCompiler == null)
+				vmCompiler = new VmCompiler(dataChunks, codeChunks);
+			compiledFunctions[index] = vmCompiler.compile(index);
+		}
+		return compiledFunctions[index];
+	}
+
+	/**
+	 * A call resolved when the program is loaded.
+	 */
+	static final class Call {
+
+		/** The handler of the called builtin function ({@code null} if none). */
+		final Builtins.Builtin builtin;
+
+		/** The index of the called function or {@link LoadedChunk#NO_CHUNK}. */
+		final int callee;
+
+		Call(Builtins.Builtin builtin, int callee) {
+			this.builtin = builtin;
+			this.callee = callee;
+		}
+
+	}
+
+}
@@ -0,0 +1,462 @@
+/**
+ * @author sliva
+ */
+package compiler.phases.chunks;
+
+import java.io.*;
+import compiler.common.report.*;
+
+/**
+ * The memory of the interpreter.
+ *
+ * The 64-bit address space is divided into pages of {@link #PAGE_SIZE} bytes.
+ * Only pages that have been written to are allocated and they are kept in a
+ * sparse page table, so both the stack (growing down from
+ * {@code 0xFFFFFFFFFFFFFFF0}) and the heap (starting at
+ * {@code 0x2000000000000000}) cost memory proportional to the part actually
+ * used. Each page holds its contents as an array of little-endian 64-bit words
+ * and a bitmap with one bit per byte marking the bytes that have been
+ * initialized.
+ *
+ * A memory can be copied in time proportional to the number of its pages (see
+ * {@link #copy()}): the copy shares the pages with the original, and a shared
+ * page is copied by whichever memory writes to it first.
+ *
+ * @author sliva
+ */
+public class Memory {
+
+	/** The number of address bits selecting a byte within a page. */
+	public static final int PAGE_BITS = 12;
+
+	/** The size of a page in bytes. */
+	public static final int PAGE_SIZE = 1 << PAGE_BITS;
+
+	/** The mask selecting the offset within a page. */
+	private static final long PAGE_MASK = PAGE_SIZE - 1;
+
+	/** The key of an empty slot of the page table (no page number is this big). */
+	private static final long NO_PAGE = -1L;
+
+	/**
+	 * A page of memory.
+	 *
+	 * @author sliva
+	 */
+	private static class Page {
+
+		/** The contents of the page as little-endian 64-bit words. */
+		final long[] words;
+
+		/** The bitmap of initialized bytes, one bit per byte. */
+		final long[] inits;
+
+		/** The owner of the page, i.e., the only memory that may write to it. */
+		final Object owner;
+
+		Page(Object owner) {
+			this.words = new long[PAGE_SIZE >> 3];
+			this.inits = new long[PAGE_SIZE >> 6];
+			this.owner = owner;
+		}
+
+		Page(Page page, Object owner) {
+			this.words = page.words.clone();
+			this.inits = page.inits.clone();
+			this.owner = owner;
+		}
+
+	}
+
+	/** Page numbers of the page table (open addressing, linear probing). */
+	private long[] pageNums;
+
+	/** Pages of the page table. */
+	private Page[] pages;
+
+	/** The number of pages allocated. */
+	private int numPages;
+
+	/** The page number of the most recently accessed page. */
+	private long lastPageNum = NO_PAGE;
+
+	/** The most recently accessed page. */
+	private Page lastPage = null;
+
+	/** The owner of the pages this memory may write to without copying them. */
+	private Object owner = new Object();
+
+	/**
+	 * Constructs a new memory with no pages allocated.
+	 */
+	public Memory() {
+		pageNums = new long[64];
+		java.util.Arrays.fill(pageNums, NO_PAGE);
+		pages = new Page[64];
+		numPages = 0;
+	}
+
+	/**
+	 * Constructs a new memory sharing all pages with another memory.
+	 *
+	 * @param memory The memory.
+	 */
+	private Memory(Memory memory) {
+		pageNums = memory.pageNums.clone();
+		pages = memory.pages.clone();
+		numPages = memory.numPages;
+	}
+
+	/**
+	 * Returns a copy of this memory. All pages are shared by this memory and its
+	 * copy until either of them writes to them.
+	 *
+	 * @return The copy.
+	 */
+	public Memory copy() {
+		Memory copy = new Memory(this);
+		owner = new Object();
+		return copy;
+	}
+
+	/**
+	 * Returns the number of pages allocated.
+	 *
+	 * @return The number of pages allocated.
+	 */
+	public int numPages() {
+		return numPages;
+	}
+
+	/**
+	 * Initializes a block of memory with zeros.
+	 *
+	 * @param address The address of the block.
+	 * @param size    The size of the block in bytes.
+	 */
+	public void zero(long address, long size) {
+		fill(address, size, (byte) 0);
+	}
+
+	/**
+	 * Fills a block of memory with a byte. The block is filled page by page and
+	 * a whole word at a time wherever it is aligned.
+	 *
+	 * @param address The address of the block.
+	 * @param size    The size of the block in bytes.
+	 * @param value   The byte.
+	 */
+	public void fill(long address, long size, byte value) {
+		long pattern = (value & 0xFFL) * 0x0101010101010101L;
+		while ((size > 0) && ((address & 7) != 0)) {
+			storeByte(address++, value);
+			size--;
+		}
+		while (size >= 8) {
+			int offset = (int) (address & PAGE_MASK);
+			int length = (int) Math.min(size, PAGE_SIZE - offset) & ~7;
+			Page page = page(address >>> PAGE_BITS, true);
+			java.util.Arrays.fill(page.words, offset >>> 3, (offset + length) >>> 3, pattern);
+			setInits(page.inits, offset, offset + length);
+			address += length;
+			size -= length;
+		}
+		while (size > 0) {
+			storeByte(address++, value);
+			size--;
+		}
+	}
+
+	/**
+	 * Copies a block of memory to another, possibly overlapping, block. The
+	 * contents are copied page by page together with the information which bytes
+	 * have been initialized, so copying uninitialized bytes is not an error. If
+	 * both blocks are aligned, whole words are copied at a time.
+	 *
+	 * @param dstAddress The address of the destination block.
+	 * @param srcAddress The address of the source block.
+	 * @param size       The size of the blocks in bytes.
+	 */
+	public void move(long dstAddress, long srcAddress, long size) {
+		if ((size <= 0) || (dstAddress == srcAddress))
+			return;
+		// Copy backwards if the destination block starts within the source block.
+		boolean backward = Long.compareUnsigned(dstAddress - srcAddress, size) < 0;
+		for (long left = size; left > 0;) {
+			long dst;
+			long src;
+			int length;
+			if (backward) {
+				length = (int) Math.min(left,
+						Math.min(((dstAddress + left - 1) & PAGE_MASK) + 1, ((srcAddress + left - 1) & PAGE_MASK) + 1));
+				dst = dstAddress + left - length;
+				src = srcAddress + left - length;
+			} else {
+				dst = dstAddress + (size - left);
+				src = srcAddress + (size - left);
+				length = (int) Math.min(left,
+						Math.min(PAGE_SIZE - (dst & PAGE_MASK), PAGE_SIZE - (src & PAGE_MASK)));
+			}
+			move(dst, src, length, backward);
+			left -= length;
+		}
+	}
+
+	/**
+	 * Copies a block of memory within a single source and a single destination
+	 * page.
+	 */
+	private void move(long dst, long src, int length, boolean backward) {
+		Page dstPage = page(dst >>> PAGE_BITS, true);
+		Page srcPage = page(src >>> PAGE_BITS, false);
+		int dstOffset = (int) (dst & PAGE_MASK);
+		int srcOffset = (int) (src & PAGE_MASK);
+		if (srcPage == null) {
+			clearInits(dstPage.inits, dstOffset, dstOffset + length);
+			return;
+		}
+		if (((dstOffset | srcOffset | length) & 7) == 0) {
+			System.arraycopy(srcPage.words, srcOffset >>> 3, dstPage.words, dstOffset >>> 3, length >>> 3);
+			for (int step = 0; step < length; step += 8) {
+				int offset = backward ? length - 8 - step : step;
+				int srcWord = (srcOffset + offset) >>> 3;
+				int dstWord = (dstOffset + offset) >>> 3;
+				long inits = (srcPage.inits[srcWord >>> 3] >>> ((srcWord & 7) << 3)) & 0xFFL;
+				int shift = (dstWord & 7) << 3;
+				dstPage.inits[dstWord >>> 3] = (dstPage.inits[dstWord >>> 3] & ~(0xFFL << shift)) | (inits << shift);
+			}
+			return;
+		}
+		for (int step = 0; step < length; step++) {
+			int offset = backward ? length - 1 - step : step;
+			int srcByte = srcOffset + offset;
+			int dstByte = dstOffset + offset;
+			long value = (srcPage.words[srcByte >>> 3] >>> ((srcByte & 7) << 3)) & 0xFFL;
+			int shift = (dstByte & 7) << 3;
+			dstPage.words[dstByte >>> 3] = (dstPage.words[dstByte >>> 3] & ~(0xFFL << shift)) | (value << shift);
+			if ((srcPage.inits[srcByte >>> 6] & (1L << (srcByte & 63))) != 0)
+				dstPage.inits[dstByte >>> 6] |= 1L << (dstByte & 63);
+			else
+				dstPage.inits[dstByte >>> 6] &= ~(1L << (dstByte & 63));
+		}
+	}
+
+	/** Marks bytes {@code beg} (inclusive) to {@code end} (exclusive) of a page as initialized. */
+	private static void setInits(long[] inits, int beg, int end) {
+		for (int bit = beg; bit < end;) {
+			int next = Math.min(end, (bit | 63) + 1);
+			inits[bit >>> 6] |= (-1L >>> (64 - (next - bit))) << (bit & 63);
+			bit = next;
+		}
+	}
+
+	/** Marks bytes {@code beg} (inclusive) to {@code end} (exclusive) of a page as uninitialized. */
+	private static void clearInits(long[] inits, int beg, int end) {
+		for (int bit = beg; bit < end;) {
+			int next = Math.min(end, (bit | 63) + 1);
+			inits[bit >>> 6] &= ~((-1L >>> (64 - (next - bit))) << (bit & 63));
+			bit = next;
+		}
+	}
+
+	/**
+	 * Stores a 64-bit value.
+	 *
+	 * @param address The address of the least significant byte.
+	 * @param value   The value.
+	 */
+	public void store(long address, long value) {
+		if ((address & 7) == 0) {
+			Page page = page(address >>> PAGE_BITS, true);
+			int word = (int) (address & PAGE_MASK) >>> 3;
+			page.words[word] = value;
+			page.inits[word >>> 3] |= 0xFFL << ((word & 7) << 3);
+			return;
+		}
+		for (int b = 0; b <= 7; b++) {
+			storeByte(address + b, (byte) value);
+			value = value >> 8;
+		}
+	}
+
+	/**
+	 * Loads a 64-bit value.
+	 *
+	 * @param address The address of the least significant byte.
+	 * @return The value.
+	 */
+	public long load(long address) {
+		if ((address & 7) == 0) {
+			Page page = page(address >>> PAGE_BITS, false);
+			if (page == null)
+				throw uninitialized(address + 7);
+			int word = (int) (address & PAGE_MASK) >>> 3;
+			int inits = (int) (page.inits[word >>> 3] >>> ((word & 7) << 3)) & 0xFF;
+			if (inits != 0xFF)
+				throw uninitialized(address + 31 - Integer.numberOfLeadingZeros(~inits & 0xFF));
+			return page.words[word];
+		}
+		long value = 0;
+		for (int b = 7; b >= 0; b--)
+			value = (value << 8) | (loadByte(address + b) & 0xFFL);
+		return value;
+	}
+
+	/**
+	 * Stores a single byte.
+	 *
+	 * @param address The address.
+	 * @param value   The byte.
+	 */
+	public void storeByte(long address, byte value) {
+		Page page = page(address >>> PAGE_BITS, true);
+		int offset = (int) (address & PAGE_MASK);
+		int shift = (offset & 7) << 3;
+		page.words[offset >>> 3] = (page.words[offset >>> 3] & ~(0xFFL << shift)) | ((value & 0xFFL) << shift);
+		page.inits[offset >>> 6] |= 1L << (offset & 63);
+	}
+
+	/**
+	 * Loads a single byte.
+	 *
+	 * @param address The address.
+	 * @return The byte.
+	 */
+	public byte loadByte(long address) {
+		Page page = page(address >>> PAGE_BITS, false);
+		int offset = (int) (address & PAGE_MASK);
+		if ((page == null) || ((page.inits[offset >>> 6] & (1L << (offset & 63))) == 0))
+			throw uninitialized(address);
+		return (byte) (page.words[offset >>> 3] >>> ((offset & 7) << 3));
+	}
+
+	/**
+	 * Checks whether all eight bytes of a value have been initialized.
+	 *
+	 * @param address The address of the value.
+	 * @return {@code true} if a value can be loaded from the address.
+	 */
+	public boolean isInitialized(long address) {
+		if ((address & 7) == 0) {
+			Page page = page(address >>> PAGE_BITS, false);
+			int word = (int) (address & PAGE_MASK) >>> 3;
+			return (page != null) && ((int) (page.inits[word >>> 3] >>> ((word & 7) << 3)) & 0xFF) == 0xFF;
+		}
+		for (int b = 0; b < 8; b++) {
+			Page page = page((address + b) >>> PAGE_BITS, false);
+			int offset = (int) ((address + b) & PAGE_MASK);
+			if ((page == null) || ((page.inits[offset >>> 6] & (1L << (offset & 63))) == 0))
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Returns the page with the specified page number.
+	 *
+	 * @param pageNum  The page number.
+	 * @param allocate Whether the page is going to be written to: a missing page
+	 *                 is allocated and a shared page is copied.
+	 * @return The page or {@code null} if the page is missing and should not be
+	 *         allocated.
+	 */
+	private Page page(long pageNum, boolean allocate) {
+		if ((pageNum == lastPageNum) && (!allocate || (lastPage.owner == owner)))
+			return lastPage;
+		int mask = pageNums.length - 1;
+		int slot = hash(pageNum) & mask;
+		while (pageNums[slot] != NO_PAGE) {
+			if (pageNums[slot] == pageNum) {
+				if (allocate && (pages[slot].owner != owner))
+					pages[slot] = new Page(pages[slot], owner);
+				lastPageNum = pageNum;
+				lastPage = pages[slot];
+				return lastPage;
+			}
+			slot = (slot + 1) & mask;
+		}
+		if (!allocate)
+			return null;
+		Page page = new Page(owner);
+		pageNums[slot] = pageNum;
+		pages[slot] = page;
+		numPages++;
+		if (2 * numPages > pageNums.length)
+			rehash();
+		lastPageNum = pageNum;
+		lastPage = page;
+		return page;
+	}
+
+	/**
+	 * Doubles the size of the page table.
+	 */
+	private void rehash() {
+		long[] oldPageNums = pageNums;
+		Page[] oldPages = pages;
+		pageNums = new long[2 * oldPageNums.length];
+		java.util.Arrays.fill(pageNums, NO_PAGE);
+		pages = new Page[2 * oldPages.length];
+		int mask = pageNums.length - 1;
+		for (int oldSlot = 0; oldSlot < oldPageNums.length; oldSlot++) {
+			if (oldPageNums[oldSlot] == NO_PAGE)
+				continue;
+			int slot = hash(oldPageNums[oldSlot]) & mask;
+			while (pageNums[slot] != NO_PAGE)
+				slot = (slot + 1) & mask;
+			pageNums[slot] = oldPageNums[oldSlot];
+			pages[slot] = oldPages[oldSlot];
+		}
+	}
+
+	/**
+	 * Writes the contents of this memory. Only initialized words are written.
+	 *
+	 * @param stream The stream.
+	 * @throws IOException If the contents cannot be written.
+	 */
+	public void write(DataOutputStream stream) throws IOException {
+		stream.writeInt(numPages);
+		for (int slot = 0; slot < pageNums.length; slot++) {
+			if (pageNums[slot] == NO_PAGE)
+				continue;
+			Page page = pages[slot];
+			stream.writeLong(pageNums[slot]);
+			for (long inits : page.inits)
+				stream.writeLong(inits);
+			for (int word = 0; word < page.words.length; word++)
+				if ((page.inits[word >>> 3] >>> ((word & 7) << 3) & 0xFF) != 0)
+					stream.writeLong(page.words[word]);
+		}
+	}
+
+	/**
+	 * Reads the contents of a memory written by {@link #write(DataOutputStream)}.
+	 *
+	 * @param stream The stream.
+	 * @return The memory.
+	 * @throws IOException If the contents cannot be read.
+	 */
+	public static Memory read(DataInputStream stream) throws IOException {
+		Memory memory = new Memory();
+		int numPages = stream.readInt();
+		for (int pageIndex = 0; pageIndex < numPages; pageIndex++) {
+			Page page = memory.page(stream.readLong(), true);
+			for (int inits = 0; inits < page.inits.length; inits++)
+				page.inits[inits] = stream.readLong();
+			for (int word = 0; word < page.words.length; word++)
+				if ((page.inits[word >>> 3] >>> ((word & 7) << 3) & 0xFF) != 0)
+					page.words[word] = stream.readLong();
+		}
+		return memory;
+	}
+
+	private static int hash(long pageNum) {
+		return (int) ((pageNum * 0x9E3779B97F4A7C15L) >>> 32);
+	}
+
+	private static Report.Error uninitialized(long address) {
+		return new Report.Error("INTERPRETER: Uninitialized memory location " + address + ".");
+	}
+
+}
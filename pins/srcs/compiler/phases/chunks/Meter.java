@@ -0,0 +1,189 @@
+/**
+ * @author sliva
+ */
+package compiler.phases.chunks;
+
+import compiler.common.report.*;
+
+/**
+ * The meter bounding the cost of an execution.
+ *
+ * The execution engines report every basic block executed (i.e., every jump
+ * taken) and every call and return. The meter enforces the limit on the number
+ * of executed basic blocks (command line argument {@code --max-steps}), the
+ * limit on the execution time in milliseconds ({@code --max-time}) and the
+ * limit on the depth of calls ({@code --max-depth}). To keep the cost of a
+ * basic block down to decrementing a counter, the steps are handed out in
+ * portions of at most {@link #CHECK_INTERVAL} basic blocks, and the step limit,
+ * the deadline and the interrupt status of the executing thread are checked
+ * only when a portion is used up. As the engines form basic blocks slightly
+ * differently (e.g., the virtual machine threads jumps), the number of steps a
+ * program takes may differ slightly from engine to engine.
+ *
+ * @author sliva
+ */
+public class Meter {
+
+	/** The largest number of basic blocks executed between two checks. */
+	public static final int CHECK_INTERVAL = 1 << 12;
+
+	/** The kinds of limits. */
+	public enum Limit {
+		STEPS, TIME, DEPTH
+	}
+
+	/**
+	 * Thrown when an execution exceeds one of its limits.
+	 */
+	@SuppressWarnings("serial")
+	public static class LimitExceeded extends Report.Error {
+
+		/** The limit that has been exceeded. */
+		public final Limit limit;
+
+		/**
+		 * Constructs a new error.
+		 *
+		 * @param limit   The limit that has been exceeded.
+		 * @param message The error message.
+		 */
+		public LimitExceeded(Limit limit, String message) {
+			super(message);
+			this.limit = limit;
+		}
+
+	}
+
+	/** The largest number of basic blocks executed. */
+	private final long maxSteps;
+
+	/** The longest execution time (in nanoseconds, {@code 0} if unlimited). */
+	private final long maxTime;
+
+	/** The largest depth of calls. */
+	private final int maxDepth;
+
+	/** The number of steps that have not been handed out yet. */
+	private long steps;
+
+	/** The number of steps left in the current portion. */
+	private int fuel = 0;
+
+	/** The time the execution must end by. */
+	private long deadline;
+
+	/** The depth of calls. */
+	private int depth = 0;
+
+	/** The number of calls. */
+	private long calls = 0;
+
+	/**
+	 * Constructs a new meter.
+	 *
+	 * @param maxSteps The largest number of basic blocks executed
+	 *                 ({@link Long#MAX_VALUE} if unlimited).
+	 * @param maxTime  The longest execution time in milliseconds ({@code 0} if
+	 *                 unlimited).
+	 * @param maxDepth The largest depth of calls ({@link Integer#MAX_VALUE} if
+	 *                 unlimited).
+	 */
+	public Meter(long maxSteps, long maxTime, int maxDepth) {
+		this.maxSteps = maxSteps;
+		this.maxTime = maxTime * 1000000;
+		this.maxDepth = maxDepth;
+		this.steps = maxSteps;
+		this.deadline = System.nanoTime() + this.maxTime;
+	}
+
+	/**
+	 * Returns whether metering has been enabled by any of the command line
+	 * arguments {@code --max-steps}, {@code --max-time} or {@code --max-depth}.
+	 *
+	 * @return {@code true} if metering has been enabled.
+	 */
+	public static boolean enabled() {
+		return (compiler.Main.cmdLineArgValue("--max-steps") != null)
+				|| (compiler.Main.cmdLineArgValue("--max-time") != null)
+				|| (compiler.Main.cmdLineArgValue("--max-depth") != null);
+	}
+
+	/**
+	 * Creates a meter if metering has been enabled (see {@link #enabled()}).
+	 *
+	 * @return The meter or {@code null} if metering has not been enabled.
+	 */
+	public static Meter create() {
+		if (!enabled())
+			return null;
+		String maxSteps = compiler.Main.cmdLineArgValue("--max-steps");
+		String maxTime = compiler.Main.cmdLineArgValue("--max-time");
+		String maxDepth = compiler.Main.cmdLineArgValue("--max-depth");
+		return new Meter((maxSteps == null) ? Long.MAX_VALUE : Long.parseLong(maxSteps),
+				(maxTime == null) ? 0 : Long.parseLong(maxTime),
+				(maxDepth == null) ? Integer.MAX_VALUE : Integer.parseInt(maxDepth));
+	}
+
+	/**
+	 * Starts measuring the execution time.
+	 */
+	public void start() {
+		deadline = System.nanoTime() + maxTime;
+	}
+
+	/**
+	 * Records an executed basic block.
+	 */
+	public void block() {
+		if (--fuel < 0)
+			refuel();
+	}
+
+	/**
+	 * Records a call.
+	 */
+	public void enter() {
+		calls++;
+		if (++depth > maxDepth)
+			throw new LimitExceeded(Limit.DEPTH, "Call depth limit of " + maxDepth + " exceeded.");
+	}
+
+	/**
+	 * Records a return.
+	 */
+	public void leave() {
+		depth--;
+	}
+
+	/**
+	 * Returns the number of basic blocks executed so far.
+	 *
+	 * @return The number of basic blocks.
+	 */
+	public long blocks() {
+		return maxSteps - steps - Math.max(fuel, 0);
+	}
+
+	/**
+	 * Returns the number of calls executed so far (not counting the calls of
+	 * builtin functions).
+	 *
+	 * @return The number of calls.
+	 */
+	public long calls() {
+		return calls;
+	}
+
+	private void refuel() {
+		if (steps == 0)
+			throw new LimitExceeded(Limit.STEPS, "Step limit of " + maxSteps + " basic blocks exceeded.");
+		if ((maxTime != 0) && (System.nanoTime() - deadline > 0))
+			throw new LimitExceeded(Limit.TIME, "Time limit of " + (maxTime / 1000000) + " ms exceeded.");
+		if (Thread.currentThread().isInterrupted())
+			throw new LimitExceeded(Limit.TIME, "Execution interrupted.");
+		int portion = (int) Math.min(CHECK_INTERVAL, steps);
+		steps -= portion;
+		fuel = portion - 1;
+	}
+
+}
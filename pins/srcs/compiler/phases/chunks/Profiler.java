@@ -0,0 +1,261 @@
+/**
+ * @author sliva
+ */
+package compiler.phases.chunks;
+
+import java.io.*;
+import java.util.*;
+import compiler.common.report.*;
+import compiler.data.imcode.*;
+import compiler.data.chunk.*;
+
+/**
+ * The execution profiler of the interpreter.
+ *
+ * The profiling interpreter (see {@link ProfilingInterpreter}) reports every
+ * call and return, every executed statement and the outcome of every
+ * conditional jump. The profile consists of call counts,
+ * inclusive and exclusive numbers of executed statements per function, hit
+ * counts of labels (i.e., basic blocks) and taken/not-taken counts of
+ * conditional jumps, and is written as a tab-separated report (command line
+ * argument {@code --profile}) and as collapsed stacks weighted by the number of
+ * executed statements (command line argument {@code --profile-stacks}), the
+ * input format of flame graph tools.
+ *
+ * @author sliva
+ */
+public class Profiler {
+
+	/** The code chunks. */
+	private final Vector<CodeChunk> codeChunks;
+
+	/** The name of the report file ({@code null} if not requested). */
+	private final String reportFileName;
+
+	/** The name of the collapsed stacks file ({@code null} if not requested). */
+	private final String stacksFileName;
+
+	/** The number of calls of each function. */
+	private final long[] calls;
+
+	/** The number of statements executed by each function and its callees. */
+	private final long[] inclusive;
+
+	/** The number of executions of each statement of each function. */
+	private final long[][] stmtCounts;
+
+	/** The number of times each conditional jump of each function was taken. */
+	private final long[][] taken;
+
+	/** The number of active calls of each function. */
+	private final int[] active;
+
+	/** The number of executed statements when the outermost active call of each function started. */
+	private final long[] entryCounts;
+
+	/** The number of executed statements. */
+	private long numStmts = 0;
+
+	/** The root of the calling context tree. */
+	private final Context root = new Context(null, -1);
+
+	/** The calling context of the function being executed. */
+	private Context context = root;
+
+	/**
+	 * Constructs a new profiler.
+	 *
+	 * @param codeChunks     The code chunks.
+	 * @param reportFileName The name of the report file ({@code null} if not
+	 *                       requested).
+	 * @param stacksFileName The name of the collapsed stacks file ({@code null}
+	 *                       if not requested).
+	 */
+	public Profiler(Vector<CodeChunk> codeChunks, String reportFileName, String stacksFileName) {
+		this.codeChunks = codeChunks;
+		this.reportFileName = reportFileName;
+		this.stacksFileName = stacksFileName;
+		this.calls = new long[codeChunks.size()];
+		this.inclusive = new long[codeChunks.size()];
+		this.stmtCounts = new long[codeChunks.size()][];
+		this.taken = new long[codeChunks.size()][];
+		for (int index = 0; index < codeChunks.size(); index++) {
+			stmtCounts[index] = new long[codeChunks.get(index).stmts().size()];
+			taken[index] = new long[codeChunks.get(index).stmts().size()];
+		}
+		this.active = new int[codeChunks.size()];
+		this.entryCounts = new long[codeChunks.size()];
+	}
+
+	/**
+	 * Creates a profiler if profiling has been enabled by the command line
+	 * argument {@code --profile} or {@code --profile-stacks}.
+	 *
+	 * @param codeChunks The code chunks.
+	 * @return The profiler or {@code null} if profiling has not been enabled.
+	 */
+	public static Profiler create(Vector<CodeChunk> codeChunks) {
+		String reportFileName = compiler.Main.cmdLineArgValue("--profile");
+		String stacksFileName = compiler.Main.cmdLineArgValue("--profile-stacks");
+		if ((reportFileName == null) && (stacksFileName == null))
+			return null;
+		return new Profiler(codeChunks, reportFileName, stacksFileName);
+	}
+
+	/**
+	 * Records a call of a function.
+	 *
+	 * @param index The index of the function.
+	 */
+	public void enter(int index) {
+		calls[index]++;
+		if (active[index]++ == 0)
+			entryCounts[index] = numStmts;
+		context = context.callee(index);
+	}
+
+	/**
+	 * Records a return from a function.
+	 *
+	 * @param index The index of the function.
+	 */
+	public void leave(int index) {
+		if (--active[index] == 0)
+			inclusive[index] += numStmts - entryCounts[index];
+		context = context.caller;
+	}
+
+	/**
+	 * Records an execution of a statement.
+	 *
+	 * @param index      The index of the function.
+	 * @param stmtOffset The offset of the statement.
+	 */
+	public void stmt(int index, int stmtOffset) {
+		stmtCounts[index][stmtOffset]++;
+		context.numStmts++;
+		numStmts++;
+	}
+
+	/**
+	 * Records an outcome of a conditional jump.
+	 *
+	 * @param index      The index of the function.
+	 * @param stmtOffset The offset of the conditional jump.
+	 * @param cond       {@code true} if the jump to the positive label was taken.
+	 */
+	public void branch(int index, int stmtOffset, boolean cond) {
+		if (cond)
+			taken[index][stmtOffset]++;
+	}
+
+	/**
+	 * Writes the requested profile files.
+	 */
+	public void write() {
+		if (reportFileName != null) {
+			try (PrintWriter report = new PrintWriter(new BufferedWriter(new FileWriter(reportFileName)))) {
+				writeReport(report);
+			} catch (IOException __) {
+				throw new Report.Error("Cannot write profile file '" + reportFileName + "'.");
+			}
+		}
+		if (stacksFileName != null) {
+			try (PrintWriter stacks = new PrintWriter(new BufferedWriter(new FileWriter(stacksFileName)))) {
+				writeStacks(stacks, root, "");
+			} catch (IOException __) {
+				throw new Report.Error("Cannot write profile file '" + stacksFileName + "'.");
+			}
+		}
+	}
+
+	/**
+	 * Writes the report. Each line is a record of tab-separated fields and the
+	 * first field names the kind of the record:
+	 *
+	 * <pre>
+	 * function  name  calls  inclusive  exclusive
+	 * block     function  label  hits
+	 * branch    function  offset  posLabel  negLabel  taken  notTaken
+	 * </pre>
+	 *
+	 * Inclusive and exclusive counts are numbers of executed statements; a
+	 * branch has been executed {@code taken + notTaken} times.
+	 *
+	 * @param report The report.
+	 */
+	private void writeReport(PrintWriter report) {
+		for (int index = 0; index < codeChunks.size(); index++) {
+			long exclusive = 0;
+			for (long count : stmtCounts[index])
+				exclusive += count;
+			report.printf("function\t%s\t%d\t%d\t%d\n", name(index), calls[index], inclusive[index], exclusive);
+		}
+		for (int index = 0; index < codeChunks.size(); index++) {
+			Vector<ImcStmt> stmts = codeChunks.get(index).stmts();
+			for (int stmtOffset = 0; stmtOffset < stmts.size(); stmtOffset++) {
+				ImcStmt stmt = stmts.get(stmtOffset);
+				if (stmt instanceof ImcLABEL)
+					report.printf("block\t%s\t%s\t%d\n", name(index), ((ImcLABEL) stmt).label.name,
+							stmtCounts[index][stmtOffset]);
+			}
+		}
+		for (int index = 0; index < codeChunks.size(); index++) {
+			Vector<ImcStmt> stmts = codeChunks.get(index).stmts();
+			for (int stmtOffset = 0; stmtOffset < stmts.size(); stmtOffset++) {
+				ImcStmt stmt = stmts.get(stmtOffset);
+				if (stmt instanceof ImcCJUMP) {
+					ImcCJUMP cjump = (ImcCJUMP) stmt;
+					long count = stmtCounts[index][stmtOffset];
+					report.printf("branch\t%s\t%d\t%s\t%s\t%d\t%d\n", name(index), stmtOffset, cjump.posLabel.name,
+							cjump.negLabel.name, taken[index][stmtOffset], count - taken[index][stmtOffset]);
+				}
+			}
+		}
+	}
+
+	private void writeStacks(PrintWriter stacks, Context context, String path) {
+		if (context.numStmts > 0)
+			stacks.printf("%s %d\n", path, context.numStmts);
+		for (Context callee : context.callees.values())
+			writeStacks(stacks, callee, (context == root ? "" : path + ";") + name(callee.index));
+	}
+
+	private String name(int index) {
+		return codeChunks.get(index).frame.label.name;
+	}
+
+	/**
+	 * A node of the calling context tree.
+	 */
+	private static class Context {
+
+		/** The calling context of the caller. */
+		final Context caller;
+
+		/** The index of the function. */
+		final int index;
+
+		/** The calling contexts of the callees by their indices. */
+		final LinkedHashMap<Integer, Context> callees = new LinkedHashMap<Integer, Context>();
+
+		/** The number of statements executed in this context. */
+		long numStmts = 0;
+
+		Context(Context caller, int index) {
+			this.caller = caller;
+			this.index = index;
+		}
+
+		Context callee(int index) {
+			Context callee = callees.get(index);
+			if (callee == null) {
+				callee = new Context(this, index);
+				callees.put(index, callee);
+			}
+			return callee;
+		}
+
+	}
+
+}
@@ -0,0 +1,88 @@
+/**
+ * @author sliva
+ */
+package compiler.phases.chunks;
+
+import java.util.*;
+import compiler.data.layout.*;
+import compiler.data.imcode.*;
+import compiler.data.chunk.*;
+
+/**
+ * The interpreter of code chunks that profiles the execution (see
+ * {@link Profiler}).
+ *
+ * All functions are executed in the cold tier, where every call, every
+ * statement and every outcome of a conditional jump passes through a hook of
+ * the {@link Interpreter}. As profiling is done by a subclass, the warm and the
+ * hot tier of the {@link Interpreter} contain no profiling code at all.
+ *
+ * @author sliva
+ */
+public class ProfilingInterpreter extends Interpreter {
+
+	/** The code chunks. */
+	private final Vector<CodeChunk> codeChunks;
+
+	/** The snapshot the execution resumes from ({@code null} if it starts at the beginning). */
+	private final Snapshot snapshot;
+
+	/** The profiler. */
+	private final Profiler profiler;
+
+	/**
+	 * Constructs a new profiling interpreter. The profile is written to the files
+	 * named by the command line arguments {@code --profile} and
+	 * {@code --profile-stacks}.
+	 *
+	 * @param dataChunks The data chunks.
+	 * @param codeChunks The code chunks.
+	 * @param output     The output of the builtin functions.
+	 * @param snapshot   The snapshot the execution resumes from ({@code null} if
+	 *                   it starts at the beginning).
+	 */
+	public ProfilingInterpreter(Vector<DataChunk> dataChunks, Vector<CodeChunk> codeChunks, RuntimeOutput output,
+			Snapshot snapshot) {
+		super(dataChunks, codeChunks, output, snapshot);
+		disableTiers();
+		this.codeChunks = codeChunks;
+		this.snapshot = snapshot;
+		this.profiler = Profiler.create(codeChunks);
+	}
+
+	@Override
+	public long run(String entryLabel) {
+		// An execution resumed from a snapshot does not call the entry function.
+		int entry = -1;
+		if (snapshot != null)
+			for (int index = 0; index < codeChunks.size(); index++)
+				if (codeChunks.get(index).frame.label.name.equals(entryLabel))
+					entry = index;
+		if (entry >= 0)
+			profiler.enter(entry);
+		try {
+			return super.run(entryLabel);
+		} finally {
+			if (entry >= 0)
+				profiler.leave(entry);
+			profiler.write();
+		}
+	}
+
+	@Override
+	protected void funCall(int index) {
+		profiler.enter(index);
+		super.funCall(index);
+		profiler.leave(index);
+	}
+
+	@Override
+	protected Label interpret(int index, int stmtOffset, ImcStmt stmt) {
+		profiler.stmt(index, stmtOffset);
+		Label label = super.interpret(index, stmtOffset, stmt);
+		if (stmt instanceof ImcCJUMP)
+			profiler.branch(index, stmtOffset, label == ((ImcCJUMP) stmt).posLabel);
+		return label;
+	}
+
+}
@@ -0,0 +1,125 @@
+/**
+ * @author sliva
+ */
+package compiler.phases.chunks;
+
+import java.io.*;
+import compiler.common.report.*;
+
+/**
+ * The input of the builtin functions {@code _getInt} and {@code _getChar}
+ * shared by all execution engines.
+ *
+ * The input is read from the file named by the command line argument
+ * {@code --runtime-in} or from the standard input. The file is opened only
+ * when a program reads from it for the first time, so programs that do not read
+ * any input cost nothing; every input created reads the file from its
+ * beginning. As the standard input cannot be reread, all inputs reading from
+ * it share the same buffer. An input can also read from any other stream, e.g.,
+ * to give each of several concurrent executions its own input.
+ *
+ * @author sliva
+ */
+public class RuntimeInput {
+
+	/** The value returned by {@link #getChar()} at the end of the input. */
+	public static final long EOF = -1;
+
+	/** The input reading from the standard input (created when first needed). */
+	private static RuntimeInput standardInput = null;
+
+	/** The name of the input file ({@code null} if not read from a file). */
+	private final String fileName;
+
+	/** The underlying stream ({@code null} until the first read). */
+	private InputStream stream = null;
+
+	/** The byte read ahead by {@link #getInt()} ({@code -2} if none). */
+	private int next = -2;
+
+	/**
+	 * Constructs a new input.
+	 *
+	 * @param fileName The name of the input file ({@code null} for the standard
+	 *                 input).
+	 */
+	private RuntimeInput(String fileName) {
+		this.fileName = fileName;
+	}
+
+	/**
+	 * Constructs a new input reading from a stream.
+	 *
+	 * @param stream The underlying stream.
+	 */
+	public RuntimeInput(InputStream stream) {
+		this.fileName = null;
+		this.stream = new BufferedInputStream(stream, 1 << 16);
+	}
+
+	/**
+	 * Returns the input selected by the command line argument
+	 * {@code --runtime-in}.
+	 *
+	 * @return The input.
+	 */
+	public static synchronized RuntimeInput create() {
+		String fileName = compiler.Main.cmdLineArgValue("--runtime-in");
+		if (fileName != null)
+			return new RuntimeInput(fileName);
+		if (standardInput == null)
+			standardInput = new RuntimeInput((String) null);
+		return standardInput;
+	}
+
+	/**
+	 * Reads a character.
+	 *
+	 * @return The character or {@link #EOF} at the end of the input.
+	 */
+	public synchronized long getChar() {
+		int c = read();
+		return (c < 0) ? EOF : c;
+	}
+
+	/**
+	 * Reads an integer in decimal notation. Leading whitespace is skipped and the
+	 * character following the integer is not consumed.
+	 *
+	 * @return The integer.
+	 */
+	public synchronized long getInt() {
+		int c = read();
+		while ((c == ' ') || (c == '\t') || (c == '\n') || (c == '\r'))
+			c = read();
+		boolean negative = (c == '-');
+		if ((c == '-') || (c == '+'))
+			c = read();
+		if ((c < '0') || (c > '9'))
+			throw new Report.Error("INTERPRETER: No integer in the runtime input.");
+		long value = 0;
+		while ((c >= '0') && (c <= '9')) {
+			value = 10 * value + (c - '0');
+			c = read();
+		}
+		next = c;
+		return negative ? -value : value;
+	}
+
+	private int read() {
+		if (next != -2) {
+			int c = next;
+			next = -2;
+			return c;
+		}
+		try {
+			if (stream == null)
+				stream = new BufferedInputStream((fileName == null) ? System.in : new FileInputStream(fileName),
+						1 << 16);
+			return stream.read();
+		} catch (IOException __) {
+			throw new Report.Error("Cannot read the runtime input" + (fileName == null ? "." : " '" + fileName + "'."));
+		}
+	}
+
+}
@@ -0,0 +1,138 @@
+/**
+ * @author sliva
+ */
+package compiler.phases.chunks;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.charset.*;
+import compiler.common.report.*;
+
+/**
+ * The output of the builtin functions {@code _putInt}, {@code _putChar} and
+ * {@code _putString} shared by all execution engines.
+ *
+ * Integers and characters are converted to bytes directly into a byte buffer
+ * which is written to the underlying stream in one piece once it holds at
+ * least the flush threshold of bytes, and when the program terminates (see
+ * {@link #flush()}). Characters are encoded with the default charset, i.e., the
+ * same way {@code System.out} encodes them.
+ *
+ * @author sliva
+ */
+public class RuntimeOutput {
+
+	/** The default flush threshold (in bytes). */
+	public static final int FLUSH_THRESHOLD = 1 << 16;
+
+	/** The underlying stream. */
+	private final OutputStream stream;
+
+	/** The number of buffered bytes that triggers a flush. */
+	private final int flushThreshold;
+
+	/** The buffer. */
+	private final byte[] buffer;
+
+	/** The number of bytes in the buffer. */
+	private int length = 0;
+
+	/** The encoder of non-ASCII characters. */
+	private final CharsetEncoder encoder = Charset.defaultCharset().newEncoder()
+			.onMalformedInput(CodingErrorAction.REPLACE).onUnmappableCharacter(CodingErrorAction.REPLACE);
+
+	/**
+	 * Constructs a new output writing to the standard output.
+	 */
+	public RuntimeOutput() {
+		this(System.out, FLUSH_THRESHOLD);
+	}
+
+	/**
+	 * Constructs a new output.
+	 *
+	 * @param stream         The underlying stream.
+	 * @param flushThreshold The number of buffered bytes that triggers a flush
+	 *                       ({@code 0} or {@code 1} to flush after every
+	 *                       character or integer).
+	 */
+	public RuntimeOutput(OutputStream stream, int flushThreshold) {
+		this.stream = stream;
+		this.flushThreshold = flushThreshold;
+		this.buffer = new byte[Math.max(flushThreshold, 1) + 32];
+	}
+
+	/**
+	 * Outputs an integer in decimal notation.
+	 *
+	 * @param value The integer.
+	 */
+	public void putInt(long value) {
+		if (length + 20 > buffer.length)
+			flushBuffer();
+		// Digits are computed from the negated absolute value to cover Long.MIN_VALUE.
+		long rest = (value < 0) ? value : -value;
+		if (value < 0)
+			buffer[length++] = '-';
+		int digits = 1;
+		for (long more = rest / 10; more != 0; more /= 10)
+			digits++;
+		for (int pos = length + digits - 1; pos >= length; pos--) {
+			buffer[pos] = (byte) ('0' - rest % 10);
+			rest /= 10;
+		}
+		length += digits;
+		if (length >= flushThreshold)
+			flushBuffer();
+	}
+
+	/**
+	 * Outputs a character.
+	 *
+	 * @param c The character.
+	 */
+	public void putChar(char c) {
+		if (c < 0x80) {
+			if (length == buffer.length)
+				flushBuffer();
+			buffer[length++] = (byte) c;
+		} else {
+			try {
+				ByteBuffer bytes = encoder.encode(CharBuffer.wrap(new char[] { c }));
+				int size = bytes.remaining();
+				if (length + size > buffer.length)
+					flushBuffer();
+				bytes.get(buffer, length, size);
+				length += size;
+			} catch (CharacterCodingException __) {
+				throw new Report.InternalError();
+			}
+		}
+		if (length >= flushThreshold)
+			flushBuffer();
+	}
+
+	/**
+	 * Writes all buffered bytes to the underlying stream and flushes it.
+	 */
+	public void flush() {
+		flushBuffer();
+		try {
+			stream.flush();
+		} catch (IOException __) {
+			throw new Report.Error("Cannot write the runtime output.");
+		}
+	}
+
+	private void flushBuffer() {
+		if (length == 0)
+			return;
+		try {
+			stream.write(buffer, 0, length);
+		} catch (IOException __) {
+			throw new Report.Error("Cannot write the runtime output.");
+		}
+		length = 0;
+	}
+
+}
@@ -0,0 +1,154 @@
+/**
+ * @author sliva
+ */
+package compiler.phases.chunks;
+
+import java.io.*;
+import java.util.zip.*;
+import compiler.common.report.*;
+
+/**
+ * A snapshot of the state of the interpreter.
+ *
+ * A snapshot is taken when the entry function of a program calls the builtin
+ * function {@code _snapshot} (declared as {@code fun snapshot() : int}). It
+ * holds the memory, the state of the heap allocator, and the registers of the
+ * entry function and the position of the call within it. An interpreter
+ * constructed with a snapshot resumes the execution at that call, which then
+ * returns {@code 1} instead of {@code 0}, much like {@code fork}. As the memory
+ * of a snapshot is copied on write (see {@link Memory#copy()}), any number of
+ * executions can be resumed from the same snapshot at a low cost.
+ *
+ * A snapshot is written to a compact binary file (command line argument
+ * {@code --snapshot}) and read back to resume the execution later
+ * ({@code --restore}). The output produced before the snapshot was taken, the
+ * profile and the state of the meter are not part of the snapshot.
+ *
+ * @author sliva
+ */
+public class Snapshot {
+
+	/** The magic number of snapshot files. */
+	private static final int MAGIC = 0x50494E53;
+
+	/** The version of the snapshot file format. */
+	private static final int VERSION = 1;
+
+	/** The name of the entry function. */
+	public final String entryLabel;
+
+	/** The number of functions of the program. */
+	final int numFunctions;
+
+	/** The offset of the statement calling {@code _snapshot}. */
+	final int stmtOffset;
+
+	/** The registers of the entry function. */
+	final long[] regs;
+
+	/** The bitmap of initialized registers of the entry function. */
+	final long[] regInits;
+
+	/** The memory. */
+	private final Memory memory;
+
+	/** The heap allocator. */
+	private final HeapAllocator heap;
+
+	/**
+	 * Constructs a new snapshot.
+	 *
+	 * @param entryLabel   The name of the entry function.
+	 * @param numFunctions The number of functions of the program.
+	 * @param stmtOffset   The offset of the statement calling {@code _snapshot}.
+	 * @param regs         The registers of the entry function.
+	 * @param regInits     The bitmap of initialized registers of the entry
+	 *                     function.
+	 * @param memory       The memory (not modified afterwards).
+	 * @param heap         The heap allocator (not modified afterwards).
+	 */
+	Snapshot(String entryLabel, int numFunctions, int stmtOffset, long[] regs, long[] regInits, Memory memory,
+			HeapAllocator heap) {
+		this.entryLabel = entryLabel;
+		this.numFunctions = numFunctions;
+		this.stmtOffset = stmtOffset;
+		this.regs = regs;
+		this.regInits = regInits;
+		this.memory = memory;
+		this.heap = heap;
+	}
+
+	/**
+	 * Returns a private copy of the memory for an execution resumed from this
+	 * snapshot.
+	 *
+	 * @return The memory.
+	 */
+	synchronized Memory memory() {
+		return memory.copy();
+	}
+
+	/**
+	 * Returns a private copy of the heap allocator for an execution resumed from
+	 * this snapshot.
+	 *
+	 * @return The heap allocator.
+	 */
+	synchronized HeapAllocator heap() {
+		return heap.copy();
+	}
+
+	/**
+	 * Writes this snapshot to a file.
+	 *
+	 * @param fileName The name of the file.
+	 */
+	public void write(String fileName) {
+		try (DataOutputStream stream = new DataOutputStream(
+				new BufferedOutputStream(new DeflaterOutputStream(new FileOutputStream(fileName)), 1 << 16))) {
+			stream.writeInt(MAGIC);
+			stream.writeInt(VERSION);
+			stream.writeUTF(entryLabel);
+			stream.writeInt(numFunctions);
+			stream.writeInt(stmtOffset);
+			stream.writeInt(regs.length);
+			for (long reg : regs)
+				stream.writeLong(reg);
+			for (long inits : regInits)
+				stream.writeLong(inits);
+			heap.write(stream);
+			memory.write(stream);
+		} catch (IOException __) {
+			throw new Report.Error("Cannot write snapshot file '" + fileName + "'.");
+		}
+	}
+
+	/**
+	 * Reads a snapshot from a file.
+	 *
+	 * @param fileName The name of the file.
+	 * @return The snapshot.
+	 */
+	public static Snapshot read(String fileName) {
+		try (DataInputStream stream = new DataInputStream(
+				new BufferedInputStream(new InflaterInputStream(new FileInputStream(fileName)), 1 << 16))) {
+			if ((stream.readInt() != MAGIC) || (stream.readInt() != VERSION))
+				throw new Report.Error("File '" + fileName + "' is not a snapshot file.");
+			String entryLabel = stream.readUTF();
+			int numFunctions = stream.readInt();
+			int stmtOffset = stream.readInt();
+			long[] regs = new long[stream.readInt()];
+			long[] regInits = new long[(regs.length + 63) >>> 6];
+			for (int reg = 0; reg < regs.length; reg++)
+				regs[reg] = stream.readLong();
+			for (int inits = 0; inits < regInits.length; inits++)
+				regInits[inits] = stream.readLong();
+			HeapAllocator heap = HeapAllocator.read(stream);
+			Memory memory = Memory.read(stream);
+			return new Snapshot(entryLabel, numFunctions, stmtOffset, regs, regInits, memory, heap);
+		} catch (IOException __) {
+			throw new Report.Error("Cannot read snapshot file '" + fileName + "'.");
+		}
+	}
+
+}
@@ -55,12 +55,17 @@ public class StmtCanonizer implements ImcVisitor<Vector<ImcStmt>, Object> {
 		if (imcMove.dst instanceof ImcMEM) {
 			Vector<ImcStmt> result = new Vector<ImcStmt>();
 			ImcExpr dstExpr = ((ImcMEM) (imcMove.dst)).addr.accept(new ExprCanonizer(), result);
-			Temp dstTemp = new Temp();
-			result.add(new ImcMOVE(new ImcTEMP(dstTemp), dstExpr));
+			// An address computed from constants and fresh temps only, e.g., base + k,
+			// stays in place as the source cannot change it.
+			if (!(dstExpr instanceof ImcBINOP) && !(dstExpr instanceof ImcCONST) && !(dstExpr instanceof ImcNAME)) {
+				Temp dstTemp = new Temp();
+				result.add(new ImcMOVE(new ImcTEMP(dstTemp), dstExpr));
+				dstExpr = new ImcTEMP(dstTemp);
+			}
 			ImcExpr srcExpr = imcMove.src.accept(new ExprCanonizer(), result);
 			Temp srcTemp = new Temp();
 			result.add(new ImcMOVE(new ImcTEMP(srcTemp), srcExpr));
-			result.add(new ImcMOVE(new ImcMEM(new ImcTEMP(dstTemp)), new ImcTEMP(srcTemp)));
+			result.add(new ImcMOVE(new ImcMEM(dstExpr), new ImcTEMP(srcTemp)));
 			return result;
 		}
 		if (imcMove.dst instanceof ImcTEMP) {
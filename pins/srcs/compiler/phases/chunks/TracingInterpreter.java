@@ -0,0 +1,194 @@
+/**
+ * @author sliva
+ */
+package compiler.phases.chunks;
+
+import java.io.*;
+import java.util.*;
+import compiler.common.report.*;
+import compiler.data.layout.*;
+import compiler.data.imcode.*;
+import compiler.data.chunk.*;
+
+/**
+ * The interpreter of code chunks that writes a trace of the execution.
+ *
+ * All functions are executed in the cold tier. The trace is a compact text log
+ * with one event per line:
+ *
+ * <pre>
+ * data label address
+ * call function
+ * ret function
+ * stmt function offset kind
+ * st [address] value
+ * ld [address] value
+ * st temp value
+ * ld temp value
+ * </pre>
+ *
+ * Addresses are hexadecimal, values are decimal. Events can be filtered by the
+ * function being executed (command line argument {@code --trace-fun}), by the
+ * address range of memory accesses ({@code --trace-addr}) and by temporary
+ * variables ({@code --trace-temp}). As tracing is done by a subclass, the
+ * {@link Interpreter} itself contains no tracing code at all.
+ *
+ * @author sliva
+ */
+public class TracingInterpreter extends Interpreter {
+
+	/** The code chunks. */
+	private final Vector<CodeChunk> codeChunks;
+
+	/** The trace. */
+	private final Writer trace;
+
+	/** The names of the traced functions ({@code null} if all are traced). */
+	private final HashSet<String> funFilter;
+
+	/** The lowest traced address (unsigned). */
+	private final long begAddr;
+
+	/** The highest traced address (unsigned). */
+	private final long endAddr;
+
+	/** The names of the traced temporary variables ({@code null} if all are traced). */
+	private final HashSet<String> tempFilter;
+
+	/** The indices of the functions being executed. */
+	private final ArrayDeque<Integer> callStack = new ArrayDeque<Integer>();
+
+	/** Whether the events of the function being executed are traced. */
+	private boolean traced;
+
+	/**
+	 * Constructs a new tracing interpreter. The trace is written to the file
+	 * named by the command line argument {@code --trace}.
+	 *
+	 * @param dataChunks The data chunks.
+	 * @param codeChunks The code chunks.
+	 * @param output     The output of the builtin functions.
+	 * @param snapshot   The snapshot the execution resumes from ({@code null} if
+	 *                   it starts at the beginning).
+	 */
+	public TracingInterpreter(Vector<DataChunk> dataChunks, Vector<CodeChunk> codeChunks, RuntimeOutput output,
+			Snapshot snapshot) {
+		super(dataChunks, codeChunks, output, snapshot);
+		disableTiers();
+		this.codeChunks = codeChunks;
+
+		String fileName = compiler.Main.cmdLineArgValue("--trace");
+		try {
+			this.trace = new BufferedWriter(new FileWriter(fileName), 1 << 16);
+		} catch (IOException __) {
+			throw new Report.Error("Cannot open trace file '" + fileName + "'.");
+		}
+
+		String funs = compiler.Main.cmdLineArgValue("--trace-fun");
+		this.funFilter = (funs == null) ? null : new HashSet<String>(Arrays.asList(funs.split(",")));
+		String temps = compiler.Main.cmdLineArgValue("--trace-temp");
+		this.tempFilter = (temps == null) ? null : new HashSet<String>(Arrays.asList(temps.split(",")));
+		String addrs = compiler.Main.cmdLineArgValue("--trace-addr");
+		if (addrs == null) {
+			this.begAddr = 0;
+			this.endAddr = -1;
+		} else {
+			this.begAddr = Long.parseUnsignedLong(addrs.replaceFirst("-.*$", ""), 16);
+			this.endAddr = Long.parseUnsignedLong(addrs.replaceFirst("^.*-", ""), 16);
+		}
+		this.traced = (funFilter == null);
+
+		for (DataChunk dataChunk : dataChunks)
+			write("data " + dataChunk.label.name + " " + hex(dataAddress(dataChunk.label)));
+	}
+
+	@Override
+	public long run(String entryLabel) {
+		try {
+			return super.run(entryLabel);
+		} finally {
+			try {
+				trace.close();
+			} catch (IOException __) {
+				throw new Report.Error("Cannot write trace file '" + compiler.Main.cmdLineArgValue("--trace") + "'.");
+			}
+		}
+	}
+
+	@Override
+	protected void funCall(int index) {
+		String name = codeChunks.get(index).frame.label.name;
+		callStack.push(index);
+		traced = (funFilter == null) || funFilter.contains(name);
+		if (traced)
+			write("call " + name);
+		super.funCall(index);
+		if (traced)
+			write("ret " + name);
+		callStack.pop();
+		traced = (funFilter == null)
+				|| (!callStack.isEmpty() && funFilter.contains(codeChunks.get(callStack.peek()).frame.label.name));
+	}
+
+	@Override
+	protected Label interpret(int index, int stmtOffset, ImcStmt stmt) {
+		if (traced)
+			write("stmt " + codeChunks.get(index).frame.label.name + " " + stmtOffset + " "
+					+ stmt.getClass().getSimpleName().replaceFirst("^Imc", ""));
+		return super.interpret(index, stmtOffset, stmt);
+	}
+
+	@Override
+	protected void memST(long address, long value) {
+		super.memST(address, value);
+		if (traced && inRange(address))
+			write("st [" + hex(address) + "] " + value);
+	}
+
+	@Override
+	protected long memLD(long address) {
+		long value = super.memLD(address);
+		if (traced && inRange(address))
+			write("ld [" + hex(address) + "] " + value);
+		return value;
+	}
+
+	@Override
+	protected void tempST(Temp temp, long value) {
+		super.tempST(temp, value);
+		if (traced) {
+			String name = tempName(temp);
+			if ((tempFilter == null) || tempFilter.contains(name))
+				write("st " + name + " " + value);
+		}
+	}
+
+	@Override
+	protected long tempLD(Temp temp) {
+		long value = super.tempLD(temp);
+		if (traced) {
+			String name = tempName(temp);
+			if ((tempFilter == null) || tempFilter.contains(name))
+				write("ld " + name + " " + value);
+		}
+		return value;
+	}
+
+	private boolean inRange(long address) {
+		return (Long.compareUnsigned(address, begAddr) >= 0) && (Long.compareUnsigned(address, endAddr) <= 0);
+	}
+
+	private static String hex(long address) {
+		return "0x" + Long.toHexString(address);
+	}
+
+	private void write(String event) {
+		try {
+			trace.write(event);
+			trace.write('\n');
+		} catch (IOException __) {
+			throw new Report.Error("Cannot write trace file '" + compiler.Main.cmdLineArgValue("--trace") + "'.");
+		}
+	}
+
+}
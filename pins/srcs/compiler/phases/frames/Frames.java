@@ -16,16 +16,27 @@ import compiler.phases.*;
 public class Frames extends Phase {
 
 	/** Maps function declarations to frames. */
-	public static final AbsAttribute<AbsFunDecl, Frame> frames = new AbsAttribute<AbsFunDecl, Frame>();
+	public static AbsAttribute<AbsFunDecl, Frame> frames = new AbsAttribute<AbsFunDecl, Frame>();
 
 	/** Maps variable declarations to accesses. */
-	public static final AbsAttribute<AbsVarDecl, Access> accesses = new AbsAttribute<AbsVarDecl, Access>();
+	public static AbsAttribute<AbsVarDecl, Access> accesses = new AbsAttribute<AbsVarDecl, Access>();
 
 	/**
-	 * Constructs a new phase for computing layout.
+	 * The display, i.e., the frame pointers of the most recent activations of
+	 * functions at each static depth (one 8-byte slot per depth starting with
+	 * depth 1).
+	 */
+	public static AbsAccess display = null;
+
+	/**
+	 * Constructs a new phase for computing layout. The attributes computed by any
+	 * previous compilation are discarded.
 	 */
 	public Frames() {
 		super("frames");
+		frames = new AbsAttribute<AbsFunDecl, Frame>();
+		accesses = new AbsAttribute<AbsVarDecl, Access>();
+		display = null;
 	}
 
 }
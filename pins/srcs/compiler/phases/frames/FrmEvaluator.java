@@ -38,10 +38,15 @@ public class FrmEvaluator extends AbsFullVisitor<Object, FrmEvaluator.Context> {
 		public long parsSize = new SemPtrType(new SemVoidType()).size();
 	}
 
+	/** The largest static depth of a function. */
+	private int maxDepth = 0;
+
     public Object visit(AbsSource source, Context visArg) {
 		FunContext context = new FunContext();
 		context.depth = 0;
-		return super.visit(source, context);
+		super.visit(source, context);
+		Frames.display = new AbsAccess(8 * maxDepth, new Label());
+		return null;
 	}
 
 	public Object visit(AbsVarDecl varDecl, Context visArg) {
@@ -64,6 +69,7 @@ public class FrmEvaluator extends AbsFullVisitor<Object, FrmEvaluator.Context> {
 		FunContext context = new FunContext();
 		context.argsSize += new SemPtrType(new SemVoidType()).size();
 		context.depth = ((FunContext)visArg).depth + 1;
+		maxDepth = Math.max(maxDepth, context.depth);
 		super.visit(funDef, context);
 		Label label;
 		if(context.depth == 1)
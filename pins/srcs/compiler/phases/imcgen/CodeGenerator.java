@@ -13,13 +13,31 @@ import compiler.phases.seman.*;
 /**
  * Intermediate code generator.
  *
+ * Variables of the function being generated are accessed relative to its frame
+ * pointer. Variables of enclosing functions are accessed through the display
+ * (see {@link Frames#display}) with a single load instead of following a chain
+ * of static links; the functions whose variables are accessed this way keep
+ * their frame pointers in the display (see {@link ImcGen#displayedFrames}).
+ *
  * @author sliva
  */
 public class CodeGenerator extends AbsFullVisitor<Object, Stack<Frame>> {
 
+    /**
+     * Returns the address of the display slot holding the frame pointer of the
+     * most recent activation of a function at the specified static depth.
+     *
+     * @param depth The static depth.
+     * @return The address of the display slot.
+     */
+    public static ImcExpr displaySlot(int depth) {
+        return new ImcBINOP(ImcBINOP.Oper.ADD, new ImcNAME(Frames.display.label), new ImcCONST(8 * (depth - 1)));
+    }
+
     public Object visit(AbsFunDef funDef, Stack<Frame> visArg) {
-        ImcExpr e = (ImcExpr)super.visit(funDef, visArg);
-        //ImcExpr e = new ExprGenerator().visit(funDef, visArg);
+        visArg.push(Frames.frames.get(funDef));
+        super.visit(funDef, visArg);
+        visArg.pop();
         return null;
     }
 
@@ -47,9 +65,28 @@ public class CodeGenerator extends AbsFullVisitor<Object, Stack<Frame>> {
     }
 
     public Object visit(AbsVarName varName, Stack<Frame> visArg) {
-        ImcNAME name = new ImcNAME(new Label(varName.name));
-        ImcGen.exprImCode.put(varName, name);
-        return name;
+        AbsVarDecl varDecl = (AbsVarDecl) SemAn.declaredAt.get(varName);
+        Access access = Frames.accesses.get(varDecl);
+        ImcExpr addr;
+        if (access instanceof AbsAccess)
+            addr = new ImcNAME(((AbsAccess) access).label);
+        else {
+            RelAccess relAccess = (RelAccess) access;
+            Frame frame = visArg.peek();
+            ImcExpr fp;
+            if (relAccess.depth == frame.depth)
+                fp = new ImcTEMP(frame.FP);
+            else {
+                ImcGen.displayedFrames.add(visArg.get(relAccess.depth - 1));
+                fp = new ImcMEM(displaySlot(relAccess.depth));
+            }
+            // Parameters lie above the frame pointer, local variables below it.
+            addr = new ImcBINOP(varDecl instanceof AbsParDecl ? ImcBINOP.Oper.ADD : ImcBINOP.Oper.SUB, fp,
+                    new ImcCONST(relAccess.offset));
+        }
+        ImcMEM mem = new ImcMEM(addr);
+        ImcGen.exprImCode.put(varName, mem);
+        return mem;
     }
 
     public Object visit(AbsBinExpr binExpr, Stack<Frame> visArg) {
@@ -174,7 +211,7 @@ public class CodeGenerator extends AbsFullVisitor<Object, Stack<Frame>> {
         ImcExpr dst = (ImcExpr)assignStmt.dst.accept(this, visArg);
         ImcExpr src = (ImcExpr)assignStmt.src.accept(this, visArg);
 
-        ImcMOVE move = new ImcMOVE(new ImcMEM(dst), src);
+        ImcMOVE move = new ImcMOVE(dst, src);
         ImcGen.stmtImCode.put(assignStmt, move);
         return move;
     }
@@ -3,9 +3,11 @@
  */
 package compiler.phases.imcgen;
 
+import java.util.*;
 import compiler.data.abstree.*;
 import compiler.data.abstree.attribute.*;
 import compiler.data.imcode.*;
+import compiler.data.layout.*;
 import compiler.phases.*;
 
 /**
@@ -16,16 +18,23 @@ import compiler.phases.*;
 public class ImcGen extends Phase {
 
 	/** Maps statements to intermediate code. */
-	public static final AbsAttribute<AbsStmt, ImcStmt> stmtImCode = new AbsAttribute<AbsStmt, ImcStmt>();
+	public static AbsAttribute<AbsStmt, ImcStmt> stmtImCode = new AbsAttribute<AbsStmt, ImcStmt>();
 
 	/** Maps expressions to intermediate code. */
-	public static final AbsAttribute<AbsExpr, ImcExpr> exprImCode = new AbsAttribute<AbsExpr, ImcExpr>();
+	public static AbsAttribute<AbsExpr, ImcExpr> exprImCode = new AbsAttribute<AbsExpr, ImcExpr>();
+
+	/** The frames of functions whose variables are accessed by nested functions. */
+	public static HashSet<Frame> displayedFrames = new HashSet<Frame>();
 	
 	/**
-	 * Constructs a new phase of intermediate code generation.
+	 * Constructs a new phase of intermediate code generation. The attributes
+	 * computed by any previous compilation are discarded.
 	 */
 	public ImcGen() {
 		super("imcgen");
+		stmtImCode = new AbsAttribute<AbsStmt, ImcStmt>();
+		exprImCode = new AbsAttribute<AbsExpr, ImcExpr>();
+		displayedFrames = new HashSet<Frame>();
 	}
 
 }
@@ -0,0 +1,349 @@
+/**
+ * @author sliva
+ */
+package compiler.phases.jit;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * A minimal writer of JVM class files.
+ *
+ * It produces classes of version 49 (which the JVM verifies by type inference
+ * and therefore need no stack map frames) consisting of public static methods
+ * only. The bytecode of each method is emitted through a {@link Code}
+ * buffer that keeps track of the operand stack depth and resolves forward
+ * branches.
+ *
+ * @author sliva
+ */
+public class ClassWriter {
+
+	/** The internal name of the class. */
+	private final String className;
+
+	/** The constant pool entries (serialized). */
+	private final ByteArrayOutputStream constPool = new ByteArrayOutputStream();
+
+	/** The number of constant pool slots used (slot 0 is unused). */
+	private int constPoolSize = 1;
+
+	/** The indices of constant pool entries already created. */
+	private final HashMap<String, Integer> constIndices = new HashMap<String, Integer>();
+
+	/** The serialized methods. */
+	private final ByteArrayOutputStream methods = new ByteArrayOutputStream();
+
+	/** The number of methods. */
+	private int numMethods = 0;
+
+	/**
+	 * Constructs a new class writer.
+	 *
+	 * @param className The internal name of the class, e.g.,
+	 *                  {@code compiler/phases/jit/JitCode}.
+	 */
+	public ClassWriter(String className) {
+		this.className = className;
+	}
+
+	/**
+	 * Returns the bytes of the class file.
+	 *
+	 * @return The bytes of the class file.
+	 */
+	public byte[] toByteArray() {
+		int thisClass = classRef(className);
+		int superClass = classRef("java/lang/Object");
+		try {
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			DataOutputStream out = new DataOutputStream(bytes);
+			out.writeInt(0xCAFEBABE);
+			out.writeShort(0);
+			out.writeShort(49);
+			out.writeShort(constPoolSize);
+			constPool.writeTo(out);
+			out.writeShort(0x0031); // ACC_PUBLIC | ACC_FINAL | ACC_SUPER
+			out.writeShort(thisClass);
+			out.writeShort(superClass);
+			out.writeShort(0); // interfaces
+			out.writeShort(0); // fields
+			out.writeShort(numMethods);
+			methods.writeTo(out);
+			out.writeShort(0); // attributes
+			out.flush();
+			return bytes.toByteArray();
+		} catch (IOException __) {
+			throw new UncheckedIOException(__);
+		}
+	}
+
+	/**
+	 * Adds a public static method.
+	 *
+	 * @param name       The name of the method.
+	 * @param descriptor The descriptor of the method.
+	 * @param code       The code of the method.
+	 */
+	public void addMethod(String name, String descriptor, Code code) {
+		if (code.length() > 0xFFFF || code.maxLocals > 0xFFFF)
+			throw new IllegalArgumentException("Method " + name + " is too large.");
+		int nameIndex = utf8(name);
+		int descIndex = utf8(descriptor);
+		int codeIndex = utf8("Code");
+		try {
+			DataOutputStream out = new DataOutputStream(methods);
+			out.writeShort(0x0009); // ACC_PUBLIC | ACC_STATIC
+			out.writeShort(nameIndex);
+			out.writeShort(descIndex);
+			out.writeShort(1);
+			out.writeShort(codeIndex);
+			out.writeInt(2 + 2 + 4 + code.length() + 2 + 2);
+			out.writeShort(code.maxStack);
+			out.writeShort(code.maxLocals);
+			out.writeInt(code.length());
+			out.write(code.bytes, 0, code.length());
+			out.writeShort(0); // exception table
+			out.writeShort(0); // attributes
+			out.flush();
+		} catch (IOException __) {
+			throw new UncheckedIOException(__);
+		}
+		numMethods++;
+	}
+
+	/** Returns the constant pool index of a UTF8 entry. */
+	int utf8(String value) {
+		Integer index = constIndices.get("U" + value);
+		if (index != null)
+			return index;
+		try {
+			DataOutputStream out = new DataOutputStream(constPool);
+			out.writeByte(1);
+			out.writeUTF(value);
+			out.flush();
+		} catch (IOException __) {
+			throw new UncheckedIOException(__);
+		}
+		return newConst("U" + value, 1);
+	}
+
+	/** Returns the constant pool index of a class entry. */
+	int classRef(String name) {
+		Integer index = constIndices.get("C" + name);
+		if (index != null)
+			return index;
+		int nameIndex = utf8(name);
+		writeConst(7, nameIndex);
+		return newConst("C" + name, 1);
+	}
+
+	/** Returns the constant pool index of a long entry. */
+	int longConst(long value) {
+		Integer index = constIndices.get("J" + value);
+		if (index != null)
+			return index;
+		try {
+			DataOutputStream out = new DataOutputStream(constPool);
+			out.writeByte(5);
+			out.writeLong(value);
+			out.flush();
+		} catch (IOException __) {
+			throw new UncheckedIOException(__);
+		}
+		return newConst("J" + value, 2);
+	}
+
+	/** Returns the constant pool index of a method reference entry. */
+	int methodRef(String owner, String name, String descriptor) {
+		String key = "M" + owner + "." + name + descriptor;
+		Integer index = constIndices.get(key);
+		if (index != null)
+			return index;
+		int classIndex = classRef(owner);
+		int nameIndex = utf8(name);
+		int descIndex = utf8(descriptor);
+		writeConst(12, nameIndex, descIndex);
+		int nameAndType = newConst("N" + name + descriptor, 1);
+		writeConst(10, classIndex, nameAndType);
+		return newConst(key, 1);
+	}
+
+	private void writeConst(int tag, int... indices) {
+		constPool.write(tag);
+		for (int index : indices) {
+			constPool.write(index >>> 8);
+			constPool.write(index);
+		}
+	}
+
+	private int newConst(String key, int slots) {
+		int index = constPoolSize;
+		constPoolSize += slots;
+		if (constPoolSize > 0xFFFF)
+			throw new IllegalArgumentException("Constant pool is too large.");
+		constIndices.put(key, index);
+		return index;
+	}
+
+	/**
+	 * A label within the code of a method.
+	 */
+	public static class Label {
+
+		/** The offset of the label or {@code -1} if not placed yet. */
+		private int offset = -1;
+
+		/** The offsets of the branch instructions referring to this label. */
+		private final Vector<Integer> branches = new Vector<Integer>();
+
+	}
+
+	/**
+	 * The code of a method.
+	 */
+	public static class Code {
+
+		private byte[] bytes = new byte[256];
+
+		private int length = 0;
+
+		private int stack = 0;
+
+		private int maxStack = 0;
+
+		private int maxLocals = 0;
+
+		/**
+		 * Constructs a new code buffer.
+		 *
+		 * @param maxLocals The number of local variable slots.
+		 */
+		public Code(int maxLocals) {
+			this.maxLocals = maxLocals;
+		}
+
+		public int length() {
+			return length;
+		}
+
+		private void u1(int value) {
+			if (length == bytes.length)
+				bytes = Arrays.copyOf(bytes, 2 * bytes.length);
+			bytes[length++] = (byte) value;
+		}
+
+		private void u2(int value) {
+			u1(value >>> 8);
+			u1(value);
+		}
+
+		/**
+		 * Emits an instruction without operands.
+		 *
+		 * @param opcode The opcode.
+		 * @param delta  The change of the operand stack depth (in slots).
+		 */
+		public void op(int opcode, int delta) {
+			u1(opcode);
+			adjust(delta);
+		}
+
+		/**
+		 * Emits an instruction with a two-byte constant pool index operand.
+		 *
+		 * @param opcode The opcode.
+		 * @param index  The constant pool index.
+		 * @param delta  The change of the operand stack depth (in slots).
+		 */
+		public void op2(int opcode, int index, int delta) {
+			u1(opcode);
+			u2(index);
+			adjust(delta);
+		}
+
+		/**
+		 * Emits an instruction accessing a local variable.
+		 *
+		 * @param opcode The opcode (e.g., {@code lload}).
+		 * @param slot   The local variable slot.
+		 * @param delta  The change of the operand stack depth (in slots).
+		 */
+		public void local(int opcode, int slot, int delta) {
+			if (slot > 0xFF) {
+				u1(0xC4); // wide
+				u1(opcode);
+				u2(slot);
+			} else {
+				u1(opcode);
+				u1(slot);
+			}
+			adjust(delta);
+		}
+
+		/**
+		 * Pushes an int constant.
+		 *
+		 * @param value The value.
+		 */
+		public void iconst(int value) {
+			if ((value >= -1) && (value <= 5))
+				op(0x03 + value, 1);
+			else if ((value >= Byte.MIN_VALUE) && (value <= Byte.MAX_VALUE)) {
+				u1(0x10); // bipush
+				u1(value);
+				adjust(1);
+			} else if ((value >= Short.MIN_VALUE) && (value <= Short.MAX_VALUE)) {
+				u1(0x11); // sipush
+				u2(value);
+				adjust(1);
+			} else
+				throw new IllegalArgumentException("Int constant out of range.");
+		}
+
+		/**
+		 * Emits a branch instruction.
+		 *
+		 * @param opcode The opcode.
+		 * @param label  The target label.
+		 * @param delta  The change of the operand stack depth (in slots).
+		 */
+		public void branch(int opcode, Label label, int delta) {
+			int offset = length;
+			u1(opcode);
+			if (label.offset >= 0) {
+				if (label.offset - offset < Short.MIN_VALUE)
+					throw new IllegalArgumentException("Branch offset out of range.");
+				u2(label.offset - offset);
+			} else {
+				label.branches.add(offset);
+				u2(0);
+			}
+			adjust(delta);
+		}
+
+		/**
+		 * Places a label at the current offset.
+		 *
+		 * @param label The label.
+		 */
+		public void place(Label label) {
+			label.offset = length;
+			for (int branch : label.branches) {
+				int delta = length - branch;
+				if (delta > Short.MAX_VALUE)
+					throw new IllegalArgumentException("Branch offset out of range.");
+				bytes[branch + 1] = (byte) (delta >>> 8);
+				bytes[branch + 2] = (byte) delta;
+			}
+			label.branches.clear();
+		}
+
+		private void adjust(int delta) {
+			stack += delta;
+			maxStack = Math.max(maxStack, stack);
+		}
+
+	}
+
+}
@@ -0,0 +1,577 @@
+/**
+ * @author sliva
+ */
+package compiler.phases.jit;
+
+import java.lang.invoke.*;
+import java.util.*;
+import compiler.data.layout.*;
+import compiler.data.imcode.*;
+import compiler.data.imcode.visitor.*;
+import compiler.data.chunk.*;
+import compiler.phases.chunks.*;
+import compiler.phases.vm.*;
+
+/**
+ * Compiles linearized code chunks into JVM bytecode.
+ *
+ * All code chunks are compiled into static methods of a single hidden class so
+ * that calls between PiNS functions are direct {@code invokestatic}
+ * instructions the JVM can inline. The body of each method mirrors the
+ * linearized intermediate code: temporary variables are JVM locals, labels are
+ * branch targets, while memory accesses, stack frames and builtins go through
+ * {@link JitRuntime}.
+ *
+ * @author sliva
+ */
+public class JitCompiler {
+
+	private static final String RUNTIME = "compiler/phases/jit/JitRuntime";
+
+	private static final String FUNCTION = "(L" + RUNTIME + ";)V";
+
+	/** The addresses of data labels. */
+	private final HashMap<Label, Long> dataLabels;
+
+	/** The indices of functions by their frame labels. */
+	private final HashMap<Label, Integer> callLabels;
+
+	/** The code chunks. */
+	private final Vector<CodeChunk> codeChunks;
+
+	/** The value of the heap pointer after the data chunks have been laid out. */
+	private final long initHP;
+
+	/** The addresses and sizes of data chunks initialized with zeros (in pairs). */
+	private final long[] zeroedData;
+
+	/** Whether the generated code reports executed basic blocks (see {@link Meter}). */
+	private final boolean metered = Meter.enabled();
+
+	/** The class being generated. */
+	private ClassWriter classWriter;
+
+	/**
+	 * Constructs a new compiler.
+	 *
+	 * @param dataChunks The data chunks.
+	 * @param codeChunks The code chunks.
+	 */
+	public JitCompiler(Vector<DataChunk> dataChunks, Vector<CodeChunk> codeChunks) {
+		this.dataLabels = new HashMap<Label, Long>();
+		long hp = VmCompiler.HEAP_BASE;
+		Vector<Long> zeroedData = new Vector<Long>();
+		for (DataChunk dataChunk : dataChunks) {
+			dataLabels.put(dataChunk.label, hp);
+			if (dataChunk.zeroed) {
+				zeroedData.add(hp);
+				zeroedData.add(dataChunk.size);
+			}
+			hp += dataChunk.size;
+		}
+		this.initHP = hp;
+		this.zeroedData = zeroedData.stream().mapToLong(Long::longValue).toArray();
+		this.codeChunks = codeChunks;
+		this.callLabels = new HashMap<Label, Integer>();
+		for (int index = 0; index < codeChunks.size(); index++)
+			callLabels.put(codeChunks.get(index).frame.label, index);
+	}
+
+	/**
+	 * Compiles all code chunks and loads the generated class.
+	 *
+	 * @return The compiled program.
+	 * @throws CannotCompileException Thrown if some code chunk contains a construct
+	 *                                the compiler does not support or if the
+	 *                                generated class cannot be loaded.
+	 */
+	public JitProgram compile() throws CannotCompileException {
+		classWriter = new ClassWriter("compiler/phases/jit/JitCode");
+		for (int index = 0; index < codeChunks.size(); index++)
+			new FunCompiler(codeChunks.get(index)).compile("f" + index);
+
+		try {
+			MethodHandles.Lookup lookup = MethodHandles.lookup().defineHiddenClass(classWriter.toByteArray(), true);
+			MethodHandle[] functions = new MethodHandle[codeChunks.size()];
+			String[] names = new String[codeChunks.size()];
+			for (int index = 0; index < codeChunks.size(); index++) {
+				functions[index] = lookup.findStatic(lookup.lookupClass(), "f" + index,
+						MethodType.methodType(void.class, JitRuntime.class));
+				names[index] = codeChunks.get(index).frame.label.name;
+			}
+			return new JitProgram(names, functions, initHP, zeroedData);
+		} catch (IllegalArgumentException | ReflectiveOperationException | LinkageError __) {
+			throw new CannotCompileException("Cannot load generated code: " + __.getMessage());
+		}
+	}
+
+	/**
+	 * The compiler of a single function.
+	 */
+	private class FunCompiler {
+
+		private final CodeChunk codeChunk;
+
+		/** The local variable slots of temporary variables. */
+		private final HashMap<Temp, Integer> tempSlots = new HashMap<Temp, Integer>();
+
+		/** The branch targets of labels. */
+		private final HashMap<Label, ClassWriter.Label> labels = new HashMap<Label, ClassWriter.Label>();
+
+		private ClassWriter.Code code;
+
+		FunCompiler(CodeChunk codeChunk) {
+			this.codeChunk = codeChunk;
+		}
+
+		void compile(String methodName) throws CannotCompileException {
+			Vector<ImcStmt> stmts = codeChunk.stmts();
+			LinkedHashSet<Temp> temps = new LinkedHashSet<Temp>();
+			temps.add(codeChunk.frame.FP);
+			temps.add(codeChunk.frame.RV);
+			for (ImcStmt stmt : stmts)
+				stmt.accept(new TempCollector(), temps);
+			for (Temp temp : temps)
+				tempSlots.put(temp, 1 + 2 * tempSlots.size());
+			for (ImcStmt stmt : stmts)
+				if (stmt instanceof ImcLABEL)
+					labels.put(((ImcLABEL) stmt).label, new ClassWriter.Label());
+			ClassWriter.Label entry = labels.get(codeChunk.entryLabel);
+			ClassWriter.Label exit = new ClassWriter.Label();
+			labels.put(codeChunk.exitLabel, exit);
+			if (entry == null)
+				throw new CannotCompileException("No entry label in " + codeChunk.frame.label.name + ".");
+
+			code = new ClassWriter.Code(1 + 2 * temps.size());
+			// Locals must be definitely assigned for the verifier.
+			for (Temp temp : temps) {
+				code.op(0x09, 2); // lconst_0
+				code.local(0x37, slot(temp), -2); // lstore
+			}
+			// Create a stack frame.
+			code.op(0x2A, 1); // aload_0
+			code.op2(0x14, classWriter.longConst(codeChunk.frame.size), 2); // ldc2_w
+			code.op2(0xB6, classWriter.methodRef(RUNTIME, "enter", "(J)J"), -1); // invokevirtual
+			code.local(0x37, slot(codeChunk.frame.FP), -2); // lstore
+			code.branch(0xA7, entry, 0); // goto
+
+			StmtCompiler stmtCompiler = new StmtCompiler();
+			try {
+				for (ImcStmt stmt : stmts)
+					stmt.accept(stmtCompiler, null);
+			} catch (UnsupportedException __) {
+				throw new CannotCompileException(__.getMessage());
+			}
+
+			// Store the result and destroy the stack frame.
+			code.place(exit);
+			code.op(0x2A, 1); // aload_0
+			code.local(0x16, slot(codeChunk.frame.FP), 2); // lload
+			code.local(0x16, slot(codeChunk.frame.RV), 2); // lload
+			code.op2(0xB6, classWriter.methodRef(RUNTIME, "leave", "(JJ)V"), -5); // invokevirtual
+			code.op(0xB1, 0); // return
+
+			try {
+				classWriter.addMethod(methodName, FUNCTION, code);
+			} catch (IllegalArgumentException __) {
+				throw new CannotCompileException(__.getMessage());
+			}
+		}
+
+		private int slot(Temp temp) {
+			return tempSlots.get(temp);
+		}
+
+		private ClassWriter.Label label(Label label) throws CannotCompileException {
+			ClassWriter.Label target = labels.get(label);
+			if (target == null)
+				throw new CannotCompileException("Jump to " + label.name + " out of " + codeChunk.frame.label.name + ".");
+			return target;
+		}
+
+		private void call(ImcCALL imcCall) throws CannotCompileException {
+			Vector<ImcExpr> args = imcCall.args();
+			for (int arg = 0; arg < args.size(); arg++) {
+				code.op(0x2A, 1); // aload_0
+				code.iconst(arg);
+				expr(args.get(arg));
+				code.op2(0xB6, classWriter.methodRef(RUNTIME, "arg", "(IJ)V"), -4); // invokevirtual
+			}
+			Integer callee = callLabels.get(imcCall.label);
+			int builtin = Builtins.number(imcCall.label.name);
+			if (callee != null) {
+				code.op(0x2A, 1); // aload_0
+				code.op2(0xB8, classWriter.methodRef("compiler/phases/jit/JitCode", "f" + callee, FUNCTION), -1); // invokestatic
+			} else if (builtin >= 0) {
+				code.op(0x2A, 1); // aload_0
+				code.iconst(builtin);
+				code.op2(0xB6, classWriter.methodRef(RUNTIME, "builtin", "(I)V"), -2); // invokevirtual
+			} else
+				throw new CannotCompileException("Call of unknown function " + imcCall.label.name + ".");
+		}
+
+		/** Reports an executed basic block if the code is metered. */
+		private void block() {
+			if (!metered)
+				return;
+			code.op(0x2A, 1); // aload_0
+			code.op2(0xB6, classWriter.methodRef(RUNTIME, "block", "()V"), -1); // invokevirtual
+		}
+
+		private void result() {
+			code.op(0x2A, 1); // aload_0
+			code.op2(0xB6, classWriter.methodRef(RUNTIME, "result", "()J"), 1); // invokevirtual
+		}
+
+		private void expr(ImcExpr expr) throws CannotCompileException {
+			try {
+				expr.accept(new ExprCompiler(), null);
+			} catch (UnsupportedException __) {
+				throw new CannotCompileException(__.getMessage());
+			}
+		}
+
+		/**
+		 * Compiles a statement.
+		 */
+		private class StmtCompiler implements ImcVisitor<Object, Object> {
+
+			@Override
+			public Object visit(ImcCJUMP imcCJump, Object arg) {
+				try {
+					block();
+					expr(imcCJump.cond);
+					code.op(0x09, 2); // lconst_0
+					code.op(0x94, -3); // lcmp
+					code.branch(0x9A, label(imcCJump.posLabel), -1); // ifne
+					code.branch(0xA7, label(imcCJump.negLabel), 0); // goto
+				} catch (CannotCompileException __) {
+					throw new UnsupportedException(__.getMessage());
+				}
+				return null;
+			}
+
+			@Override
+			public Object visit(ImcESTMT imcEStmt, Object arg) {
+				try {
+					if (imcEStmt.expr instanceof ImcCALL)
+						call((ImcCALL) imcEStmt.expr);
+					else {
+						expr(imcEStmt.expr);
+						code.op(0x58, -2); // pop2
+					}
+				} catch (CannotCompileException __) {
+					throw new UnsupportedException(__.getMessage());
+				}
+				return null;
+			}
+
+			@Override
+			public Object visit(ImcJUMP imcJump, Object arg) {
+				try {
+					block();
+					code.branch(0xA7, label(imcJump.label), 0); // goto
+				} catch (CannotCompileException __) {
+					throw new UnsupportedException(__.getMessage());
+				}
+				return null;
+			}
+
+			@Override
+			public Object visit(ImcLABEL imcLabel, Object arg) {
+				code.place(labels.get(imcLabel.label));
+				return null;
+			}
+
+			@Override
+			public Object visit(ImcMOVE imcMove, Object arg) {
+				try {
+					if (imcMove.dst instanceof ImcMEM) {
+						code.op(0x2A, 1); // aload_0
+						expr(((ImcMEM) imcMove.dst).addr);
+						if (imcMove.src instanceof ImcCALL) {
+							call((ImcCALL) imcMove.src);
+							result();
+						} else
+							expr(imcMove.src);
+						code.op2(0xB6, classWriter.methodRef(RUNTIME, "store", "(JJ)V"), -5); // invokevirtual
+						return null;
+					}
+					if (imcMove.dst instanceof ImcTEMP) {
+						if (imcMove.src instanceof ImcCALL) {
+							call((ImcCALL) imcMove.src);
+							result();
+						} else
+							expr(imcMove.src);
+						code.local(0x37, slot(((ImcTEMP) imcMove.dst).temp), -2); // lstore
+						return null;
+					}
+				} catch (CannotCompileException __) {
+					throw new UnsupportedException(__.getMessage());
+				}
+				throw new UnsupportedException("Move to a non-lvalue.");
+			}
+
+			@Override
+			public Object visit(ImcSTMTS imcStmts, Object arg) {
+				throw new UnsupportedException("Nested statements.");
+			}
+
+		}
+
+		/**
+		 * Compiles an expression leaving its value on the operand stack.
+		 */
+		private class ExprCompiler implements ImcVisitor<Object, Object> {
+
+			private void helper(String name) {
+				code.op2(0xB8, classWriter.methodRef(RUNTIME, name, "(JJ)J"), -2); // invokestatic
+			}
+
+			@Override
+			public Object visit(ImcBINOP imcBinop, Object arg) {
+				imcBinop.fstExpr.accept(this, null);
+				imcBinop.sndExpr.accept(this, null);
+				switch (imcBinop.oper) {
+				case IOR:
+					helper("ior");
+					break;
+				case XOR:
+					helper("xor");
+					break;
+				case AND:
+					helper("and");
+					break;
+				case EQU:
+					helper("equ");
+					break;
+				case NEQ:
+					helper("neq");
+					break;
+				case LTH:
+					helper("lth");
+					break;
+				case GTH:
+					helper("gth");
+					break;
+				case LEQ:
+					helper("leq");
+					break;
+				case GEQ:
+					helper("geq");
+					break;
+				case ADD:
+					code.op(0x61, -2); // ladd
+					break;
+				case SUB:
+					code.op(0x65, -2); // lsub
+					break;
+				case MUL:
+					code.op(0x69, -2); // lmul
+					break;
+				case DIV:
+					code.op(0x6D, -2); // ldiv
+					break;
+				case MOD:
+					code.op(0x71, -2); // lrem
+					break;
+				default:
+					throw new UnsupportedException("Unknown binary operator.");
+				}
+				return null;
+			}
+
+			@Override
+			public Object visit(ImcCALL imcCall, Object arg) {
+				throw new UnsupportedException("Call within an expression.");
+			}
+
+			@Override
+			public Object visit(ImcCONST imcConst, Object arg) {
+				constant(imcConst.value);
+				return null;
+			}
+
+			@Override
+			public Object visit(ImcMEM imcMem, Object arg) {
+				code.op(0x2A, 1); // aload_0
+				imcMem.addr.accept(this, null);
+				code.op2(0xB6, classWriter.methodRef(RUNTIME, "load", "(J)J"), -1); // invokevirtual
+				return null;
+			}
+
+			@Override
+			public Object visit(ImcNAME imcName, Object arg) {
+				Long addr = dataLabels.get(imcName.label);
+				if (addr == null)
+					throw new UnsupportedException("Unknown data label " + imcName.label.name + ".");
+				constant(addr);
+				return null;
+			}
+
+			@Override
+			public Object visit(ImcSEXPR imcSExpr, Object arg) {
+				throw new UnsupportedException("Statement expression.");
+			}
+
+			@Override
+			public Object visit(ImcTEMP imcTemp, Object arg) {
+				code.local(0x16, slot(imcTemp.temp), 2); // lload
+				return null;
+			}
+
+			@Override
+			public Object visit(ImcUNOP imcUnop, Object arg) {
+				imcUnop.subExpr.accept(this, null);
+				switch (imcUnop.oper) {
+				case NOT:
+					code.op2(0xB8, classWriter.methodRef(RUNTIME, "not", "(J)J"), 0); // invokestatic
+					break;
+				case NEG:
+					code.op(0x75, 0); // lneg
+					break;
+				default:
+					throw new UnsupportedException("Unknown unary operator.");
+				}
+				return null;
+			}
+
+			private void constant(long value) {
+				if (value == 0)
+					code.op(0x09, 2); // lconst_0
+				else if (value == 1)
+					code.op(0x0A, 2); // lconst_1
+				else
+					code.op2(0x14, classWriter.longConst(value), 2); // ldc2_w
+			}
+
+		}
+
+	}
+
+	/**
+	 * Collects the temporary variables used by a statement or an expression.
+	 */
+	private static class TempCollector implements ImcVisitor<Object, Set<Temp>> {
+
+		@Override
+		public Object visit(ImcBINOP imcBinop, Set<Temp> temps) {
+			imcBinop.fstExpr.accept(this, temps);
+			imcBinop.sndExpr.accept(this, temps);
+			return null;
+		}
+
+		@Override
+		public Object visit(ImcCALL imcCall, Set<Temp> temps) {
+			for (ImcExpr callArg : imcCall.args())
+				callArg.accept(this, temps);
+			return null;
+		}
+
+		@Override
+		public Object visit(ImcCJUMP imcCJump, Set<Temp> temps) {
+			imcCJump.cond.accept(this, temps);
+			return null;
+		}
+
+		@Override
+		public Object visit(ImcCONST imcConst, Set<Temp> temps) {
+			return null;
+		}
+
+		@Override
+		public Object visit(ImcESTMT imcEStmt, Set<Temp> temps) {
+			imcEStmt.expr.accept(this, temps);
+			return null;
+		}
+
+		@Override
+		public Object visit(ImcJUMP imcJump, Set<Temp> temps) {
+			return null;
+		}
+
+		@Override
+		public Object visit(ImcLABEL imcLabel, Set<Temp> temps) {
+			return null;
+		}
+
+		@Override
+		public Object visit(ImcMEM imcMem, Set<Temp> temps) {
+			imcMem.addr.accept(this, temps);
+			return null;
+		}
+
+		@Override
+		public Object visit(ImcMOVE imcMove, Set<Temp> temps) {
+			imcMove.dst.accept(this, temps);
+			imcMove.src.accept(this, temps);
+			return null;
+		}
+
+		@Override
+		public Object visit(ImcNAME imcName, Set<Temp> temps) {
+			return null;
+		}
+
+		@Override
+		public Object visit(ImcSEXPR imcSExpr, Set<Temp> temps) {
+			imcSExpr.stmt.accept(this, temps);
+			imcSExpr.expr.accept(this, temps);
+			return null;
+		}
+
+		@Override
+		public Object visit(ImcSTMTS imcStmts, Set<Temp> temps) {
+			for (ImcStmt stmt : imcStmts.stmts())
+				stmt.accept(this, temps);
+			return null;
+		}
+
+		@Override
+		public Object visit(ImcTEMP imcTemp, Set<Temp> temps) {
+			temps.add(imcTemp.temp);
+			return null;
+		}
+
+		@Override
+		public Object visit(ImcUNOP imcUnop, Set<Temp> temps) {
+			imcUnop.subExpr.accept(this, temps);
+			return null;
+		}
+
+	}
+
+	/**
+	 * Thrown by the visitors when a construct is not supported (visitors cannot
+	 * throw checked exceptions).
+	 */
+	@SuppressWarnings("serial")
+	private static class UnsupportedException extends RuntimeException {
+
+		UnsupportedException(String message) {
+			super(message);
+		}
+
+	}
+
+	/**
+	 * An exception thrown when the code chunks cannot be compiled into JVM
+	 * bytecode.
+	 *
+	 * @author sliva
+	 */
+	@SuppressWarnings("serial")
+	public static class CannotCompileException extends Exception {
+
+		/**
+		 * Constructs a new exception.
+		 *
+		 * @param message The reason.
+		 */
+		public CannotCompileException(String message) {
+			super(message);
+		}
+
+	}
+
+}
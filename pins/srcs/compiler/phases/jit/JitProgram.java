@@ -0,0 +1,79 @@
+/**
+ * @author sliva
+ */
+package compiler.phases.jit;
+
+import java.lang.invoke.*;
+import compiler.common.report.*;
+import compiler.phases.chunks.*;
+
+/**
+ * A program compiled to JVM bytecode.
+ *
+ * @author sliva
+ */
+public class JitProgram {
+
+	/** The names of the functions. */
+	private final String[] names;
+
+	/** The compiled functions. */
+	private final MethodHandle[] functions;
+
+	/** The value of the heap pointer after the data chunks have been laid out. */
+	public final long initHP;
+
+	/** The addresses and sizes of data chunks initialized with zeros (in pairs). */
+	final long[] zeroedData;
+
+	JitProgram(String[] names, MethodHandle[] functions, long initHP, long[] zeroedData) {
+		this.names = names;
+		this.functions = functions;
+		this.initHP = initHP;
+		this.zeroedData = zeroedData;
+	}
+
+	/**
+	 * Runs the program.
+	 *
+	 * @param entryLabel The name of the function to be called.
+	 * @return The value returned by the function.
+	 */
+	public long run(String entryLabel) {
+		return run(entryLabel, new RuntimeOutput());
+	}
+
+	/**
+	 * Runs the program.
+	 *
+	 * @param entryLabel The name of the function to be called.
+	 * @param output     The output of the builtin functions.
+	 * @return The value returned by the function.
+	 */
+	public long run(String entryLabel, RuntimeOutput output) {
+		for (int index = 0; index < names.length; index++) {
+			if (!names[index].equals(entryLabel))
+				continue;
+			Meter meter = Meter.create();
+			JitRuntime runtime = new JitRuntime(initHP, zeroedData, output, meter);
+			if (meter != null)
+				meter.start();
+			try {
+				functions[index].invokeExact(runtime);
+			} catch (Builtins.Exit __) {
+				return __.code;
+			} catch (RuntimeException | Error __) {
+				throw __;
+			} catch (Throwable __) {
+				throw new Report.InternalError();
+			} finally {
+				output.flush();
+				if (compiler.Main.cmdLineArgValue("--heap-stats") != null)
+					Report.info(runtime.heap().statistics());
+			}
+			return runtime.load(runtime.sp());
+		}
+		throw new Report.InternalError();
+	}
+
+}
@@ -0,0 +1,145 @@
+/**
+ * @author sliva
+ */
+package compiler.phases.jit;
+
+import compiler.phases.chunks.*;
+
+/**
+ * The runtime state of a program compiled to JVM bytecode.
+ *
+ * Compiled functions keep their temporary variables in JVM locals and call back
+ * into the runtime for memory accesses, stack frames and builtins. The memory
+ * layout and the calling convention are those of
+ * {@link compiler.phases.chunks.Interpreter}. The methods of this class are
+ * public because they are called from the generated code.
+ *
+ * @author sliva
+ */
+public final class JitRuntime {
+
+	/** The memory. */
+	private final Memory memory;
+
+	/** The value of the stack pointer. */
+	private long sp;
+
+	/** The heap allocator. */
+	private final HeapAllocator heap;
+
+	/** The meter ({@code null} if metering is disabled). */
+	private final Meter meter;
+
+	/** The handlers of the builtin functions. */
+	private final Builtins.Builtin[] builtins = Builtins.handlers();
+
+	/** The state accessible to the builtin functions. */
+	private final Builtins.Context context;
+
+	JitRuntime(long initHP, long[] zeroedData, RuntimeOutput output, Meter meter) {
+		this.memory = new Memory();
+		for (int chunk = 0; chunk < zeroedData.length; chunk += 2)
+			memory.zero(zeroedData[chunk], zeroedData[chunk + 1]);
+		this.sp = 0xFFFFFFFFFFFFFFF0l;
+		this.heap = new HeapAllocator(initHP);
+		this.meter = meter;
+		this.context = new Builtins.Context(memory, heap, output, null);
+	}
+
+	/** Returns the heap allocator. */
+	HeapAllocator heap() {
+		return heap;
+	}
+
+	/** Returns the value of the stack pointer. */
+	long sp() {
+		return sp;
+	}
+
+	public long load(long address) {
+		return memory.load(address);
+	}
+
+	public void store(long address, long value) {
+		memory.store(address, value);
+	}
+
+	/** Stores the {@code index}-th call argument. */
+	public void arg(int index, long value) {
+		memory.store(sp + 8 * index, value);
+	}
+
+	/** Returns the result of the last call. */
+	public long result() {
+		return memory.load(sp);
+	}
+
+	/** Creates a stack frame of the specified size and returns its frame pointer. */
+	public long enter(long frameSize) {
+		if (meter != null)
+			meter.enter();
+		long fp = sp;
+		sp = fp - frameSize;
+		return fp;
+	}
+
+	/** Stores the result and destroys the stack frame. */
+	public void leave(long fp, long rv) {
+		if (meter != null)
+			meter.leave();
+		memory.store(fp, rv);
+		sp = fp;
+	}
+
+	/** Reports an executed basic block (called by metered code only). */
+	public void block() {
+		meter.block();
+	}
+
+	/** Calls the {@code n}-th builtin function (see {@link Builtins}). */
+	public void builtin(int n) {
+		context.sp = sp;
+		builtins[n].call(context);
+	}
+
+	public static long ior(long fst, long snd) {
+		return ((fst != 0) | (snd != 0)) ? 1 : 0;
+	}
+
+	public static long xor(long fst, long snd) {
+		return ((fst != 0) ^ (snd != 0)) ? 1 : 0;
+	}
+
+	public static long and(long fst, long snd) {
+		return ((fst != 0) & (snd != 0)) ? 1 : 0;
+	}
+
+	public static long equ(long fst, long snd) {
+		return (fst == snd) ? 1 : 0;
+	}
+
+	public static long neq(long fst, long snd) {
+		return (fst != snd) ? 1 : 0;
+	}
+
+	public static long lth(long fst, long snd) {
+		return (fst < snd) ? 1 : 0;
+	}
+
+	public static long gth(long fst, long snd) {
+		return (fst > snd) ? 1 : 0;
+	}
+
+	public static long leq(long fst, long snd) {
+		return (fst <= snd) ? 1 : 0;
+	}
+
+	public static long geq(long fst, long snd) {
+		return (fst >= snd) ? 1 : 0;
+	}
+
+	public static long not(long sub) {
+		return (sub == 0) ? 1 : 0;
+	}
+
+}
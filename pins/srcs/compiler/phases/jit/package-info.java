@@ -0,0 +1,11 @@
+/**
+ * Compilation of code chunks into JVM bytecode.
+ *
+ * The code chunks are compiled into static methods of a hidden class and
+ * executed by the JVM, which in turn compiles the hot ones into machine code.
+ * If some chunk contains a construct the compiler does not support, the
+ * program is run by the interpreter instead.
+ *
+ * @author sliva
+ */
+package compiler.phases.jit;
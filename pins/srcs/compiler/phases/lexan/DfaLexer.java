@@ -0,0 +1,511 @@
+/**
+ * @author sliva
+ */
+package compiler.phases.lexan;
+
+import java.io.*;
+import java.nio.charset.*;
+import java.nio.file.*;
+import compiler.common.report.*;
+import compiler.data.symbol.*;
+
+/**
+ * The table-driven lexer.
+ *
+ * The whole source file is read into a single byte array once. Each byte is
+ * mapped to its character class by a table, and tokens are recognized by a
+ * deterministic finite automaton whose transitions are given by a table
+ * indexed by the state and the character class; the longest prefix the
+ * automaton accepts is the next token. A token is described by the offsets of
+ * its first and past its last byte in the array (see {@link #scan()}), so
+ * scanning allocates nothing: a {@link String} is created only for the lexeme
+ * of a constant, identifiers are interned as {@link Name}s straight from the
+ * bytes, and keywords, found by a perfect hash, and operators use constant
+ * lexemes. Locations are kept as offsets too and are resolved into line and
+ * column numbers only when needed (see {@link LineIndex}); a tab counts as
+ * four columns, like in the legacy lexer.
+ *
+ * @author sliva
+ */
+public class DfaLexer {
+
+	// Character classes.
+
+	private static final int OTHER = 0;
+	private static final int LETTER = 1;
+	private static final int DIGIT = 2;
+	private static final int UNDERSCORE = 3;
+	private static final int SPACE = 4;
+	private static final int TAB = 5;
+	private static final int NEWLINE = 6;
+	private static final int RETURN = 7;
+	private static final int HASH = 8;
+	private static final int QUOTE = 9;
+	private static final int OPER = 10;
+	private static final int EXCL = 11;
+	private static final int CMP = 12;
+	private static final int EQ = 13;
+	private static final int PRINT = 14;
+	private static final int NUM_CLASSES = 15;
+
+	// States of the automaton.
+
+	private static final int ERROR = -1;
+	private static final int START = 0;
+	private static final int IDENT = 1;
+	private static final int BAD_IDENT = 2;
+	private static final int INT_CONST = 3;
+	private static final int OPER1 = 4;
+	private static final int OPER1_EQ = 5;
+	private static final int EXCL1 = 6;
+	private static final int OPER2 = 7;
+	private static final int QUOTE1 = 8;
+	private static final int QUOTE2 = 9;
+	private static final int CHAR_CONST = 10;
+	private static final int NUM_STATES = 11;
+
+	/** The character class of each byte. */
+	private static final byte[] classes = new byte[256];
+
+	/** The transitions of the automaton (indexed by the state and the character class). */
+	private static final byte[] next = new byte[NUM_STATES * NUM_CLASSES];
+
+	/** Whether each state of the automaton is accepting. */
+	private static final boolean[] accepting = new boolean[NUM_STATES];
+
+	/** The error message of each nonaccepting state of the automaton. */
+	private static final String[] errors = new String[NUM_STATES];
+
+	/** The token of each single-character operator (indexed by the character). */
+	private static final Symbol.Term[] operators = new Symbol.Term[128];
+
+	/** The token of each two-character operator (indexed by its first character). */
+	private static final Symbol.Term[] operators2 = new Symbol.Term[128];
+
+	/** The lexeme of each keyword and operator (indexed by the token). */
+	private static final String[] lexemes = new String[Symbol.Term.values().length];
+
+	/** The size of the keyword table (a power of two). */
+	private static final int KEYWORD_TABLE_SIZE = 64;
+
+	/** The keywords by their perfect hash ({@code null} for unused slots). */
+	private static final String[] keywordTable = new String[KEYWORD_TABLE_SIZE];
+
+	/** The tokens of the keywords by their perfect hash. */
+	private static final Symbol.Term[] keywordTermTable = new Symbol.Term[KEYWORD_TABLE_SIZE];
+
+	/** The keywords and constants that look like identifiers. */
+	private static final String[] keywords = { "arr", "bool", "char", "del", "do", "else", "end", "fun", "if", "int",
+			"new", "ptr", "then", "typ", "var", "void", "where", "while", "none", "true", "false", "null" };
+
+	/** The tokens of the keywords and constants that look like identifiers. */
+	private static final Symbol.Term[] keywordTerms = { Symbol.Term.ARR, Symbol.Term.BOOL, Symbol.Term.CHAR,
+			Symbol.Term.DEL, Symbol.Term.DO, Symbol.Term.ELSE, Symbol.Term.END, Symbol.Term.FUN, Symbol.Term.IF,
+			Symbol.Term.INT, Symbol.Term.NEW, Symbol.Term.PTR, Symbol.Term.THEN, Symbol.Term.TYP, Symbol.Term.VAR,
+			Symbol.Term.VOID, Symbol.Term.WHERE, Symbol.Term.WHILE, Symbol.Term.VOIDCONST, Symbol.Term.BOOLCONST,
+			Symbol.Term.BOOLCONST, Symbol.Term.PTRCONST };
+
+	static {
+		for (int c = 32; c <= 126; c++)
+			classes[c] = PRINT;
+		for (int c = 'a'; c <= 'z'; c++)
+			classes[c] = LETTER;
+		for (int c = 'A'; c <= 'Z'; c++)
+			classes[c] = LETTER;
+		for (int c = '0'; c <= '9'; c++)
+			classes[c] = DIGIT;
+		classes['_'] = UNDERSCORE;
+		classes[' '] = SPACE;
+		classes['\t'] = TAB;
+		classes['\n'] = NEWLINE;
+		classes['\r'] = RETURN;
+		classes['#'] = HASH;
+		classes['\''] = QUOTE;
+		for (char c : "+-*/%$@:;,[]{}()".toCharArray())
+			classes[c] = OPER;
+		classes['!'] = EXCL;
+		classes['<'] = CMP;
+		classes['>'] = CMP;
+		classes['='] = EQ;
+
+		java.util.Arrays.fill(next, (byte) ERROR);
+		setNext(START, LETTER, IDENT);
+		setNext(START, UNDERSCORE, BAD_IDENT);
+		setNext(START, DIGIT, INT_CONST);
+		setNext(START, OPER, OPER1);
+		setNext(START, CMP, OPER1_EQ);
+		setNext(START, EQ, OPER1_EQ);
+		setNext(START, EXCL, EXCL1);
+		setNext(START, QUOTE, QUOTE1);
+		for (int cls : new int[] { LETTER, DIGIT, UNDERSCORE }) {
+			setNext(IDENT, cls, IDENT);
+			setNext(BAD_IDENT, cls, BAD_IDENT);
+		}
+		setNext(INT_CONST, DIGIT, INT_CONST);
+		setNext(OPER1_EQ, EQ, OPER2);
+		setNext(EXCL1, EQ, OPER2);
+		for (int cls : new int[] { LETTER, DIGIT, UNDERSCORE, SPACE, HASH, QUOTE, OPER, EXCL, CMP, EQ, PRINT })
+			setNext(QUOTE1, cls, QUOTE2);
+		setNext(QUOTE2, QUOTE, CHAR_CONST);
+
+		for (int state : new int[] { IDENT, INT_CONST, OPER1, OPER1_EQ, OPER2, CHAR_CONST })
+			accepting[state] = true;
+		errors[START] = "Invalid identifier";
+		errors[BAD_IDENT] = "Invalid identifier";
+		errors[EXCL1] = "Unexpected character \"!\"";
+		errors[QUOTE1] = "Invalid char const";
+		errors[QUOTE2] = "Invalid char const";
+
+		String[] opers = { "+", "-", "*", "/", "%", "$", "@", ":", ";", ",", "[", "]", "{", "}", "(", ")", "=", "<",
+				">" };
+		Symbol.Term[] operTerms = { Symbol.Term.ADD, Symbol.Term.SUB, Symbol.Term.MUL, Symbol.Term.DIV,
+				Symbol.Term.MOD, Symbol.Term.DATA, Symbol.Term.ADDR, Symbol.Term.COLON, Symbol.Term.SEMIC,
+				Symbol.Term.COMMA, Symbol.Term.LBRACKET, Symbol.Term.RBRACKET, Symbol.Term.LBRACE, Symbol.Term.RBRACE,
+				Symbol.Term.LPARENTHESIS, Symbol.Term.RPARENTHESIS, Symbol.Term.ASSIGN, Symbol.Term.LTH,
+				Symbol.Term.GTH };
+		for (int oper = 0; oper < opers.length; oper++) {
+			operators[opers[oper].charAt(0)] = operTerms[oper];
+			lexemes[operTerms[oper].ordinal()] = opers[oper];
+		}
+		operators2['='] = Symbol.Term.EQU;
+		operators2['!'] = Symbol.Term.NEQ;
+		operators2['<'] = Symbol.Term.LEQ;
+		operators2['>'] = Symbol.Term.GEQ;
+		lexemes[Symbol.Term.EQU.ordinal()] = "==";
+		lexemes[Symbol.Term.NEQ.ordinal()] = "!=";
+		lexemes[Symbol.Term.LEQ.ordinal()] = "<=";
+		lexemes[Symbol.Term.GEQ.ordinal()] = ">=";
+		for (int keyword = 0; keyword < keywords.length; keyword++)
+			if (lexemes[keywordTerms[keyword].ordinal()] == null)
+				lexemes[keywordTerms[keyword].ordinal()] = keywords[keyword];
+		lexemes[Symbol.Term.EOF.ordinal()] = "eof";
+
+		for (int keyword = 0; keyword < keywords.length; keyword++) {
+			String lexeme = keywords[keyword];
+			int slot = keywordHash(lexeme.charAt(0), lexeme.charAt(lexeme.length() >> 1), lexeme.length());
+			if (keywordTable[slot] != null)
+				throw new Report.InternalError();
+			keywordTable[slot] = lexeme;
+			keywordTermTable[slot] = keywordTerms[keyword];
+		}
+	}
+
+	/**
+	 * Returns the perfect hash of a keyword, i.e., a hash that differs for all
+	 * keywords and constants that look like identifiers.
+	 *
+	 * @param first  The first character.
+	 * @param middle The character at the half of the length.
+	 * @param length The length.
+	 * @return The slot in the keyword table.
+	 */
+	private static int keywordHash(int first, int middle, int length) {
+		return (4 * first + middle + 43 * length) & (KEYWORD_TABLE_SIZE - 1);
+	}
+
+	private static void setNext(int state, int cls, int nextState) {
+		next[state * NUM_CLASSES + cls] = (byte) nextState;
+	}
+
+	/** The content of the source file. */
+	private final byte[] src;
+
+	/** The index of lines of the source file. */
+	private final LineIndex lineIndex;
+
+	/** The table of names the identifiers are interned by. */
+	private final NameTable names;
+
+	/** The offset of the next byte to be scanned. */
+	private int offset = 0;
+
+	/** The token scanned most recently. */
+	private Symbol.Term token = null;
+
+	/** The offset of the first byte of the token scanned most recently. */
+	private int tokenBeg;
+
+	/** The offset past the last byte of the token scanned most recently. */
+	private int tokenEnd;
+
+	/** The error message of the lexical error found most recently ({@code null} if none). */
+	private String error = null;
+
+	/**
+	 * Constructs a new lexer. The index of lines of the source file, which
+	 * resolves the locations of the symbols, is created along (see
+	 * {@link LineIndex}).
+	 *
+	 * @param srcFileName The name of the source file.
+	 * @param names       The table of names the identifiers are interned by.
+	 */
+	public DfaLexer(String srcFileName, NameTable names) {
+		this.names = names;
+		try {
+			this.src = Files.readAllBytes(Paths.get(srcFileName));
+		} catch (IOException | InvalidPathException __) {
+			throw new Report.Error("Cannot open source file '" + srcFileName + "'.");
+		}
+		this.lineIndex = new LineIndex(src);
+	}
+
+	/**
+	 * Scans the next token. Its lexeme and location are returned by
+	 * {@link #lexeme()} and {@link #location()}, and it spans the bytes from
+	 * {@link #tokenBeg()} to {@link #tokenEnd()} of the source file.
+	 *
+	 * @return The token or {@link Symbol.Term#EOF} if there are no more tokens.
+	 */
+	public Symbol.Term scan() {
+		Symbol.Term token = tryScan();
+		if (token == null)
+			throw new Report.Error(location(), error);
+		return token;
+	}
+
+	/**
+	 * Scans the next token like {@link #scan()} but does not report a lexical
+	 * error. If the next token is erroneous, its location is returned by
+	 * {@link #location()} and the error message by {@link #error()}, and the
+	 * lexer must not be used any more.
+	 *
+	 * @return The token, {@link Symbol.Term#EOF} if there are no more tokens, or
+	 *         {@code null} if the next token is erroneous.
+	 */
+	public Symbol.Term tryScan() {
+		final byte[] src = this.src;
+		int offset = this.offset;
+
+		// Skip whitespace and comments.
+		while (offset < src.length) {
+			int cls = classes[src[offset] & 0xFF];
+			if ((cls == SPACE) || (cls == TAB) || (cls == NEWLINE) || (cls == RETURN))
+				offset++;
+			else if (cls == HASH) {
+				while ((offset < src.length) && (src[offset] != '\n'))
+					offset++;
+			} else
+				break;
+		}
+		tokenBeg = offset;
+		if (offset == src.length) {
+			this.offset = offset;
+			tokenEnd = offset;
+			return token = Symbol.Term.EOF;
+		}
+
+		// Run the automaton as long as it can.
+		int state = START;
+		while (offset < src.length) {
+			int nextState = next[state * NUM_CLASSES + classes[src[offset] & 0xFF]];
+			if (nextState == ERROR)
+				break;
+			state = nextState;
+			offset++;
+		}
+		this.offset = offset;
+		tokenEnd = offset;
+		if (!accepting[state]) {
+			tokenEnd = errorEnd(state, offset);
+			error = errors[state];
+			return token = null;
+		}
+
+		switch (state) {
+		case IDENT:
+			return token = keyword(tokenBeg, tokenEnd);
+		case INT_CONST:
+			return token = Symbol.Term.INTCONST;
+		case CHAR_CONST:
+			return token = Symbol.Term.CHARCONST;
+		case OPER2:
+			return token = operators2[src[tokenBeg]];
+		default:
+			return token = operators[src[tokenBeg]];
+		}
+	}
+
+	/**
+	 * Returns the end of an erroneous token, which is reported as a whole the same
+	 * way as by the legacy lexer: a malformed character constant extends up to
+	 * and including its closing quote (but not past whitespace), and any other
+	 * malformed token, e.g., {@code "abc"}, extends up to the next whitespace or
+	 * operator.
+	 *
+	 * @param state  The state the automaton has stopped in.
+	 * @param offset The offset of the byte the automaton has stopped at.
+	 * @return The offset past the last byte of the erroneous token.
+	 */
+	private int errorEnd(int state, int offset) {
+		switch (state) {
+		case EXCL1:
+			return offset;
+		case QUOTE1:
+		case QUOTE2:
+			while (offset < src.length) {
+				int cls = classes[src[offset] & 0xFF];
+				if ((cls == SPACE) || (cls == TAB) || (cls == NEWLINE) || (cls == RETURN))
+					break;
+				offset++;
+				if (cls == QUOTE)
+					break;
+			}
+			return offset;
+		default:
+			while (offset < src.length) {
+				int cls = classes[src[offset] & 0xFF];
+				if ((cls == SPACE) || (cls == TAB) || (cls == NEWLINE) || (cls == RETURN) || (cls == HASH)
+						|| (cls == QUOTE) || (cls == OPER) || (cls == EXCL) || (cls == CMP) || (cls == EQ))
+					break;
+				offset++;
+			}
+			return offset;
+		}
+	}
+
+	/**
+	 * Returns the token of a keyword or a constant that looks like an identifier.
+	 * The only candidate is found by the perfect hash of the characters.
+	 *
+	 * @param beg The offset of the first byte of the identifier.
+	 * @param end The offset past the last byte of the identifier.
+	 * @return The token or {@link Symbol.Term#IDENTIFIER} if the identifier is
+	 *         not a keyword.
+	 */
+	private Symbol.Term keyword(int beg, int end) {
+		int length = end - beg;
+		if ((length < 2) || (length > 5))
+			return Symbol.Term.IDENTIFIER;
+		int slot = keywordHash(src[beg], src[beg + (length >> 1)], length);
+		String lexeme = keywordTable[slot];
+		if ((lexeme == null) || (lexeme.length() != length))
+			return Symbol.Term.IDENTIFIER;
+		for (int index = 0; index < length; index++)
+			if (lexeme.charAt(index) != src[beg + index])
+				return Symbol.Term.IDENTIFIER;
+		return keywordTermTable[slot];
+	}
+
+	/**
+	 * Returns the lexeme of the token scanned most recently.
+	 *
+	 * @return The lexeme.
+	 */
+	public String lexeme() {
+		return lexeme(token, tokenBeg, tokenEnd);
+	}
+
+	/**
+	 * Returns the lexeme of a token scanned by this lexer.
+	 *
+	 * @param token The token.
+	 * @param beg   The offset of the first byte of the token.
+	 * @param end   The offset past the last byte of the token.
+	 * @return The lexeme.
+	 */
+	String lexeme(Symbol.Term token, int beg, int end) {
+		switch (token) {
+		case IDENTIFIER:
+			return names.intern(src, beg, end).string;
+		case INTCONST:
+		case CHARCONST:
+			return new String(src, beg, end - beg, StandardCharsets.ISO_8859_1);
+		case BOOLCONST:
+			return (src[beg] == 't') ? "true" : "false";
+		default:
+			return lexemes[token.ordinal()];
+		}
+	}
+
+	/**
+	 * Returns the name of the identifier scanned most recently.
+	 *
+	 * @return The name.
+	 */
+	public Name name() {
+		return names.intern(src, tokenBeg, tokenEnd);
+	}
+
+	/**
+	 * Returns the symbol of a token scanned by this lexer.
+	 *
+	 * @param token    The token.
+	 * @param beg      The offset of the first byte of the token.
+	 * @param end      The offset past the last byte of the token.
+	 * @param location The packed location of the token.
+	 * @return The symbol.
+	 */
+	Symbol symbol(Symbol.Term token, int beg, int end, long location) {
+		if (token == Symbol.Term.IDENTIFIER)
+			return new Symbol(names.intern(src, beg, end), location, lineIndex);
+		return new Symbol(token, lexeme(token, beg, end), location, lineIndex);
+	}
+
+	/**
+	 * Returns the location of the token scanned most recently.
+	 *
+	 * @return The location.
+	 */
+	public Location location() {
+		return new Location(packedLocation(), lineIndex);
+	}
+
+	/**
+	 * Returns the index of lines of the source file, which resolves the packed
+	 * locations of the tokens.
+	 *
+	 * @return The index of lines.
+	 */
+	public LineIndex lineIndex() {
+		return lineIndex;
+	}
+
+	/**
+	 * Returns the packed location of the token scanned most recently (see
+	 * {@link Location}).
+	 *
+	 * @return The packed location.
+	 */
+	public long packedLocation() {
+		return Location.pack(tokenBeg, Math.max(tokenEnd - 1, tokenBeg));
+	}
+
+	/**
+	 * Returns the error message of the erroneous token scanned most recently.
+	 *
+	 * @return The error message or {@code null} if no erroneous token has been
+	 *         scanned.
+	 */
+	public String error() {
+		return error;
+	}
+
+	/**
+	 * Returns the offset of the first byte of the token scanned most recently.
+	 *
+	 * @return The offset.
+	 */
+	public int tokenBeg() {
+		return tokenBeg;
+	}
+
+	/**
+	 * Returns the offset past the last byte of the token scanned most recently.
+	 *
+	 * @return The offset.
+	 */
+	public int tokenEnd() {
+		return tokenEnd;
+	}
+
+	/**
+	 * Scans the next token and returns it as a symbol.
+	 *
+	 * @return The symbol.
+	 */
+	public Symbol next() {
+		Symbol.Term token = scan();
+		return symbol(token, tokenBeg, tokenEnd, packedLocation());
+	}
+
+}
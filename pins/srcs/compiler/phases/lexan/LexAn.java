@@ -11,6 +11,14 @@ import compiler.phases.*;
 /**
  * Lexical analysis.
  *
+ * The symbols are produced by the table-driven {@link DfaLexer} unless the
+ * legacy lexer, which reads the source file character by character, is
+ * selected by the command line argument {@code --lexer=legacy}. The symbols
+ * are either produced one by one (see {@link #lexer()}) or ahead of the parser
+ * (see {@link #tokens()}): all at once into a buffer of tokens or, if selected
+ * by the command line argument {@code --lexer=pipe}, by the table-driven lexer
+ * running on its own thread.
+ *
  * @author sliva
  */
 public class LexAn extends Phase {
@@ -18,28 +26,46 @@ public class LexAn extends Phase {
 	/** The name of the source file. */
 	private final String srcFileName;
 
-	/** The source file reader. */
+	/** The source file reader ({@code null} unless the legacy lexer is used). */
 	private final BufferedReader srcFile;
 
+	/** The table-driven lexer ({@code null} if the legacy lexer is used). */
+	private final DfaLexer dfaLexer;
+
+	/** The table of names of this compilation. */
+	private final NameTable names = new NameTable();
+
+	/** Whether the table-driven lexer runs on its own thread. */
+	private final boolean pipelined;
+
 	/**
 	 * Constructs a new phase of lexical analysis.
 	 */
 	public LexAn() {
 		super("lexan");
 		srcFileName = compiler.Main.cmdLineArgValue("--src-file-name");
-		try {
-			srcFile = new BufferedReader(new FileReader(srcFileName));
-		} catch (IOException ___) {
-			throw new Report.Error("Cannot open source file '" + srcFileName + "'.");
+		pipelined = "pipe".equals(compiler.Main.cmdLineArgValue("--lexer"));
+		if ("legacy".equals(compiler.Main.cmdLineArgValue("--lexer"))) {
+			dfaLexer = null;
+			try {
+				srcFile = new BufferedReader(new FileReader(srcFileName));
+			} catch (IOException ___) {
+				throw new Report.Error("Cannot open source file '" + srcFileName + "'.");
+			}
+		} else {
+			srcFile = null;
+			dfaLexer = new DfaLexer(srcFileName, names);
 		}
 	}
 
 	@Override
 	public void close() {
-		try {
-			srcFile.close();
-		} catch (IOException ___) {
-			Report.warning("Cannot close source file '" + this.srcFileName + "'.");
+		if (srcFile != null) {
+			try {
+				srcFile.close();
+			} catch (IOException ___) {
+				Report.warning("Cannot close source file '" + this.srcFileName + "'.");
+			}
 		}
 		super.close();
 	}
@@ -62,6 +88,28 @@ public class LexAn extends Phase {
 		return symb;
 	}
 
+	/**
+	 * Performs the lexical analysis of the entire source file ahead of the
+	 * parser.
+	 *
+	 * The source file is either lexed in one pass into a buffer of tokens or, if
+	 * the lexer is pipelined, lexed by a separate thread while the tokens are
+	 * being read. The symbols are logged, if requested, as the cursor of the
+	 * returned stream reaches them. This method must be called at most once and
+	 * not after {@link #lexer()} has been called, and the returned stream must be
+	 * closed.
+	 *
+	 * @return The stream of all tokens of the source file or {@code null} if the
+	 *         legacy lexer is used.
+	 */
+	public TokenStream tokens() {
+		if (dfaLexer == null)
+			return null;
+		if (pipelined)
+			return new TokenPipe(dfaLexer, logger);
+		return new TokenBuffer(dfaLexer, logger);
+	}
+
 	/**
 	 * Performs the lexical analysis of the source file.
 	 *
@@ -73,6 +121,8 @@ public class LexAn extends Phase {
 	 *         any more.
 	 */
 	private Symbol lexify() {
+		if (dfaLexer != null)
+			return dfaLexer.next();
 		try {
 			while(srcFile.ready() || buffer != ' ') {
 				char c = (char)srcFile.read();
@@ -287,7 +337,7 @@ public class LexAn extends Phase {
 		if(isNum(tmp))
 			return new Symbol(Symbol.Term.INTCONST, tmp, new Location(currentLine, currentLineWidth - tmp.length() + 1 - d, currentLine, currentLineWidth - d));
 		else if(verifyIdent(tmp))
-			return new Symbol(Symbol.Term.IDENTIFIER, tmp, new Location(currentLine,currentLineWidth - tmp.length() + 1 - d,currentLine,currentLineWidth - d));
+			return new Symbol(names.of(tmp), Location.pack(currentLine,currentLineWidth - tmp.length() + 1 - d,currentLine,currentLineWidth - d), null);
 		else
 		if(charConst) {
 			if(tmp.length() > 3) {  //redundant, to be improved
@@ -336,17 +386,17 @@ public class LexAn extends Phase {
 		return true;
 	}
 
-	private static int currentLine = 1;
-	private static int column = 0;
-	private static int lineCount = 1;
-	private static int columnCount = 0;
-	private static boolean charConst = false;
-	private static String current = "";
-	private static char buffer = ' ';
-	private static char[] symbols = {'=', '!', '<', '>', '+', '-', '*', '/', '%', '$', '@', ':', ';', '[', ']', '{', '}', '(', ')', '#', ','};
-	private static int countWhiteSpace = 0;
-	private static int currentLineWidth = 0;
-	private static boolean nl = false;
+	private int currentLine = 1;
+	private int column = 0;
+	private int lineCount = 1;
+	private int columnCount = 0;
+	private boolean charConst = false;
+	private String current = "";
+	private char buffer = ' ';
+	private static final char[] symbols = {'=', '!', '<', '>', '+', '-', '*', '/', '%', '$', '@', ':', ';', '[', ']', '{', '}', '(', ')', '#', ','};
+	private int countWhiteSpace = 0;
+	private int currentLineWidth = 0;
+	private boolean nl = false;
 
 
 }
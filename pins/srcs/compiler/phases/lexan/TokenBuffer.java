@@ -0,0 +1,95 @@
+/**
+ * @author sliva
+ */
+package compiler.phases.lexan;
+
+import compiler.common.logger.*;
+import compiler.data.symbol.*;
+
+/**
+ * The buffer of all tokens of a source file.
+ *
+ * The whole source file is lexed in one pass when the buffer is constructed,
+ * and the tokens are stored as parallel arrays of their kinds, the offsets of
+ * their first bytes and their lengths, so a token takes three ints and no
+ * objects. A lexical error does not end the construction of the buffer with an
+ * error: the erroneous token is stored as the last token.
+ *
+ * @author sliva
+ */
+public class TokenBuffer extends TokenStream {
+
+	/** The kind of each token, i.e., the ordinal number of its terminal. */
+	private int[] kinds;
+
+	/** The offset of the first byte of each token. */
+	private int[] starts;
+
+	/** The length of each token. */
+	private int[] lengths;
+
+	/** The number of tokens including the final EOF or the erroneous token. */
+	private int size = 0;
+
+	/** The index of the current token. */
+	private int cursor = 0;
+
+	/**
+	 * Constructs a new buffer of all tokens of a source file and places the
+	 * cursor at the first token.
+	 *
+	 * @param lexer  The lexer of the source file.
+	 * @param logger The logger the symbols are logged to as the cursor reaches
+	 *               them ({@code null} if none).
+	 */
+	public TokenBuffer(DfaLexer lexer, Logger logger) {
+		super(lexer, logger);
+		int capacity = 1024;
+		kinds = new int[capacity];
+		starts = new int[capacity];
+		lengths = new int[capacity];
+		while (true) {
+			Symbol.Term token = lexer.tryScan();
+			if (size == capacity) {
+				capacity = 2 * capacity;
+				kinds = java.util.Arrays.copyOf(kinds, capacity);
+				starts = java.util.Arrays.copyOf(starts, capacity);
+				lengths = java.util.Arrays.copyOf(lengths, capacity);
+			}
+			kinds[size] = (token == null) ? ERROR : token.ordinal();
+			starts[size] = lexer.tokenBeg();
+			lengths[size] = lexer.tokenEnd() - lexer.tokenBeg();
+			size++;
+			if ((token == null) || (token == Symbol.Term.EOF))
+				break;
+		}
+		reach(kinds[0], starts[0], lengths[0], lexer.error());
+	}
+
+	/**
+	 * Returns the number of tokens including the final EOF.
+	 *
+	 * @return The number of tokens.
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Returns the index of the current token.
+	 *
+	 * @return The index.
+	 */
+	public int cursor() {
+		return cursor;
+	}
+
+	@Override
+	public void advance() {
+		if (atEOF())
+			return;
+		cursor++;
+		reach(kinds[cursor], starts[cursor], lengths[cursor], lexer.error());
+	}
+
+}
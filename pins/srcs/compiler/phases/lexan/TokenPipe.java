@@ -0,0 +1,177 @@
+/**
+ * @author sliva
+ */
+package compiler.phases.lexan;
+
+import java.util.concurrent.locks.*;
+import compiler.common.logger.*;
+import compiler.common.report.*;
+import compiler.data.symbol.*;
+
+/**
+ * The pipe of tokens from a lexer running on its own thread.
+ *
+ * The lexer thread (the producer) lexes the source file into batches of a
+ * fixed number of tokens and puts them into a bounded ring of batches, from
+ * which the parser (the consumer) reads them, so lexing overlaps with the
+ * construction of the derivation tree. A batch stores its tokens as parallel
+ * arrays of their kinds, the offsets of their first bytes and their lengths.
+ * The ring has a single producer and a single consumer: the producer only
+ * advances the tail and the consumer only advances the head, and a batch is
+ * handed over by the volatile write of the index that follows filling or
+ * reading it. A thread waiting for a full or an empty ring spins for a while
+ * and then parks for short periods.
+ *
+ * @author sliva
+ */
+public class TokenPipe extends TokenStream {
+
+	/** The number of tokens in a batch. */
+	private static final int BATCH_SIZE = 1024;
+
+	/** The number of batches in the ring (a power of two). */
+	private static final int RING_SIZE = 16;
+
+	/** The number of times a waiting thread spins before it starts to park. */
+	private static final int SPINS = 1 << 10;
+
+	/** The time a waiting thread parks for (in nanoseconds). */
+	private static final long PARK_NANOS = 50000;
+
+	/**
+	 * A batch of tokens.
+	 */
+	private static final class Batch {
+
+		/** The kind of each token, i.e., the ordinal number of its terminal. */
+		final int[] kinds = new int[BATCH_SIZE];
+
+		/** The offset of the first byte of each token. */
+		final int[] starts = new int[BATCH_SIZE];
+
+		/** The length of each token. */
+		final int[] lengths = new int[BATCH_SIZE];
+
+		/** The number of tokens in the batch. */
+		int size = 0;
+
+	}
+
+	/** The ring of batches. */
+	private final Batch[] ring = new Batch[RING_SIZE];
+
+	/** The number of batches taken from the ring by the consumer. */
+	private volatile long head = 0;
+
+	/** The number of batches put into the ring by the producer. */
+	private volatile long tail = 0;
+
+	/** Whether the consumer has stopped reading the tokens. */
+	private volatile boolean closed = false;
+
+	/** The failure of the lexer thread, rethrown to the consumer ({@code null} if none). */
+	private volatile Throwable failure = null;
+
+	/** The lexer thread. */
+	private final Thread producer;
+
+	/** The batch being read by the consumer. */
+	private Batch batch;
+
+	/** The index of the current token within the batch being read. */
+	private int cursor = 0;
+
+	/**
+	 * Constructs a new pipe of tokens, starts the lexer thread and places the
+	 * cursor at the first token.
+	 *
+	 * @param lexer  The lexer of the source file.
+	 * @param logger The logger the symbols are logged to as the cursor reaches
+	 *               them ({@code null} if none).
+	 */
+	public TokenPipe(DfaLexer lexer, Logger logger) {
+		super(lexer, logger);
+		for (int index = 0; index < RING_SIZE; index++)
+			ring[index] = new Batch();
+		producer = new Thread(this::produce, "lexer");
+		producer.setDaemon(true);
+		producer.start();
+		batch = take();
+		reach(batch.kinds[0], batch.starts[0], batch.lengths[0], lexer.error());
+	}
+
+	/**
+	 * Lexes the source file into the ring until EOF or the erroneous token
+	 * (performed by the lexer thread).
+	 */
+	private void produce() {
+		lexing: try {
+			boolean done = false;
+			while (!done) {
+				long tail = this.tail;
+				for (int spins = 0; tail - head == RING_SIZE; spins++) {
+					if (closed)
+						break lexing;
+					if (spins < SPINS)
+						Thread.onSpinWait();
+					else
+						LockSupport.parkNanos(PARK_NANOS);
+				}
+				Batch batch = ring[(int) tail & (RING_SIZE - 1)];
+				int size = 0;
+				while ((size < BATCH_SIZE) && !done) {
+					Symbol.Term token = lexer.tryScan();
+					batch.kinds[size] = (token == null) ? ERROR : token.ordinal();
+					batch.starts[size] = lexer.tokenBeg();
+					batch.lengths[size] = lexer.tokenEnd() - lexer.tokenBeg();
+					size++;
+					done = (token == null) || (token == Symbol.Term.EOF);
+				}
+				batch.size = size;
+				this.tail = tail + 1;
+			}
+		} catch (Throwable throwable) {
+			failure = throwable;
+			this.tail = Long.MAX_VALUE;
+		}
+	}
+
+	/**
+	 * Takes the next batch from the ring (performed by the consumer).
+	 *
+	 * @return The batch.
+	 */
+	private Batch take() {
+		long head = this.head;
+		for (int spins = 0; head == tail; spins++) {
+			if (spins < SPINS)
+				Thread.onSpinWait();
+			else
+				LockSupport.parkNanos(PARK_NANOS);
+		}
+		if (failure instanceof Report.Error)
+			throw (Report.Error) failure;
+		if (failure != null)
+			throw new Report.InternalError(failure);
+		return ring[(int) head & (RING_SIZE - 1)];
+	}
+
+	@Override
+	public void advance() {
+		if (atEOF())
+			return;
+		cursor++;
+		if (cursor == batch.size) {
+			head = head + 1;
+			batch = take();
+			cursor = 0;
+		}
+		reach(batch.kinds[cursor], batch.starts[cursor], batch.lengths[cursor], lexer.error());
+	}
+
+	@Override
+	public void close() {
+		closed = true;
+	}
+
+}
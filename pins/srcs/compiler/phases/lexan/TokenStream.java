@@ -0,0 +1,128 @@
+/**
+ * @author sliva
+ */
+package compiler.phases.lexan;
+
+import compiler.common.logger.*;
+import compiler.common.report.*;
+import compiler.data.symbol.*;
+
+/**
+ * A stream of tokens produced by the table-driven lexer ahead of the parser.
+ *
+ * The tokens are read through a cursor (see {@link #token()} and
+ * {@link #advance()}); a {@link Symbol} of the current token is created only
+ * when it is asked for (see {@link #symbol()}). A token is described by its
+ * kind, the offset of its first byte and its length. A lexical error found
+ * ahead of the parser is kept as an erroneous token and is reported only when
+ * the cursor reaches it, so errors are reported in the same order as if the
+ * source file was lexed token by token.
+ *
+ * @author sliva
+ */
+public abstract class TokenStream implements AutoCloseable {
+
+	/** The kind of the erroneous token. */
+	protected static final int ERROR = -1;
+
+	/** The kind of EOF. */
+	protected static final int EOF = Symbol.Term.EOF.ordinal();
+
+	/** All tokens (indexed by their ordinal numbers). */
+	private static final Symbol.Term[] terms = Symbol.Term.values();
+
+	/** The lexer that produces the tokens. */
+	protected final DfaLexer lexer;
+
+	/** The logger the symbols are logged to ({@code null} if none). */
+	private final Logger logger;
+
+	/** The kind of the current token, i.e., the ordinal number of its terminal. */
+	private int kind;
+
+	/** The offset of the first byte of the current token. */
+	private int start;
+
+	/** The length of the current token. */
+	private int length;
+
+	/** The symbol of the current token ({@code null} until needed). */
+	private Symbol symbol = null;
+
+	/**
+	 * Constructs a new stream of tokens.
+	 *
+	 * @param lexer  The lexer of the source file.
+	 * @param logger The logger the symbols are logged to as the cursor reaches
+	 *               them ({@code null} if none).
+	 */
+	protected TokenStream(DfaLexer lexer, Logger logger) {
+		this.lexer = lexer;
+		this.logger = logger;
+	}
+
+	/**
+	 * Returns the current token.
+	 *
+	 * @return The token.
+	 */
+	public Symbol.Term token() {
+		return terms[kind];
+	}
+
+	/**
+	 * Returns the symbol of the current token.
+	 *
+	 * @return The symbol.
+	 */
+	public Symbol symbol() {
+		if (symbol == null) {
+			Symbol.Term token = terms[kind];
+			symbol = lexer.symbol(token, start, start + length, packedLocation());
+		}
+		return symbol;
+	}
+
+	/**
+	 * Moves the cursor to the next token. The cursor never moves past EOF.
+	 */
+	public abstract void advance();
+
+	/**
+	 * Makes a token the current token. Reports the token if it is erroneous and
+	 * logs its symbol otherwise.
+	 *
+	 * @param kind   The kind of the token.
+	 * @param start  The offset of the first byte of the token.
+	 * @param length The length of the token.
+	 * @param error  The error message if the token is erroneous.
+	 */
+	protected void reach(int kind, int start, int length, String error) {
+		this.start = start;
+		this.length = length;
+		if (kind == ERROR)
+			throw new Report.Error(new Location(packedLocation(), lexer.lineIndex()), error);
+		this.kind = kind;
+		this.symbol = null;
+		if ((logger != null) && (kind != EOF))
+			symbol().log(logger);
+	}
+
+	/**
+	 * Returns whether the current token is EOF.
+	 *
+	 * @return {@code true} if the current token is EOF, {@code false} otherwise.
+	 */
+	protected boolean atEOF() {
+		return kind == EOF;
+	}
+
+	private long packedLocation() {
+		return Location.pack(start, Math.max(start + length - 1, start));
+	}
+
+	@Override
+	public void close() {
+	}
+
+}
@@ -68,6 +68,14 @@ public class AddrResolver extends AbsFullVisitor<Boolean, Object> {
         return false;
     }
 
+    public Boolean visit(AbsAssignStmt assignStmt, Object visArg) {
+        Boolean isAddr = assignStmt.dst.accept(this, visArg);
+        assignStmt.src.accept(this, visArg);
+        if ((isAddr == null) || !isAddr)
+            throw new Report.Error(assignStmt.dst, "Cannot assign to an expression that is not an address!");
+        return null;
+    }
+
 
 
 
@@ -82,6 +82,8 @@ public class NameResolver extends AbsFullVisitor<Object, Object> {
 		catch(Exception e) {
 			throw new Report.Error(var.location(), "Name '" + var.name + "' not defined in current scope!");
 		}
+		if (!(SemAn.declaredAt.get(var) instanceof AbsVarDecl))
+			throw new Report.Error(var.location(), "Name '" + var.name + "' is not a variable!");
 		return visArg;
 	}
 
@@ -101,6 +103,7 @@ public class NameResolver extends AbsFullVisitor<Object, Object> {
 		}catch(Exception e) {
 			throw new Report.Error(funName.location(), "Name '" + funName.name + "'not defined in current scope!");
 		}
+		funName.args.accept(this, visArg);
 		return visArg;
 	}
 
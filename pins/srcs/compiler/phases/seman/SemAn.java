@@ -16,25 +16,31 @@ import compiler.phases.*;
 public class SemAn extends Phase {
 
 	/** Maps names (except component names) to declarations. */
-	public static final AbsAttribute<AbsName, AbsDecl> declaredAt = new AbsAttribute<AbsName, AbsDecl>();
+	public static AbsAttribute<AbsName, AbsDecl> declaredAt = new AbsAttribute<AbsName, AbsDecl>();
 
 	/** Maps type declarations to a {@link SemNamedType} types. */
-	public static final AbsAttribute<AbsTypDecl, SemNamedType> declaresType = new AbsAttribute<AbsTypDecl, SemNamedType>();
+	public static AbsAttribute<AbsTypDecl, SemNamedType> declaresType = new AbsAttribute<AbsTypDecl, SemNamedType>();
 
 	/** Maps type expressions to types. */
-	public static final AbsAttribute<AbsType, SemType> isType = new AbsAttribute<AbsType, SemType>();
+	public static AbsAttribute<AbsType, SemType> isType = new AbsAttribute<AbsType, SemType>();
 
 	/** Maps value expressions to types. */
-	public static final AbsAttribute<AbsExpr, SemType> isOfType = new AbsAttribute<AbsExpr, SemType>();
+	public static AbsAttribute<AbsExpr, SemType> isOfType = new AbsAttribute<AbsExpr, SemType>();
 
 	/** Denotes whether a value expression can denote an address. */
-	public static final AbsAttribute<AbsExpr, Boolean> isAddr = new AbsAttribute<AbsExpr, Boolean>();
+	public static AbsAttribute<AbsExpr, Boolean> isAddr = new AbsAttribute<AbsExpr, Boolean>();
 	
 	/**
-	 * Constructs a new phase of semantic analysis.
+	 * Constructs a new phase of semantic analysis. The attributes computed by any
+	 * previous compilation are discarded.
 	 */
 	public SemAn() {
 		super("seman");
+		declaredAt = new AbsAttribute<AbsName, AbsDecl>();
+		declaresType = new AbsAttribute<AbsTypDecl, SemNamedType>();
+		isType = new AbsAttribute<AbsType, SemType>();
+		isOfType = new AbsAttribute<AbsExpr, SemType>();
+		isAddr = new AbsAttribute<AbsExpr, Boolean>();
 	}
 
 }
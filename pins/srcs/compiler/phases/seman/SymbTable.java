@@ -6,6 +6,7 @@ package compiler.phases.seman;
 import java.util.*;
 import compiler.common.report.*;
 import compiler.data.abstree.*;
+import compiler.data.symbol.*;
 
 /**
  * Symbol table.
@@ -30,34 +31,42 @@ public class SymbTable {
 		/** The declaration. */
 		public final AbsDecl decl;
 
+		/** The declaration of the same name this one hides ({@code null} if none). */
+		public final ScopedDecl hidden;
+
 		/**
 		 * Constructs a new record denoting a declaration of a name within a certain
 		 * scope.
 		 * 
-		 * @param depth The depth of the scope the declaration belongs to.
-		 * @param decl  The declaration.
+		 * @param depth  The depth of the scope the declaration belongs to.
+		 * @param decl   The declaration.
+		 * @param hidden The declaration of the same name this one hides
+		 *               ({@code null} if none).
 		 */
-		public ScopedDecl(int depth, AbsDecl decl) {
+		public ScopedDecl(int depth, AbsDecl decl, ScopedDecl hidden) {
 			this.depth = depth;
 			this.decl = decl;
+			this.hidden = hidden;
 		}
 
 	}
 
 	/**
-	 * A mapping of names into lists of records denoting declarations at different
-	 * scopes. At each moment during the lifetime of a symbol table, the declaration
-	 * list corresponding to a particular name contains all declarations that name
-	 * within currently active scopes: the declaration at the inner most scope is
-	 * the first in the list and is visible, the other declarations are hidden.
+	 * A mapping of names, indexed by their ids (see {@link Name}), into lists of
+	 * records denoting declarations at different scopes. The array grows as names
+	 * with higher ids are declared. At each moment during the lifetime of a
+	 * symbol table, the declaration list corresponding to a particular name
+	 * contains all declarations that name within currently active scopes: the declaration at the inner most scope is the first in the list
+	 * (linked through {@link ScopedDecl#hidden}) and is visible, the other
+	 * declarations are hidden.
 	 */
-	private final HashMap<String, LinkedList<ScopedDecl>> allDeclsOfAllNames;
+	private ScopedDecl[] allDeclsOfAllNames;
 
 	/**
 	 * The list of scopes. Each scope is represented by a list of names declared
 	 * within it.
 	 */
-	private final LinkedList<LinkedList<String>> scopes;
+	private final LinkedList<LinkedList<Name>> scopes;
 
 	/** The depth of the currently active scope. */
 	private int currDepth;
@@ -69,8 +78,8 @@ public class SymbTable {
 	 * Constructs a new symbol table.
 	 */
 	public SymbTable() {
-		allDeclsOfAllNames = new HashMap<String, LinkedList<ScopedDecl>>();
-		scopes = new LinkedList<LinkedList<String>>();
+		allDeclsOfAllNames = new ScopedDecl[16];
+		scopes = new LinkedList<LinkedList<Name>>();
 		currDepth = 0;
 		lock = false;
 		newScope();
@@ -96,23 +105,19 @@ public class SymbTable {
 	 * @throws CannotInsNameException Thrown if this name has already been declared
 	 *                                within the currently active scope.
 	 */
-	public void ins(String name, AbsDecl decl) throws CannotInsNameException {
+	public void ins(Name name, AbsDecl decl) throws CannotInsNameException {
 		if (lock)
 			throw new Report.InternalError();
 
-		LinkedList<ScopedDecl> allDeclsOfName = allDeclsOfAllNames.get(name);
-		if (allDeclsOfName == null) {
-			allDeclsOfName = new LinkedList<ScopedDecl>();
-			allDeclsOfAllNames.put(name, allDeclsOfName);
-		}
+		if (name.id >= allDeclsOfAllNames.length)
+			allDeclsOfAllNames = Arrays.copyOf(allDeclsOfAllNames,
+					Math.max(2 * allDeclsOfAllNames.length, name.id + 1));
 
-		if (!allDeclsOfName.isEmpty()) {
-			ScopedDecl declOfName = allDeclsOfName.getFirst();
-			if (declOfName.depth == currDepth)
-				throw new CannotInsNameException();
-		}
+		ScopedDecl declOfName = allDeclsOfAllNames[name.id];
+		if ((declOfName != null) && (declOfName.depth == currDepth))
+			throw new CannotInsNameException();
 
-		allDeclsOfName.addFirst(new ScopedDecl(currDepth, decl));
+		allDeclsOfAllNames[name.id] = new ScopedDecl(currDepth, decl, declOfName);
 		scopes.getFirst().addFirst(name);
 	}
 
@@ -128,15 +133,15 @@ public class SymbTable {
 	 *                                currently active scope or any scope enclosing
 	 *                                it.
 	 */
-	public AbsDecl fnd(String name) throws CannotFndNameException {
-		LinkedList<ScopedDecl> allDeclsOfName = allDeclsOfAllNames.get(name);
-		if (allDeclsOfName == null)
+	public AbsDecl fnd(Name name) throws CannotFndNameException {
+		if (name.id >= allDeclsOfAllNames.length)
 			throw new CannotFndNameException();
 
-		if (allDeclsOfName.isEmpty())
+		ScopedDecl declOfName = allDeclsOfAllNames[name.id];
+		if (declOfName == null)
 			throw new CannotFndNameException();
 
-		return allDeclsOfName.getFirst().decl;
+		return declOfName.decl;
 	}
 
 	/**
@@ -148,7 +153,7 @@ public class SymbTable {
 			throw new Report.InternalError();
 
 		currDepth++;
-		scopes.addFirst(new LinkedList<String>());
+		scopes.addFirst(new LinkedList<Name>());
 	}
 
 	/**
@@ -163,8 +168,8 @@ public class SymbTable {
 		if (currDepth == 0)
 			throw new Report.InternalError();
 
-		for (String name : scopes.getFirst()) {
-			allDeclsOfAllNames.get(name).removeFirst();
+		for (Name name : scopes.getFirst()) {
+			allDeclsOfAllNames[name.id] = allDeclsOfAllNames[name.id].hidden;
 		}
 		scopes.removeFirst();
 		currDepth--;
@@ -84,7 +84,7 @@ public class TypeResolver extends AbsFullVisitor<SemType, TypeResolver.Phase> {
 	public SemType visit(AbsTypDecl decl, TypeResolver.Phase visArg) {
 		switch(visArg) {
 			case TYP_DECLARE: {
-				SemAn.declaresType.put(decl, new SemNamedType(decl.name));
+				SemAn.declaresType.put(decl, new SemNamedType(decl.name.string));
 				break;
 			}
 			case TYP_DEFINE: {
@@ -237,6 +237,7 @@ public class TypeResolver extends AbsFullVisitor<SemType, TypeResolver.Phase> {
 	}
 
 	public SemType visit(AbsBlockExpr blockExpr, TypeResolver.Phase visArg) {
+		blockExpr.decls.accept(this, visArg);
 		return null;
 	}
 
@@ -297,6 +298,7 @@ public class TypeResolver extends AbsFullVisitor<SemType, TypeResolver.Phase> {
 				funDef.parDecls.accept(this, visArg);
 			}
 		}
+		funDef.value.accept(this, visArg);
 
 		return null;
 	}
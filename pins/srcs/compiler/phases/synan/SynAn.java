@@ -22,6 +22,9 @@ public class SynAn extends Phase {
 	/** The lexical analyzer used by this syntax analyzer. */
 	private final LexAn lexAn;
 
+	/** The stream of all tokens of the source file ({@code null} if the symbols are produced one by one). */
+	private TokenStream tokens = null;
+
 	/**
 	 * Constructs a new phase of syntax analysis.
 	 */
@@ -32,6 +35,8 @@ public class SynAn extends Phase {
 
 	@Override
 	public void close() {
+		if (tokens != null)
+			tokens.close();
 		lexAn.close();
 		super.close();
 	}
@@ -41,18 +46,54 @@ public class SynAn extends Phase {
 	 *
 	 * This method constructs a derivation tree of the program in the source file.
 	 * It calls method {@link #parseSource()} that starts a recursive descent parser
-	 * implementation of an LL(1) parsing algorithm.
+	 * implementation of an LL(1) parsing algorithm. The parser reads the tokens
+	 * from the stream of all tokens of the source file unless the lexer can only
+	 * produce the symbols one by one.
 	 */
 	public void parser() {
-		currSymb = lexAn.lexer();
+		tokens = lexAn.tokens();
+		if (tokens == null) {
+			currSymb = lexAn.lexer();
+			currToken = currSymb.token;
+		} else
+			currToken = tokens.token();
 		derTree = parseSource();
-		if (currSymb.token != Symbol.Term.EOF)
-			throw new Report.Error(currSymb, "Unexpected '" + currSymb + "' at the end of a program.");
+		if (currToken != Symbol.Term.EOF)
+			throw new Report.Error(currSymb(), "Unexpected '" + currSymb() + "' at the end of a program.");
 	}
 
-	/** The lookahead buffer (of length 1). */
+	/** The token in the lookahead buffer (of length 1). */
+	private Symbol.Term currToken = null;
+
+	/** The symbol in the lookahead buffer ({@code null} until needed if the tokens are buffered). */
 	private Symbol currSymb = null;
 
+	/**
+	 * Returns the symbol in the lookahead buffer.
+	 *
+	 * @return The current symbol.
+	 */
+	private Symbol currSymb() {
+		if (currSymb == null)
+			currSymb = tokens.symbol();
+		return currSymb;
+	}
+
+	/**
+	 * Replaces the current symbol in the lookahead buffer with the next input
+	 * symbol.
+	 */
+	private void advance() {
+		if (tokens == null) {
+			currSymb = lexAn.lexer();
+			currToken = currSymb.token;
+		} else {
+			currSymb = null;
+			tokens.advance();
+			currToken = tokens.token();
+		}
+	}
+
 	/**
 	 * Appends the current symbol in the lookahead buffer to a derivation tree node
 	 * (typically the node of the derivation tree that is currently being expanded
@@ -63,10 +104,10 @@ public class SynAn extends Phase {
 	 *             parser.
 	 */
 	private void add(DerNode node) {
-		if (currSymb == null)
+		if (currToken == null)
 			throw new Report.InternalError();
-		node.add(new DerLeaf(currSymb));
-		currSymb = lexAn.lexer();
+		node.add(new DerLeaf(currSymb()));
+		advance();
 	}
 
 	/**
@@ -74,21 +115,20 @@ public class SynAn extends Phase {
 	 * the lookahead buffer to a derivation tree node (typically the node of the
 	 * derivation tree that is currently being expanded by the parser) and replaces
 	 * the current symbol (just added) with the next input symbol. Otherwise,
-	 * produces the error message.
+	 * reports the unexpected symbol.
 	 *
-	 * @param node     The node of the derivation tree currently being expanded by
-	 *                 the parser.
-	 * @param token    The expected terminal.
-	 * @param errorMsg The error message.
+	 * @param node  The node of the derivation tree currently being expanded by the
+	 *              parser.
+	 * @param token The expected terminal.
 	 */
-	private void add(DerNode node, Symbol.Term token, String errorMsg) {
-		if (currSymb == null)
+	private void add(DerNode node, Symbol.Term token) {
+		if (currToken == null)
 			throw new Report.InternalError();
-		if (currSymb.token == token) {
-			node.add(new DerLeaf(currSymb));
-			currSymb = lexAn.lexer();
+		if (currToken == token) {
+			node.add(new DerLeaf(currSymb()));
+			advance();
 		} else
-			throw new Report.Error(currSymb, "Unexpected \'" + currSymb.toString() + "\'");
+			throw new Report.Error(currSymb(), "Unexpected \'" + currSymb().toString() + "\'");
 	}
 
 	private DerNode parseSource() {
@@ -96,14 +136,14 @@ public class SynAn extends Phase {
 		node.add(parseDecl());
 		node.add(parseDeclsRest());
 		//node.add(parseDeclsFirst());
-		if(currSymb.token != Symbol.Term.EOF)
-			throw new Report.Error(currSymb, "Unexpected \'" + currSymb.toString() + "\'");
+		if(currToken != Symbol.Term.EOF)
+			throw new Report.Error(currSymb(), "Unexpected \'" + currSymb().toString() + "\'");
 		return node;
 	}
 
 	private DerNode parseDeclsRest() {
 		DerNode node = new DerNode(DerNode.Nont.DeclsRest);
-		switch(currSymb.token) {
+		switch(currToken) {
 			case VAR:
 				node.add(parseDecl());
 				node.add(parseDeclsRest());
@@ -119,38 +159,38 @@ public class SynAn extends Phase {
 			case EOF:
 				break;
 			default:
-				throw new Report.Error("Unexpected \'" + currSymb.toString() + "\'");
+				throw new Report.Error("Unexpected \'" + currSymb().toString() + "\'");
 		}
 		return node;
 	}
 
 	private DerNode parseDecl() {
 		DerNode node = new DerNode(DerNode.Nont.Decl);
-		switch(currSymb.token) {
+		switch(currToken) {
 			case VAR:
-				add(node, Symbol.Term.VAR, "Unexpected \'" + currSymb.toString() + "\'");
-				add(node, Symbol.Term.IDENTIFIER, "Unexpected \'" + currSymb.toString() + "\'");
-				add(node, Symbol.Term.COLON, "Unexpected \'" + currSymb.toString() + "\'");
+				add(node, Symbol.Term.VAR);
+				add(node, Symbol.Term.IDENTIFIER);
+				add(node, Symbol.Term.COLON);
 				node.add(parseType());
 				break;
 			case TYP:
-				add(node, Symbol.Term.TYP, "Unexpected \'" + currSymb.toString() + "\'");
-				add(node, Symbol.Term.IDENTIFIER, "Unexpected \'" + currSymb.toString() + "\'");
-				add(node, Symbol.Term.COLON, "Unexpected \'" + currSymb.toString() + "\'");
+				add(node, Symbol.Term.TYP);
+				add(node, Symbol.Term.IDENTIFIER);
+				add(node, Symbol.Term.COLON);
 				node.add(parseType());
 				break;
 			case FUN:
-				add(node, Symbol.Term.FUN, "Unexpected \'" + currSymb.toString() + "\'");
-				add(node, Symbol.Term.IDENTIFIER, "Unexpected \'" + currSymb.toString() + "\'");
-				add(node, Symbol.Term.LPARENTHESIS, "Unexpected \'" + currSymb.toString() + "\'");
+				add(node, Symbol.Term.FUN);
+				add(node, Symbol.Term.IDENTIFIER);
+				add(node, Symbol.Term.LPARENTHESIS);
 				node.add(parseFunParams());
-				add(node, Symbol.Term.RPARENTHESIS, "Unexpected \'" + currSymb.toString() + "\'");
-				add(node, Symbol.Term.COLON, "Unexpected \'" + currSymb.toString() + "\'");
+				add(node, Symbol.Term.RPARENTHESIS);
+				add(node, Symbol.Term.COLON);
 				node.add(parseType());
 				node.add(parseFunStmts());
 				break;
 			default:
-				throw new Report.Error("Unexpected \'" + currSymb.toString() + "\'");
+				throw new Report.Error("Unexpected \'" + currSymb().toString() + "\'");
 
 		}
 		return node;
@@ -158,46 +198,46 @@ public class SynAn extends Phase {
 
 	public DerNode parseFunParams() {
 		DerNode node = new DerNode(DerNode.Nont.FunParams);
-		switch(currSymb.token) {
+		switch(currToken) {
 			case IDENTIFIER:
-				add(node, Symbol.Term.IDENTIFIER, "Unexpected \'" + currSymb.toString() + "\'");
-				add(node, Symbol.Term.COLON, "Unexpected \'" + currSymb.toString() + "\'");
+				add(node, Symbol.Term.IDENTIFIER);
+				add(node, Symbol.Term.COLON);
 				node.add(parseType());
 				node.add(parseFunParamsA());
 				break;
 			case RPARENTHESIS:
 				break;
 			default:
-				throw new Report.Error("Unexpected \'" + currSymb.toString() + "\'");
+				throw new Report.Error("Unexpected \'" + currSymb().toString() + "\'");
 		}
 		return node;
 	}
 
 	public DerNode parseFunParamsA() {
 		DerNode node = new DerNode(DerNode.Nont.FunParamsRest);
-		switch(currSymb.token) {
+		switch(currToken) {
 			case COMMA:
-				add(node, Symbol.Term.COMMA, "Unexpected \'" + currSymb.toString() + "\'");
-				add(node, Symbol.Term.IDENTIFIER, "Unexpected \'" + currSymb.toString() + "\'");
-				add(node, Symbol.Term.COLON, "Unexpected \'" + currSymb.toString() + "\'");
+				add(node, Symbol.Term.COMMA);
+				add(node, Symbol.Term.IDENTIFIER);
+				add(node, Symbol.Term.COLON);
 				node.add(parseType());
 				node.add(parseFunParamsA());
 				break;
 			case RPARENTHESIS:
 				break;
 			default:
-				throw new Report.Error("Unexpected \'" + currSymb.toString() + "\'");
+				throw new Report.Error("Unexpected \'" + currSymb().toString() + "\'");
 		}
 		return node;
 	}
 
 	public DerNode parseFunStmts() {
 		DerNode node = new DerNode(DerNode.Nont.FunStmts);
-		switch(currSymb.token) {
+		switch(currToken) {
 			case ASSIGN:
-				add(node, Symbol.Term.ASSIGN, "Unexpected \'" + currSymb.toString() + "\'");
+				add(node, Symbol.Term.ASSIGN);
 				node.add(parseStmts());
-				add(node, Symbol.Term.COLON, "Unexpected \'" + currSymb.toString() + "\'");
+				add(node, Symbol.Term.COLON);
 				node.add(parseExpr());
 				node.add(parseWhereStmt());
 				break;
@@ -208,21 +248,21 @@ public class SynAn extends Phase {
 			case EOF:
 				break;
 			default:
-				throw new Report.Error("Unexpected \'" + currSymb.toString() + "\'");
+				throw new Report.Error("Unexpected \'" + currSymb().toString() + "\'");
 		}
 		return node;
 	}
 
 	public DerNode parseWhereStmt() {
 		DerNode node = new DerNode(DerNode.Nont.WhereStmt);
-		switch(currSymb.token) {
+		switch(currToken) {
 			case LBRACE:
-				add(node, Symbol.Term.LBRACE, "Unexpected \'" + currSymb.toString() + "\'");
-				add(node, Symbol.Term.WHERE, "Unexpected \'" + currSymb.toString() + "\'");
+				add(node, Symbol.Term.LBRACE);
+				add(node, Symbol.Term.WHERE);
 				//node.add(parseDecls());
 				node.add(parseDecl());
 				node.add(parseDeclsA());
-				add(node, Symbol.Term.RBRACE, "Unexpected \'" + currSymb.toString() + "\'");
+				add(node, Symbol.Term.RBRACE);
 				break;
 			case TYP:
 			case VAR:
@@ -231,14 +271,14 @@ public class SynAn extends Phase {
 			case EOF:
 				break;
 			default:
-				throw new Report.Error("Unexpected \'" + currSymb.toString() + "\'");
+				throw new Report.Error("Unexpected \'" + currSymb().toString() + "\'");
 		}
 		return node;
 	}
 
 	public DerNode parseStmts() {
 		DerNode node = new DerNode(DerNode.Nont.Stmts);
-		switch(currSymb.token) {
+		switch(currToken) {
 			case IDENTIFIER:
 			case LPARENTHESIS:
 			case VOIDCONST:
@@ -258,16 +298,16 @@ public class SynAn extends Phase {
 				node.add(parseStmtsA());
 				break;
 			default:
-				throw new Report.Error("Unexpected \'" + currSymb.toString() + "\'");
+				throw new Report.Error("Unexpected \'" + currSymb().toString() + "\'");
 		}
 		return node;
 	}
 
 	public DerNode parseStmtsA() {
 		DerNode node = new DerNode(DerNode.Nont.StmtsRest);
-		switch(currSymb.token) {
+		switch(currToken) {
 			case SEMIC:
-				add(node, Symbol.Term.SEMIC, "Unexpected \'" + currSymb.toString() + "\'");
+				add(node, Symbol.Term.SEMIC);
 				node.add(parseStmt());
 				node.add(parseStmtsA());
 				break;
@@ -276,14 +316,14 @@ public class SynAn extends Phase {
 			case ELSE:
 				break;
 			default:
-				throw new Report.Error("Unexpected \'" + currSymb.toString() + "\'");
+				throw new Report.Error("Unexpected \'" + currSymb().toString() + "\'");
 		}
 		return node;
 	}
 
 	public DerNode parseDeclsA() {
 		DerNode node = new DerNode(DerNode.Nont.DeclsRest);
-		switch(currSymb.token) {
+		switch(currToken) {
 			case TYP:
 			case VAR:
 			case FUN:
@@ -293,54 +333,54 @@ public class SynAn extends Phase {
 			case RBRACE:
 				break;
 			default:
-				throw new Report.Error("Unexpected \'" + currSymb.toString() + "\'");
+				throw new Report.Error("Unexpected \'" + currSymb().toString() + "\'");
 		}
 		return node;
 	}
 
 	public DerNode parseType() {
 		DerNode node = new DerNode(DerNode.Nont.Type);
-		switch(currSymb.token) {
+		switch(currToken) {
 			case IDENTIFIER:
-				add(node, Symbol.Term.IDENTIFIER, "Unexpected \'" + currSymb.toString() + "\'");
+				add(node, Symbol.Term.IDENTIFIER);
 				break;
 			case VOID:
-				add(node, Symbol.Term.VOID, "Unexpected \'" + currSymb.toString() + "\'");
+				add(node, Symbol.Term.VOID);
 				break;
 			case LPARENTHESIS:
-				add(node, Symbol.Term.LPARENTHESIS, "Unexpected \'" + currSymb.toString() + "\'");
+				add(node, Symbol.Term.LPARENTHESIS);
 				node.add(parseType());
-				add(node, Symbol.Term.RPARENTHESIS, "Unexpected \'" + currSymb.toString() + "\'");
+				add(node, Symbol.Term.RPARENTHESIS);
 				break;
 			case BOOL:
-				add(node, Symbol.Term.BOOL, "Unexpected \'" + currSymb.toString() + "\'");
+				add(node, Symbol.Term.BOOL);
 				break;
 			case CHAR:
-				add(node, Symbol.Term.CHAR, "Unexpected \'" + currSymb.toString() + "\'");
+				add(node, Symbol.Term.CHAR);
 				break;
 			case INT:
-				add(node, Symbol.Term.INT, "Unexpected \'" + currSymb.toString() + "\'");
+				add(node, Symbol.Term.INT);
 				break;
 			case ARR:
-				add(node, Symbol.Term.ARR, "Unexpected \'" + currSymb.toString() + "\'");
-				add(node, Symbol.Term.LBRACKET, "Unexpected \'" + currSymb.toString() + "\'");
+				add(node, Symbol.Term.ARR);
+				add(node, Symbol.Term.LBRACKET);
 				node.add(parseExpr());
-				add(node, Symbol.Term.RBRACKET, "Unexpected \'" + currSymb.toString() + "\'");
+				add(node, Symbol.Term.RBRACKET);
 				node.add(parseType());
 				break;
 			case PTR:
-				add(node, Symbol.Term.PTR, "Unexpected \'" + currSymb.toString() + "\'");
+				add(node, Symbol.Term.PTR);
 				node.add(parseType());
 				break;
 			default:
-				throw new Report.Error("Unexpected \'" + currSymb.toString() + "\'");
+				throw new Report.Error("Unexpected \'" + currSymb().toString() + "\'");
 		}
 		return node;
 	}
 
 	public DerNode parseStmt() {
 		DerNode node = new DerNode(DerNode.Nont.Stmt);
-		switch(currSymb.token) {
+		switch(currToken) {
 			case LPARENTHESIS:
 			case ADD:
 			case SUB:
@@ -358,30 +398,30 @@ public class SynAn extends Phase {
 				node.add(parseStmtB());
 				break;
 			case IF:
-				add(node, Symbol.Term.IF, "Unexpected \'" + currSymb.toString() + "\'");
+				add(node, Symbol.Term.IF);
 				node.add(parseExpr());
-				add(node, Symbol.Term.THEN, "Unexpected \'" + currSymb.toString() + "\'");
+				add(node, Symbol.Term.THEN);
 				node.add(parseStmts());
 				node.add(parseElseStmt());
 				break;
 			case WHILE:
-				add(node, Symbol.Term.WHILE, "Unexpected \'" + currSymb.toString() + "\'");
+				add(node, Symbol.Term.WHILE);
 				node.add(parseExpr());
-				add(node, Symbol.Term.DO, "Unexpected \'" + currSymb.toString() + "\'");
+				add(node, Symbol.Term.DO);
 				node.add(parseStmts());
-				add(node, Symbol.Term.END, "Unexpected \'" + currSymb.toString() + "\'");
+				add(node, Symbol.Term.END);
 				break;
 			default:
-				throw new Report.Error("Unexpected \'" + currSymb.toString() + "\'");
+				throw new Report.Error("Unexpected \'" + currSymb().toString() + "\'");
 		}
 		return node;
 	}
 
 	public DerNode parseStmtB() {
 		DerNode node = new DerNode(DerNode.Nont.AssignStmt);
-		switch(currSymb.token) {
+		switch(currToken) {
 			case ASSIGN:
-				add(node, Symbol.Term.ASSIGN, "Unexpected \'" + currSymb.toString() + "\'");
+				add(node, Symbol.Term.ASSIGN);
 				node.add(parseExpr());
 				break;
 			case COLON:
@@ -390,31 +430,31 @@ public class SynAn extends Phase {
 			case ELSE:
 				break;
 			default:
-				throw new Report.Error("Unexpected \'" + currSymb.toString() + "\'");
+				throw new Report.Error("Unexpected \'" + currSymb().toString() + "\'");
 		}
 		return node;
 	}
 
 	public DerNode parseElseStmt() {
 		DerNode node = new DerNode(DerNode.Nont.ElseStmt);
-		switch(currSymb.token) {
+		switch(currToken) {
 			case END:
-				add(node, Symbol.Term.END, "Unexpected \'" + currSymb.toString() + "\'");
+				add(node, Symbol.Term.END);
 				break;
 			case ELSE:
-				add(node, Symbol.Term.ELSE, "Unexpected \'" + currSymb.toString() + "\'");
+				add(node, Symbol.Term.ELSE);
 				node.add(parseStmts());
-				add(node, Symbol.Term.END, "Unexpected \'" + currSymb.toString() + "\'");
+				add(node, Symbol.Term.END);
 				break;
 			default:
-				throw new Report.Error("Unexpected \'" + currSymb.toString() + "\'");
+				throw new Report.Error("Unexpected \'" + currSymb().toString() + "\'");
 		}
 		return node;
 	}
 
 	public DerNode parseExpr() {
 		DerNode node = new DerNode(DerNode.Nont.Expr);
-		switch(currSymb.token) {
+		switch(currToken) {
 			case IDENTIFIER:
 			case CHARCONST:
 			case INTCONST:
@@ -431,14 +471,14 @@ public class SynAn extends Phase {
 				node.add(parseExprB());
 				break;
 			default:
-				throw new Report.Error("Unexpected \'" + currSymb.toString() + "\'");
+				throw new Report.Error("Unexpected \'" + currSymb().toString() + "\'");
 		}
 		return node;
 	}
 
 	public DerNode parseExprA() {
 		DerNode node = new DerNode(DerNode.Nont.RelExprRest);
-		switch(currSymb.token) {
+		switch(currToken) {
 			case TYP:
 			case COLON:
 			case VAR:
@@ -457,38 +497,38 @@ public class SynAn extends Phase {
 			case EOF:
 				break;
 			case EQU:
-				add(node, Symbol.Term.EQU, "Unexpected \'" + currSymb.toString() + "\'");
+				add(node, Symbol.Term.EQU);
 				node.add(parseExprB());
 				break;
 			case NEQ:
-				add(node, Symbol.Term.NEQ, "Unexpected \'" + currSymb.toString() + "\'");
+				add(node, Symbol.Term.NEQ);
 				node.add(parseExprB());
 				break;
 			case LTH:
-				add(node, Symbol.Term.LTH, "Unexpected \'" + currSymb.toString() + "\'");
+				add(node, Symbol.Term.LTH);
 				node.add(parseExprB());
 				break;
 			case GTH:
-				add(node, Symbol.Term.GTH,"Unexpected \'" + currSymb.toString() + "\'");
+				add(node, Symbol.Term.GTH);
 				node.add(parseExprB());
 				break;
 			case LEQ:
-				add(node, Symbol.Term.LEQ, "Unexpected \'" + currSymb.toString() + "\'");
+				add(node, Symbol.Term.LEQ);
 				node.add(parseExprB());
 				break;
 			case GEQ:
-				add(node, Symbol.Term.GEQ, "Unexpected \'" + currSymb.toString() + "\'");
+				add(node, Symbol.Term.GEQ);
 				node.add(parseExprB());
 				break;
 			default:
-				throw new Report.Error("Unexpected \'" + currSymb.toString() + "\'");
+				throw new Report.Error("Unexpected \'" + currSymb().toString() + "\'");
 		}
 		return node;
 	}
 
 	public DerNode parseExprB() {
 		DerNode node = new DerNode(DerNode.Nont.RelExpr);
-		switch(currSymb.token) {
+		switch(currToken) {
 			case IDENTIFIER:
 			case CHARCONST:
 			case INTCONST:
@@ -506,14 +546,14 @@ public class SynAn extends Phase {
 				node.add(parseExprA());
 				break;
 			default:
-				throw new Report.Error("Unexpected \'" + currSymb.toString() + "\'");
+				throw new Report.Error("Unexpected \'" + currSymb().toString() + "\'");
 		}
 		return node;
 	}
 
 	public DerNode parseExprC() {
 		DerNode node = new DerNode(DerNode.Nont.AddExprRest);
-		switch(currSymb.token) {
+		switch(currToken) {
 			case TYP:
 			case COLON:
 			case VAR:
@@ -538,24 +578,24 @@ public class SynAn extends Phase {
 			case LEQ:
 				break;
 			case ADD:
-				add(node, Symbol.Term.ADD, "Unexpected \'" + currSymb.toString() + "\'");
+				add(node, Symbol.Term.ADD);
 				node.add(parseExprD());
 				node.add(parseExprC());
 				break;
 			case SUB:
-				add(node, Symbol.Term.SUB, "Unexpected \'" + currSymb.toString() + "\'");
+				add(node, Symbol.Term.SUB);
 				node.add(parseExprD());
 				node.add(parseExprC());
 				break;
 			default:
-				throw new Report.Error("Unexpected \'" + currSymb.toString() + "\'");
+				throw new Report.Error("Unexpected \'" + currSymb().toString() + "\'");
 		}
 		return node;
 	}
 
 	public DerNode parseExprD() {
 		DerNode node = new DerNode(DerNode.Nont.AddExpr);
-		switch(currSymb.token) {
+		switch(currToken) {
 			case IDENTIFIER:
 			case CHARCONST:
 			case INTCONST:
@@ -573,14 +613,14 @@ public class SynAn extends Phase {
 				node.add(parseExprC()); //rest
 				break;
 			default:
-				throw new Report.Error("Unexpected \'" + currSymb.toString() + "\'");
+				throw new Report.Error("Unexpected \'" + currSymb().toString() + "\'");
 		}
 		return node;
 	}
 
 	public DerNode parseExprE() {
 		DerNode node = new DerNode(DerNode.Nont.MulExprRest);
-		switch(currSymb.token) {
+		switch(currToken) {
 			case TYP:
 			case COLON:
 			case VAR:
@@ -607,29 +647,29 @@ public class SynAn extends Phase {
 			case SUB:
 				break;
 			case MOD:
-				add(node, Symbol.Term.MOD, "Unexpected \'" + currSymb.toString() + "\'");
+				add(node, Symbol.Term.MOD);
 				node.add(parseExprF());
 				node.add(parseExprE());
 				break;
 			case MUL:
-				add(node, Symbol.Term.MUL, "Unexpected \'" + currSymb.toString() + "\'");
+				add(node, Symbol.Term.MUL);
 				node.add(parseExprF());
 				node.add(parseExprE());
 				break;
 			case DIV:
-				add(node, Symbol.Term.DIV, "Unexpected \'" + currSymb.toString() + "\'");
+				add(node, Symbol.Term.DIV);
 				node.add(parseExprF());
 				node.add(parseExprE());
 				break;
 			default:
-				throw new Report.Error("Unexpected \'" + currSymb.toString() + "\'");
+				throw new Report.Error("Unexpected \'" + currSymb().toString() + "\'");
 		}
 		return node;
 	}
 
 	public DerNode parseExprF() {
 		DerNode node = new DerNode(DerNode.Nont.MulExpr);
-		switch(currSymb.token) {
+		switch(currToken) {
 			case IDENTIFIER:
 			case CHARCONST:
 			case INTCONST:
@@ -650,19 +690,19 @@ public class SynAn extends Phase {
 				node.add(parseExprJ());
 				break;
 			case NEW:
-				add(node, Symbol.Term.NEW, "Unexpected \'" + currSymb.toString() + "\'");
-				add(node, Symbol.Term.LPARENTHESIS, "Unexpected \'" + currSymb.toString() + "\'");
+				add(node, Symbol.Term.NEW);
+				add(node, Symbol.Term.LPARENTHESIS);
 				node.add(parseType());
-				add(node, Symbol.Term.RPARENTHESIS, "Unexpected \'" + currSymb.toString() + "\'");
+				add(node, Symbol.Term.RPARENTHESIS);
 				break;
 			case DEL:
-				add(node, Symbol.Term.DEL, "Unexpected \'" + currSymb.toString() + "\'");
-				add(node, Symbol.Term.LPARENTHESIS, "Unexpected \'" + currSymb.toString() + "\'");
+				add(node, Symbol.Term.DEL);
+				add(node, Symbol.Term.LPARENTHESIS);
 				node.add(parseExpr());
-				add(node, Symbol.Term.RPARENTHESIS, "Unexpected \'" + currSymb.toString() + "\'");
+				add(node, Symbol.Term.RPARENTHESIS);
 				break;
 			default:
-				throw new Report.Error("Unexpected \'" + currSymb.toString() + "\'");
+				throw new Report.Error("Unexpected \'" + currSymb().toString() + "\'");
 		}
 		node.add(parseExprE());
 		return node;
@@ -670,21 +710,21 @@ public class SynAn extends Phase {
 
 	public DerNode parseExprJ() {
 		DerNode node = new DerNode(DerNode.Nont.PrefExpr);
-		switch(currSymb.token) {
+		switch(currToken) {
 			case ADD:
-				add(node, Symbol.Term.ADD, "Unexpected \'" + currSymb.toString() + "\'");
+				add(node, Symbol.Term.ADD);
 				node.add(parseExprH());
 				break;
 			case SUB:
-				add(node, Symbol.Term.SUB, "Unexpected \'" + currSymb.toString() + "\'");
+				add(node, Symbol.Term.SUB);
 				node.add(parseExprH());
 				break;
 			case DATA:
-				add(node, Symbol.Term.DATA, "Unexpected \'" + currSymb.toString() + "\'");
+				add(node, Symbol.Term.DATA);
 				node.add(parseExprH());
 				break;
 			case ADDR:
-				add(node, Symbol.Term.ADDR, "Unexpected \'" + currSymb.toString() + "\'");
+				add(node, Symbol.Term.ADDR);
 				node.add(parseExprH());
 				break;
 			case IDENTIFIER:
@@ -697,14 +737,14 @@ public class SynAn extends Phase {
 				node.add(parseExprH());
 				break;
 			default:
-				throw new Report.Error("Unexpected \'" + currSymb.toString() + "\'");
+				throw new Report.Error("Unexpected \'" + currSymb().toString() + "\'");
 		}
 		return node;
 	}
 
 	public DerNode parseExprG() {
 		DerNode node = new DerNode(DerNode.Nont.PstfExprRest);
-		switch(currSymb.token) {
+		switch(currToken) {
 			case TYP:
 			case COLON:
 			case VAR:
@@ -734,20 +774,20 @@ public class SynAn extends Phase {
 			case MOD:
 				break;
 			case LBRACKET:
-				add(node, Symbol.Term.LBRACKET, "Unexpected \'" + currSymb.toString() + "\'");
+				add(node, Symbol.Term.LBRACKET);
 				node.add(parseExpr());
-				add(node, Symbol.Term.RBRACKET, "Unexpected \'" + currSymb.toString() + "\'");
+				add(node, Symbol.Term.RBRACKET);
 				node.add(parseExprG());
 				break;
 			default:
-				throw new Report.Error("Unexpected \'" + currSymb.toString() + "\'");
+				throw new Report.Error("Unexpected \'" + currSymb().toString() + "\'");
 		}
 		return node;
 	}
 
 	public DerNode parseExprH() {
 		DerNode node = new DerNode(DerNode.Nont.PstfExpr);
-		switch(currSymb.token) {
+		switch(currToken) {
 			case IDENTIFIER:
 			case CHARCONST:
 			case INTCONST:
@@ -757,13 +797,13 @@ public class SynAn extends Phase {
 				node.add(parseExprI());
 				break;
 			case LPARENTHESIS:
-				add(node, Symbol.Term.LPARENTHESIS, "Unexpected \'" + currSymb.toString() + "\'");
+				add(node, Symbol.Term.LPARENTHESIS);
 				node.add(parseExpr());
 				node.add(parseTypeCast());
-				add(node, Symbol.Term.RPARENTHESIS, "Unexpected \'" + currSymb.toString() + "\'");
+				add(node, Symbol.Term.RPARENTHESIS);
 				break;
 			default:
-				throw new Report.Error("Unexpected \'" + currSymb.toString() + "\'");
+				throw new Report.Error("Unexpected \'" + currSymb().toString() + "\'");
 		}
 		node.add(parseExprG());
 		return node;
@@ -771,35 +811,35 @@ public class SynAn extends Phase {
 
 	public DerNode parseExprI() {
 		DerNode node = new DerNode(DerNode.Nont.AtomExpr);
-		switch(currSymb.token) {
+		switch(currToken) {
 			case CHARCONST:
-				add(node, Symbol.Term.CHARCONST, "Unexpected \'" + currSymb.toString() + "\'");
+				add(node, Symbol.Term.CHARCONST);
 				break;
 			case INTCONST:
-				add(node, Symbol.Term.INTCONST, "Unexpected \'" + currSymb.toString() + "\'");
+				add(node, Symbol.Term.INTCONST);
 				break;
 			case VOIDCONST:
-				add(node, Symbol.Term.VOIDCONST, "Unexpected \'" + currSymb.toString() + "\'");
+				add(node, Symbol.Term.VOIDCONST);
 				break;
 			case BOOLCONST:
-				add(node, Symbol.Term.BOOLCONST, "Unexpected \'" + currSymb.toString() + "\'");
+				add(node, Symbol.Term.BOOLCONST);
 				break;
 			case PTRCONST:
-				add(node, Symbol.Term.PTRCONST, "Unexpected \'" + currSymb.toString() + "\'");
+				add(node, Symbol.Term.PTRCONST);
 				break;
 			case IDENTIFIER:
-				add(node, Symbol.Term.IDENTIFIER, "Unexpected \'" + currSymb.toString() + "\'");
+				add(node, Symbol.Term.IDENTIFIER);
 				node.add(parseCall());
 				break;
 			default:
-				throw new Report.Error("Unexpected \'" + currSymb.toString() + "\'");
+				throw new Report.Error("Unexpected \'" + currSymb().toString() + "\'");
 		}
 		return node;
 	}
 
 	public DerNode parseCall() {
 		DerNode node = new DerNode(DerNode.Nont.CallExpr);
-		switch(currSymb.token) {
+		switch(currToken) {
 			case TYP:
 			case COLON:
 			case VAR:
@@ -830,19 +870,19 @@ public class SynAn extends Phase {
 			case LBRACKET:
 				break;
 			case LPARENTHESIS:
-				add(node, Symbol.Term.LPARENTHESIS, "Unexpected \'" + currSymb.toString() + "\'");
+				add(node, Symbol.Term.LPARENTHESIS);
 				node.add(parseCallA());
-				add(node, Symbol.Term.RPARENTHESIS, "Unexpected \'" + currSymb.toString() + "\'");
+				add(node, Symbol.Term.RPARENTHESIS);
 				break;
 			default:
-				throw new Report.Error("Unexpected \'" + currSymb.toString() + "\'");
+				throw new Report.Error("Unexpected \'" + currSymb().toString() + "\'");
 		}
 		return node;
 	}
 
 	public DerNode parseCallA() {
 		DerNode node = new DerNode(DerNode.Nont.CallParams);
-		switch(currSymb.token) {
+		switch(currToken) {
 			case IDENTIFIER:
 			case CHARCONST:
 			case INTCONST:
@@ -862,68 +902,68 @@ public class SynAn extends Phase {
 			case RPARENTHESIS:
 				break;
 			default:
-				throw new Report.Error("Unexpected \'" + currSymb.toString() + "\'");
+				throw new Report.Error("Unexpected \'" + currSymb().toString() + "\'");
 		}
 		return node;
 	}
 
 	public DerNode parseCalls() {
 		DerNode node = new DerNode(DerNode.Nont.CallParamsRest);
-		switch(currSymb.token) {
+		switch(currToken) {
 			case COMMA:
-				add(node, Symbol.Term.COMMA, "Unexpected \'" + currSymb.toString() + "\'");
+				add(node, Symbol.Term.COMMA);
 				node.add(parseExpr());
 				node.add(parseCalls());
 				break;
 			case RPARENTHESIS:
 				break;
 			default:
-				throw new Report.Error("Unexpected \'" + currSymb.toString() + "\'");
+				throw new Report.Error("Unexpected \'" + currSymb().toString() + "\'");
 		}
 		return node;
 	}
 
 	public DerNode parseTypeCast() {
 		DerNode node = new DerNode(DerNode.Nont.CastExpr);
-		switch(currSymb.token) {
+		switch(currToken) {
 			case COLON:
-				add(node, Symbol.Term.COLON, "Unexpected \'" + currSymb.toString() + "\'");
+				add(node, Symbol.Term.COLON);
 				node.add(parseType());
 				break;
 			case RPARENTHESIS:
 				break;
 			default:
-				throw new Report.Error("Unexpected \'" + currSymb.toString() + "\'");
+				throw new Report.Error("Unexpected \'" + currSymb().toString() + "\'");
 		}
 		return node;
 	}
 
 	public DerNode parseUnop1() {
 		DerNode node = new DerNode(DerNode.Nont.Unop);
-		switch(currSymb.token) {
+		switch(currToken) {
 			case ADD:
-				add(node, Symbol.Term.ADD, "Unexpected \'" + currSymb.toString() + "\'");
+				add(node, Symbol.Term.ADD);
 				break;
 			case SUB:
-				add(node, Symbol.Term.SUB, "Unexpected \'" + currSymb.toString() + "\'");
+				add(node, Symbol.Term.SUB);
 				break;
 			default:
-				throw new Report.Error("Unexpected \'" + currSymb.toString() + "\'");
+				throw new Report.Error("Unexpected \'" + currSymb().toString() + "\'");
 		}
 		return node;
 	}
 
 	public DerNode parseUnop2() {
 		DerNode node = new DerNode(DerNode.Nont.Unop);
-		switch(currSymb.token) {
+		switch(currToken) {
 			case ADDR:
-				add(node, Symbol.Term.ADDR, "Unexpected \'" + currSymb.toString() + "\'");
+				add(node, Symbol.Term.ADDR);
 				break;
 			case DATA:
-				add(node, Symbol.Term.DATA, "Unexpected \'" + currSymb.toString() + "\'");
+				add(node, Symbol.Term.DATA);
 				break;
 			default:
-				throw new Report.Error("Unexpected \'" + currSymb.toString() + "\'");
+				throw new Report.Error("Unexpected \'" + currSymb().toString() + "\'");
 		}
 		return node;
 	}
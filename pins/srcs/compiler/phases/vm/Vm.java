@@ -0,0 +1,29 @@
+/**
+ * @author sliva
+ */
+package compiler.phases.vm;
+
+import compiler.phases.*;
+
+/**
+ * Compilation of code chunks into the bytecode of the virtual machine.
+ *
+ * @author sliva
+ */
+public class Vm extends Phase {
+
+	/** The program compiled for the virtual machine. */
+	public static VmProgram program = null;
+
+	public Vm() {
+		super("vm");
+	}
+
+	public void log() {
+		if (logger == null)
+			return;
+		for (VmFunction function : program.functions())
+			function.log(logger);
+	}
+
+}
@@ -0,0 +1,172 @@
+/**
+ * @author sliva
+ */
+package compiler.phases.vm;
+
+/**
+ * The instruction set of the virtual machine.
+ *
+ * The code of a function is an array of integers: each instruction consists of
+ * an opcode followed by its operands. Operands {@code d}, {@code s}, {@code a},
+ * {@code b} and {@code c} denote registers, {@code k} denotes an index into the
+ * function's constant pool, {@code t} and {@code f} denote code offsets,
+ * {@code i} denotes an argument index and {@code n} denotes a function or a
+ * builtin index.
+ *
+ * @author sliva
+ */
+public final class VmCode {
+
+	private VmCode() {
+	}
+
+	/** {@code CONST d k}: {@code r[d] = consts[k]}. */
+	public static final int CONST = 0;
+
+	/** {@code MOVE d s}: {@code r[d] = r[s]}. */
+	public static final int MOVE = 1;
+
+	/** {@code LOAD d a}: {@code r[d] = mem[r[a]]}. */
+	public static final int LOAD = 2;
+
+	/** {@code STORE a s}: {@code mem[r[a]] = r[s]}. */
+	public static final int STORE = 3;
+
+	/** {@code NOT d s}: {@code r[d] = (r[s] == 0) ? 1 : 0}. */
+	public static final int NOT = 4;
+
+	/** {@code NEG d s}: {@code r[d] = -r[s]}. */
+	public static final int NEG = 5;
+
+	/** {@code IOR d a b}: logical or. */
+	public static final int IOR = 6;
+
+	/** {@code XOR d a b}: logical exclusive or. */
+	public static final int XOR = 7;
+
+	/** {@code AND d a b}: logical and. */
+	public static final int AND = 8;
+
+	/** {@code EQU d a b}: {@code r[d] = (r[a] == r[b]) ? 1 : 0}. */
+	public static final int EQU = 9;
+
+	/** {@code NEQ d a b}: {@code r[d] = (r[a] != r[b]) ? 1 : 0}. */
+	public static final int NEQ = 10;
+
+	/** {@code LTH d a b}: {@code r[d] = (r[a] < r[b]) ? 1 : 0}. */
+	public static final int LTH = 11;
+
+	/** {@code GTH d a b}: {@code r[d] = (r[a] > r[b]) ? 1 : 0}. */
+	public static final int GTH = 12;
+
+	/** {@code LEQ d a b}: {@code r[d] = (r[a] <= r[b]) ? 1 : 0}. */
+	public static final int LEQ = 13;
+
+	/** {@code GEQ d a b}: {@code r[d] = (r[a] >= r[b]) ? 1 : 0}. */
+	public static final int GEQ = 14;
+
+	/** {@code ADD d a b}: {@code r[d] = r[a] + r[b]}. */
+	public static final int ADD = 15;
+
+	/** {@code SUB d a b}: {@code r[d] = r[a] - r[b]}. */
+	public static final int SUB = 16;
+
+	/** {@code MUL d a b}: {@code r[d] = r[a] * r[b]}. */
+	public static final int MUL = 17;
+
+	/** {@code DIV d a b}: {@code r[d] = r[a] / r[b]}. */
+	public static final int DIV = 18;
+
+	/** {@code MOD d a b}: {@code r[d] = r[a] % r[b]}. */
+	public static final int MOD = 19;
+
+	/** {@code JUMP t}: jump to {@code t}. */
+	public static final int JUMP = 20;
+
+	/** {@code CJUMP c t f}: jump to {@code t} if {@code r[c] != 0}, else to {@code f}. */
+	public static final int CJUMP = 21;
+
+	/** {@code ARG i s}: {@code mem[SP + 8 * i] = r[s]}. */
+	public static final int ARG = 22;
+
+	/** {@code CALL n}: call function {@code n}. */
+	public static final int CALL = 23;
+
+	/** {@code BUILTIN n}: call builtin function {@code n} (see {@link compiler.phases.chunks.Builtins}). */
+	public static final int BUILTIN = 24;
+
+	/** {@code RESULT d}: {@code r[d] = mem[SP]}, i.e., the result of the last call. */
+	public static final int RESULT = 25;
+
+	/** {@code RET}: return from the function. */
+	public static final int RET = 26;
+
+	/** {@code TRAP}: stop with an internal error (unresolved label or construct). */
+	public static final int TRAP = 27;
+
+	/** {@code ADDI d a k}: {@code r[d] = r[a] + consts[k]}. */
+	public static final int ADDI = 28;
+
+	/** {@code MULI d a k}: {@code r[d] = r[a] * consts[k]}. */
+	public static final int MULI = 29;
+
+	/** {@code LOADI d a k}: {@code r[d] = mem[r[a] + consts[k]]}. */
+	public static final int LOADI = 30;
+
+	/** {@code STOREI a k s}: {@code mem[r[a] + consts[k]] = r[s]}. */
+	public static final int STOREI = 31;
+
+	/** {@code JEQU a b t f}: jump to {@code t} if {@code r[a] == r[b]}, else to {@code f}. */
+	public static final int JEQU = 32;
+
+	/** {@code JNEQ a b t f}: jump to {@code t} if {@code r[a] != r[b]}, else to {@code f}. */
+	public static final int JNEQ = 33;
+
+	/** {@code JLTH a b t f}: jump to {@code t} if {@code r[a] < r[b]}, else to {@code f}. */
+	public static final int JLTH = 34;
+
+	/** {@code JGTH a b t f}: jump to {@code t} if {@code r[a] > r[b]}, else to {@code f}. */
+	public static final int JGTH = 35;
+
+	/** {@code JLEQ a b t f}: jump to {@code t} if {@code r[a] <= r[b]}, else to {@code f}. */
+	public static final int JLEQ = 36;
+
+	/** {@code JGEQ a b t f}: jump to {@code t} if {@code r[a] >= r[b]}, else to {@code f}. */
+	public static final int JGEQ = 37;
+
+	/** The mnemonics of the opcodes. */
+	private static final String[] mnemonics = { "CONST", "MOVE", "LOAD", "STORE", "NOT", "NEG", "IOR", "XOR", "AND",
+			"EQU", "NEQ", "LTH", "GTH", "LEQ", "GEQ", "ADD", "SUB", "MUL", "DIV", "MOD", "JUMP", "CJUMP", "ARG", "CALL",
+			"BUILTIN", "RESULT", "RET", "TRAP", "ADDI", "MULI", "LOADI", "STOREI", "JEQU", "JNEQ", "JLTH", "JGTH", "JLEQ",
+			"JGEQ" };
+
+	/** The number of operands of each opcode. */
+	private static final int[] numOperands = { 2, 2, 2, 2, 2, 2, 3, 3, 3, 3, 3, 3, 3, 3, 3, 3, 3, 3, 3, 3, 1, 3, 2, 1,
+			1, 1, 0, 0, 3, 3, 3, 3, 4, 4, 4, 4, 4, 4 };
+
+	/**
+	 * Returns the length of the instruction with the specified opcode.
+	 *
+	 * @param opcode The opcode.
+	 * @return The length of the instruction including the opcode.
+	 */
+	public static int length(int opcode) {
+		return 1 + numOperands[opcode];
+	}
+
+	/**
+	 * Returns the textual representation of the instruction at the specified
+	 * offset.
+	 *
+	 * @param code   The code.
+	 * @param offset The offset of the instruction.
+	 * @return The textual representation of the instruction.
+	 */
+	public static String toString(int[] code, int offset) {
+		StringBuilder text = new StringBuilder(mnemonics[code[offset]]);
+		for (int operand = 1; operand < length(code[offset]); operand++)
+			text.append(operand == 1 ? " " : ",").append(code[offset + operand]);
+		return text.toString();
+	}
+
+}
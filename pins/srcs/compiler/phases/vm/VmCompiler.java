@@ -0,0 +1,630 @@
+/**
+ * @author sliva
+ */
+package compiler.phases.vm;
+
+import java.util.*;
+import compiler.data.layout.*;
+import compiler.data.imcode.*;
+import compiler.data.imcode.visitor.*;
+import compiler.data.chunk.*;
+import compiler.phases.chunks.*;
+
+/**
+ * Compiles linearized code chunks into the bytecode of the virtual machine.
+ *
+ * Each temporary variable of a function is assigned its own register and
+ * intermediate results of expressions are kept in additional scratch registers
+ * that are reused from statement to statement. Data chunks are laid out exactly
+ * as the interpreter lays them out, so data labels are compiled into
+ * constants.
+ *
+ * The canonical shapes produced by the canonizers and by the linearization of
+ * code chunks are compiled into superinstructions: additions and
+ * multiplications with a constant operand, memory accesses at a constant
+ * offset from a register, and conditional jumps on a comparison. Jumps to
+ * unconditional jumps (e.g., to the {@code LABEL neg; JUMP L} pair following
+ * every {@code CJUMP}) are redirected to the final target.
+ *
+ * @author sliva
+ */
+public class VmCompiler {
+
+	/** The initial value of the heap pointer. */
+	public static final long HEAP_BASE = 0x2000000000000000l;
+
+	/** The addresses of data labels. */
+	private final HashMap<Label, Long> dataLabels;
+
+	/** The indices of functions by their frame labels. */
+	private final HashMap<Label, Integer> callLabels;
+
+	/** The code chunks. */
+	private final Vector<CodeChunk> codeChunks;
+
+	/** The value of the heap pointer after the data chunks have been laid out. */
+	private final long initHP;
+
+	/** The addresses and sizes of data chunks initialized with zeros (in pairs). */
+	private final long[] zeroedData;
+
+	/**
+	 * Constructs a new compiler.
+	 *
+	 * @param dataChunks The data chunks.
+	 * @param codeChunks The code chunks.
+	 */
+	public VmCompiler(Vector<DataChunk> dataChunks, Vector<CodeChunk> codeChunks) {
+		this.dataLabels = new HashMap<Label, Long>();
+		long hp = HEAP_BASE;
+		Vector<Long> zeroedData = new Vector<Long>();
+		for (DataChunk dataChunk : dataChunks) {
+			dataLabels.put(dataChunk.label, hp);
+			if (dataChunk.zeroed) {
+				zeroedData.add(hp);
+				zeroedData.add(dataChunk.size);
+			}
+			hp += dataChunk.size;
+		}
+		this.initHP = hp;
+		this.zeroedData = zeroedData.stream().mapToLong(Long::longValue).toArray();
+		this.codeChunks = codeChunks;
+		this.callLabels = new HashMap<Label, Integer>();
+		for (int index = 0; index < codeChunks.size(); index++)
+			callLabels.put(codeChunks.get(index).frame.label, index);
+	}
+
+	/**
+	 * Compiles all code chunks.
+	 *
+	 * @return The compiled program.
+	 */
+	public VmProgram compile() {
+		VmFunction[] functions = new VmFunction[codeChunks.size()];
+		for (int index = 0; index < codeChunks.size(); index++)
+			functions[index] = compile(index);
+		return new VmProgram(functions, initHP, zeroedData);
+	}
+
+	/**
+	 * Compiles a single code chunk. Calls in the compiled function refer to
+	 * other functions by the indices of their code chunks.
+	 *
+	 * @param index The index of the code chunk.
+	 * @return The compiled function.
+	 */
+	public VmFunction compile(int index) {
+		return new FunCompiler(codeChunks.get(index)).compile();
+	}
+
+	/**
+	 * The compiler of a single function.
+	 */
+	private class FunCompiler {
+
+		private final CodeChunk codeChunk;
+
+		/** The code being emitted. */
+		private int[] code = new int[64];
+
+		/** The length of the code emitted so far. */
+		private int length = 0;
+
+		/** The constant pool. */
+		private final Vector<Long> consts = new Vector<Long>();
+
+		/** The registers of temporary variables. */
+		private final HashMap<Temp, Integer> tempRegs = new HashMap<Temp, Integer>();
+
+		/** The code offsets of labels. */
+		private final HashMap<Label, Integer> labelOffsets = new HashMap<Label, Integer>();
+
+		/** The code offsets of jump targets that must be patched, and their labels. */
+		private final Vector<Integer> patchOffsets = new Vector<Integer>();
+
+		private final Vector<Label> patchLabels = new Vector<Label>();
+
+		/** The next free scratch register. */
+		private int nextScratch;
+
+		/** The number of registers used. */
+		private int numRegs;
+
+		FunCompiler(CodeChunk codeChunk) {
+			this.codeChunk = codeChunk;
+		}
+
+		VmFunction compile() {
+			Vector<ImcStmt> stmts = codeChunk.stmts();
+			reg(codeChunk.frame.FP);
+			reg(codeChunk.frame.RV);
+			for (ImcStmt stmt : stmts)
+				stmt.accept(new TempCollector(), null);
+			numRegs = tempRegs.size();
+
+			StmtCompiler stmtCompiler = new StmtCompiler();
+			int[] stmtOffsets = new int[stmts.size()];
+			for (int stmt = 0; stmt < stmts.size(); stmt++) {
+				stmtOffsets[stmt] = length;
+				nextScratch = tempRegs.size();
+				stmts.get(stmt).accept(stmtCompiler, null);
+			}
+			labelOffsets.put(codeChunk.exitLabel, length);
+			emit(VmCode.RET);
+			int trap = length;
+			emit(VmCode.TRAP);
+
+			for (int patch = 0; patch < patchOffsets.size(); patch++) {
+				Integer offset = labelOffsets.get(patchLabels.get(patch));
+				code[patchOffsets.get(patch)] = (offset == null) ? trap : offset;
+			}
+			// Thread jumps to jumps (the number of hops is bounded as jumps can form a cycle).
+			for (int patch : patchOffsets) {
+				int target = code[patch];
+				for (int hop = 0; (hop < 8) && (code[target] == VmCode.JUMP); hop++)
+					target = code[target + 1];
+				code[patch] = target;
+			}
+			Integer entry = labelOffsets.get(codeChunk.entryLabel);
+
+			long[] constPool = new long[consts.size()];
+			for (int k = 0; k < constPool.length; k++)
+				constPool[k] = consts.get(k);
+			return new VmFunction(codeChunk.frame.label.name, codeChunk.frame.size, numRegs,
+					tempRegs.get(codeChunk.frame.FP), tempRegs.get(codeChunk.frame.RV), (entry == null) ? trap : entry,
+					Arrays.copyOf(code, length), constPool, stmtOffsets);
+		}
+
+		private int reg(Temp temp) {
+			Integer reg = tempRegs.get(temp);
+			if (reg == null) {
+				reg = tempRegs.size();
+				tempRegs.put(temp, reg);
+			}
+			return reg;
+		}
+
+		private int scratch() {
+			int reg = nextScratch++;
+			numRegs = Math.max(numRegs, nextScratch);
+			return reg;
+		}
+
+		private int constant(long value) {
+			int k = consts.indexOf(value);
+			if (k < 0) {
+				k = consts.size();
+				consts.add(value);
+			}
+			return k;
+		}
+
+		private void emit(int... words) {
+			if (length + words.length > code.length)
+				code = Arrays.copyOf(code, 2 * code.length + words.length);
+			for (int word : words)
+				code[length++] = word;
+		}
+
+		private void emitTarget(Label label) {
+			patchOffsets.add(length);
+			patchLabels.add(label);
+			emit(-1);
+		}
+
+		private void emitCall(ImcCALL imcCall) {
+			Vector<ImcExpr> args = imcCall.args();
+			int[] argRegs = new int[args.size()];
+			for (int arg = 0; arg < args.size(); arg++)
+				argRegs[arg] = args.get(arg).accept(new ExprCompiler(), -1);
+			for (int arg = 0; arg < args.size(); arg++)
+				emit(VmCode.ARG, arg, argRegs[arg]);
+			Integer callee = callLabels.get(imcCall.label);
+			int builtin = Builtins.number(imcCall.label.name);
+			if (callee != null)
+				emit(VmCode.CALL, callee);
+			else if (builtin >= 0)
+				emit(VmCode.BUILTIN, builtin);
+			else
+				emit(VmCode.TRAP);
+		}
+
+		/**
+		 * Assigns registers to all temporary variables of the function.
+		 */
+		private class TempCollector implements ImcVisitor<Object, Object> {
+
+			@Override
+			public Object visit(ImcBINOP imcBinop, Object arg) {
+				imcBinop.fstExpr.accept(this, null);
+				imcBinop.sndExpr.accept(this, null);
+				return null;
+			}
+
+			@Override
+			public Object visit(ImcCALL imcCall, Object arg) {
+				for (ImcExpr callArg : imcCall.args())
+					callArg.accept(this, null);
+				return null;
+			}
+
+			@Override
+			public Object visit(ImcCJUMP imcCJump, Object arg) {
+				imcCJump.cond.accept(this, null);
+				return null;
+			}
+
+			@Override
+			public Object visit(ImcCONST imcConst, Object arg) {
+				return null;
+			}
+
+			@Override
+			public Object visit(ImcESTMT imcEStmt, Object arg) {
+				imcEStmt.expr.accept(this, null);
+				return null;
+			}
+
+			@Override
+			public Object visit(ImcJUMP imcJump, Object arg) {
+				return null;
+			}
+
+			@Override
+			public Object visit(ImcLABEL imcLabel, Object arg) {
+				return null;
+			}
+
+			@Override
+			public Object visit(ImcMEM imcMem, Object arg) {
+				imcMem.addr.accept(this, null);
+				return null;
+			}
+
+			@Override
+			public Object visit(ImcMOVE imcMove, Object arg) {
+				imcMove.dst.accept(this, null);
+				imcMove.src.accept(this, null);
+				return null;
+			}
+
+			@Override
+			public Object visit(ImcNAME imcName, Object arg) {
+				return null;
+			}
+
+			@Override
+			public Object visit(ImcSEXPR imcSExpr, Object arg) {
+				imcSExpr.stmt.accept(this, null);
+				imcSExpr.expr.accept(this, null);
+				return null;
+			}
+
+			@Override
+			public Object visit(ImcSTMTS imcStmts, Object arg) {
+				for (ImcStmt stmt : imcStmts.stmts())
+					stmt.accept(this, null);
+				return null;
+			}
+
+			@Override
+			public Object visit(ImcTEMP imcTemp, Object arg) {
+				reg(imcTemp.temp);
+				return null;
+			}
+
+			@Override
+			public Object visit(ImcUNOP imcUnop, Object arg) {
+				imcUnop.subExpr.accept(this, null);
+				return null;
+			}
+
+		}
+
+		/**
+		 * Compiles a statement.
+		 */
+		private class StmtCompiler implements ImcVisitor<Object, Object> {
+
+			@Override
+			public Object visit(ImcCJUMP imcCJump, Object arg) {
+				if (imcCJump.cond instanceof ImcBINOP) {
+					ImcBINOP imcBinop = (ImcBINOP) imcCJump.cond;
+					int opcode = -1;
+					switch (imcBinop.oper) {
+					case EQU:
+						opcode = VmCode.JEQU;
+						break;
+					case NEQ:
+						opcode = VmCode.JNEQ;
+						break;
+					case LTH:
+						opcode = VmCode.JLTH;
+						break;
+					case GTH:
+						opcode = VmCode.JGTH;
+						break;
+					case LEQ:
+						opcode = VmCode.JLEQ;
+						break;
+					case GEQ:
+						opcode = VmCode.JGEQ;
+						break;
+					default:
+						break;
+					}
+					if (opcode >= 0) {
+						int fst = imcBinop.fstExpr.accept(new ExprCompiler(), -1);
+						int snd = imcBinop.sndExpr.accept(new ExprCompiler(), -1);
+						emit(opcode, fst, snd);
+						emitTarget(imcCJump.posLabel);
+						emitTarget(imcCJump.negLabel);
+						return null;
+					}
+				}
+				int cond = imcCJump.cond.accept(new ExprCompiler(), -1);
+				emit(VmCode.CJUMP, cond);
+				emitTarget(imcCJump.posLabel);
+				emitTarget(imcCJump.negLabel);
+				return null;
+			}
+
+			@Override
+			public Object visit(ImcESTMT imcEStmt, Object arg) {
+				if (imcEStmt.expr instanceof ImcCALL)
+					emitCall((ImcCALL) imcEStmt.expr);
+				else
+					imcEStmt.expr.accept(new ExprCompiler(), -1);
+				return null;
+			}
+
+			@Override
+			public Object visit(ImcJUMP imcJump, Object arg) {
+				emit(VmCode.JUMP);
+				emitTarget(imcJump.label);
+				return null;
+			}
+
+			@Override
+			public Object visit(ImcLABEL imcLabel, Object arg) {
+				labelOffsets.put(imcLabel.label, length);
+				return null;
+			}
+
+			@Override
+			public Object visit(ImcMOVE imcMove, Object arg) {
+				if (imcMove.dst instanceof ImcMEM) {
+					ImcExpr addrExpr = ((ImcMEM) imcMove.dst).addr;
+					ImcCONST offset = offset(addrExpr);
+					int addr = (offset == null) ? addrExpr.accept(new ExprCompiler(), -1)
+							: base(addrExpr).accept(new ExprCompiler(), -1);
+					int src;
+					if (imcMove.src instanceof ImcCALL) {
+						emitCall((ImcCALL) imcMove.src);
+						src = scratch();
+						emit(VmCode.RESULT, src);
+					} else
+						src = imcMove.src.accept(new ExprCompiler(), -1);
+					if (offset == null)
+						emit(VmCode.STORE, addr, src);
+					else
+						emit(VmCode.STOREI, addr, constant(offset.value), src);
+					return null;
+				}
+				if (imcMove.dst instanceof ImcTEMP) {
+					int dst = reg(((ImcTEMP) imcMove.dst).temp);
+					if (imcMove.src instanceof ImcCALL) {
+						emitCall((ImcCALL) imcMove.src);
+						emit(VmCode.RESULT, dst);
+					} else
+						imcMove.src.accept(new ExprCompiler(), dst);
+					return null;
+				}
+				emit(VmCode.TRAP);
+				return null;
+			}
+
+			@Override
+			public Object visit(ImcSTMTS imcStmts, Object arg) {
+				emit(VmCode.TRAP);
+				return null;
+			}
+
+		}
+
+		/**
+		 * Returns the constant offset of an address of the form {@code base + k},
+		 * {@code k + base} or {@code base - k} (the latter is the form of local
+		 * variables), or {@code null} if the address is not of this form.
+		 */
+		private ImcCONST offset(ImcExpr addr) {
+			if (!(addr instanceof ImcBINOP))
+				return null;
+			ImcBINOP imcBinop = (ImcBINOP) addr;
+			if (imcBinop.oper == ImcBINOP.Oper.SUB)
+				return (imcBinop.sndExpr instanceof ImcCONST) ? new ImcCONST(-((ImcCONST) imcBinop.sndExpr).value)
+						: null;
+			if (imcBinop.oper != ImcBINOP.Oper.ADD)
+				return null;
+			if (imcBinop.sndExpr instanceof ImcCONST)
+				return (ImcCONST) imcBinop.sndExpr;
+			if (imcBinop.fstExpr instanceof ImcCONST)
+				return (ImcCONST) imcBinop.fstExpr;
+			return null;
+		}
+
+		/**
+		 * Returns the base of an address of the form {@code base + k}, {@code k + base}
+		 * or {@code base - k}.
+		 */
+		private ImcExpr base(ImcExpr addr) {
+			ImcBINOP imcBinop = (ImcBINOP) addr;
+			return (imcBinop.sndExpr instanceof ImcCONST) ? imcBinop.fstExpr : imcBinop.sndExpr;
+		}
+
+		/**
+		 * Compiles an expression into the specified register (or into any register
+		 * if the specified register is negative) and returns the register holding
+		 * the result.
+		 */
+		private class ExprCompiler implements ImcVisitor<Integer, Integer> {
+
+			private int target(int dst) {
+				return (dst >= 0) ? dst : scratch();
+			}
+
+			@Override
+			public Integer visit(ImcBINOP imcBinop, Integer dst) {
+				switch (imcBinop.oper) {
+				case ADD:
+				case MUL:
+					if (imcBinop.sndExpr instanceof ImcCONST)
+						return immediate(imcBinop.oper, imcBinop.fstExpr, ((ImcCONST) imcBinop.sndExpr).value, dst);
+					if (imcBinop.fstExpr instanceof ImcCONST)
+						return immediate(imcBinop.oper, imcBinop.sndExpr, ((ImcCONST) imcBinop.fstExpr).value, dst);
+					break;
+				case SUB:
+					if (imcBinop.sndExpr instanceof ImcCONST)
+						return immediate(ImcBINOP.Oper.ADD, imcBinop.fstExpr, -((ImcCONST) imcBinop.sndExpr).value, dst);
+					break;
+				default:
+					break;
+				}
+				int fst = imcBinop.fstExpr.accept(this, -1);
+				int snd = imcBinop.sndExpr.accept(this, -1);
+				int opcode;
+				switch (imcBinop.oper) {
+				case IOR:
+					opcode = VmCode.IOR;
+					break;
+				case XOR:
+					opcode = VmCode.XOR;
+					break;
+				case AND:
+					opcode = VmCode.AND;
+					break;
+				case EQU:
+					opcode = VmCode.EQU;
+					break;
+				case NEQ:
+					opcode = VmCode.NEQ;
+					break;
+				case LTH:
+					opcode = VmCode.LTH;
+					break;
+				case GTH:
+					opcode = VmCode.GTH;
+					break;
+				case LEQ:
+					opcode = VmCode.LEQ;
+					break;
+				case GEQ:
+					opcode = VmCode.GEQ;
+					break;
+				case ADD:
+					opcode = VmCode.ADD;
+					break;
+				case SUB:
+					opcode = VmCode.SUB;
+					break;
+				case MUL:
+					opcode = VmCode.MUL;
+					break;
+				case DIV:
+					opcode = VmCode.DIV;
+					break;
+				case MOD:
+					opcode = VmCode.MOD;
+					break;
+				default:
+					emit(VmCode.TRAP);
+					return target(dst);
+				}
+				int reg = target(dst);
+				emit(opcode, reg, fst, snd);
+				return reg;
+			}
+
+			private int immediate(ImcBINOP.Oper oper, ImcExpr expr, long value, int dst) {
+				int src = expr.accept(this, -1);
+				int reg = target(dst);
+				emit((oper == ImcBINOP.Oper.ADD) ? VmCode.ADDI : VmCode.MULI, reg, src, constant(value));
+				return reg;
+			}
+
+			@Override
+			public Integer visit(ImcCALL imcCall, Integer dst) {
+				emit(VmCode.TRAP);
+				return target(dst);
+			}
+
+			@Override
+			public Integer visit(ImcCONST imcConst, Integer dst) {
+				int reg = target(dst);
+				emit(VmCode.CONST, reg, constant(imcConst.value));
+				return reg;
+			}
+
+			@Override
+			public Integer visit(ImcMEM imcMem, Integer dst) {
+				ImcCONST offset = offset(imcMem.addr);
+				if (offset != null) {
+					int addr = base(imcMem.addr).accept(this, -1);
+					int reg = target(dst);
+					emit(VmCode.LOADI, reg, addr, constant(offset.value));
+					return reg;
+				}
+				int addr = imcMem.addr.accept(this, -1);
+				int reg = target(dst);
+				emit(VmCode.LOAD, reg, addr);
+				return reg;
+			}
+
+			@Override
+			public Integer visit(ImcNAME imcName, Integer dst) {
+				Long addr = dataLabels.get(imcName.label);
+				int reg = target(dst);
+				if (addr == null)
+					emit(VmCode.TRAP);
+				else
+					emit(VmCode.CONST, reg, constant(addr));
+				return reg;
+			}
+
+			@Override
+			public Integer visit(ImcSEXPR imcSExpr, Integer dst) {
+				emit(VmCode.TRAP);
+				return target(dst);
+			}
+
+			@Override
+			public Integer visit(ImcTEMP imcTemp, Integer dst) {
+				int reg = reg(imcTemp.temp);
+				if ((dst < 0) || (dst == reg))
+					return reg;
+				emit(VmCode.MOVE, dst, reg);
+				return dst;
+			}
+
+			@Override
+			public Integer visit(ImcUNOP imcUnop, Integer dst) {
+				int sub = imcUnop.subExpr.accept(this, -1);
+				int reg = target(dst);
+				switch (imcUnop.oper) {
+				case NOT:
+					emit(VmCode.NOT, reg, sub);
+					break;
+				case NEG:
+					emit(VmCode.NEG, reg, sub);
+					break;
+				default:
+					emit(VmCode.TRAP);
+				}
+				return reg;
+			}
+
+		}
+
+	}
+
+}
@@ -0,0 +1,100 @@
+/**
+ * @author sliva
+ */
+package compiler.phases.vm;
+
+import compiler.common.logger.*;
+
+/**
+ * A function compiled for the virtual machine.
+ *
+ * @author sliva
+ */
+public class VmFunction implements Loggable {
+
+	/** The name of the function (its frame label). */
+	public final String name;
+
+	/** The size of the function's frame. */
+	public final long frameSize;
+
+	/** The number of registers. */
+	public final int numRegs;
+
+	/** The register holding the frame pointer. */
+	public final int regFP;
+
+	/** The register holding the return value. */
+	public final int regRV;
+
+	/** The offset the execution starts at. */
+	public final int entry;
+
+	/** The code. */
+	final int[] code;
+
+	/** The constant pool. */
+	final long[] consts;
+
+	/** The code offset of each statement of the code chunk. */
+	private final int[] stmtOffsets;
+
+	VmFunction(String name, long frameSize, int numRegs, int regFP, int regRV, int entry, int[] code, long[] consts,
+			int[] stmtOffsets) {
+		this.name = name;
+		this.frameSize = frameSize;
+		this.numRegs = numRegs;
+		this.regFP = regFP;
+		this.regRV = regRV;
+		this.entry = entry;
+		this.code = code;
+		this.consts = consts;
+		this.stmtOffsets = stmtOffsets;
+	}
+
+	/**
+	 * Returns the length of the code.
+	 *
+	 * @return The length of the code.
+	 */
+	public int codeLength() {
+		return code.length;
+	}
+
+	/**
+	 * Returns the code offset of a statement of the code chunk. Registers holding
+	 * temporary variables are the same as in the code chunk's
+	 * {@link compiler.phases.chunks.LoadedChunk}, so the execution of a function
+	 * can be transferred to the virtual machine at any statement boundary.
+	 *
+	 * @param stmt The index of the statement.
+	 * @return The code offset of the statement.
+	 */
+	public int stmtOffset(int stmt) {
+		return stmtOffsets[stmt];
+	}
+
+	@Override
+	public void log(Logger logger) {
+		if (logger == null)
+			return;
+		logger.begElement("vmfunction");
+		logger.addAttribute("name", name);
+		logger.addAttribute("framesize", Long.toString(frameSize));
+		logger.addAttribute("regs", Integer.toString(numRegs));
+		for (int k = 0; k < consts.length; k++) {
+			logger.begElement("const");
+			logger.addAttribute("index", Integer.toString(k));
+			logger.addAttribute("value", Long.toString(consts[k]));
+			logger.endElement();
+		}
+		for (int offset = 0; offset < code.length; offset += VmCode.length(code[offset])) {
+			logger.begElement("instr");
+			logger.addAttribute("offset", Integer.toString(offset));
+			logger.addAttribute("text", VmCode.toString(code, offset));
+			logger.endElement();
+		}
+		logger.endElement();
+	}
+
+}
@@ -0,0 +1,338 @@
+/**
+ * @author sliva
+ */
+package compiler.phases.vm;
+
+import compiler.common.report.*;
+import compiler.phases.chunks.*;
+
+/**
+ * The interpreter of the bytecode of the virtual machine.
+ *
+ * The interpreter uses the same memory model and the same calling convention as
+ * {@link compiler.phases.chunks.Interpreter}: the stack grows down from
+ * {@code 0xFFFFFFFFFFFFFFF0}, the heap grows up from the end of the data
+ * chunks, arguments are passed on the stack starting at {@code SP} and the
+ * result is returned at {@code mem[SP]}. Registers are not checked for being
+ * initialized.
+ *
+ * @author sliva
+ */
+public class VmInterpreter {
+
+	/** The program. */
+	private final VmProgram program;
+
+	/** The memory. */
+	protected final Memory memory;
+
+	/** The output of the builtin functions. */
+	private final RuntimeOutput output;
+
+	/** The value of the stack pointer. */
+	protected long sp;
+
+	/** The heap allocator. */
+	private final HeapAllocator heap;
+
+	/** The garbage collector ({@code null} if garbage collection is disabled). */
+	private final GarbageCollector gc;
+
+	/** The meter ({@code null} if metering is disabled). */
+	private final Meter meter;
+
+	/** The handlers of the builtin functions. */
+	private final Builtins.Builtin[] builtins = Builtins.handlers();
+
+	/** The state accessible to the builtin functions. */
+	private final Builtins.Context context;
+
+	/**
+	 * Constructs a new interpreter of a program.
+	 *
+	 * @param program The program.
+	 */
+	public VmInterpreter(VmProgram program) {
+		this(program, new RuntimeOutput());
+	}
+
+	/**
+	 * Constructs a new interpreter of a program.
+	 *
+	 * @param program The program.
+	 * @param output  The output of the builtin functions.
+	 */
+	public VmInterpreter(VmProgram program, RuntimeOutput output) {
+		this.program = program;
+		this.memory = new Memory();
+		this.output = output;
+		this.heap = new HeapAllocator(program.initHP);
+		this.sp = 0xFFFFFFFFFFFFFFF0l;
+		for (int chunk = 0; chunk < program.zeroedData.length; chunk += 2)
+			memory.zero(program.zeroedData[chunk], program.zeroedData[chunk + 1]);
+		this.gc = GarbageCollector.create(memory, heap, VmCompiler.HEAP_BASE, program.initHP, sp);
+		this.meter = Meter.create();
+		this.context = new Builtins.Context(memory, heap, output, gc);
+	}
+
+	/**
+	 * Constructs a new interpreter sharing the memory and the state of the
+	 * builtin functions with another execution engine. Subclasses must override
+	 * {@link #call(int)} and set {@link #sp} before executing any code.
+	 *
+	 * @param context The state accessible to the builtin functions.
+	 * @param meter   The meter ({@code null} if metering is disabled).
+	 */
+	protected VmInterpreter(Builtins.Context context, Meter meter) {
+		this.program = null;
+		this.memory = context.memory;
+		this.output = context.output;
+		this.heap = context.heap;
+		this.gc = context.gc;
+		this.meter = meter;
+		this.context = context;
+	}
+
+	/**
+	 * Runs the program.
+	 *
+	 * @param entryLabel The name of the function to be called.
+	 * @return The value returned by the function.
+	 */
+	public long run(String entryLabel) {
+		VmFunction function = program.function(entryLabel);
+		if (function == null)
+			throw new Report.InternalError();
+		if (meter != null)
+			meter.start();
+		try {
+			call(function);
+		} catch (Builtins.Exit __) {
+			return __.code;
+		} finally {
+			output.flush();
+			if (compiler.Main.cmdLineArgValue("--heap-stats") != null) {
+				Report.info(heap.statistics());
+				if (gc != null)
+					Report.info(gc.statistics());
+			}
+		}
+		return memory.load(sp);
+	}
+
+	/**
+	 * Calls a function of the program.
+	 *
+	 * @param index The index of the function.
+	 */
+	protected void call(int index) {
+		call(program.function(index));
+	}
+
+	/**
+	 * Calls a function: creates its stack frame, executes its body and stores its
+	 * result.
+	 *
+	 * @param function The function.
+	 */
+	protected final void call(VmFunction function) {
+		final long[] regs = new long[function.numRegs];
+
+		// Create a stack frame.
+		long storedSP = sp;
+		regs[function.regFP] = sp;
+		sp = sp - function.frameSize;
+
+		if (gc != null)
+			gc.enter(regs);
+		if (meter != null)
+			meter.enter();
+		execute(function, regs, function.entry);
+		if (meter != null)
+			meter.leave();
+		if (gc != null)
+			gc.leave();
+
+		// Store the result and destroy the stack frame.
+		memory.store(regs[function.regFP], regs[function.regRV]);
+		sp = storedSP;
+	}
+
+	/**
+	 * Executes the body of a function until it returns. The stack frame must have
+	 * already been created.
+	 *
+	 * @param function The function.
+	 * @param regs     The registers of the function.
+	 * @param pc       The code offset the execution starts at.
+	 */
+	protected final void execute(VmFunction function, long[] regs, int pc) {
+		final int[] code = function.code;
+		final long[] consts = function.consts;
+		final Memory memory = this.memory;
+		final Meter meter = this.meter;
+
+		loop: while (true) {
+			switch (code[pc]) {
+			case VmCode.CONST:
+				regs[code[pc + 1]] = consts[code[pc + 2]];
+				pc += 3;
+				break;
+			case VmCode.MOVE:
+				regs[code[pc + 1]] = regs[code[pc + 2]];
+				pc += 3;
+				break;
+			case VmCode.LOAD:
+				regs[code[pc + 1]] = memory.load(regs[code[pc + 2]]);
+				pc += 3;
+				break;
+			case VmCode.STORE:
+				memory.store(regs[code[pc + 1]], regs[code[pc + 2]]);
+				pc += 3;
+				break;
+			case VmCode.NOT:
+				regs[code[pc + 1]] = (regs[code[pc + 2]] == 0) ? 1 : 0;
+				pc += 3;
+				break;
+			case VmCode.NEG:
+				regs[code[pc + 1]] = -regs[code[pc + 2]];
+				pc += 3;
+				break;
+			case VmCode.IOR:
+				regs[code[pc + 1]] = ((regs[code[pc + 2]] != 0) | (regs[code[pc + 3]] != 0)) ? 1 : 0;
+				pc += 4;
+				break;
+			case VmCode.XOR:
+				regs[code[pc + 1]] = ((regs[code[pc + 2]] != 0) ^ (regs[code[pc + 3]] != 0)) ? 1 : 0;
+				pc += 4;
+				break;
+			case VmCode.AND:
+				regs[code[pc + 1]] = ((regs[code[pc + 2]] != 0) & (regs[code[pc + 3]] != 0)) ? 1 : 0;
+				pc += 4;
+				break;
+			case VmCode.EQU:
+				regs[code[pc + 1]] = (regs[code[pc + 2]] == regs[code[pc + 3]]) ? 1 : 0;
+				pc += 4;
+				break;
+			case VmCode.NEQ:
+				regs[code[pc + 1]] = (regs[code[pc + 2]] != regs[code[pc + 3]]) ? 1 : 0;
+				pc += 4;
+				break;
+			case VmCode.LTH:
+				regs[code[pc + 1]] = (regs[code[pc + 2]] < regs[code[pc + 3]]) ? 1 : 0;
+				pc += 4;
+				break;
+			case VmCode.GTH:
+				regs[code[pc + 1]] = (regs[code[pc + 2]] > regs[code[pc + 3]]) ? 1 : 0;
+				pc += 4;
+				break;
+			case VmCode.LEQ:
+				regs[code[pc + 1]] = (regs[code[pc + 2]] <= regs[code[pc + 3]]) ? 1 : 0;
+				pc += 4;
+				break;
+			case VmCode.GEQ:
+				regs[code[pc + 1]] = (regs[code[pc + 2]] >= regs[code[pc + 3]]) ? 1 : 0;
+				pc += 4;
+				break;
+			case VmCode.ADD:
+				regs[code[pc + 1]] = regs[code[pc + 2]] + regs[code[pc + 3]];
+				pc += 4;
+				break;
+			case VmCode.SUB:
+				regs[code[pc + 1]] = regs[code[pc + 2]] - regs[code[pc + 3]];
+				pc += 4;
+				break;
+			case VmCode.MUL:
+				regs[code[pc + 1]] = regs[code[pc + 2]] * regs[code[pc + 3]];
+				pc += 4;
+				break;
+			case VmCode.DIV:
+				regs[code[pc + 1]] = regs[code[pc + 2]] / regs[code[pc + 3]];
+				pc += 4;
+				break;
+			case VmCode.MOD:
+				regs[code[pc + 1]] = regs[code[pc + 2]] % regs[code[pc + 3]];
+				pc += 4;
+				break;
+			case VmCode.JUMP:
+				if (meter != null)
+					meter.block();
+				pc = code[pc + 1];
+				break;
+			case VmCode.CJUMP:
+				if (meter != null)
+					meter.block();
+				pc = (regs[code[pc + 1]] != 0) ? code[pc + 2] : code[pc + 3];
+				break;
+			case VmCode.ARG:
+				memory.store(sp + 8 * code[pc + 1], regs[code[pc + 2]]);
+				pc += 3;
+				break;
+			case VmCode.CALL:
+				call(code[pc + 1]);
+				pc += 2;
+				break;
+			case VmCode.BUILTIN:
+				context.sp = sp;
+				builtins[code[pc + 1]].call(context);
+				pc += 2;
+				break;
+			case VmCode.RESULT:
+				regs[code[pc + 1]] = memory.load(sp);
+				pc += 2;
+				break;
+			case VmCode.RET:
+				break loop;
+			case VmCode.ADDI:
+				regs[code[pc + 1]] = regs[code[pc + 2]] + consts[code[pc + 3]];
+				pc += 4;
+				break;
+			case VmCode.MULI:
+				regs[code[pc + 1]] = regs[code[pc + 2]] * consts[code[pc + 3]];
+				pc += 4;
+				break;
+			case VmCode.LOADI:
+				regs[code[pc + 1]] = memory.load(regs[code[pc + 2]] + consts[code[pc + 3]]);
+				pc += 4;
+				break;
+			case VmCode.STOREI:
+				memory.store(regs[code[pc + 1]] + consts[code[pc + 2]], regs[code[pc + 3]]);
+				pc += 4;
+				break;
+			case VmCode.JEQU:
+				if (meter != null)
+					meter.block();
+				pc = (regs[code[pc + 1]] == regs[code[pc + 2]]) ? code[pc + 3] : code[pc + 4];
+				break;
+			case VmCode.JNEQ:
+				if (meter != null)
+					meter.block();
+				pc = (regs[code[pc + 1]] != regs[code[pc + 2]]) ? code[pc + 3] : code[pc + 4];
+				break;
+			case VmCode.JLTH:
+				if (meter != null)
+					meter.block();
+				pc = (regs[code[pc + 1]] < regs[code[pc + 2]]) ? code[pc + 3] : code[pc + 4];
+				break;
+			case VmCode.JGTH:
+				if (meter != null)
+					meter.block();
+				pc = (regs[code[pc + 1]] > regs[code[pc + 2]]) ? code[pc + 3] : code[pc + 4];
+				break;
+			case VmCode.JLEQ:
+				if (meter != null)
+					meter.block();
+				pc = (regs[code[pc + 1]] <= regs[code[pc + 2]]) ? code[pc + 3] : code[pc + 4];
+				break;
+			case VmCode.JGEQ:
+				if (meter != null)
+					meter.block();
+				pc = (regs[code[pc + 1]] >= regs[code[pc + 2]]) ? code[pc + 3] : code[pc + 4];
+				break;
+			default:
+				throw new Report.InternalError();
+			}
+		}
+	}
+
+}
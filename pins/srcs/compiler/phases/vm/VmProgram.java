@@ -0,0 +1,71 @@
+/**
+ * @author sliva
+ */
+package compiler.phases.vm;
+
+import java.util.*;
+
+/**
+ * A program compiled for the virtual machine.
+ *
+ * @author sliva
+ */
+public class VmProgram {
+
+	/** The functions. */
+	private final VmFunction[] functions;
+
+	/** The value of the heap pointer after the data chunks have been laid out. */
+	public final long initHP;
+
+	/** The addresses and sizes of data chunks initialized with zeros (in pairs). */
+	final long[] zeroedData;
+
+	VmProgram(VmFunction[] functions, long initHP, long[] zeroedData) {
+		this.functions = functions;
+		this.initHP = initHP;
+		this.zeroedData = zeroedData;
+	}
+
+	/**
+	 * Returns the number of functions.
+	 *
+	 * @return The number of functions.
+	 */
+	public int numFunctions() {
+		return functions.length;
+	}
+
+	/**
+	 * Returns the specified function.
+	 *
+	 * @param index The index of the function.
+	 * @return The function.
+	 */
+	public VmFunction function(int index) {
+		return functions[index];
+	}
+
+	/**
+	 * Returns the function with the specified name.
+	 *
+	 * @param name The name of the function.
+	 * @return The function or {@code null} if there is no such function.
+	 */
+	public VmFunction function(String name) {
+		for (VmFunction function : functions)
+			if (function.name.equals(name))
+				return function;
+		return null;
+	}
+
+	/**
+	 * Returns all functions.
+	 *
+	 * @return All functions.
+	 */
+	public List<VmFunction> functions() {
+		return Collections.unmodifiableList(Arrays.asList(functions));
+	}
+
+}
@@ -0,0 +1,4 @@
+/**
+ * @author sliva
+ */
+package compiler.phases.vm;
@@ -6,4 +6,5 @@
 module pins {
 
 	requires java.xml;
+	requires jdk.management;
 }